@@ -0,0 +1,106 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import fr.liglab.mining.bench.DatasetGenerator;
+import fr.liglab.mining.bench.ZipfGenerator;
+import fr.liglab.mining.internals.ExplorationStep;
+
+/**
+ * Provides benchmarks with a long-tailed input file. By default it is
+ * generated once per JVM by a ZipfGenerator, as item popularity in retail or
+ * web data. Use -Dtoppi.bench.input=path/to/file to benchmark on a
+ * real dataset instead.
+ */
+public final class SyntheticInput {
+
+	public static final String KEY_INPUT = "toppi.bench.input";
+	public static final String KEY_TRANSACTIONS = "toppi.bench.transactions";
+	public static final String KEY_ITEMS = "toppi.bench.items";
+	public static final String KEY_LENGTH = "toppi.bench.length";
+	public static final String KEY_SKEW = "toppi.bench.skew";
+
+	private static String path = null;
+
+	private SyntheticInput() {
+	}
+
+	public static synchronized String getPath() {
+		if (path == null) {
+			path = System.getProperty(KEY_INPUT);
+		}
+		if (path == null) {
+			try {
+				File file = File.createTempFile("toppi-bench-", ".dat");
+				file.deleteOnExit();
+				ZipfGenerator generator = new ZipfGenerator(Integer.parseInt(System.getProperty(KEY_ITEMS, "10000")),
+						Double.parseDouble(System.getProperty(KEY_LENGTH, "12")), Double.parseDouble(System
+								.getProperty(KEY_SKEW, "1.0")), 0, 0, 0, DatasetGenerator.DEFAULT_SEED);
+				generator.generate(file.getPath(), Integer.parseInt(System.getProperty(KEY_TRANSACTIONS, "100000")));
+				path = file.getAbsolutePath();
+			} catch (IOException e) {
+				e.printStackTrace(System.err);
+				throw new RuntimeException(e);
+			}
+		}
+		return path;
+	}
+
+	/**
+	 * @return a root exploration step over the input file, as TopPIcli
+	 *         would build it
+	 */
+	public static ExplorationStep load(final int minsup) {
+		return new ExplorationStep(minsup, getPath(), 50);
+	}
+
+	/**
+	 * @return "count" sorted patterns of 1 to maxLength distinct items, picked
+	 *         among "items"
+	 */
+	public static int[][] randomPatterns(final int count, final int[] items, final int maxLength, final long seed) {
+		final Random random = new Random(seed);
+		final int[][] patterns = new int[count][];
+
+		for (int p = 0; p < count; p++) {
+			final int length = 1 + random.nextInt(Math.min(maxLength, items.length));
+			final int[] pattern = new int[length];
+			int filled = 0;
+
+			while (filled < length) {
+				final int item = items[random.nextInt(items.length)];
+				boolean duplicate = false;
+				for (int i = 0; i < filled && !duplicate; i++) {
+					duplicate = pattern[i] == item;
+				}
+				if (!duplicate) {
+					pattern[filled++] = item;
+				}
+			}
+
+			Arrays.sort(pattern);
+			patterns[p] = pattern;
+		}
+
+		return patterns;
+	}
+}
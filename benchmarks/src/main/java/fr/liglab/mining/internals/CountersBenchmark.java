@@ -0,0 +1,79 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.internals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.liglab.mining.benchmarks.SyntheticInput;
+
+/**
+ * Counting an extension's projection, as done by
+ * ExplorationStep.prepareExploration. Compare both implementations around
+ * toppi.sparse.from : the extension's rank drives its support, hence the
+ * projection's size and density.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CountersBenchmark {
+
+	@Param({ "10" })
+	public int minsup;
+
+	/**
+	 * extension's internal ID, ie. its rank by decreasing support
+	 */
+	@Param({ "0", "10", "100", "1000", "5000" })
+	public int extension;
+
+	private ExplorationStep root;
+
+	@Setup
+	public void setup() {
+		this.root = SyntheticInput.load(this.minsup);
+		this.extension = Math.min(this.extension, this.root.counters.getMaxFrequent());
+	}
+
+	@Benchmark
+	public Counters dense() {
+		return new DenseCounters(this.root.counters.getMinSupport(), this.root.dataset.getSupport(this.extension)
+				.iterator(), this.extension, this.root.dataset.getIgnoredItems(), this.root.dataset.getMaxItem(),
+				this.root.counters.getReverseRenaming(), this.root.counters.getPattern());
+	}
+
+	@Benchmark
+	public Counters sparse() {
+		return new SparseCounters(this.root.counters.getMinSupport(), this.root.dataset.getSupport(this.extension)
+				.iterator(), this.extension, this.root.dataset.getIgnoredItems(), this.root.dataset.getMaxItem(),
+				this.root.counters.getReverseRenaming(), this.root.counters.getPattern());
+	}
+}
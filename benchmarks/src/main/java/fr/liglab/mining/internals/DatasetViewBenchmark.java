@@ -0,0 +1,91 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.internals;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.liglab.mining.benchmarks.SyntheticInput;
+
+/**
+ * DatasetView.getSupport, which intersects the viewed TIDs with the
+ * extension's full tidlist (buildExtensionTIDs). Views are used when the
+ * projection is bigger than toppi.threshold.view times the parent dataset.
+ * Each invocation intersects the view with all its candidate extensions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DatasetViewBenchmark {
+
+	@Param({ "10" })
+	public int minsup;
+
+	/**
+	 * internal ID of the item the view is projected on
+	 */
+	@Param({ "1", "10", "100", "1000" })
+	public int viewed;
+
+	private DatasetView view;
+	private int[] extensions;
+
+	@Setup
+	public void setup() {
+		ExplorationStep root = SyntheticInput.load(this.minsup);
+		this.viewed = Math.min(this.viewed, root.counters.getMaxFrequent());
+
+		Dataset.TransactionsIterable support = root.dataset.getSupport(this.viewed);
+		Counters counters = new DenseCounters(root.counters.getMinSupport(), support.iterator(), this.viewed,
+				root.dataset.getIgnoredItems(), root.dataset.getMaxItem(), root.counters.getReverseRenaming(),
+				root.counters.getPattern());
+
+		this.view = new DatasetView(root.dataset, counters, support, this.viewed, counters.getMinSupport(),
+				counters.getMaxFrequent());
+
+		int nbExtensions = 0;
+		this.extensions = new int[this.viewed];
+		FrequentsIterator candidates = counters.getExtensionsIterator();
+		for (int candidate = candidates.next(); candidate != -1; candidate = candidates.next()) {
+			this.extensions[nbExtensions++] = candidate;
+		}
+		this.extensions = Arrays.copyOf(this.extensions, nbExtensions);
+	}
+
+	@Benchmark
+	public void buildExtensionTIDs(Blackhole bh) {
+		for (int extension : this.extensions) {
+			bh.consume(this.view.getSupport(extension));
+		}
+	}
+}
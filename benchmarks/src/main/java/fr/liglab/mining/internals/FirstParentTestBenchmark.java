@@ -0,0 +1,88 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.internals;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.liglab.mining.benchmarks.SyntheticInput;
+import fr.liglab.mining.internals.tidlist.TidList;
+import gnu.trove.iterator.TIntIterator;
+
+/**
+ * FirstParentTest.isAincludedInB, which scans two tidlists to check if the
+ * first one is included in the second. It is private, so it's invoked
+ * reflectively: this adds a constant overhead, negligible compared to the
+ * scan itself on non-trivial supports.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FirstParentTestBenchmark {
+
+	@Param({ "10" })
+	public int minsup;
+
+	/**
+	 * internal ID of the item whose tidlist is searched, ie. the rarest one
+	 */
+	@Param({ "10", "100", "1000" })
+	public int included;
+
+	/**
+	 * internal ID of the item whose tidlist is scanned through
+	 */
+	@Param({ "0", "5" })
+	public int including;
+
+	private TidList tidLists;
+	private FirstParentTest test;
+	private Method isAincludedInB;
+
+	@Setup
+	public void setup() throws Exception {
+		ExplorationStep root = SyntheticInput.load(this.minsup);
+		this.included = Math.min(this.included, root.counters.getMaxFrequent());
+		this.including = Math.min(this.including, root.counters.getMaxFrequent());
+		this.tidLists = root.dataset.tidLists;
+		this.test = new FirstParentTest();
+		this.isAincludedInB = FirstParentTest.class.getDeclaredMethod("isAincludedInB",
+				TIntIterator.class, TIntIterator.class);
+		this.isAincludedInB.setAccessible(true);
+	}
+
+	@Benchmark
+	public Object isAincludedInB() throws Exception {
+		return this.isAincludedInB.invoke(this.test, this.tidLists.get(this.included),
+				this.tidLists.get(this.including));
+	}
+}
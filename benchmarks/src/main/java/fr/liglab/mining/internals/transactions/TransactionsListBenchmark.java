@@ -0,0 +1,145 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.internals.transactions;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.liglab.mining.benchmarks.SyntheticInput;
+import fr.liglab.mining.internals.DenseCounters;
+import fr.liglab.mining.internals.ExplorationStep;
+import fr.liglab.mining.internals.TransactionReader;
+import fr.liglab.mining.internals.transactions.IndexedTransactionsList.IndexedReusableIterator;
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Reads all transactions of the root dataset, stored with each
+ * IndexedTransactionsList encoding. Byte-sized encodings can only store the
+ * most frequent items, so for them transactions are restricted to the items
+ * they can hold.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TransactionsListBenchmark {
+
+	@Param({ "10" })
+	public int minsup;
+
+	@Param({ "UByte", "Byte", "UShort", "Short", "Int", "VInt" })
+	public String encoding;
+
+	private IndexedTransactionsList transactions;
+
+	@Setup
+	public void setup() {
+		ExplorationStep root = SyntheticInput.load(this.minsup);
+
+		final int maxItem;
+		if ("UByte".equals(this.encoding)) {
+			maxItem = ((int) Byte.MAX_VALUE) - ((int) Byte.MIN_VALUE) - 1;
+		} else if ("Byte".equals(this.encoding)) {
+			maxItem = Byte.MAX_VALUE;
+		} else if ("UShort".equals(this.encoding)) {
+			maxItem = Character.MAX_VALUE - 1;
+		} else if ("Short".equals(this.encoding)) {
+			maxItem = Short.MAX_VALUE;
+		} else {
+			maxItem = Integer.MAX_VALUE;
+		}
+
+		TIntArrayList concatenated = new TIntArrayList();
+		TIntArrayList starts = new TIntArrayList();
+		TIntArrayList weights = new TIntArrayList();
+
+		Iterator<TransactionReader> it = root.dataset.getTransactions();
+		while (it.hasNext()) {
+			TransactionReader transaction = it.next();
+			final int start = concatenated.size();
+			while (transaction.hasNext()) {
+				final int item = transaction.next();
+				if (item <= maxItem) {
+					concatenated.add(item);
+				}
+			}
+			if (concatenated.size() > start) {
+				starts.add(start);
+				weights.add(transaction.getTransactionSupport());
+			}
+		}
+		starts.add(concatenated.size());
+
+		final int nbTransactions = weights.size();
+		if ("UByte".equals(this.encoding)) {
+			this.transactions = new UByteIndexedTransactionsList(concatenated.size(), nbTransactions);
+		} else if ("Byte".equals(this.encoding)) {
+			this.transactions = new ByteIndexedTransactionsList(concatenated.size(), nbTransactions);
+		} else if ("UShort".equals(this.encoding)) {
+			this.transactions = new UShortIndexedTransactionsList(concatenated.size(), nbTransactions);
+		} else if ("Short".equals(this.encoding)) {
+			this.transactions = new ShortIndexedTransactionsList(concatenated.size(), nbTransactions);
+		} else if ("Int".equals(this.encoding)) {
+			this.transactions = new IntIndexedTransactionsList(concatenated.size(), nbTransactions);
+		} else if ("VInt".equals(this.encoding)) {
+			this.transactions = new VIntIndexedTransactionsList(root.counters,
+					((DenseCounters) root.counters).getSupportCounts(), nbTransactions);
+		} else {
+			throw new IllegalArgumentException("Unknown encoding: " + this.encoding);
+		}
+
+		TransactionsWriter writer = this.transactions.getWriter();
+		for (int t = 0; t < nbTransactions; t++) {
+			writer.beginTransaction(weights.get(t));
+			for (int i = starts.get(t); i < starts.get(t + 1); i++) {
+				writer.addItem(concatenated.get(i));
+			}
+			writer.endTransaction();
+		}
+	}
+
+	@Benchmark
+	public long iterate() {
+		final IndexedReusableIterator iterator = this.transactions.getIterator();
+		final int size = this.transactions.size();
+		long sum = 0;
+
+		for (int t = 0; t < size; t++) {
+			iterator.setTransaction(t);
+			sum += iterator.getTransactionSupport();
+			while (iterator.hasNext()) {
+				sum += iterator.next();
+			}
+		}
+
+		return sum;
+	}
+}
@@ -0,0 +1,91 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.io;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.liglab.mining.benchmarks.SyntheticInput;
+
+/**
+ * Formatting patterns to ASCII through FileCollector. Output goes to
+ * /dev/null by default, so we mostly measure formatting and buffer handling ;
+ * set the "output" parameter to a real path to include the disk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FileCollectorBenchmark {
+
+	private static final int NB_PATTERNS = 1 << 16;
+
+	@Param({ "/dev/null" })
+	public String output;
+
+	@Param({ "100", "1000000" })
+	public int maxItem;
+
+	@Param({ "8" })
+	public int maxLength;
+
+	private FileCollector collector;
+	private int[][] patterns;
+	private int[] supports;
+	private int next = 0;
+
+	@Setup
+	public void setup() throws IOException {
+		int[] items = new int[this.maxItem];
+		for (int i = 0; i < items.length; i++) {
+			items[i] = i;
+		}
+		this.patterns = SyntheticInput.randomPatterns(NB_PATTERNS, items, this.maxLength, 1);
+		this.supports = new int[NB_PATTERNS];
+		for (int i = 0; i < NB_PATTERNS; i++) {
+			this.supports[i] = 1 + (i * 7919) % this.maxItem;
+		}
+		this.collector = new FileCollector(this.output);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.collector.close();
+	}
+
+	@Benchmark
+	public void collect() {
+		final int i = this.next;
+		this.next = (i + 1) & (NB_PATTERNS - 1);
+		this.collector.collect(this.supports[i], this.patterns[i]);
+	}
+}
@@ -0,0 +1,113 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.io;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.liglab.mining.benchmarks.SyntheticInput;
+import fr.liglab.mining.internals.ExplorationStep;
+import fr.liglab.mining.internals.FrequentsIteratorRenamer;
+
+/**
+ * PerItemTopKCollector.collect, with several threads sharing the collector
+ * as mining threads do. The collector is reset at each iteration, so
+ * measurements include the early insertions as well as the later
+ * rejections. Change the number of threads with JMH's -t option.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(4)
+public class PerItemTopKCollectorBenchmark {
+
+	private static final int NB_PATTERNS = 1 << 16;
+
+	@State(Scope.Benchmark)
+	public static class Shared {
+
+		@Param({ "10" })
+		public int minsup;
+
+		@Param({ "10", "50" })
+		public int k;
+
+		ExplorationStep root;
+		int[] items;
+		PerItemTopKCollector collector;
+
+		@Setup(Level.Trial)
+		public void load() {
+			this.root = SyntheticInput.load(this.minsup);
+			final int[] renaming = this.root.counters.getReverseRenaming();
+			this.items = new int[this.root.counters.getMaxFrequent() + 1];
+			for (int i = 0; i < this.items.length; i++) {
+				this.items[i] = renaming[i];
+			}
+		}
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			this.collector = new PerItemTopKCollector(null, this.k, this.root.counters.getNbFrequents(),
+					new FrequentsIteratorRenamer(this.root.counters.getExtensionsIterator(),
+							this.root.counters.getReverseRenaming()));
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Patterns {
+		int[][] patterns;
+		int[] supports;
+		int next = 0;
+
+		@Setup(Level.Trial)
+		public void generate(Shared shared) {
+			final long seed = Thread.currentThread().getId();
+			this.patterns = SyntheticInput.randomPatterns(NB_PATTERNS, shared.items, 6, seed);
+			this.supports = new int[NB_PATTERNS];
+
+			final Random random = new Random(seed);
+			final int maxSupport = shared.root.counters.getSupportCount(0);
+			for (int i = 0; i < NB_PATTERNS; i++) {
+				this.supports[i] = shared.minsup + random.nextInt(maxSupport - shared.minsup + 1);
+			}
+		}
+	}
+
+	@Benchmark
+	public void collect(Shared shared, Patterns local) {
+		final int i = local.next;
+		local.next = (i + 1) & (NB_PATTERNS - 1);
+		shared.collector.collect(local.supports[i], local.patterns[i]);
+	}
+}
@@ -0,0 +1,64 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import fr.liglab.mining.benchmarks.SyntheticInput;
+
+public class SyntheticInputTest {
+
+	/**
+	 * Benchmarked collectors expect sorted patterns of distinct items, and
+	 * runs should be comparable
+	 */
+	@Test
+	public void testRandomPatterns() {
+		int[] items = { 3, 8, 12, 40, 41, 100 };
+		int[][] patterns = SyntheticInput.randomPatterns(500, items, 4, 42);
+		assertEquals(500, patterns.length);
+
+		for (int[] pattern : patterns) {
+			assertTrue(pattern.length >= 1 && pattern.length <= 4);
+			for (int i = 0; i < pattern.length; i++) {
+				assertTrue(Arrays.binarySearch(items, pattern[i]) >= 0);
+				if (i > 0) {
+					assertTrue(pattern[i - 1] < pattern[i]);
+				}
+			}
+		}
+
+		int[][] again = SyntheticInput.randomPatterns(500, items, 4, 42);
+		for (int i = 0; i < patterns.length; i++) {
+			assertArrayEquals(patterns[i], again[i]);
+		}
+	}
+
+	@Test
+	public void testMaxLengthAboveItemsCount() {
+		int[][] patterns = SyntheticInput.randomPatterns(50, new int[] { 1, 2 }, 10, 1);
+		for (int[] pattern : patterns) {
+			assertTrue(pattern.length <= 2);
+		}
+	}
+}
@@ -0,0 +1,305 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.hyptest;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import fr.liglab.hyptest.TreeMatcher.NotMonitoredException;
+
+/**
+ * Immutable version of a TreeMatcher (see TreeMatcher.flatten), stored in a
+ * few int arrays.
+ * 
+ * Nodes are numbered in breadth-first order, so each node's children are
+ * consecutive, sorted by item. Only monitored itemsets' supports can change :
+ * they may be overwritten (setSupports) or incremented by matching
+ * transactions, possibly from several threads that each use their own
+ * Matcher.
+ * 
+ * Assumes all transactions and patterns are sorted in asc order
+ */
+public final class FlatTreeMatcher implements Iterable<ItemsetSupports> {
+
+	/**
+	 * item of each node, -1 for the root (node 0)
+	 */
+	private final int[] items;
+
+	private final int[] parents;
+
+	/**
+	 * node n's children are in [childStart[n], childStart[n+1][
+	 */
+	private final int[] childStart;
+
+	/**
+	 * node => its index in supports, or -1 if it's not monitored
+	 */
+	private final int[] patternIndex;
+
+	/**
+	 * pattern index => node
+	 */
+	private final int[] patternNodes;
+
+	private final int[] supports;
+
+	private final int maxDepth;
+
+	FlatTreeMatcher(int[] items, int[] parents, int[] childStart, int[] patternIndex, int[] patternNodes,
+			int[] supports) {
+		this.items = items;
+		this.parents = parents;
+		this.childStart = childStart;
+		this.patternIndex = patternIndex;
+		this.patternNodes = patternNodes;
+		this.supports = supports;
+
+		int[] depths = new int[items.length];
+		int deepest = 0;
+		for (int n = 1; n < items.length; n++) {
+			depths[n] = depths[parents[n]] + 1;
+			deepest = Math.max(deepest, depths[n]);
+		}
+		this.maxDepth = deepest;
+	}
+
+	public int getNbPatterns() {
+		return this.supports.length;
+	}
+
+	public int[] getItemset(final int pattern) {
+		TIntArrayList itemset = new TIntArrayList();
+		for (int n = this.patternNodes[pattern]; n != 0; n = this.parents[n]) {
+			itemset.add(this.items[n]);
+		}
+		itemset.reverse();
+		return itemset.toArray();
+	}
+
+	/**
+	 * @return -1 if there's no such child
+	 */
+	private int getChild(final int node, final int item) {
+		final int found = Arrays.binarySearch(this.items, this.childStart[node], this.childStart[node + 1], item);
+		return (found < 0) ? -1 : found;
+	}
+
+	public int getSupport(int[] itemset) throws NotMonitoredException {
+		int n = 0;
+		for (int i = 0; i < itemset.length && n >= 0; i++) {
+			n = this.getChild(n, itemset[i]);
+		}
+		if (n < 0 || this.patternIndex[n] < 0) {
+			throw new NotMonitoredException();
+		}
+		return this.supports[this.patternIndex[n]];
+	}
+
+	/**
+	 * Overwrites all monitored itemsets' supports, as given by counter, with
+	 * nbThreads threads
+	 */
+	public void setSupports(final SupportCounter counter, final int nbThreads) throws InterruptedException {
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(nbThreads);
+		for (int t = 0; t < nbThreads; t++) {
+			final int offset = t;
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					for (int i = offset; i < supports.length; i += nbThreads) {
+						supports[i] = counter.getSupport(getItemset(i));
+					}
+					return null;
+				}
+			});
+		}
+		runAll(tasks);
+	}
+
+	/**
+	 * Adds to monitored itemsets' supports their occurrences in the given
+	 * transactions, which are split in nbThreads chunks matched in parallel
+	 */
+	public void match(final List<int[]> transactions, final int nbThreads) throws InterruptedException {
+		this.match(transactions, null, nbThreads);
+	}
+
+	/**
+	 * Same as match(transactions, nbThreads), but each transaction counts as
+	 * many times as its weight
+	 * 
+	 * @param weights
+	 *            indexed as transactions, or null if they all weight 1
+	 */
+	public void match(final List<int[]> transactions, final int[] weights, final int nbThreads)
+			throws InterruptedException {
+		final int chunkSize = (transactions.size() + nbThreads - 1) / nbThreads;
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(nbThreads);
+		for (int t = 0; t < nbThreads; t++) {
+			final int from = Math.min(transactions.size(), t * chunkSize);
+			final int to = Math.min(transactions.size(), from + chunkSize);
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					Matcher matcher = newMatcher();
+					for (int i = from; i < to; i++) {
+						final int[] transaction = transactions.get(i);
+						matcher.match(transaction, transaction.length, (weights == null) ? 1 : weights[i]);
+					}
+					addCounts(matcher);
+					return null;
+				}
+			});
+		}
+		runAll(tasks);
+	}
+
+	private static void runAll(List<Callable<Object>> tasks) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(tasks.size());
+		try {
+			for (Future<Object> future : pool.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Each matching thread should use its own instance
+	 */
+	public Matcher newMatcher() {
+		return new Matcher();
+	}
+
+	/**
+	 * Adds given matcher's counts to monitored itemsets' supports, and resets
+	 * them
+	 */
+	public synchronized void addCounts(Matcher matcher) {
+		for (int i = 0; i < this.supports.length; i++) {
+			this.supports[i] += matcher.counts[i];
+		}
+		Arrays.fill(matcher.counts, 0);
+	}
+
+	/**
+	 * Counts, without allocating, the monitored itemsets contained in
+	 * transactions - not thread-safe
+	 */
+	public final class Matcher {
+		private final int[] counts = new int[supports.length];
+
+		/**
+		 * Depth-first exploration state : current node, transaction position
+		 * and children position at each depth
+		 */
+		private final int[] nodes = new int[maxDepth + 1];
+		private final int[] positions = new int[maxDepth + 1];
+		private final int[] cursors = new int[maxDepth + 1];
+
+		private Matcher() {
+		}
+
+		public void match(final int[] transaction, final int length) {
+			this.match(transaction, length, 1);
+		}
+
+		/**
+		 * @param weight
+		 *            added to each contained itemset's count
+		 */
+		public void match(final int[] transaction, final int length, final int weight) {
+			int depth = 0;
+			this.enter(0, 0, 0, weight);
+
+			while (depth >= 0) {
+				final int end = childStart[this.nodes[depth] + 1];
+				int i = this.positions[depth];
+				int c = this.cursors[depth];
+
+				// both transaction and children are sorted, so we merge them
+				while (i < length && c < end && items[c] != transaction[i]) {
+					if (items[c] < transaction[i]) {
+						c++;
+					} else {
+						i++;
+					}
+				}
+
+				if (i < length && c < end) {
+					this.positions[depth] = i + 1;
+					this.cursors[depth] = c + 1;
+					depth++;
+					this.enter(depth, c, i + 1, weight);
+				} else {
+					depth--;
+				}
+			}
+		}
+
+		private void enter(final int depth, final int node, final int position, final int weight) {
+			this.nodes[depth] = node;
+			this.positions[depth] = position;
+			this.cursors[depth] = childStart[node];
+			if (patternIndex[node] >= 0) {
+				this.counts[patternIndex[node]] += weight;
+			}
+		}
+	}
+
+	@Override
+	public Iterator<ItemsetSupports> iterator() {
+		return new Iterator<ItemsetSupports>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return this.next < supports.length;
+			}
+
+			@Override
+			public ItemsetSupports next() {
+				if (this.next >= supports.length) {
+					throw new NoSuchElementException();
+				}
+				ItemsetSupports res = new ItemsetSupports(getItemset(this.next), supports[this.next]);
+				this.next++;
+				return res;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
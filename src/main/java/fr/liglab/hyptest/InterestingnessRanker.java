@@ -0,0 +1,165 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.hyptest;
+
+/**
+ * An interestingness measure used to rank, during mining, the patterns
+ * collected for an item (see PerItemTopKCollector.setRanker). The higher the
+ * score, the more interesting the pattern.
+ * 
+ * Scores are computed from support counts : the pattern's, its items', the
+ * dataset's size and, if needsOtherSupport, the pattern's without the ranked
+ * item. The latter is not known at collection time, so it's counted from the
+ * dataset for each collected pattern and item.
+ * 
+ * Implementations should be stateless and have a public no-argument
+ * constructor, so they can be given by class name to forName.
+ */
+public abstract class InterestingnessRanker {
+
+	/**
+	 * @param patternSupport
+	 *            support count of a pattern P containing item I and at least
+	 *            another item
+	 * @param itemSupport
+	 *            support count of I
+	 * @param otherSupport
+	 *            support count of P \ {I}, or -1 if needsOtherSupport returns
+	 *            false
+	 * @param maxOtherSupport
+	 *            highest support count among P's other items
+	 * @param nbTransactions
+	 *            dataset's size
+	 * @return P's score with respect to I
+	 */
+	public abstract double score(int patternSupport, int itemSupport, int otherSupport, int maxOtherSupport,
+			int nbTransactions);
+
+	/**
+	 * Override it to return false if score does not use otherSupport, which
+	 * is costly to count.
+	 */
+	public boolean needsOtherSupport() {
+		return true;
+	}
+
+	/**
+	 * Allows pruning of the patterns' exploration : override it if your
+	 * measure is bounded by a function of the pattern's support.
+	 * 
+	 * @return a support count below which no pattern can score higher than
+	 *         score for an item of given support, or -1 if there's no such
+	 *         bound
+	 */
+	public int getSupportBound(double score, int itemSupport) {
+		return -1;
+	}
+
+	/**
+	 * @param name
+	 *            "allconfidence", "lift", "chisquare" or the fully qualified
+	 *            name of an InterestingnessRanker subclass
+	 */
+	public static InterestingnessRanker forName(String name) {
+		if ("allconfidence".equalsIgnoreCase(name)) {
+			return new AllConfidence();
+		} else if ("lift".equalsIgnoreCase(name)) {
+			return new Lift();
+		} else if ("chisquare".equalsIgnoreCase(name)) {
+			return new ChiSquared();
+		}
+
+		try {
+			return (InterestingnessRanker) Class.forName(name).newInstance();
+		} catch (ClassNotFoundException e) {
+			throw new IllegalArgumentException("Unknown interestingness measure: " + name);
+		} catch (InstantiationException e) {
+			throw new IllegalArgumentException(e);
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * support(P) / max(support(i) for i in P)
+	 * 
+	 * As it's lower than support(P) / support(I), a pattern needs a support of
+	 * at least score*support(I) to reach a given score.
+	 */
+	public static final class AllConfidence extends InterestingnessRanker {
+
+		@Override
+		public double score(int patternSupport, int itemSupport, int otherSupport, int maxOtherSupport,
+				int nbTransactions) {
+			return ((double) patternSupport) / Math.max(itemSupport, maxOtherSupport);
+		}
+
+		@Override
+		public boolean needsOtherSupport() {
+			return false;
+		}
+
+		@Override
+		public int getSupportBound(double score, int itemSupport) {
+			// rounded down, so floating-point errors can't over-prune
+			return (int) Math.floor(score * itemSupport);
+		}
+	}
+
+	/**
+	 * N * support(P) / (support(I) * support(P \ {I}))
+	 */
+	public static final class Lift extends InterestingnessRanker {
+
+		@Override
+		public double score(int patternSupport, int itemSupport, int otherSupport, int maxOtherSupport,
+				int nbTransactions) {
+			return ((double) nbTransactions) * patternSupport / ((double) itemSupport * otherSupport);
+		}
+	}
+
+	/**
+	 * Pearson's chi-square statistic on the contingency table of I and P \ {I}
+	 * (ranking by this statistic is equivalent to ranking by its p-value, with 1
+	 * degree of freedom). Negatively correlated patterns score 0.
+	 */
+	public static final class ChiSquared extends InterestingnessRanker {
+
+		@Override
+		public double score(int patternSupport, int itemSupport, int otherSupport, int maxOtherSupport,
+				int nbTransactions) {
+			final double n = nbTransactions;
+			final double a = patternSupport;
+			final double b = otherSupport - a;
+			final double c = itemSupport - a;
+			final double d = n - itemSupport - otherSupport + a;
+			final double det = a * d - b * c;
+
+			if (det <= 0) {
+				return 0;
+			}
+
+			final double denominator = ((double) itemSupport) * otherSupport * (n - itemSupport)
+					* (n - otherSupport);
+			if (denominator == 0) {
+				return 0;
+			} else {
+				return n * det * det / denominator;
+			}
+		}
+	}
+}
@@ -19,16 +19,16 @@ package fr.liglab.hyptest;
 import java.util.Arrays;
 import java.util.Iterator;
 
-import edu.northwestern.at.utils.math.Factorial;
 import fr.liglab.hyptest.math.Fisher;
 import fr.liglab.hyptest.math.FishersExactTest;
+import fr.liglab.hyptest.math.LogFactorials;
 import fr.liglab.mining.mapred.writables.SupportAndTransactionWritable;
 
 /**
  * Collects top-correlated itemsets for a single item
  * 
  * The statistical test happens here.
- * Don't forget to set PatternsHeap.nbTransactions as soon as possible.
+ * Don't forget to call PatternsHeap.setNbTransactions as soon as possible.
  * 
  * @author kirchgem
  */
@@ -37,6 +37,18 @@ public class PatternsHeap {
 	public static int nbTransactions;
 	public static final Fisher tester = new Fisher();
 	
+	/**
+	 * Also prepares the log-factorials table used by statistical tests
+	 */
+	public static void setNbTransactions(int n) {
+		nbTransactions = n;
+		LogFactorials.prepare(n);
+	}
+	
+	/**
+	 * A binary heap whose root is the least correlated pattern, ie. the next
+	 * one to be evicted. Use getPatterns for a sorted copy.
+	 */
 	private final Pattern[] heap;
 	private int tail = 0;
 
@@ -91,9 +103,9 @@ public class PatternsHeap {
 		} else {
 			sb.append("\t");
 		}
-		for(int i=0; i < this.tail; i++) {
+		for (Pattern p : this.getPatterns()) {
 			sb.append("\n");
-			sb.append(this.heap[i].toString(translateItems));
+			sb.append(p.toString(translateItems));
 		}
 		return sb.toString();
 	}
@@ -104,14 +116,11 @@ public class PatternsHeap {
 	 * @param unionSupport supportCount(X union item)
 	 * @return the highest rejected support ever seen by this heap
 	 */
-	public int insert(int[] pattern, int patternSupport, int unionSupport) {
-		Pattern last;
-		int pos;
+	public synchronized int insert(int[] pattern, int patternSupport, int unionSupport) {
+		final Pattern last;
 		
-		synchronized(this) {
 		if (this.tail == this.heap.length) {
-			pos = this.heap.length-1;
-			last = this.heap[pos];
+			last = this.heap[0];
 			
 			if (patternSupport >= this.minRejectedSupport) {
 				return this.maxRejectedSupport;
@@ -130,12 +139,9 @@ public class PatternsHeap {
 				
 				return this.maxRejectedSupport;
 			}
-
 		} else {
-			pos = this.tail;
 			last = null;
 		}
-		}
 		
 		long a = tester.getCorrectionFactor(unionSupport, 
 				patternSupport - unionSupport, 
@@ -148,27 +154,54 @@ public class PatternsHeap {
 		
 		double r = tester.getTailedFisher(a);
 		
-		synchronized(this) {
-		if (this.tail == this.heap.length) {
-			pos = this.heap.length-1;
-			last = this.heap[pos];
-		} else {
-			pos = this.tail;
-			last = null;
+		if (last == null) {
+			this.heap[this.tail] = new Pattern(pattern, patternSupport, unionSupport, a, r);
+			this.siftUp(this.tail);
+			this.tail++;
+		} else if ((a > last.a) || (a == last.a && r < last.r)) {
+			this.heap[0] = new Pattern(pattern, patternSupport, unionSupport, a, r);
+			this.siftDown(0);
+			this.resetBounds();
 		}
 		
-		if (last == null || (a > last.a) || (a == last.a && r < last.r)) {
-			this.heap[pos] = new Pattern(pattern, patternSupport, unionSupport, a, r);
-			if (last == null) {
-				this.tail++;
+		return this.maxRejectedSupport;
+	}
+	
+	/**
+	 * The heap is ordered by Pattern.compareTo, with the least correlated
+	 * pattern at the root : moves the given entry towards the root while
+	 * it's less correlated than its parent
+	 */
+	private void siftUp(int i) {
+		final Pattern moving = this.heap[i];
+		while (i > 0) {
+			final int parent = (i - 1) >>> 1;
+			if (moving.compareTo(this.heap[parent]) > 0) {
+				this.heap[i] = this.heap[parent];
+				i = parent;
 			} else {
-				this.resetBounds();
+				break;
 			}
-			Arrays.sort(this.heap, 0, this.tail);
 		}
+		this.heap[i] = moving;
+	}
+	
+	private void siftDown(int i) {
+		final Pattern moving = this.heap[i];
+		final int half = this.tail >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < this.tail && this.heap[child + 1].compareTo(this.heap[child]) > 0) {
+				child++;
+			}
+			if (this.heap[child].compareTo(moving) > 0) {
+				this.heap[i] = this.heap[child];
+				i = child;
+			} else {
+				break;
+			}
 		}
-		
-		return this.maxRejectedSupport;
+		this.heap[i] = moving;
 	}
 
 	/**
@@ -184,16 +217,16 @@ public class PatternsHeap {
 		double left;
 		if (s_x < this.itemSupport) {
 			left = Math.exp(FishersExactTest.ADJUSTMENT_RANGE*a_k
-					+Factorial.logFactorial(this.itemSupport)
-					+Factorial.logFactorial(PatternsHeap.nbTransactions-s_x)
-					-Factorial.logFactorial(PatternsHeap.nbTransactions)
-					-Factorial.logFactorial(this.itemSupport-s_x));
+					+LogFactorials.logFactorial(this.itemSupport)
+					+LogFactorials.logFactorial(PatternsHeap.nbTransactions-s_x)
+					-LogFactorials.logFactorial(PatternsHeap.nbTransactions)
+					-LogFactorials.logFactorial(this.itemSupport-s_x));
 		} else {
 			left = Math.exp(FishersExactTest.ADJUSTMENT_RANGE*a_k
-					+Factorial.logFactorial(s_x)
-					+Factorial.logFactorial(PatternsHeap.nbTransactions-this.itemSupport)
-					-Factorial.logFactorial(PatternsHeap.nbTransactions)
-					-Factorial.logFactorial(s_x-this.itemSupport));
+					+LogFactorials.logFactorial(s_x)
+					+LogFactorials.logFactorial(PatternsHeap.nbTransactions-this.itemSupport)
+					-LogFactorials.logFactorial(PatternsHeap.nbTransactions)
+					-LogFactorials.logFactorial(s_x-this.itemSupport));
 		}
 		return (left < tail.r);
 	}
@@ -205,29 +238,38 @@ public class PatternsHeap {
 	 */
 	protected synchronized boolean betaCheck(int s_x) {
 		if (this.tail == this.heap.length) {
-			Pattern last = this.heap[this.heap.length-1];
-			return this.betaCheck(s_x, last);
+			return this.betaCheck(s_x, this.heap[0]);
 		} else {
 			return true;
 		}
 	}
 	
+	/**
+	 * @return collected patterns, from the most correlated one
+	 */
+	public synchronized Pattern[] getPatterns() {
+		Pattern[] sorted = Arrays.copyOf(this.heap, this.tail);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+	
 	public Iterator<SupportAndTransactionWritable> getWritables() {
 		return new ToWritable();
 	}
 	
 	private final class ToWritable implements Iterator<SupportAndTransactionWritable> {
 		private final SupportAndTransactionWritable writable = new SupportAndTransactionWritable();
+		private final Pattern[] sorted = getPatterns();
 		private int i = 0;
 		
 		@Override
 		public boolean hasNext() {
-			return this.i < tail;
+			return this.i < this.sorted.length;
 		}
 
 		@Override
 		public SupportAndTransactionWritable next() {
-			this.writable.set(heap[this.i].supportWithCorrelated, heap[this.i].pattern);
+			this.writable.set(this.sorted[this.i].supportWithCorrelated, this.sorted[this.i].pattern);
 			this.i++;
 			return this.writable;
 		}
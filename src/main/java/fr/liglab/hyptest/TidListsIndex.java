@@ -0,0 +1,192 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.hyptest;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.TIntSet;
+
+/**
+ * Vertical index of a dataset, restricted to a set of items, used to count
+ * itemsets' supports by intersections instead of matching each transaction
+ * against all itemsets.
+ * 
+ * Once the dataset is loaded (addTransaction, then seal), frequent items'
+ * tidlists are replaced by bitmaps, so their intersections are computed by
+ * words of 64 transactions. Other intersections start from the rarest item's
+ * tidlist.
+ */
+public final class TidListsIndex implements SupportCounter {
+
+	/**
+	 * an item gets a bitmap if it appears in more than 1 transaction out of
+	 * DENSITY_THRESHOLD, as then the bitmap isn't bigger than its tidlist
+	 */
+	private static final int DENSITY_THRESHOLD = 32;
+
+	private final TIntObjectMap<TIntArrayList> building;
+	private final TIntIntMap supports;
+	private final TIntObjectMap<int[]> tidLists;
+	private final TIntObjectMap<long[]> bitmaps;
+	private int nbTransactions = 0;
+
+	/**
+	 * @param items
+	 *            items that may appear in queried itemsets, others are ignored
+	 */
+	public TidListsIndex(TIntSet items) {
+		this.building = new TIntObjectHashMap<TIntArrayList>(items.size());
+		for (int item : items.toArray()) {
+			this.building.put(item, new TIntArrayList());
+		}
+		this.supports = new TIntIntHashMap(items.size());
+		this.tidLists = new TIntObjectHashMap<int[]>();
+		this.bitmaps = new TIntObjectHashMap<long[]>();
+	}
+
+	public void addTransaction(int[] buffer, int length) {
+		final int tid = this.nbTransactions++;
+		for (int i = 0; i < length; i++) {
+			TIntArrayList tids = this.building.get(buffer[i]);
+			if (tids != null && (tids.isEmpty() || tids.get(tids.size() - 1) != tid)) {
+				tids.add(tid);
+			}
+		}
+	}
+
+	/**
+	 * To be called once all transactions have been added
+	 */
+	public void seal() {
+		final int nbWords = (this.nbTransactions + 63) >>> 6;
+
+		for (int item : this.building.keys()) {
+			TIntArrayList tids = this.building.remove(item);
+
+			if (tids.size() * DENSITY_THRESHOLD > this.nbTransactions) {
+				long[] bitmap = new long[nbWords];
+				for (int i = 0; i < tids.size(); i++) {
+					final int tid = tids.getQuick(i);
+					bitmap[tid >>> 6] |= 1L << tid;
+				}
+				this.bitmaps.put(item, bitmap);
+			} else {
+				this.tidLists.put(item, tids.toArray());
+			}
+
+			this.supports.put(item, tids.size());
+		}
+	}
+
+	public int getNbTransactions() {
+		return this.nbTransactions;
+	}
+
+	/**
+	 * @return how many transactions contain all given items - the empty
+	 *         itemset is contained by all transactions
+	 */
+	@Override
+	public int getSupport(int[] itemset) {
+		if (itemset.length == 0) {
+			return this.nbTransactions;
+		}
+
+		int rarest = 0;
+		int rarestSupport = Integer.MAX_VALUE;
+		for (int i = 0; i < itemset.length; i++) {
+			final int support = this.supports.get(itemset[i]);
+			if (support == 0) {
+				return 0;
+			} else if (support < rarestSupport) {
+				rarest = i;
+				rarestSupport = support;
+			}
+		}
+
+		if (itemset.length == 1) {
+			return rarestSupport;
+		} else if (this.bitmaps.containsKey(itemset[rarest])) {
+			return this.intersectBitmaps(itemset);
+		} else {
+			return this.intersectFrom(itemset, rarest);
+		}
+	}
+
+	/**
+	 * all given items have bitmaps
+	 */
+	private int intersectBitmaps(int[] itemset) {
+		long[][] operands = new long[itemset.length][];
+		for (int i = 0; i < itemset.length; i++) {
+			operands[i] = this.bitmaps.get(itemset[i]);
+		}
+
+		int support = 0;
+		for (int w = 0; w < operands[0].length; w++) {
+			long word = operands[0][w];
+			for (int i = 1; i < operands.length && word != 0; i++) {
+				word &= operands[i][w];
+			}
+			support += Long.bitCount(word);
+		}
+		return support;
+	}
+
+	private int intersectFrom(int[] itemset, int rarest) {
+		final int[] candidates = this.tidLists.get(itemset[rarest]);
+		final int nbOthers = itemset.length - 1;
+		long[][] otherBitmaps = new long[nbOthers][];
+		int[][] otherTids = new int[nbOthers][];
+		int[] positions = new int[nbOthers];
+
+		int j = 0;
+		for (int i = 0; i < itemset.length; i++) {
+			if (i != rarest) {
+				otherBitmaps[j] = this.bitmaps.get(itemset[i]);
+				otherTids[j] = this.tidLists.get(itemset[i]);
+				j++;
+			}
+		}
+
+		int support = 0;
+		for (int tid : candidates) {
+			boolean inAll = true;
+			for (int i = 0; i < nbOthers && inAll; i++) {
+				if (otherBitmaps[i] != null) {
+					inAll = (otherBitmaps[i][tid >>> 6] & (1L << tid)) != 0;
+				} else {
+					// tids are ascending, so we resume from the last position
+					final int[] tids = otherTids[i];
+					int pos = positions[i];
+					while (pos < tids.length && tids[pos] < tid) {
+						pos++;
+					}
+					positions[i] = pos;
+					inAll = pos < tids.length && tids[pos] == tid;
+				}
+			}
+			if (inAll) {
+				support++;
+			}
+		}
+		return support;
+	}
+}
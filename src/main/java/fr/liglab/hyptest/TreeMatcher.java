@@ -21,7 +21,10 @@ import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 /*
  * Assumes all transactions and patterns are sorted in asc order
  * @author vleroy
@@ -90,6 +93,49 @@ public class TreeMatcher implements Iterable<ItemsetSupports>{
 		return pos;
 	}
 
+	/**
+	 * @return an immutable copy of this tree, more compact and faster to
+	 *         match, which keeps monitored itemsets' current supports
+	 */
+	public FlatTreeMatcher flatten() {
+		List<TreeNode> nodes = new ArrayList<TreeNode>();
+		TIntArrayList parents = new TIntArrayList();
+		TIntArrayList childStart = new TIntArrayList();
+		nodes.add(this.root);
+		parents.add(-1);
+
+		for (int n = 0; n < nodes.size(); n++) {
+			TreeNode node = nodes.get(n);
+			childStart.add(nodes.size());
+			int[] links = node.getLinks();
+			Arrays.sort(links);
+			for (int item : links) {
+				nodes.add(node.getLink(item));
+				parents.add(n);
+			}
+		}
+		childStart.add(nodes.size());
+
+		int[] items = new int[nodes.size()];
+		int[] patternIndex = new int[nodes.size()];
+		TIntArrayList patternNodes = new TIntArrayList();
+		TIntArrayList supports = new TIntArrayList();
+		for (int n = 0; n < items.length; n++) {
+			TreeNode node = nodes.get(n);
+			items[n] = node.getItem();
+			if (node.isMonitored()) {
+				patternIndex[n] = patternNodes.size();
+				patternNodes.add(n);
+				supports.add(node.getNbMatch());
+			} else {
+				patternIndex[n] = -1;
+			}
+		}
+
+		return new FlatTreeMatcher(items, parents.toArray(), childStart.toArray(), patternIndex,
+				patternNodes.toArray(), supports.toArray());
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
@@ -16,30 +16,56 @@
 */
 package fr.liglab.hyptest.math;
 
-import gnu.trove.map.TObjectDoubleMap;
-import gnu.trove.map.TObjectLongMap;
-import gnu.trove.map.hash.TObjectDoubleHashMap;
-import gnu.trove.map.hash.TObjectLongHashMap;
-
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 
+/**
+ * Caches correction factors and p-values of contingency matrices, in a
+ * bounded direct-mapped table : each (a,b,c,d) tuple has a single slot,
+ * where it replaces any previous entry. Entries are immutable, so the cache
+ * is read and written without locking.
+ * 
+ * Keys pack a, b and c in a long, which requires them to be lower than
+ * 2^KEY_BITS ; d is checked along with the key. Other matrices are not
+ * cached.
+ */
 public class Fisher {
-	private TObjectDoubleMap<Param> resCache = new TObjectDoubleHashMap<Param>(
-			1000, .5f, Double.NaN);
-	private TObjectLongMap<Param> factorCache = new TObjectLongHashMap<Param>(
-			1000, .5f, Long.MAX_VALUE);
 	
-	private static final ThreadLocal<Param> reusableParam = new ThreadLocal<Param>() {
+	public static final int DEFAULT_CAPACITY = 1 << 20;
+	
+	private static final int KEY_BITS = 21;
+	private static final int KEY_MASK = (1 << KEY_BITS) - 1;
+	
+	private final Entry[] cache;
+	private final int slotMask;
+	
+	/**
+	 * (a,b,c,d) given to the previous call to getCorrectionFactor, per thread
+	 */
+	private static final ThreadLocal<int[]> lastMatrix = new ThreadLocal<int[]>() {
 		@Override
-		protected Param initialValue() {
-			return new Param(0, 0, 0, 0);
+		protected int[] initialValue() {
+			return new int[4];
 		}
 	};
 	
+	public Fisher() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * @param capacity
+	 *            cache slots count, rounded up to a power of two
+	 */
+	public Fisher(int capacity) {
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		this.cache = new Entry[size];
+		this.slotMask = size - 1;
+	}
+	
 	/**
 	 *	@param	a		Frequency for cell(1,1).
 	 *	@param	b		Frequency for cell(1,2).
@@ -51,18 +77,25 @@ public class Fisher {
 	 */
 	public long getCorrectionFactor(final int a, final int b, final int c,
 			final int d) {
-		Param p = reusableParam.get();
-		p.set(a, b, c , d);
-		long factor;
-		synchronized (this.factorCache) {
-			factor = this.factorCache.get(p);
+		int[] matrix = lastMatrix.get();
+		matrix[0] = a;
+		matrix[1] = b;
+		matrix[2] = c;
+		matrix[3] = d;
+		
+		final long key = packKey(a, b, c);
+		if (key < 0) {
+			return FishersExactTest.correctionFactor(a, b, c, d);
 		}
-		if (factor == Long.MAX_VALUE) {
-			factor = FishersExactTest.correctionFactor(a, b, c, d);
-			synchronized (this.factorCache) {
-				this.factorCache.put(p.clone(), factor);
-			}
+		
+		final int slot = this.slot(key, d);
+		Entry entry = this.cache[slot];
+		if (entry != null && entry.key == key && entry.d == d) {
+			return entry.factor;
 		}
+		
+		final long factor = FishersExactTest.correctionFactor(a, b, c, d);
+		this.cache[slot] = new Entry(key, d, factor, Double.NaN);
 		return factor;
 	}
 	
@@ -73,17 +106,22 @@ public class Fisher {
 	 * @return adjusted p-val
 	 */
 	public double getTailedFisher(final long f) {
-		Param p = reusableParam.get();
-		double r;
-		synchronized (this.resCache) {
-			r = resCache.get(p);
+		final int[] m = lastMatrix.get();
+		
+		final long key = packKey(m[0], m[1], m[2]);
+		if (key < 0) {
+			return FishersExactTest.fishersExactTest(m[0], m[1], m[2], m[3], f);
 		}
-		if (Double.isNaN(r)) {
-			r = FishersExactTest.fishersExactTest(p.a, p.b, p.c, p.d, f);
-			synchronized (this.resCache) {
-				resCache.put(p.clone(), r);
-			}
+		
+		final int slot = this.slot(key, m[3]);
+		Entry entry = this.cache[slot];
+		if (entry != null && entry.key == key && entry.d == m[3] && entry.factor == f
+				&& !Double.isNaN(entry.pValue)) {
+			return entry.pValue;
 		}
+		
+		final double r = FishersExactTest.fishersExactTest(m[0], m[1], m[2], m[3], f);
+		this.cache[slot] = new Entry(key, m[3], f, r);
 		return r;
 	}
 
@@ -97,75 +135,49 @@ public class Fisher {
 	 */
 	public double getTailedFisher(final int a, final int b, final int c,
 			final int d, final long f) {
-		Param param = reusableParam.get();
-		param.set(a, b, c, d);
+		int[] matrix = lastMatrix.get();
+		matrix[0] = a;
+		matrix[1] = b;
+		matrix[2] = c;
+		matrix[3] = d;
 		return getTailedFisher(f);
 	}
-
-	private static class Param implements Cloneable {
-		int a;
-		int b;
-		int c;
-		int d;
-		
-		public Param(final int a, final int b, final int c, final int d) {
-			this.a = a;
-			this.b = (b<c)?b:c;
-			this.c = (b<c)?c:b;
-			this.d = d;
-		}
-
-		public final void set(int a, int b, int c, int d) {
-			this.a = a;
-			this.b = b;
-			this.c = c;
-			this.d = d;
-		}
-
-		@Override
-		public Param clone() {
-			try {
-				return (Param) super.clone();
-			} catch (CloneNotSupportedException e) {
-				e.printStackTrace();
-			}
-			return null;
-		}
-
-		@Override
-		public int hashCode() {
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + a;
-			result = prime * result + b;
-			result = prime * result + d;
-			result = prime * result + c;
-			return result;
+	
+	/**
+	 * @return -1 if a value doesn't fit in KEY_BITS
+	 */
+	private static long packKey(final int a, final int b, final int c) {
+		if ((a & ~KEY_MASK) != 0 || (b & ~KEY_MASK) != 0 || (c & ~KEY_MASK) != 0) {
+			return -1;
 		}
+		return ((long) a << (2 * KEY_BITS)) | ((long) b << KEY_BITS) | c;
+	}
+	
+	private int slot(final long key, final int d) {
+		// MurmurHash3's finalizer
+		long h = key ^ ((long) d * 0x9E3779B97F4A7C15L);
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (int) h & this.slotMask;
+	}
 
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			Param other = (Param) obj;
-			if (a != other.a)
-				return false;
-			if (b != other.b)
-				return false;
-			if (d != other.d)
-				return false;
-			if (c != other.c)
-				return false;
-			return true;
-		}
+	private static final class Entry {
+		final long key;
+		final int d;
+		final long factor;
+		/**
+		 * NaN until computed
+		 */
+		final double pValue;
 		
-		@Override
-		public String toString() {
-			return "("+a+","+b+","+c+","+d+")";
+		Entry(long key, int d, long factor, double pValue) {
+			this.key = key;
+			this.d = d;
+			this.factor = factor;
+			this.pValue = pValue;
 		}
 	}
 
@@ -192,6 +204,7 @@ public class Fisher {
 		final int datasetSize = Integer.parseInt(args[1]);
 		final int itemSupport = Integer.parseInt(args[2]);
 
+		LogFactorials.prepare(datasetSize);
 		Fisher f = new Fisher();
 		BufferedReader br = new BufferedReader(new FileReader(args[0]));
 		String line;
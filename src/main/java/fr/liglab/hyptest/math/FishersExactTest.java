@@ -2,8 +2,6 @@ package fr.liglab.hyptest.math;
 
 /*	Please see the license information at the end of this file. */
 
-import edu.northwestern.at.utils.math.Factorial;
-
 /** Calculate Fisher's exact test for a 2x2 frequency table.
  */
 
@@ -134,9 +132,9 @@ public class FishersExactTest
 	protected static double logCombination( int n , int k )
 	{
 		return
-			Factorial.logFactorial( n ) -
-			Factorial.logFactorial( k ) -
-			Factorial.logFactorial( n - k );
+			LogFactorials.logFactorial( n ) -
+			LogFactorials.logFactorial( k ) -
+			LogFactorials.logFactorial( n - k );
 	}
 
 	/**	Compute hypergeometric probability.
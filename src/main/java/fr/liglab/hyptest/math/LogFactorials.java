@@ -0,0 +1,56 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.hyptest.math;
+
+import edu.northwestern.at.utils.math.Factorial;
+
+/**
+ * Table of log(n!), for n up to the dataset's transactions count. Values are
+ * the ones Factorial.logFactorial would compute, which remains the fallback
+ * for larger n.
+ */
+public final class LogFactorials {
+
+	private static volatile double[] table = new double[0];
+
+	/**
+	 * Precomputes log(n!) for all n <= maxN - it costs 8 bytes per n
+	 */
+	public static synchronized void prepare(final int maxN) {
+		final double[] previous = table;
+		if (maxN >= previous.length) {
+			double[] extended = new double[maxN + 1];
+			System.arraycopy(previous, 0, extended, 0, previous.length);
+			for (int n = previous.length; n <= maxN; n++) {
+				extended[n] = Factorial.logFactorial(n);
+			}
+			table = extended;
+		}
+	}
+
+	public static double logFactorial(final int n) {
+		final double[] current = table;
+		if (n >= 0 && n < current.length) {
+			return current[n];
+		} else {
+			return Factorial.logFactorial(n);
+		}
+	}
+
+	private LogFactorials() {
+	}
+}
@@ -16,35 +16,76 @@
 */
 package fr.liglab.mining;
 
+import java.util.concurrent.atomic.AtomicLongArray;
+
 public final class CountersHandler {
 	/**
 	 * Some classes in EnumerationStep may declare counters here. see references
 	 * to TopPICounters.counters
 	 */
 	public enum TopPICounters {
-		FailedFPTests, PreFPTestsRejections, TopKRejections, TransactionsCompressions, NbDatasets, NbDatasetViews, NbCounters, NbSparseCounters, PatternsTraversed, EjectedPlaceholders, EjectedPatterns, DatasetReductionByEpsilonRaising, RedoCounters
+		FailedFPTests, PreFPTestsRejections, TopKRejections, TransactionsCompressions, NbDatasets, NbDatasetViews, NbCounters, NbSparseCounters, PatternsTraversed, EjectedPlaceholders, EjectedPatterns, DatasetReductionByEpsilonRaising, RedoCounters, ProjectionsBytes
 	}
 
-	private static final ThreadLocal<long[]> counters = new ThreadLocal<long[]>() {
+	/**
+	 * Each thread increments its own stripe, so they can be written without
+	 * synchronization (a single writer per stripe) and read at any time by the
+	 * thread's owner, see newStripe()
+	 */
+	private static final ThreadLocal<AtomicLongArray> counters = new ThreadLocal<AtomicLongArray>() {
 		@Override
-		protected long[] initialValue() {
-			return new long[TopPICounters.values().length];
+		protected AtomicLongArray initialValue() {
+			return new AtomicLongArray(TopPICounters.values().length);
 		}
 	};
 
+	/**
+	 * Replaces the current thread's counters by a zeroed stripe, typically when
+	 * a mining thread starts. The caller may keep the returned stripe to read it
+	 * while this thread is counting ; it's released with the thread.
+	 */
+	public static AtomicLongArray newStripe() {
+		AtomicLongArray stripe = new AtomicLongArray(TopPICounters.values().length);
+		counters.set(stripe);
+		return stripe;
+	}
+
+	/**
+	 * @return a copy of the current thread's counters
+	 */
 	public static long[] getAll() {
-		return counters.get();
+		final AtomicLongArray stripe = counters.get();
+		long[] copy = new long[stripe.length()];
+		for (int i = 0; i < copy.length; i++) {
+			copy[i] = stripe.get(i);
+		}
+		return copy;
+	}
+
+	/**
+	 * May be called while stripes' owners are counting
+	 * 
+	 * @param sums
+	 *            will be incremented by stripe's current values
+	 */
+	public static void addTo(AtomicLongArray stripe, long[] sums) {
+		for (int i = 0; i < sums.length; i++) {
+			sums[i] += stripe.get(i);
+		}
 	}
 
 	public static long get(TopPICounters counter) {
-		return counters.get()[counter.ordinal()];
+		return counters.get().get(counter.ordinal());
 	}
 
 	public static void increment(TopPICounters counter) {
-		counters.get()[counter.ordinal()]++;
+		add(counter, 1);
 	}
 
 	public static void add(TopPICounters counter, long delta) {
-		counters.get()[counter.ordinal()] += delta;
+		final AtomicLongArray stripe = counters.get();
+		final int i = counter.ordinal();
+		// we're the only writer
+		stripe.lazySet(i, stripe.get(i) + delta);
 	}
 }
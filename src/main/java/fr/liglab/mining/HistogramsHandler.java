@@ -0,0 +1,139 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining;
+
+/**
+ * Per-thread latency histograms of the main mining phases, enabled by the
+ * toppi.histograms system property (or TopPIcli's -H). Durations are measured
+ * with System.nanoTime and counted in log2 buckets : bucket i counts
+ * durations in [2^(i-1), 2^i[ nanoseconds. Phases may be nested, each one's
+ * duration includes its sub-phases. TopPI only reports its own mining threads'
+ * histograms, since they started.
+ * 
+ * Usage : start() before the phase, stop(phase, started) in a finally block.
+ */
+public final class HistogramsHandler {
+
+	public static final String KEY_HISTOGRAMS = "toppi.histograms";
+
+	public enum TopPIPhases {
+		PrepareExploration, DepthExploration, DatasetInstanciation, FirstParentTest, Collect
+	}
+
+	/**
+	 * Should only be set before mining starts
+	 */
+	public static boolean ENABLED = Boolean.parseBoolean(System.getProperty(KEY_HISTOGRAMS, "false"));
+
+	private static final int NB_BUCKETS = 64;
+
+	/**
+	 * each phase has NB_BUCKETS buckets, then its total duration
+	 */
+	private static final int STRIDE = NB_BUCKETS + 1;
+
+	private static final int NB_PHASES = TopPIPhases.values().length;
+
+	private static final ThreadLocal<long[]> histograms = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[NB_PHASES * STRIDE];
+		}
+	};
+
+	private HistogramsHandler() {
+	}
+
+	/**
+	 * Replaces the current thread's histograms by empty ones, typically when a
+	 * mining thread starts. The caller may keep the returned stripe to merge it
+	 * in toJSON once this thread is done.
+	 */
+	public static long[] newStripe() {
+		long[] stripe = new long[NB_PHASES * STRIDE];
+		histograms.set(stripe);
+		return stripe;
+	}
+
+	public static long start() {
+		return ENABLED ? System.nanoTime() : 0;
+	}
+
+	public static void stop(final TopPIPhases phase, final long started) {
+		if (ENABLED) {
+			final long duration = System.nanoTime() - started;
+			final long[] stripe = histograms.get();
+			final int offset = phase.ordinal() * STRIDE;
+			stripe[offset + NB_BUCKETS - Long.numberOfLeadingZeros(Math.max(0, duration))]++;
+			stripe[offset + NB_BUCKETS] += duration;
+		}
+	}
+
+	/**
+	 * Threads' histograms are not synchronized, so this should only be called
+	 * once mining threads are done (or joined).
+	 * 
+	 * @param stripes
+	 *            threads' histograms, as given by newStripe()
+	 * @return a JSON object giving, for each phase, its invocations count,
+	 *         total duration and the log2 buckets up to the last non-empty one
+	 */
+	public static String toJSON(Iterable<long[]> stripes) {
+		long[] merged = new long[NB_PHASES * STRIDE];
+		for (long[] stripe : stripes) {
+			for (int i = 0; i < merged.length; i++) {
+				merged[i] += stripe[i];
+			}
+		}
+
+		StringBuilder builder = new StringBuilder();
+		builder.append('{');
+
+		for (TopPIPhases phase : TopPIPhases.values()) {
+			final int offset = phase.ordinal() * STRIDE;
+			long count = 0;
+			int last = -1;
+			for (int i = 0; i < NB_BUCKETS; i++) {
+				if (merged[offset + i] > 0) {
+					count += merged[offset + i];
+					last = i;
+				}
+			}
+
+			if (phase.ordinal() > 0) {
+				builder.append(", ");
+			}
+			builder.append('"');
+			builder.append(phase.toString());
+			builder.append("\":{\"count\":");
+			builder.append(count);
+			builder.append(", \"totalNanos\":");
+			builder.append(merged[offset + NB_BUCKETS]);
+			builder.append(", \"log2Buckets\":[");
+			for (int i = 0; i <= last; i++) {
+				if (i > 0) {
+					builder.append(',');
+				}
+				builder.append(merged[offset + i]);
+			}
+			builder.append("]}");
+		}
+
+		builder.append('}');
+		return builder.toString();
+	}
+}
@@ -0,0 +1,287 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import fr.liglab.mining.CountersHandler.TopPICounters;
+import fr.liglab.mining.internals.ExplorationStep;
+import fr.liglab.mining.io.PerItemTopKCollector;
+import gnu.trove.map.TIntLongMap;
+import gnu.trove.map.hash.TIntLongHashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+/**
+ * Opt-in cost trace : each mining thread attributes its loop iterations (time
+ * and counters deltas) to the root starter they worked on. Once mining is
+ * over, per-starter totals are written as CSV, one line per starter :
+ * 
+ * item,thread,nbThreads,busyNanos,wallNanos,explorationSteps,datasets,views,projectionsBytes,minsup,boundAtStart,boundAtEnd
+ * 
+ * where item is the starter's original ID, thread is the first thread that
+ * worked on it, busyNanos sums all threads' time spent on it and wallNanos
+ * spans from its first to its last iteration. Bounds are read from the
+ * collector when the starter is first and last touched (-1 while its top-K
+ * isn't full). Such file can be given back as a cost hint to the grouping of
+ * later runs, see readCosts.
+ */
+public final class StarterTrace {
+
+	static final String HEADER = "item,thread,nbThreads,busyNanos,wallNanos,explorationSteps,datasets,views,projectionsBytes,minsup,boundAtStart,boundAtEnd";
+
+	private static final String ITEM_COLUMN = "item";
+	private static final String COST_COLUMN = "busyNanos";
+
+	private final PerItemTopKCollector collector;
+	private final int[] reverseRenaming;
+	private final List<Recorder> recorders = new ArrayList<Recorder>();
+
+	StarterTrace(ExplorationStep root, PerItemTopKCollector collector) {
+		this.collector = collector;
+		this.reverseRenaming = root.counters.getReverseRenaming();
+	}
+
+	synchronized Recorder newRecorder(int threadId) {
+		Recorder recorder = new Recorder(threadId);
+		this.recorders.add(recorder);
+		return recorder;
+	}
+
+	/**
+	 * Should only be invoked once all recorders' threads are done
+	 */
+	synchronized void write(String path) throws IOException {
+		TIntObjectHashMap<StarterCosts> merged = new TIntObjectHashMap<StarterCosts>();
+
+		for (Recorder recorder : this.recorders) {
+			for (StarterCosts costs : recorder.starters.valueCollection()) {
+				StarterCosts total = merged.get(costs.starter);
+				if (total == null) {
+					total = new StarterCosts(costs.starter, costs.thread, costs.firstSeen, costs.boundAtStart);
+					merged.put(costs.starter, total);
+				}
+				total.merge(costs);
+			}
+		}
+
+		int[] starters = merged.keys();
+		Arrays.sort(starters);
+
+		PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(path)));
+		writer.println(HEADER);
+		for (int starter : starters) {
+			StarterCosts costs = merged.get(starter);
+			writer.print(this.reverseRenaming[starter]);
+			writer.print(',');
+			writer.print(costs.thread);
+			writer.print(',');
+			writer.print(costs.nbThreads);
+			writer.print(',');
+			writer.print(costs.busyNanos);
+			writer.print(',');
+			writer.print(costs.lastSeen - costs.firstSeen);
+			writer.print(',');
+			writer.print(costs.steps);
+			writer.print(',');
+			writer.print(costs.datasets);
+			writer.print(',');
+			writer.print(costs.views);
+			writer.print(',');
+			writer.print(costs.bytes);
+			writer.print(',');
+			writer.print(costs.minsup);
+			writer.print(',');
+			writer.print(costs.boundAtStart);
+			writer.print(',');
+			writer.println(costs.boundAtEnd);
+		}
+		writer.close();
+
+		if (writer.checkError()) {
+			throw new IOException("Failed to write starters trace to " + path);
+		}
+	}
+
+	/**
+	 * @param path
+	 *            a trace written by a previous run
+	 * @return starters' original IDs associated to their measured cost (in
+	 *         nanoseconds)
+	 */
+	public static TIntLongMap readCosts(String path) throws IOException {
+		return readCosts(new FileReader(path));
+	}
+
+	/**
+	 * @param input
+	 *            a trace written by a previous run, will be closed
+	 * @return starters' original IDs associated to their measured cost (in
+	 *         nanoseconds)
+	 */
+	public static TIntLongMap readCosts(Reader input) throws IOException {
+		TIntLongMap costs = new TIntLongHashMap();
+		BufferedReader reader = new BufferedReader(input);
+
+		try {
+			String line = reader.readLine();
+			if (line == null) {
+				return costs;
+			}
+			List<String> columns = Arrays.asList(line.split(","));
+			int itemColumn = columns.indexOf(ITEM_COLUMN);
+			int costColumn = columns.indexOf(COST_COLUMN);
+			if (itemColumn < 0 || costColumn < 0) {
+				throw new IOException("Input does not look like a starters trace: no " + ITEM_COLUMN + " or "
+						+ COST_COLUMN + " column");
+			}
+
+			while ((line = reader.readLine()) != null) {
+				if (line.length() > 0) {
+					String[] fields = line.split(",");
+					costs.put(Integer.parseInt(fields[itemColumn]), Long.parseLong(fields[costColumn]));
+				}
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("Malformed starters trace", e);
+		} finally {
+			reader.close();
+		}
+
+		return costs;
+	}
+
+	/**
+	 * Owned by a single mining thread
+	 */
+	final class Recorder {
+		private final int threadId;
+		private final TIntObjectHashMap<StarterCosts> starters = new TIntObjectHashMap<StarterCosts>();
+
+		private long startedAt;
+		private long steps;
+		private long datasets;
+		private long views;
+		private long bytes;
+
+		private Recorder(int threadId) {
+			this.threadId = threadId;
+		}
+
+		/**
+		 * Should be called when starting a loop iteration
+		 */
+		void begin() {
+			this.startedAt = System.nanoTime();
+			this.steps = CountersHandler.get(TopPICounters.PatternsTraversed);
+			this.datasets = CountersHandler.get(TopPICounters.NbDatasets);
+			this.views = CountersHandler.get(TopPICounters.NbDatasetViews);
+			this.bytes = CountersHandler.get(TopPICounters.ProjectionsBytes);
+		}
+
+		/**
+		 * Attributes everything since last begin() to the given starter
+		 * 
+		 * @param starter
+		 *            internal ID of a root extension, or -1 if the iteration
+		 *            is not related to any starter
+		 * @param step
+		 *            may be null, the step created by the iteration
+		 */
+		void end(int starter, ExplorationStep step) {
+			if (starter < 0) {
+				return;
+			}
+
+			final long now = System.nanoTime();
+			final int bound = collector.getBound(reverseRenaming[starter]);
+
+			StarterCosts costs = this.starters.get(starter);
+			if (costs == null) {
+				costs = new StarterCosts(starter, this.threadId, this.startedAt, bound);
+				this.starters.put(starter, costs);
+			}
+
+			costs.nbThreads = 1;
+			costs.lastSeen = now;
+			costs.boundAtEnd = bound;
+			costs.busyNanos += now - this.startedAt;
+			costs.steps += CountersHandler.get(TopPICounters.PatternsTraversed) - this.steps;
+			costs.datasets += CountersHandler.get(TopPICounters.NbDatasets) - this.datasets;
+			costs.views += CountersHandler.get(TopPICounters.NbDatasetViews) - this.views;
+			costs.bytes += CountersHandler.get(TopPICounters.ProjectionsBytes) - this.bytes;
+
+			if (step != null && step.core_item == starter) {
+				costs.minsup = step.counters.getMinSupport();
+			}
+		}
+	}
+
+	private static final class StarterCosts {
+		final int starter;
+		int thread;
+		int nbThreads = 0;
+		long firstSeen;
+		long lastSeen;
+		long busyNanos = 0;
+		long steps = 0;
+		long datasets = 0;
+		long views = 0;
+		long bytes = 0;
+		int minsup = -1;
+		int boundAtStart;
+		int boundAtEnd;
+
+		StarterCosts(int starter, int thread, long firstSeen, int boundAtStart) {
+			this.starter = starter;
+			this.thread = thread;
+			this.firstSeen = firstSeen;
+			this.lastSeen = firstSeen;
+			this.boundAtStart = boundAtStart;
+			this.boundAtEnd = boundAtStart;
+		}
+
+		void merge(StarterCosts other) {
+			if (other.firstSeen < this.firstSeen) {
+				this.firstSeen = other.firstSeen;
+				this.thread = other.thread;
+				this.boundAtStart = other.boundAtStart;
+			}
+			if (other.lastSeen >= this.lastSeen) {
+				this.lastSeen = other.lastSeen;
+				this.boundAtEnd = other.boundAtEnd;
+			}
+			if (this.minsup < 0) {
+				this.minsup = other.minsup;
+			}
+			this.nbThreads += other.nbThreads;
+			this.busyNanos += other.busyNanos;
+			this.steps += other.steps;
+			this.datasets += other.datasets;
+			this.views += other.views;
+			this.bytes += other.bytes;
+		}
+	}
+}
@@ -16,6 +16,7 @@
 */
 package fr.liglab.mining;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -28,6 +29,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -36,6 +38,7 @@ import org.omg.CORBA.IntHolder;
 import fr.liglab.mining.CountersHandler.TopPICounters;
 import fr.liglab.mining.internals.Counters;
 import fr.liglab.mining.internals.ExplorationStep;
+import fr.liglab.mining.internals.FrequentsIterator;
 import fr.liglab.mining.io.PerItemTopKCollector;
 import fr.liglab.mining.util.ProgressWatcherThread;
 
@@ -48,6 +51,19 @@ public class TopPI {
 
 	final long[] globalCounters;
 
+	private final PreparedJobs preparedJobs;
+
+	/**
+	 * remainingSupports[i] is the highest root support count among starters
+	 * >= i, only filled when the collector does incremental output
+	 */
+	private int[] remainingSupports = null;
+
+	/**
+	 * where the starters trace will be written, null when disabled
+	 */
+	private String starterTracePath = null;
+
 	public TopPI(PerItemTopKCollector patternsCollector, int nbThreads) {
 		this(patternsCollector, nbThreads, false);
 	}
@@ -58,15 +74,25 @@ public class TopPI {
 		}
 		this.collector = patternsCollector;
 		this.threads = new ArrayList<TopPIThread>(nbThreads);
-		PreparedJobs pj = new PreparedJobs();
+		this.preparedJobs = new PreparedJobs(nbThreads);
 		for (int i = 0; i < nbThreads; i++) {
-			this.threads.add(new TopPIThread(pj));
+			this.threads.add(new TopPIThread(i, this.preparedJobs));
 		}
 
 		this.globalCounters = new long[TopPICounters.values().length];
 		this.progressWatch = launchProgressWatch ? new ProgressWatcherThread() : null;
 	}
 
+	/**
+	 * Enables the per-starter cost trace, written once mining is done
+	 * 
+	 * @param path
+	 *            CSV output, see StarterTrace - set to null to disable
+	 */
+	public void setStarterTrace(String path) {
+		this.starterTracePath = path;
+	}
+
 	/**
 	 * Initial invocation for common folks
 	 */
@@ -86,26 +112,49 @@ public class TopPI {
 
 		List<Future<?>> running = new ArrayList<Future<?>>(this.threads.size());
 
-		for (TopPIThread t : this.threads) {
-			t.init(initState);
-			running.add(pool.submit(t));
+		this.preparedJobs.init(initState.candidates);
+		if (this.collector.isIncrementalOutput()) {
+			this.remainingSupports = new int[initState.counters.getMaxCandidate() + 1];
+			for (int i = this.remainingSupports.length - 2; i >= 0; i--) {
+				this.remainingSupports[i] = Math.max(this.remainingSupports[i + 1],
+						initState.counters.getSupportCount(i));
+			}
 		}
 
-		if (this.progressWatch != null) {
-			this.progressWatch.setStartersIterator(initState.candidates);
-			this.progressWatch.start();
+		StarterTrace trace = null;
+		if (this.starterTracePath != null) {
+			trace = new StarterTrace(initState, this.collector);
 		}
 
-		for (Future<?> t : running) {
-			try {
-				t.get();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-				throw new RuntimeException(e);
-			} catch (ExecutionException e) {
-				e.printStackTrace();
-				throw new RuntimeException(e);
+		// registered before threads start, so metrics cover the whole run
+		TopPIMetrics metrics = new TopPIMetrics(this, initState.candidates);
+		metrics.register();
+
+		try {
+			for (TopPIThread t : this.threads) {
+				t.init(initState);
+				t.traceRecorder = (trace == null) ? null : trace.newRecorder(t.id);
+				running.add(pool.submit(t));
+			}
+
+			if (this.progressWatch != null) {
+				this.progressWatch.setStartersIterator(initState.candidates);
+				this.progressWatch.start();
 			}
+
+			for (Future<?> t : running) {
+				try {
+					t.get();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+					throw new RuntimeException(e);
+				} catch (ExecutionException e) {
+					e.printStackTrace();
+					throw new RuntimeException(e);
+				}
+			}
+		} finally {
+			metrics.unregister();
 		}
 
 		Arrays.fill(this.globalCounters, 0);
@@ -119,6 +168,14 @@ public class TopPI {
 		if (this.progressWatch != null) {
 			this.progressWatch.interrupt();
 		}
+
+		if (trace != null) {
+			try {
+				trace.write(this.starterTracePath);
+			} catch (IOException e) {
+				e.printStackTrace(System.err);
+			}
+		}
 	}
 
 	public Map<TopPICounters, Long> getCounters() {
@@ -133,6 +190,23 @@ public class TopPI {
 		return map;
 	}
 
+	/**
+	 * May be called while mining
+	 * 
+	 * @return sums of this instance's threads' counters, since they started
+	 *         their current run
+	 */
+	long[] getRunningCounters() {
+		long[] sums = new long[TopPICounters.values().length];
+		for (TopPIThread t : this.threads) {
+			AtomicLongArray stripe = t.getStripe();
+			if (stripe != null) {
+				CountersHandler.addTo(stripe, sums);
+			}
+		}
+		return sums;
+	}
+
 	public String toString(Map<String, Long> additionalCounters) {
 		StringBuilder builder = new StringBuilder();
 
@@ -159,6 +233,17 @@ public class TopPI {
 			}
 		}
 
+		if (HistogramsHandler.ENABLED) {
+			builder.append(", \"histograms\":");
+			List<long[]> histograms = new ArrayList<long[]>(this.threads.size());
+			for (TopPIThread t : this.threads) {
+				if (t.histograms != null) {
+					histograms.add(t.histograms);
+				}
+			}
+			builder.append(HistogramsHandler.toJSON(histograms));
+		}
+
 		builder.append('}');
 
 		return builder.toString();
@@ -168,7 +253,20 @@ public class TopPI {
 		return this.toString(null);
 	}
 
+	/**
+	 * To be called when a thread has finished a starter's exploration (or
+	 * handed it over) : lets the collector output items whose top-K cannot be
+	 * improved by remaining starters.
+	 */
+	void releaseFinalizedItems() {
+		if (this.remainingSupports != null) {
+			final int lowest = Math.min(this.preparedJobs.lowestActiveStarter(), this.remainingSupports.length - 1);
+			this.collector.releaseFinalized(this.remainingSupports[lowest]);
+		}
+	}
+
 	ExplorationStep stealJob(TopPIThread thief) {
+		this.preparedJobs.acquireStarters(thief.id);
 		// here we need to readlock because the owner thread can write
 		for (TopPIThread victim : this.threads) {
 			if (victim != thief) {
@@ -268,18 +366,64 @@ public class TopPI {
 
 	}
 
+	/**
+	 * Also tracks, for each thread, the lowest root starter it may still
+	 * collect patterns for (Integer.MAX_VALUE when it's not exploring).
+	 * Threads lower their value before taking new work and raise it back once
+	 * it's done or handed over, always under this object's lock, so
+	 * lowestActiveStarter() never misses a starter that's still explored.
+	 */
 	private static class PreparedJobs {
 		private Queue<CandidateCounters> stackedEs;
 		private int nextConsumable;
 		private int minBoundToNextConsumable;
+		private final int[] activeStarters;
+		private FrequentsIterator starters;
 
-		public PreparedJobs() {
+		public PreparedJobs(int nbThreads) {
 			this.stackedEs = new PriorityQueue<TopPI.CandidateCounters>();
 			this.minBoundToNextConsumable = Integer.MAX_VALUE;
+			this.activeStarters = new int[nbThreads];
+		}
+
+		public synchronized void init(FrequentsIterator rootCandidates) {
+			this.starters = rootCandidates;
+			Arrays.fill(this.activeStarters, Integer.MAX_VALUE);
+		}
+
+		public synchronized int lowestActiveStarter() {
+			int lowest = this.starters.peek();
+			if (!this.stackedEs.isEmpty()) {
+				lowest = Math.min(lowest, this.stackedEs.peek().getCandidate());
+			}
+			for (int starter : this.activeStarters) {
+				lowest = Math.min(lowest, starter);
+			}
+			return lowest;
+		}
+
+		/**
+		 * To be called before the given thread enumerates root starters or
+		 * steals a job
+		 */
+		public synchronized void acquireStarters(int threadId) {
+			this.activeStarters[threadId] = this.lowestActiveStarter();
+		}
+
+		/**
+		 * To be called when the given thread's stack only contains the root
+		 * state and its latest starter is known
+		 */
+		public synchronized void setActiveStarter(int threadId, int starter) {
+			this.activeStarters[threadId] = starter;
 		}
 
-		public synchronized CandidateCounters getTask(IntHolder boundHolder) throws StopPreparingJobsException,
-				StopResumingJobsException {
+		public synchronized void releaseStarters(int threadId) {
+			this.activeStarters[threadId] = Integer.MAX_VALUE;
+		}
+
+		public synchronized CandidateCounters getTask(int threadId, IntHolder boundHolder)
+				throws StopPreparingJobsException, StopResumingJobsException {
 			while (!stackedEs.isEmpty() && stackedEs.peek().getCandidate() == this.nextConsumable) {
 				this.nextConsumable++;
 				CandidateCounters next = stackedEs.poll();
@@ -288,6 +432,7 @@ public class TopPI {
 							.min(this.minBoundToNextConsumable, next.getNewCandidateBound());
 				}
 				if (next.counters != null) {
+					this.activeStarters[threadId] = Math.min(this.activeStarters[threadId], next.getCandidate());
 					boundHolder.value = this.minBoundToNextConsumable;
 					return next;
 				}
@@ -303,22 +448,45 @@ public class TopPI {
 			return null;
 		}
 
-		public synchronized void pushTask(CandidateCounters t) {
+		/**
+		 * Also releases given thread's starters, as the candidate is the only
+		 * one it prepared
+		 */
+		public synchronized void pushTask(int threadId, CandidateCounters t) {
 			this.stackedEs.add(t);
+			this.activeStarters[threadId] = Integer.MAX_VALUE;
 		}
 
 	}
 
 	public class TopPIThread implements Runnable {
+		final int id;
 		private long[] counters = null;
+		/**
+		 * this thread's CountersHandler stripe, null until run() starts
+		 */
+		private volatile AtomicLongArray stripe = null;
+		/**
+		 * this thread's HistogramsHandler stripe, null until run() starts
+		 */
+		private long[] histograms = null;
 		private PreparedJobs preparedJobs;
 		final ReadWriteLock lock;
 		final List<ExplorationStep> stackedJobs;
 		final IntHolder candidateHolder = new IntHolder();
 		final IntHolder boundHolder = new IntHolder();
 		private ExplorationStep rootState;
+		private StarterTrace.Recorder traceRecorder = null;
 
-		public TopPIThread(PreparedJobs preparedJobs) {
+		/**
+		 * Live statistics, only written by this thread
+		 */
+		private volatile int stackDepth = 0;
+		private volatile long nbSteals = 0;
+		private volatile long idleNanos = 0;
+
+		public TopPIThread(int id, PreparedJobs preparedJobs) {
+			this.id = id;
 			this.stackedJobs = new ArrayList<ExplorationStep>();
 			this.lock = new ReentrantReadWriteLock();
 			this.preparedJobs = preparedJobs;
@@ -331,17 +499,22 @@ public class TopPI {
 
 		@Override
 		public void run() {
+			this.stripe = CountersHandler.newStripe();
+			this.histograms = HistogramsHandler.newStripe();
 			// no need to readlock, this thread is the only one that can do
 			// writes
 			boolean exit = false;
 			boolean prepareJobs = true;
 			boolean resumeJobs = true;
 			while (!exit) {
+				if (this.traceRecorder != null) {
+					this.traceRecorder.begin();
+				}
 				if (!this.stackedJobs.isEmpty()) {
 					if (resumeJobs && this.stackedJobs.size() == 1) {
 						CandidateCounters iex = null;
 						try {
-							iex = this.preparedJobs.getTask(this.boundHolder);
+							iex = this.preparedJobs.getTask(this.id, this.boundHolder);
 						} catch (StopPreparingJobsException e) {
 							prepareJobs = false;
 						} catch (StopResumingJobsException e) {
@@ -349,41 +522,63 @@ public class TopPI {
 							resumeJobs = false;
 						}
 						if (iex != null) {
-							this.stackState(this.rootState.resumeExploration(iex.getCounters(), iex.getCandidate(),
-									collector, this.boundHolder.value));
+							ExplorationStep resumed = this.rootState.resumeExploration(iex.getCounters(),
+									iex.getCandidate(), collector, this.boundHolder.value);
+							this.stackState(resumed);
+							this.trace(iex.getCandidate(), resumed);
 							continue;
 						}
 					}
 					ExplorationStep sj = null;
 					sj = this.stackedJobs.get(this.stackedJobs.size() - 1);
 					if (prepareJobs && this.stackedJobs.size() == 1) {
+						this.preparedJobs.acquireStarters(this.id);
 						Counters preprocessed = sj.nextPreprocessed(collector, this.candidateHolder, this.boundHolder);
 						if (this.candidateHolder.value == -1) {
 							this.lock.writeLock().lock();
 							this.stackedJobs.remove(this.stackedJobs.size() - 1);
 							this.lock.writeLock().unlock();
+							this.stackDepth = this.stackedJobs.size();
+							this.preparedJobs.releaseStarters(this.id);
 						} else {
-							this.preparedJobs.pushTask(new CandidateCounters(this.candidateHolder.value, preprocessed,
-									this.boundHolder.value));
+							this.preparedJobs.pushTask(this.id, new CandidateCounters(this.candidateHolder.value,
+									preprocessed, this.boundHolder.value));
 						}
+						releaseFinalizedItems();
+						this.trace(this.candidateHolder.value, null);
 					} else {
+						final boolean fromRoot = (sj == this.rootState);
+						if (fromRoot) {
+							this.preparedJobs.acquireStarters(this.id);
+						}
 						ExplorationStep extended = sj.next(collector);
 						// iterator is finished, remove it from the stack
 						if (extended == null) {
 							this.lock.writeLock().lock();
 							this.stackedJobs.remove(this.stackedJobs.size() - 1);
 							this.lock.writeLock().unlock();
+							this.stackDepth = this.stackedJobs.size();
+							this.onPop();
+							this.trace(sj.starter, null);
 						} else {
+							if (fromRoot && this.stackedJobs.size() == 1) {
+								this.preparedJobs.setActiveStarter(this.id, extended.core_item);
+							}
 							this.stackState(extended);
+							this.trace(extended.starter, extended);
 						}
 					}
 				} else { // our list was empty, we should steal from another
 							// thread
 					prepareJobs = false;
+					final long idleSince = System.nanoTime();
 					ExplorationStep stolj = stealJob(this);
+					this.idleNanos += System.nanoTime() - idleSince;
 					if (stolj == null) {
+						this.preparedJobs.releaseStarters(this.id);
 						exit = true;
 					} else {
+						this.nbSteals++;
 						stackState(stolj);
 					}
 				}
@@ -391,11 +586,33 @@ public class TopPI {
 			this.counters = CountersHandler.getAll();
 		}
 
+		/**
+		 * Attributes current loop iteration to given starter, if tracing
+		 */
+		private void trace(int starter, ExplorationStep created) {
+			if (this.traceRecorder != null) {
+				this.traceRecorder.end(starter, created);
+			}
+		}
+
+		/**
+		 * Releases this thread's starters once it's back to an empty stack or
+		 * to the root state
+		 */
+		private void onPop() {
+			if (this.stackedJobs.isEmpty()
+					|| (this.stackedJobs.size() == 1 && this.stackedJobs.get(0) == this.rootState)) {
+				this.preparedJobs.releaseStarters(this.id);
+				releaseFinalizedItems();
+			}
+		}
+
 		private void stackState(ExplorationStep state) {
 			CountersHandler.increment(TopPICounters.PatternsTraversed);
 			this.lock.writeLock().lock();
 			this.stackedJobs.add(state);
 			this.lock.writeLock().unlock();
+			this.stackDepth = this.stackedJobs.size();
 		}
 
 		/**
@@ -404,5 +621,27 @@ public class TopPI {
 		long[] getCounters() {
 			return this.counters;
 		}
+
+		/**
+		 * null until run() starts
+		 */
+		AtomicLongArray getStripe() {
+			return this.stripe;
+		}
+
+		int getStackDepth() {
+			return this.stackDepth;
+		}
+
+		long getStealsCount() {
+			return this.nbSteals;
+		}
+
+		/**
+		 * @return time spent looking for a job to steal, in nanoseconds
+		 */
+		long getIdleNanos() {
+			return this.idleNanos;
+		}
 	}
 }
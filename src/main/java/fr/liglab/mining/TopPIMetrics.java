@@ -0,0 +1,144 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import fr.liglab.mining.CountersHandler.TopPICounters;
+import fr.liglab.mining.internals.FrequentsIterator;
+
+/**
+ * Publishes a TopPI instance's statistics over JMX while it's mining, as
+ * fr.liglab.mining:type=TopPI,name=miner-[N]. Everything is read without
+ * locking mining threads, so values may be slightly outdated.
+ */
+final class TopPIMetrics implements TopPIMetricsMXBean {
+
+	private static final AtomicInteger nextId = new AtomicInteger(0);
+
+	private final TopPI miner;
+	private final FrequentsIterator starters;
+	private final long startTime;
+	private ObjectName name = null;
+
+	TopPIMetrics(TopPI miner, FrequentsIterator starters) {
+		this.miner = miner;
+		this.starters = starters;
+		this.startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Registration failures are only logged, as mining can go on without
+	 * metrics
+	 */
+	void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			this.name = new ObjectName("fr.liglab.mining:type=TopPI,name=miner-" + nextId.getAndIncrement());
+			server.registerMBean(this, this.name);
+		} catch (JMException e) {
+			e.printStackTrace(System.err);
+			this.name = null;
+		}
+	}
+
+	void unregister() {
+		if (this.name != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.name);
+			} catch (JMException e) {
+				e.printStackTrace(System.err);
+			}
+			this.name = null;
+		}
+	}
+
+	@Override
+	public Map<String, Long> getCounters() {
+		final long[] aggregated = this.miner.getRunningCounters();
+		final TopPICounters[] counters = TopPICounters.values();
+		Map<String, Long> map = new HashMap<String, Long>(counters.length);
+		for (int i = 0; i < counters.length; i++) {
+			map.put(counters[i].toString(), aggregated[i]);
+		}
+		return map;
+	}
+
+	@Override
+	public long getElapsedMillis() {
+		return System.currentTimeMillis() - this.startTime;
+	}
+
+	@Override
+	public int[] getStackDepths() {
+		int[] depths = new int[this.miner.threads.size()];
+		for (int i = 0; i < depths.length; i++) {
+			depths[i] = this.miner.threads.get(i).getStackDepth();
+		}
+		return depths;
+	}
+
+	@Override
+	public long[] getStealsCounts() {
+		long[] steals = new long[this.miner.threads.size()];
+		for (int i = 0; i < steals.length; i++) {
+			steals[i] = this.miner.threads.get(i).getStealsCount();
+		}
+		return steals;
+	}
+
+	@Override
+	public long[] getIdleMillis() {
+		long[] idle = new long[this.miner.threads.size()];
+		for (int i = 0; i < idle.length; i++) {
+			idle[i] = this.miner.threads.get(i).getIdleNanos() / 1000000;
+		}
+		return idle;
+	}
+
+	@Override
+	public int getRootIteratorPosition() {
+		return this.starters.peek();
+	}
+
+	@Override
+	public int getRootIteratorEnd() {
+		return this.starters.last();
+	}
+
+	@Override
+	public long getHeldPatterns() {
+		return this.miner.collector.getHeldPatternsCount();
+	}
+
+	@Override
+	public long getEjectedPatterns() {
+		return this.miner.getRunningCounters()[TopPICounters.EjectedPatterns.ordinal()];
+	}
+
+	@Override
+	public long getEjectedPlaceholders() {
+		return this.miner.getRunningCounters()[TopPICounters.EjectedPlaceholders.ordinal()];
+	}
+}
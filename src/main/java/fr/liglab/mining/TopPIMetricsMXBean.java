@@ -0,0 +1,61 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining;
+
+import java.util.Map;
+
+/**
+ * Live statistics of a running TopPI instance, as published over JMX. Per-thread
+ * arrays are indexed by mining thread ID.
+ */
+public interface TopPIMetricsMXBean {
+
+	/**
+	 * @return all TopPICounters, summed over this miner's threads since mining started
+	 */
+	public Map<String, Long> getCounters();
+
+	public long getElapsedMillis();
+
+	public int[] getStackDepths();
+
+	public long[] getStealsCounts();
+
+	/**
+	 * @return time spent by each thread looking for a job to steal
+	 */
+	public long[] getIdleMillis();
+
+	/**
+	 * @return the last starter item taken from the root iterator (internal ID)
+	 */
+	public int getRootIteratorPosition();
+
+	/**
+	 * @return a higher bound on starters' internal IDs
+	 */
+	public int getRootIteratorEnd();
+
+	/**
+	 * @return how many top-K slots are filled, among all items (approximate)
+	 */
+	public long getHeldPatterns();
+
+	public long getEjectedPatterns();
+
+	public long getEjectedPlaceholders();
+}
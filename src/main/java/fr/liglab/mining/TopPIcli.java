@@ -32,15 +32,22 @@ import org.apache.commons.cli.PosixParser;
 import org.apache.hadoop.util.GenericOptionsParser;
 import org.apache.hadoop.util.ToolRunner;
 
+import fr.liglab.hyptest.InterestingnessRanker;
+import fr.liglab.mining.cluster.LocalCluster;
 import fr.liglab.mining.internals.ExplorationStep;
+import fr.liglab.mining.io.AsyncFileCollector;
 import fr.liglab.mining.io.FileCollector;
 import fr.liglab.mining.io.FileCollectorWithIDMapper;
 import fr.liglab.mining.io.NullCollector;
+import fr.liglab.mining.io.PartitionedFileCollector;
 import fr.liglab.mining.io.PatternSortCollector;
 import fr.liglab.mining.io.PatternsCollector;
 import fr.liglab.mining.io.PerItemTopKCollector;
+import fr.liglab.mining.io.PerItemTopKCorrelatedCollector;
+import fr.liglab.mining.io.PerItemTopKtoIndexCollector;
 import fr.liglab.mining.io.PerItemTopKtoJSONCollector;
 import fr.liglab.mining.io.StdOutCollector;
+import fr.liglab.mining.mapred.Grouper;
 import fr.liglab.mining.mapred.TopPIoverHadoop;
 import fr.liglab.mining.util.MemoryPeakWatcherThread;
 
@@ -57,18 +64,33 @@ public class TopPIcli {
 		options.addOption("c", true, "over-filter to get top-c-correlated per-item patterns");
 		// FIXME
 		//options.addOption("B", false, "Do a 3-passes preliminary jobs - an experiment for datasets with more than 2 million items");
+		options.addOption(
+				"d",
+				false,
+				"(only for standalone) Deduplicated output : each distinct pattern is written once to OUTPUT_PATH, "
+						+ "its ID being its line number (starting at 0), and each item's top-K is written to "
+						+ "OUTPUT_PATH.items as ITEM_ID followed by its patterns' IDs. Incompatible with -S");
 		options.addOption("e", false, "DEBUG ONLY - prints to stdout the raised threshold, for each starter item");
 		options.addOption("g", true,
-				"Enables Hadoop and gives the number of groups in which the search space will be splitted");
+				"Enables Hadoop and gives the number of groups in which the search space will be splitted "
+						+ "(round-robin, unless the " + TopPIoverHadoop.KEY_GROUPING
+						+ " property is set to 'cost' to balance groups by estimated starters' cost)");
 		options.addOption("h", false, "Show help");
+		options.addOption("H", false, "Record per-phase latency histograms, printed with final statistics "
+				+ "(same as setting the " + HistogramsHandler.KEY_HISTOGRAMS + " property to true)");
 		options.addOption(
 				"i",
 				false,
 				"(only for standalone) Outputs a single pattern for each frequent item. "
 						+ "Given support is item's support count and pattern's items are "
 						+ "the item itself, its patterns count (max=K), its patterns' supports sum and its lowest pattern support.");
-		options.addOption("J", false, "(implies -S) outputs per-item top-K itemsets to standard output as JSON");
+		options.addOption("J", false, "(implies -S) outputs per-item top-K itemsets as JSON, "
+				+ "to OUTPUT_PATH if given (written by all threads) or to standard output");
 		options.addOption("k", true, "The 'K' in top-K-per-item mining");
+		options.addOption("L", true, "Local cluster mode : gives the number of groups in which the search space "
+				+ "will be splitted, each one being mined in two passes by its own JVM, as with Hadoop but without it. "
+				+ "-t then gives threads per worker (defaults to 1), see also the " + LocalCluster.KEY_WORKERS + ", "
+				+ LocalCluster.KEY_HEAP + " and " + LocalCluster.KEY_TMP_DIR + " system properties");
 		options.addOption(
 				"m",
 				false,
@@ -78,11 +100,22 @@ public class TopPIcli {
 				true,
 				"Comma-separated frequency thresholds that should be used for pre-filtered datasets. Warning: we create a thread for each.");
 		options.addOption("r", true, "path to a file giving, per line, ITEM_ID NB_PATTERNS_TO_KEEP");
+		options.addOption("R", true, "(only for standalone) rank each item's patterns by an interestingness measure "
+				+ "instead of their support : allconfidence, lift, chisquare or the class name of an "
+				+ "fr.liglab.hyptest.InterestingnessRanker. Warning: only allconfidence allows pruning, other "
+				+ "measures disable it (so all frequent patterns are explored) and count, for each pattern and "
+				+ "item, the support of the pattern without the item, which makes them much slower");
 		options.addOption("s", false, "(only for standalone) Sort items in outputted patterns, in ascending order");
 		options.addOption("S", false, "(only for standalone) enable arbitrary strings as item IDs in the input file");
 		options.addOption("t", true, "How many threads will be launched (defaults to your machine's processors count)");
+		options.addOption("T", true, "(only for standalone) writes to the given path a CSV trace of each starter's "
+				+ "mining cost, which can be given to later -g or -L runs through the " + Grouper.KEY_COST_HINTS
+				+ " property so their groups are balanced according to measured costs");
 		options.addOption("u", false, "(only for standalone) output unique patterns only");
 		options.addOption("v", false, "Enable verbose mode, which logs every extension of the empty pattern");
+		options.addOption("x", false,
+				"(only for standalone) writes per-item top-K itemsets to OUTPUT_PATH as an indexed binary file, "
+						+ "which can be queried with fr.liglab.mining.io.IndexedResultsReader");
 		options.addOption("V", false,
 				"Enable ultra-verbose mode, which logs every pattern extension (use with care: it may produce a LOT of output)");
 		
@@ -104,6 +137,14 @@ public class TopPIcli {
 				System.exit(1);
 			} else if (cmd.hasOption('g')) {
 				hadoop(args);
+			} else if (cmd.hasOption('L')) {
+				for (char unsupported : new char[] { 'i', 'u', 'J', 'x', 'c', 'd', 'R', 'T', 'H' }) {
+					if (cmd.hasOption(unsupported)) {
+						System.err.println("-L is incompatible with -i, -u, -J, -x, -c, -d, -R, -T and -H");
+						System.exit(1);
+					}
+				}
+				LocalCluster.run(cmd);
 			} else {
 				standalone(cmd);
 			}
@@ -116,7 +157,8 @@ public class TopPIcli {
 		String syntax = "java fr.liglab.mining.TopPIcli -k [K] [OPTIONS] INPUT_PATH MINSUP [OUTPUT_PATH]";
 		String header = "\nIf OUTPUT_PATH is missing, patterns are printed to standard output.\nOptions are :";
 		String footer = "\nFor advanced tuning you may also set properties : "
-				+ ExplorationStep.KEY_LONG_TRANSACTIONS_THRESHOLD + ", " + ExplorationStep.KEY_VIEW_SUPPORT_THRESHOLD;
+				+ ExplorationStep.KEY_LONG_TRANSACTIONS_THRESHOLD + ", " + ExplorationStep.KEY_VIEW_SUPPORT_THRESHOLD
+				+ ", " + AsyncFileCollector.KEY_BUFFER_SIZE;
 
 		HelpFormatter formatter = new HelpFormatter();
 		formatter.printHelp(80, syntax, header, options, footer);
@@ -143,6 +185,9 @@ public class TopPIcli {
 		}
 		
 		ExplorationStep.LOG_EPSILONS = cmd.hasOption('e');
+		if (cmd.hasOption('H')) {
+			HistogramsHandler.ENABLED = true;
+		}
 		int k = Integer.parseInt(cmd.getOptionValue('k'));
 
 		chrono = System.currentTimeMillis();
@@ -176,6 +221,9 @@ public class TopPIcli {
 		PerItemTopKCollector collector = instanciateCollector(cmd, outputPath, initState, nbThreads, itemIDmap);
 
 		TopPI miner = new TopPI(collector, nbThreads, true);
+		if (cmd.hasOption('T')) {
+			miner.setStarterTrace(cmd.getOptionValue('T'));
+		}
 		miner.startMining(initState);
 		chrono = System.currentTimeMillis() - chrono;
 
@@ -189,6 +237,7 @@ public class TopPIcli {
 		if (memoryWatch != null) {
 			memoryWatch.interrupt();
 			additionalCounters.put("maxUsedMemory", memoryWatch.getMaxUsedMemory());
+			additionalCounters.put("peakHeapUsage", MemoryPeakWatcherThread.getPeakHeapUsage());
 		}
 
 		System.err.println(miner.toString(additionalCounters));
@@ -213,14 +262,47 @@ public class TopPIcli {
 				itemIDmap.put(entry.getValue(), entry.getKey());
 			}
 		}
+
+		// rejects incompatible options before any output is created
+		if (cmd.hasOption('c') && (cmd.hasOption('x') || cmd.hasOption('J') || cmd.hasOption('d')
+				|| cmd.hasOption('i') || cmd.hasOption('u'))) {
+			System.err.println("-c is incompatible with -x, -J, -d, -i and -u");
+			System.exit(1);
+		}
+		if (cmd.hasOption('d')) {
+			if (cmd.hasOption('x') || cmd.hasOption('J') || cmd.hasOption('i') || cmd.hasOption('u')) {
+				System.err.println("-d is incompatible with -x, -J, -i and -u");
+				System.exit(1);
+			}
+			if (outputPath == null || itemIDmap != null) {
+				System.err.println("-d requires an OUTPUT_PATH and integer item IDs");
+				System.exit(1);
+			}
+		}
+		if (cmd.hasOption('R') && (cmd.hasOption('c') || cmd.hasOption('x') || cmd.hasOption('J')
+				|| cmd.hasOption('d') || cmd.hasOption('i') || cmd.hasOption('u'))) {
+			System.err.println("-R is incompatible with -c, -x, -J, -d, -i and -u");
+			System.exit(1);
+		}
 		
 		if (cmd.hasOption('b')) { // BENCHMARK MODE !
 			collector = new NullCollector();
+		} else if (cmd.hasOption('J')) {
+			// writes its own output
+		} else if (cmd.hasOption('x')) {
+			if (outputPath == null) {
+				System.err.println("-x requires an OUTPUT_PATH");
+				System.exit(1);
+			}
 		} else {
 			if (outputPath != null) {
 				try {
-					if (itemIDmap == null) {
-						collector = new FileCollector(outputPath);
+					if (nbThreads > 1 && !cmd.hasOption('s')) {
+						// results will be written in parallel at closing time
+						collector = new PartitionedFileCollector(outputPath, nbThreads, itemIDmap, false);
+					} else if (itemIDmap == null) {
+						// formatting is done by collecting threads, writes by another one
+						collector = new AsyncFileCollector(outputPath);
 					} else {
 						collector = new FileCollectorWithIDMapper(outputPath, itemIDmap);
 					}
@@ -241,12 +323,36 @@ public class TopPIcli {
 
 		int k = Integer.parseInt(cmd.getOptionValue('k'));
 
-		if (cmd.hasOption('J')) {
-			topKcoll = new PerItemTopKtoJSONCollector(k, initState, itemIDmap);
+		if (cmd.hasOption('c')) {
+			int c = Integer.parseInt(cmd.getOptionValue('c'));
+			topKcoll = new PerItemTopKCorrelatedCollector(collector, k, c, initState, nbThreads);
+		} else if (cmd.hasOption('x')) {
+			topKcoll = new PerItemTopKtoIndexCollector(k, initState, outputPath, itemIDmap);
+		} else if (cmd.hasOption('J')) {
+			topKcoll = new PerItemTopKtoJSONCollector(k, initState, itemIDmap, outputPath, nbThreads);
 		} else {
 			topKcoll = new PerItemTopKCollector(collector, k, initState);
 		}
 		
+		if (cmd.hasOption('d')) {
+			try {
+				topKcoll.setPerItemIDsOutput(new FileCollector(outputPath + ".items"));
+			} catch (IOException e) {
+				e.printStackTrace(System.err);
+				System.err.println("Aborting mining.");
+				System.exit(1);
+			}
+		}
+
+		if (cmd.hasOption('R')) {
+			try {
+				topKcoll.setRanker(InterestingnessRanker.forName(cmd.getOptionValue('R')), initState);
+			} catch (IllegalArgumentException e) {
+				System.err.println(e.getMessage());
+				System.exit(1);
+			}
+		}
+
 		topKcoll.setInfoMode(cmd.hasOption('i'));
 		topKcoll.setOutputUniqueOnly(cmd.hasOption('u'));
 
@@ -254,6 +360,12 @@ public class TopPIcli {
 			topKcoll.readPerItemKFrom(cmd.getOptionValue('r'));
 		}
 
+		// items are outputted during mining once their top-K is final, unless
+		// we need all of them at once
+		topKcoll.setIncrementalOutput(!cmd.hasOption('J') && !cmd.hasOption('x') && !cmd.hasOption('d')
+				&& !cmd.hasOption('i') && !cmd.hasOption('u') && !cmd.hasOption('r') && !cmd.hasOption('c')
+				&& !cmd.hasOption('R'));
+
 		return topKcoll;
 	}
 
@@ -0,0 +1,227 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+
+import fr.liglab.mining.TopPIcli;
+
+/**
+ * Runs TopPI on a dataset for each combination of the given thread counts,
+ * K and minimum supports. Each run is done by a fresh JVM, in benchmark mode
+ * (-b -m), so runs don't share JIT or heap state.
+ * 
+ * Each run appends a JSON object to the results, on a single line : the run's
+ * parameters followed by TopPIcli's statistics (loading and mining times in
+ * milliseconds, peak memory in bytes and all TopPICounters). Failed runs are
+ * reported with their exit code.
+ */
+public final class BenchmarkHarness {
+
+	/**
+	 * TopPIcli prints its statistics as a JSON object starting with this
+	 */
+	private static final String STATS_PREFIX = "{\"name\":\"TopPI\"";
+
+	private final String input;
+	private final String heap;
+	private final String[] jvmOptions;
+	private final String[] extraOptions;
+
+	public BenchmarkHarness(String input, String heap, String[] jvmOptions, String[] extraOptions) {
+		this.input = input;
+		this.heap = heap;
+		this.jvmOptions = jvmOptions;
+		this.extraOptions = extraOptions;
+	}
+
+	/**
+	 * @return the run's statistics as a JSON object, always on a single line
+	 */
+	public String run(final int nbThreads, final int k, final int minsup, final int repetition)
+			throws IOException, InterruptedException {
+
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.add("-Xmx" + this.heap);
+		for (String option : this.jvmOptions) {
+			command.add(option);
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(TopPIcli.class.getName());
+		command.add("-b");
+		command.add("-m");
+		command.add("-t");
+		command.add(Integer.toString(nbThreads));
+		command.add("-k");
+		command.add(Integer.toString(k));
+		for (String option : this.extraOptions) {
+			command.add(option);
+		}
+		command.add(this.input);
+		command.add(Integer.toString(minsup));
+
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectErrorStream(true);
+		Process process = builder.start();
+		process.getOutputStream().close();
+
+		String stats = null;
+		BufferedReader logs = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		final String prefix = "[t=" + nbThreads + " k=" + k + " minsup=" + minsup + " #" + repetition + "] ";
+		for (String line = logs.readLine(); line != null; line = logs.readLine()) {
+			if (line.startsWith(STATS_PREFIX)) {
+				stats = line;
+			}
+			System.err.println(prefix + line);
+		}
+		logs.close();
+		final int exitCode = process.waitFor();
+
+		StringBuilder result = new StringBuilder();
+		result.append("{\"input\":\"");
+		result.append(this.input.replace("\\", "\\\\").replace("\"", "\\\""));
+		result.append("\", \"minsup\":");
+		result.append(minsup);
+		result.append(", \"k\":");
+		result.append(k);
+		result.append(", \"repetition\":");
+		result.append(repetition);
+		result.append(", \"exitCode\":");
+		result.append(exitCode);
+
+		if (stats == null) {
+			result.append(", \"threads\":");
+			result.append(nbThreads);
+			result.append('}');
+		} else {
+			// merge TopPIcli's object, which gives the threads count, into ours
+			result.append(", ");
+			result.append(stats.substring(1));
+		}
+
+		return result.toString();
+	}
+
+	public static Options getOptions() {
+		Options options = new Options();
+
+		options.addOption("a", true, "Additional TopPIcli options, space-separated (for example \"-c 5\")");
+		options.addOption("h", false, "Show help");
+		options.addOption("j", true, "Additional JVM options, space-separated (for example \"-Dtoppi.sparse.from=1000\")");
+		options.addOption("k", true, "Comma-separated values of K (defaults to 10)");
+		options.addOption("r", true, "How many times each combination is run (defaults to 1)");
+		options.addOption("s", true, "Comma-separated minimum supports (mandatory)");
+		options.addOption("t", true, "Comma-separated thread counts (defaults to 1 and your machine's processors count)");
+		options.addOption("x", true, "Maximum heap size of each run's JVM (defaults to 1g)");
+
+		return options;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = getOptions();
+
+		try {
+			CommandLineParser parser = new PosixParser();
+			CommandLine cmd = parser.parse(options, args);
+
+			if (cmd.getArgs().length < 1 || cmd.getArgs().length > 2 || cmd.hasOption('h')) {
+				printMan(options);
+			} else if (!cmd.hasOption('s')) {
+				System.err.println("-s parameter is mandatory");
+				System.exit(1);
+			} else {
+				run(cmd);
+			}
+		} catch (ParseException e) {
+			printMan(options);
+		}
+	}
+
+	public static void printMan(Options options) {
+		String syntax = "java fr.liglab.mining.bench.BenchmarkHarness -s [MINSUPS] [OPTIONS] INPUT_PATH [RESULTS_PATH]";
+		String header = "\nIf RESULTS_PATH is missing, results are printed to standard output, otherwise they're appended to it."
+				+ "\nOptions are :";
+
+		HelpFormatter formatter = new HelpFormatter();
+		formatter.printHelp(80, syntax, header, options, "");
+	}
+
+	private static void run(CommandLine cmd) throws IOException, InterruptedException {
+		final String[] args = cmd.getArgs();
+		final int[] threads = parseList(cmd.getOptionValue('t',
+				"1," + Runtime.getRuntime().availableProcessors()));
+		final int[] ks = parseList(cmd.getOptionValue('k', "10"));
+		final int[] minsups = parseList(cmd.getOptionValue('s'));
+		final int repetitions = Integer.parseInt(cmd.getOptionValue('r', "1"));
+
+		BenchmarkHarness harness = new BenchmarkHarness(args[0], cmd.getOptionValue('x', "1g"), split(cmd
+				.getOptionValue('j')), split(cmd.getOptionValue('a')));
+
+		PrintWriter results;
+		if (args.length == 2) {
+			results = new PrintWriter(new FileWriter(args[1], true));
+		} else {
+			results = new PrintWriter(System.out);
+		}
+
+		for (int minsup : minsups) {
+			for (int k : ks) {
+				for (int nbThreads : threads) {
+					for (int r = 0; r < repetitions; r++) {
+						results.println(harness.run(nbThreads, k, minsup, r));
+						results.flush();
+					}
+				}
+			}
+		}
+
+		results.close();
+	}
+
+	private static int[] parseList(String commaSeparated) {
+		String[] splitted = commaSeparated.split(",");
+		int[] parsed = new int[splitted.length];
+		for (int i = 0; i < splitted.length; i++) {
+			parsed[i] = Integer.parseInt(splitted[i].trim());
+		}
+		return parsed;
+	}
+
+	private static String[] split(String spaceSeparated) {
+		if (spaceSeparated == null || spaceSeparated.trim().isEmpty()) {
+			return new String[0];
+		} else {
+			return spaceSeparated.trim().split("\\s+");
+		}
+	}
+}
@@ -0,0 +1,231 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.bench;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+
+/**
+ * Generates reproducible synthetic datasets, in TopPI's ASCII input format.
+ * Generation is entirely determined by the given parameters and random seed.
+ * 
+ * USAGE: java -cp TopPI.jar fr.liglab.mining.bench.DatasetGenerator [OPTIONS]
+ * NB_TRANSACTIONS OUTPUT_PATH
+ * 
+ * @see ZipfGenerator
+ * @see QuestGenerator
+ */
+public abstract class DatasetGenerator {
+
+	public static final long DEFAULT_SEED = 42;
+
+	protected final Random random;
+	protected final int nbItems;
+
+	/**
+	 * shared by nextTransaction implementations
+	 */
+	private final boolean[] inTransaction;
+
+	protected DatasetGenerator(final int nbItems, final long seed) {
+		this.random = new Random(seed);
+		this.nbItems = nbItems;
+		this.inTransaction = new boolean[nbItems];
+	}
+
+	/**
+	 * @return a new transaction's items, sorted and distinct
+	 */
+	public abstract int[] nextTransaction();
+
+	/**
+	 * Writes nbTransactions to the given path, one per line
+	 */
+	public final void generate(final String path, final int nbTransactions) throws IOException {
+		BufferedWriter writer = new BufferedWriter(new FileWriter(path));
+		this.generate(writer, nbTransactions);
+		writer.close();
+	}
+
+	public final void generate(final Writer writer, final int nbTransactions) throws IOException {
+		for (int t = 0; t < nbTransactions; t++) {
+			final int[] transaction = this.nextTransaction();
+			for (int i = 0; i < transaction.length; i++) {
+				if (i > 0) {
+					writer.write(' ');
+				}
+				writer.write(Integer.toString(transaction[i]));
+			}
+			writer.write('\n');
+		}
+	}
+
+	/**
+	 * Helps nextTransaction implementations to build a set of items : call
+	 * add() for each item, then collect().
+	 */
+	protected final class TransactionBuilder {
+		private int[] items = new int[16];
+		private int size = 0;
+
+		public int size() {
+			return this.size;
+		}
+
+		/**
+		 * @return false if the item was already in the transaction
+		 */
+		public boolean add(final int item) {
+			if (inTransaction[item]) {
+				return false;
+			}
+			inTransaction[item] = true;
+			if (this.size == this.items.length) {
+				this.items = Arrays.copyOf(this.items, this.size * 2);
+			}
+			this.items[this.size++] = item;
+			return true;
+		}
+
+		/**
+		 * @return sorted items, and resets this builder
+		 */
+		public int[] collect() {
+			final int[] transaction = Arrays.copyOf(this.items, this.size);
+			for (int item : transaction) {
+				inTransaction[item] = false;
+			}
+			this.size = 0;
+			Arrays.sort(transaction);
+			return transaction;
+		}
+	}
+
+	/**
+	 * above this mean, nextPoisson uses a normal approximation
+	 */
+	static final double POISSON_NORMAL_THRESHOLD = 30;
+
+	/**
+	 * Knuth's method for small means. Its cost grows with the mean and
+	 * exp(-mean) underflows to 0 beyond ~745, so above
+	 * POISSON_NORMAL_THRESHOLD we approximate Poisson(mean) by a rounded
+	 * Normal(mean, mean) instead.
+	 * 
+	 * @return a random number following a Poisson distribution
+	 */
+	protected final int nextPoisson(final double mean) {
+		if (mean > POISSON_NORMAL_THRESHOLD) {
+			final double x = mean + Math.sqrt(mean) * this.random.nextGaussian();
+			return (int) Math.max(0, Math.floor(x + 0.5));
+		}
+
+		final double limit = Math.exp(-mean);
+		double product = this.random.nextDouble();
+		int n = 0;
+		while (product > limit) {
+			product *= this.random.nextDouble();
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * @return a random number following an exponential distribution
+	 */
+	protected final double nextExponential(final double mean) {
+		return -mean * Math.log(1 - this.random.nextDouble());
+	}
+
+	public static Options getOptions() {
+		Options options = new Options();
+
+		options.addOption("m", true, "Generation model : zipf (default) or quest");
+		options.addOption("i", true, "Number of distinct items (defaults to 10000)");
+		options.addOption("l", true, "Average transaction length (defaults to 10)");
+		options.addOption("z", true, "(zipf only) Zipf exponent of items' popularity (defaults to 1.0)");
+		options.addOption("p", true, "Number of planted itemsets (defaults to 0 for zipf, 2000 for quest)");
+		options.addOption("q", true, "Average planted itemsets' length (defaults to 4)");
+		options.addOption("r", true,
+				"(zipf only) Probability that a transaction contains one of the planted itemsets (defaults to 0.1)");
+		options.addOption("c", true,
+				"(quest only) Correlation level : average fraction of a planted itemset's items taken from the previous one (defaults to 0.5)");
+		options.addOption("C", true,
+				"(quest only) Average corruption level : how likely a planted itemset's item is dropped (defaults to 0.5)");
+		options.addOption("s", true, "Random seed (defaults to " + DEFAULT_SEED + ")");
+		options.addOption("h", false, "Show help");
+
+		return options;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = getOptions();
+
+		try {
+			CommandLineParser parser = new PosixParser();
+			CommandLine cmd = parser.parse(options, args);
+
+			if (cmd.getArgs().length != 2 || cmd.hasOption('h')) {
+				printMan(options);
+			} else {
+				DatasetGenerator generator = fromCommandLine(cmd);
+				generator.generate(cmd.getArgs()[1], Integer.parseInt(cmd.getArgs()[0]));
+			}
+		} catch (ParseException e) {
+			printMan(options);
+		}
+	}
+
+	public static void printMan(Options options) {
+		String syntax = "java fr.liglab.mining.bench.DatasetGenerator [OPTIONS] NB_TRANSACTIONS OUTPUT_PATH";
+		String header = "\nGenerates a synthetic transactions dataset, written to OUTPUT_PATH.\nOptions are :";
+
+		HelpFormatter formatter = new HelpFormatter();
+		formatter.printHelp(80, syntax, header, options, "");
+	}
+
+	static DatasetGenerator fromCommandLine(CommandLine cmd) {
+		final String model = cmd.getOptionValue('m', "zipf");
+		final int nbItems = Integer.parseInt(cmd.getOptionValue('i', "10000"));
+		final double avgLength = Double.parseDouble(cmd.getOptionValue('l', "10"));
+		final double avgPatternLength = Double.parseDouble(cmd.getOptionValue('q', "4"));
+		final long seed = Long.parseLong(cmd.getOptionValue('s', Long.toString(DEFAULT_SEED)));
+
+		if ("zipf".equals(model)) {
+			return new ZipfGenerator(nbItems, avgLength, Double.parseDouble(cmd.getOptionValue('z', "1.0")),
+					Integer.parseInt(cmd.getOptionValue('p', "0")), avgPatternLength, Double.parseDouble(cmd
+							.getOptionValue('r', "0.1")), seed);
+		} else if ("quest".equals(model)) {
+			return new QuestGenerator(nbItems, avgLength, Integer.parseInt(cmd.getOptionValue('p', "2000")),
+					avgPatternLength, Double.parseDouble(cmd.getOptionValue('c', "0.5")), Double.parseDouble(cmd
+							.getOptionValue('C', "0.5")), seed);
+		} else {
+			throw new IllegalArgumentException("Unknown generation model: " + model);
+		}
+	}
+}
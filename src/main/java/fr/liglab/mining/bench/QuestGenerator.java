@@ -0,0 +1,183 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.bench;
+
+import java.util.Arrays;
+
+/**
+ * The IBM Quest synthetic data model, from Agrawal and Srikant's "Fast
+ * Algorithms for Mining Association Rules" (VLDB 1994).
+ * 
+ * Transactions are built from a pool of potentially frequent itemsets, whose
+ * lengths follow a Poisson distribution. Each itemset shares some of its
+ * items with the previous one (the fraction follows an exponential
+ * distribution, whose mean is the correlation level), other items are picked
+ * uniformly. Itemsets are given an exponentially distributed weight, which
+ * drives how often they're picked, and a normally distributed corruption
+ * level : items are dropped from the picked itemset as long as a uniform
+ * random number is below that level.
+ * 
+ * Transactions' lengths follow a Poisson distribution. When an itemset does
+ * not fit in the current transaction, half of the time it's added anyway,
+ * otherwise it's moved to the next transaction. Transactions are never
+ * longer than the number of distinct items among all potentially frequent
+ * itemsets, and are cut short if many consecutive picks bring no new item
+ * (when itemsets are heavily corrupted).
+ */
+public class QuestGenerator extends DatasetGenerator {
+
+	private static final double CORRUPTION_VARIANCE = 0.1;
+
+	/**
+	 * how many consecutive picks may add no item to a transaction before we
+	 * give up filling it
+	 */
+	private static final int MAX_IDLE_PICKS = 100;
+
+	private final double avgLength;
+	private final int[][] itemsets;
+	private final double[] cumulatedWeights;
+	private final double[] corruption;
+	private final TransactionBuilder builder = new TransactionBuilder();
+	private final int[] picked;
+
+	/**
+	 * number of distinct items among all itemsets
+	 */
+	private final int nbPlantedItems;
+
+	/**
+	 * itemset that did not fit in previous transaction, or null
+	 */
+	private int[] pending = null;
+	private int pendingLength = 0;
+
+	public QuestGenerator(final int nbItems, final double avgLength, final int nbItemsets,
+			final double avgItemsetLength, final double correlation, final double avgCorruption, final long seed) {
+		super(nbItems, seed);
+		if (nbItemsets < 1) {
+			throw new IllegalArgumentException("Quest model needs at least one potentially frequent itemset");
+		}
+		this.avgLength = avgLength;
+		this.itemsets = new int[nbItemsets][];
+		this.cumulatedWeights = new double[nbItemsets];
+		this.corruption = new double[nbItemsets];
+
+		int maxItemsetLength = 0;
+		final boolean[] planted = new boolean[nbItems];
+		int plantedItems = 0;
+		double weightsSum = 0;
+
+		for (int i = 0; i < nbItemsets; i++) {
+			final int length = Math.min(nbItems, Math.max(1, this.nextPoisson(avgItemsetLength)));
+
+			if (i > 0) {
+				final int[] previous = this.itemsets[i - 1];
+				final double fraction = Math.min(1.0, this.nextExponential(correlation));
+				final int fromPrevious = Math.min(previous.length, (int) (fraction * length));
+				while (this.builder.size() < fromPrevious) {
+					this.builder.add(previous[this.random.nextInt(previous.length)]);
+				}
+			}
+			while (this.builder.size() < length) {
+				this.builder.add(this.random.nextInt(nbItems));
+			}
+			this.itemsets[i] = this.builder.collect();
+			for (int item : this.itemsets[i]) {
+				if (!planted[item]) {
+					planted[item] = true;
+					plantedItems++;
+				}
+			}
+			maxItemsetLength = Math.max(maxItemsetLength, length);
+
+			weightsSum += this.nextExponential(1.0);
+			this.cumulatedWeights[i] = weightsSum;
+
+			final double c = avgCorruption + this.random.nextGaussian() * Math.sqrt(CORRUPTION_VARIANCE);
+			this.corruption[i] = Math.max(0.0, Math.min(1.0, c));
+		}
+
+		for (int i = 0; i < nbItemsets; i++) {
+			this.cumulatedWeights[i] /= weightsSum;
+		}
+
+		this.picked = new int[maxItemsetLength];
+		this.nbPlantedItems = plantedItems;
+	}
+
+	@Override
+	public int[] nextTransaction() {
+		final int length = Math.min(this.nbPlantedItems, Math.max(1, this.nextPoisson(this.avgLength)));
+
+		if (this.pending != null) {
+			this.addPicked(this.pending, this.pendingLength);
+			this.pending = null;
+		}
+
+		int idlePicks = 0;
+		while (this.builder.size() < length && idlePicks < MAX_IDLE_PICKS) {
+			final int pickedLength = this.pickItemset();
+			if (pickedLength == 0) {
+				idlePicks++;
+				continue;
+			}
+
+			if (this.builder.size() + pickedLength > length && this.builder.size() > 0
+					&& this.random.nextBoolean()) {
+				this.pending = new int[pickedLength];
+				System.arraycopy(this.picked, 0, this.pending, 0, pickedLength);
+				this.pendingLength = pickedLength;
+				break;
+			}
+
+			final int before = this.builder.size();
+			this.addPicked(this.picked, pickedLength);
+			idlePicks = (this.builder.size() == before) ? idlePicks + 1 : 0;
+		}
+
+		return this.builder.collect();
+	}
+
+	private void addPicked(final int[] items, final int length) {
+		for (int i = 0; i < length; i++) {
+			this.builder.add(items[i]);
+		}
+	}
+
+	/**
+	 * Copies a randomly chosen itemset, minus its corrupted items, to
+	 * this.picked
+	 * 
+	 * @return how many items have been copied
+	 */
+	private int pickItemset() {
+		int index = Arrays.binarySearch(this.cumulatedWeights, this.random.nextDouble());
+		index = Math.min(this.itemsets.length - 1, index < 0 ? -index - 1 : index);
+
+		final int[] itemset = this.itemsets[index];
+		int length = itemset.length;
+		System.arraycopy(itemset, 0, this.picked, 0, length);
+
+		while (length > 0 && this.random.nextDouble() < this.corruption[index]) {
+			final int dropped = this.random.nextInt(length);
+			this.picked[dropped] = this.picked[--length];
+		}
+
+		return length;
+	}
+}
@@ -0,0 +1,99 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.bench;
+
+import java.util.Arrays;
+
+/**
+ * Long-tailed datasets : each transaction's items are drawn independently,
+ * following a Zipf law over items' popularity (item 0 being the most
+ * popular). Transactions' lengths follow a Poisson distribution.
+ * 
+ * Some correlated itemsets may also be planted : they're made of items picked
+ * uniformly, so they mostly involve items from the long tail. Each
+ * transaction contains one of them (picked uniformly) with the given
+ * probability.
+ */
+public class ZipfGenerator extends DatasetGenerator {
+
+	private final double avgLength;
+	private final double[] cumulated;
+	private final int[][] planted;
+	private final double plantedRate;
+	private final TransactionBuilder builder = new TransactionBuilder();
+
+	/**
+	 * @param skew
+	 *            Zipf exponent - the greater, the steeper the long tail
+	 * @param nbPlanted
+	 *            number of planted itemsets, may be 0
+	 * @param avgPlantedLength
+	 *            planted itemsets have at least 2 items
+	 * @param plantedRate
+	 *            probability that a transaction contains a planted itemset
+	 */
+	public ZipfGenerator(final int nbItems, final double avgLength, final double skew, final int nbPlanted,
+			final double avgPlantedLength, final double plantedRate, final long seed) {
+		super(nbItems, seed);
+		this.avgLength = avgLength;
+		this.plantedRate = plantedRate;
+
+		this.cumulated = new double[nbItems];
+		double sum = 0;
+		for (int i = 0; i < nbItems; i++) {
+			sum += 1.0 / Math.pow(i + 1, skew);
+			this.cumulated[i] = sum;
+		}
+		for (int i = 0; i < nbItems; i++) {
+			this.cumulated[i] /= sum;
+		}
+
+		this.planted = new int[nbPlanted][];
+		for (int p = 0; p < nbPlanted; p++) {
+			final int length = Math.min(nbItems, Math.max(2, this.nextPoisson(avgPlantedLength)));
+			while (this.builder.size() < length) {
+				this.builder.add(this.random.nextInt(nbItems));
+			}
+			this.planted[p] = this.builder.collect();
+		}
+	}
+
+	/**
+	 * @return a random item, following items' popularity
+	 */
+	public final int nextItem() {
+		final int found = Arrays.binarySearch(this.cumulated, this.random.nextDouble());
+		return Math.min(this.nbItems - 1, found < 0 ? -found - 1 : found);
+	}
+
+	@Override
+	public int[] nextTransaction() {
+		final int length = Math.min(this.nbItems, Math.max(1, this.nextPoisson(this.avgLength)));
+
+		if (this.planted.length > 0 && this.random.nextDouble() < this.plantedRate) {
+			for (int item : this.planted[this.random.nextInt(this.planted.length)]) {
+				this.builder.add(item);
+			}
+		}
+
+		while (this.builder.size() < length) {
+			this.builder.add(this.nextItem());
+		}
+
+		return this.builder.collect();
+	}
+}
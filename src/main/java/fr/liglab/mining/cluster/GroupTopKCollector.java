@@ -0,0 +1,82 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.cluster;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import fr.liglab.mining.internals.FrequentsIterator;
+import fr.liglab.mining.io.PerItemTopKCollector;
+import gnu.trove.iterator.TIntObjectIterator;
+
+/**
+ * Collects the top-K of a group's items, then writes them as (item, support,
+ * length, items...) records, like PerItemTopKHadoopCollector
+ */
+final class GroupTopKCollector extends PerItemTopKCollector {
+
+	GroupTopKCollector(final int k, final int nbItems, final FrequentsIterator items) {
+		super(null, k, nbItems, items);
+	}
+
+	/**
+	 * Skips placeholders, which may have been loaded by preloadBounds
+	 * 
+	 * @return how many patterns were written
+	 */
+	long writePatterns(DataOutputStream out) throws IOException {
+		long written = 0;
+		TIntObjectIterator<PatternWithFreq[]> entries = this.topK.iterator();
+
+		while (entries.hasNext()) {
+			entries.advance();
+			final PatternWithFreq[] itemTopK = entries.value();
+
+			for (int i = 0; i < itemTopK.length && itemTopK[i] != null; i++) {
+				final int[] pattern = itemTopK[i].getPattern();
+				if (itemTopK[i].isClosed() && pattern != null && pattern.length > 0) {
+					out.writeInt(entries.key());
+					out.writeInt(itemTopK[i].getSupportCount());
+					out.writeInt(pattern.length);
+					for (int item : pattern) {
+						out.writeInt(item);
+					}
+					written++;
+				}
+			}
+		}
+
+		return written;
+	}
+
+	/**
+	 * Writes (item, K-th support) pairs, for items whose top-K is full with a
+	 * support greater than minsup
+	 */
+	void writeBounds(DataOutputStream out, final int minsup) throws IOException {
+		TIntObjectIterator<PatternWithFreq[]> entries = this.topK.iterator();
+
+		while (entries.hasNext()) {
+			entries.advance();
+			final PatternWithFreq last = entries.value()[this.k - 1];
+			if (last != null && last.getSupportCount() > minsup) {
+				out.writeInt(entries.key());
+				out.writeInt(last.getSupportCount());
+			}
+		}
+	}
+}
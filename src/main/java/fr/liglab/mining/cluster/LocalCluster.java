@@ -0,0 +1,500 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.cli.CommandLine;
+
+import fr.liglab.mining.StarterTrace;
+import fr.liglab.mining.io.FileCollector;
+import fr.liglab.mining.io.PatternSortCollector;
+import fr.liglab.mining.io.PatternsCollector;
+import fr.liglab.mining.io.PerItemTopKCollector.PatternWithFreq;
+import fr.liglab.mining.io.StdOutCollector;
+import fr.liglab.mining.mapred.Grouper;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.TIntLongMap;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TIntLongHashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+/**
+ * Runs the Hadoop variant's decomposition on a single machine, without any
+ * Hadoop daemon : the search space is split in groups, each group being mined
+ * by a LocalClusterWorker JVM in two passes (collecting group items, then
+ * other items with the bounds found by the first pass), then per-item top-K
+ * are aggregated as AggregationReducer does.
+ * 
+ * Workers are coordinated by files in a temporary directory. Their heap is
+ * capped by the toppi.local.heap system property, and at most
+ * toppi.local.workers of them run at the same time.
+ */
+public final class LocalCluster {
+
+	public static final String KEY_WORKERS = "toppi.local.workers";
+	public static final String KEY_HEAP = "toppi.local.heap";
+	public static final String KEY_TMP_DIR = "toppi.local.tmp";
+
+	public static final String DEFAULT_HEAP = "1g";
+
+	private static final String ITEMS_FILENAME = "items";
+
+	private final String input;
+	private final int minsup;
+	private final int k;
+	private final int nbGroups;
+	private final int nbThreads;
+	private final int nbWorkers;
+	private final String heap;
+	private final File directory;
+
+	public LocalCluster(String input, int minsup, int k, int nbGroups, int nbThreads) throws IOException {
+		this.input = input;
+		this.minsup = minsup;
+		this.k = k;
+		this.nbGroups = nbGroups;
+		this.nbThreads = nbThreads;
+		this.nbWorkers = Integer.getInteger(KEY_WORKERS,
+				Math.max(1, Runtime.getRuntime().availableProcessors() / nbThreads));
+		this.heap = System.getProperty(KEY_HEAP, DEFAULT_HEAP);
+
+		String tmpRoot = System.getProperty(KEY_TMP_DIR);
+		this.directory = File.createTempFile("toppi-cluster-", "", tmpRoot == null ? null : new File(tmpRoot));
+		if (!this.directory.delete() || !this.directory.mkdir()) {
+			throw new IOException("Can't create working directory " + this.directory);
+		}
+	}
+
+	/**
+	 * Entry point from TopPIcli : -L gives the number of groups
+	 */
+	public static void run(CommandLine cmd) {
+		String[] args = cmd.getArgs();
+		int nbThreads = 1;
+		if (cmd.hasOption('t')) {
+			nbThreads = Integer.parseInt(cmd.getOptionValue('t'));
+		}
+
+		LocalCluster cluster = null;
+		boolean failed = false;
+		try {
+			cluster = new LocalCluster(args[0], Integer.parseInt(args[1]), Integer.parseInt(cmd.getOptionValue('k')),
+					Integer.parseInt(cmd.getOptionValue('L')), nbThreads);
+
+			PatternsCollector output;
+			if (args.length >= 3) {
+				output = new FileCollector(args[2]);
+			} else {
+				output = new StdOutCollector(null);
+			}
+			if (cmd.hasOption('s')) {
+				output = new PatternSortCollector(output);
+			}
+
+			long chrono = System.currentTimeMillis();
+			long nbPatterns = cluster.mine(output);
+			chrono = System.currentTimeMillis() - chrono;
+			System.err.println("{\"nbGroups\":" + cluster.nbGroups + ", \"outputtedPatterns\":" + nbPatterns
+					+ ", \"miningTime\":" + chrono + "}");
+		} catch (Exception e) {
+			e.printStackTrace(System.err);
+			failed = true;
+		} finally {
+			if (cluster != null) {
+				cluster.cleanup();
+			}
+		}
+
+		// only now, because System.exit would skip the finally block
+		if (failed) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return how many patterns were given to output, which is closed
+	 */
+	public long mine(PatternsCollector output) throws IOException, InterruptedException, ExecutionException {
+		int[] reverseRebasing = this.prepareItems();
+		System.err.println(reverseRebasing.length + " frequent items, in " + this.nbGroups + " groups");
+
+		this.runPass(1);
+		this.runPass(2);
+
+		return this.aggregate(reverseRebasing, output);
+	}
+
+	/**
+	 * Counts items, ranks frequent ones by decreasing support (ties broken by
+	 * ascending ID) and dispatches them among groups according to their
+	 * estimated cost. Writes the result to the items file.
+	 * 
+	 * @return the reverse rebasing, ie. frequent items' IDs by rank
+	 */
+	private int[] prepareItems() throws IOException {
+		final TIntIntMap supports = new TIntIntHashMap();
+		final TIntLongMap projectionSizes = new TIntLongHashMap();
+		final TIntArrayList transaction = new TIntArrayList();
+
+		InputStream in = new BufferedInputStream(new FileInputStream(this.input), 1024 * 1024);
+		try {
+			int item = -1;
+			int c = in.read();
+			while (true) {
+				if ('0' <= c && c <= '9') {
+					item = (item < 0) ? c - '0' : item * 10 + (c - '0');
+				} else {
+					if (item >= 0) {
+						transaction.add(item);
+						item = -1;
+					}
+					if (c == '\n' || c == -1) {
+						final int length = transaction.size();
+						for (int i = 0; i < length; i++) {
+							supports.adjustOrPutValue(transaction.getQuick(i), 1, 1);
+							projectionSizes.adjustOrPutValue(transaction.getQuick(i), length, length);
+						}
+						transaction.resetQuick();
+					}
+					if (c == -1) {
+						break;
+					}
+				}
+				c = in.read();
+			}
+		} finally {
+			in.close();
+		}
+
+		// support and item packed such that ascending order is ranking order
+		TLongArrayList ranking = new TLongArrayList();
+		for (int candidate : supports.keys()) {
+			final int support = supports.get(candidate);
+			if (support >= this.minsup) {
+				ranking.add(((long) -support << 32) | ((candidate ^ Integer.MIN_VALUE) & 0xFFFFFFFFL));
+			}
+		}
+		ranking.sort();
+
+		final int nbItems = ranking.size();
+		int[] reverseRebasing = new int[nbItems];
+		long[] costs = new long[nbItems];
+		for (int i = 0; i < nbItems; i++) {
+			reverseRebasing[i] = ((int) ranking.getQuick(i)) ^ Integer.MIN_VALUE;
+			costs[i] = Grouper.estimateCost(supports.get(reverseRebasing[i]),
+					projectionSizes.get(reverseRebasing[i]));
+		}
+		String costHints = System.getProperty(Grouper.KEY_COST_HINTS);
+		if (costHints != null) {
+			TIntLongMap measured = StarterTrace.readCosts(costHints);
+			TIntLongMap hints = new TIntLongHashMap();
+			for (int i = 0; i < nbItems; i++) {
+				if (measured.containsKey(reverseRebasing[i])) {
+					hints.put(i, measured.get(reverseRebasing[i]));
+				}
+			}
+			Grouper.applyCostHints(costs, hints);
+		}
+		int[] groups = Grouper.packByCost(costs, this.nbGroups);
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(
+				this.directory, ITEMS_FILENAME))));
+		try {
+			out.writeInt(nbItems);
+			for (int i = 0; i < nbItems; i++) {
+				out.writeInt(reverseRebasing[i]);
+			}
+			for (int i = 0; i < nbItems; i++) {
+				out.writeInt(groups[i]);
+			}
+		} finally {
+			out.close();
+		}
+
+		return reverseRebasing;
+	}
+
+	/**
+	 * Runs a worker per group, at most nbWorkers at once. If any fails, all
+	 * workers are destroyed before returning, so the working directory can be
+	 * deleted.
+	 */
+	private void runPass(final int pass) throws InterruptedException, ExecutionException {
+		long chrono = System.currentTimeMillis();
+		ExecutorService pool = Executors.newFixedThreadPool(this.nbWorkers);
+		List<Worker> workers = new ArrayList<Worker>(this.nbGroups);
+		boolean succeeded = false;
+
+		try {
+			List<Future<Integer>> exits = new ArrayList<Future<Integer>>(this.nbGroups);
+			for (int gid = 0; gid < this.nbGroups; gid++) {
+				Worker worker = new Worker(gid, pass);
+				workers.add(worker);
+				exits.add(pool.submit(worker));
+			}
+
+			for (int gid = 0; gid < this.nbGroups; gid++) {
+				final int exitValue = exits.get(gid).get();
+				if (exitValue != 0) {
+					throw new RuntimeException("Worker for group " + gid + ", pass " + pass + " exited with "
+							+ exitValue);
+				}
+			}
+			succeeded = true;
+		} finally {
+			pool.shutdownNow();
+			if (!succeeded) {
+				for (Worker worker : workers) {
+					worker.destroy();
+				}
+			}
+		}
+
+		chrono = System.currentTimeMillis() - chrono;
+		System.err.println("Pass " + pass + " done in " + chrono + "ms");
+	}
+
+	private final class Worker implements Callable<Integer> {
+		private final int gid;
+		private final int pass;
+
+		/**
+		 * null until started
+		 */
+		private Process process = null;
+		private boolean destroyed = false;
+
+		Worker(int gid, int pass) {
+			this.gid = gid;
+			this.pass = pass;
+		}
+
+		@Override
+		public Integer call() throws Exception {
+			String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+			ProcessBuilder builder = new ProcessBuilder(java, "-Xmx" + heap, "-cp",
+					System.getProperty("java.class.path"), LocalClusterWorker.class.getName(),
+					directory.getPath(), input, Integer.toString(minsup), Integer.toString(k),
+					Integer.toString(nbGroups), Integer.toString(this.gid), Integer.toString(this.pass),
+					Integer.toString(nbThreads));
+			builder.redirectErrorStream(true);
+
+			final Process process;
+			synchronized (this) {
+				if (this.destroyed) {
+					return -1;
+				}
+				process = builder.start();
+				this.process = process;
+			}
+			process.getOutputStream().close();
+
+			// workers only log, prefix their lines with the group ID
+			BufferedReader logs = new BufferedReader(new InputStreamReader(process.getInputStream()));
+			final String prefix = "[group " + this.gid + ", pass " + this.pass + "] ";
+			for (String line = logs.readLine(); line != null; line = logs.readLine()) {
+				System.err.println(prefix + line);
+			}
+			logs.close();
+
+			return process.waitFor();
+		}
+
+		/**
+		 * Kills the worker's JVM, if started, and waits for its end. Prevents
+		 * it from starting otherwise.
+		 */
+		void destroy() throws InterruptedException {
+			final Process started;
+			synchronized (this) {
+				this.destroyed = true;
+				started = this.process;
+			}
+			if (started != null) {
+				started.destroy();
+				started.waitFor();
+			}
+		}
+	}
+
+	/**
+	 * Keeps, for each item, the K most frequent patterns among all groups'
+	 * outputs, then collects them by item rank
+	 */
+	private long aggregate(int[] reverseRebasing, PatternsCollector output) throws IOException {
+		TIntObjectMap<PatternWithFreq[]> topK = new TIntObjectHashMap<PatternWithFreq[]>(reverseRebasing.length);
+
+		for (int pass = 1; pass <= 2; pass++) {
+			for (int gid = 0; gid < this.nbGroups; gid++) {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(
+						getPatternsFile(this.directory, pass, gid))));
+
+				try {
+					while (hasNextRecord(in)) {
+						final int item = in.readInt();
+						final int support = in.readInt();
+						final int[] pattern = new int[in.readInt()];
+						for (int i = 0; i < pattern.length; i++) {
+							pattern[i] = in.readInt();
+						}
+
+						PatternWithFreq[] itemTopK = topK.get(item);
+						if (itemTopK == null) {
+							itemTopK = new PatternWithFreq[this.k];
+							topK.put(item, itemTopK);
+						}
+						insert(itemTopK, new PatternWithFreq(support, pattern));
+					}
+				} catch (EOFException e) {
+					throw truncated(getPatternsFile(this.directory, pass, gid), e);
+				} finally {
+					in.close();
+				}
+			}
+		}
+
+		for (int item : reverseRebasing) {
+			PatternWithFreq[] itemTopK = topK.get(item);
+			if (itemTopK != null) {
+				for (int i = 0; i < itemTopK.length && itemTopK[i] != null; i++) {
+					output.collect(itemTopK[i].getSupportCount(), itemTopK[i].getPattern());
+				}
+			}
+		}
+
+		return output.close();
+	}
+
+	/**
+	 * Inserts after patterns of greater or equal support, if there's room
+	 */
+	private static void insert(PatternWithFreq[] itemTopK, PatternWithFreq entry) {
+		int pos = itemTopK.length;
+		while (pos > 0 && (itemTopK[pos - 1] == null || itemTopK[pos - 1].getSupportCount() < entry.getSupportCount())) {
+			pos--;
+		}
+
+		if (pos < itemTopK.length) {
+			System.arraycopy(itemTopK, pos, itemTopK, pos + 1, itemTopK.length - pos - 1);
+			itemTopK[pos] = entry;
+		}
+	}
+
+	private void cleanup() {
+		for (File file : this.directory.listFiles()) {
+			file.delete();
+		}
+		this.directory.delete();
+	}
+
+	/**
+	 * @return {reverse rebasing, items' groups}, both indexed by rank
+	 */
+	static int[][] readItems(File directory) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(directory,
+				ITEMS_FILENAME))));
+		try {
+			final int nbItems = in.readInt();
+			int[][] items = new int[2][nbItems];
+			for (int j = 0; j < 2; j++) {
+				for (int i = 0; i < nbItems; i++) {
+					items[j][i] = in.readInt();
+				}
+			}
+			return items;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return item => K-th support, as found by the first pass of all groups
+	 */
+	static TIntIntMap readBounds(File directory, int nbGroups) throws IOException {
+		TIntIntMap bounds = new TIntIntHashMap();
+		for (int gid = 0; gid < nbGroups; gid++) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(getBoundsFile(
+					directory, gid))));
+			try {
+				while (hasNextRecord(in)) {
+					final int item = in.readInt();
+					bounds.put(item, in.readInt());
+				}
+			} catch (EOFException e) {
+				throw truncated(getBoundsFile(directory, gid), e);
+			} finally {
+				in.close();
+			}
+		}
+		return bounds;
+	}
+
+	/**
+	 * @param in
+	 *            should support mark/reset
+	 * @return false if we're at the end of the input
+	 */
+	private static boolean hasNextRecord(DataInputStream in) throws IOException {
+		in.mark(1);
+		if (in.read() == -1) {
+			return false;
+		}
+		in.reset();
+		return true;
+	}
+
+	/**
+	 * Workers' outputs are made of complete records, so a partial one means
+	 * the worker crashed while writing
+	 */
+	private static EOFException truncated(File file, EOFException cause) {
+		EOFException e = new EOFException("Partial record at the end of " + file);
+		e.initCause(cause);
+		return e;
+	}
+
+	static File getPatternsFile(File directory, int pass, int gid) {
+		return new File(directory, "patterns-" + pass + "-" + gid);
+	}
+
+	static File getBoundsFile(File directory, int gid) {
+		return new File(directory, "bounds-" + gid);
+	}
+}
@@ -0,0 +1,158 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.cluster;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+
+import javax.xml.ws.Holder;
+
+import fr.liglab.mining.TopPI;
+import fr.liglab.mining.internals.ExplorationStep;
+import fr.liglab.mining.internals.FrequentsIterator;
+import fr.liglab.mining.internals.FrequentsIteratorRenamer;
+import fr.liglab.mining.internals.Selector;
+import fr.liglab.mining.io.FileFilteredReader;
+import fr.liglab.mining.mapred.Grouper;
+import fr.liglab.mining.mapred.Grouper.SingleGroup;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+
+/**
+ * Mines a single group, for a single pass, as MinerWrapper does in a Hadoop
+ * reducer. It's launched by LocalCluster in its own JVM, because
+ * ExplorationStep's collection flags are static and so we can cap each
+ * group's heap.
+ * 
+ * Usage : LocalClusterWorker DIRECTORY INPUT_PATH MINSUP K NB_GROUPS GROUP_ID
+ * PASS NB_THREADS
+ */
+public final class LocalClusterWorker {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 8) {
+			System.err.println("Usage: LocalClusterWorker DIRECTORY INPUT_PATH MINSUP K NB_GROUPS GROUP_ID PASS NB_THREADS");
+			System.exit(1);
+		}
+
+		final File directory = new File(args[0]);
+		final String input = args[1];
+		final int minsup = Integer.parseInt(args[2]);
+		final int k = Integer.parseInt(args[3]);
+		final int nbGroups = Integer.parseInt(args[4]);
+		final int gid = Integer.parseInt(args[5]);
+		final int pass = Integer.parseInt(args[6]);
+		final int nbThreads = Integer.parseInt(args[7]);
+
+		int[][] items = LocalCluster.readItems(directory);
+		final int[] reverseRebasing = items[0];
+		final int[] itemsGroups = items[1];
+		final int maxId = reverseRebasing.length - 1;
+
+		TIntIntMap rebasing = new TIntIntHashMap(reverseRebasing.length, 0.5f, -1, -1);
+		for (int i = 0; i < reverseRebasing.length; i++) {
+			rebasing.put(reverseRebasing[i], i);
+		}
+
+		long chrono = System.currentTimeMillis();
+		SingleGroup filter = new SingleGroup(nbGroups, maxId, itemsGroups, gid);
+		FileFilteredReader reader = new FileFilteredReader(new File(input).toURI(), rebasing, filter);
+		Holder<int[]> renaming = new Holder<int[]>();
+		ExplorationStep initState = new ExplorationStep(minsup, reader, maxId, reverseRebasing, renaming, k);
+		rebasing = null;
+		long loadingTime = System.currentTimeMillis() - chrono;
+
+		Grouper grouper = new Grouper(nbGroups, maxId, itemsGroups);
+		FrequentsIterator collected;
+
+		ExplorationStep.INSERT_UNCLOSED_UP_TO_ITEM = -1;
+		ExplorationStep.INSERT_UNCLOSED_FOR_FUTURE_EXTENSIONS = false;
+
+		if (pass == 1) {
+			collected = grouper.getGroupItems(gid);
+			ExplorationStep.EARLYCOLLECTION = true;
+		} else {
+			collected = grouper.getNonGroupItems(gid);
+			ExplorationStep.EARLYCOLLECTION = false;
+		}
+		collected = new FrequentsIteratorRenamer(collected, reverseRebasing);
+
+		GroupTopKCollector collector = new GroupTopKCollector(k, maxId, collected);
+		if (pass > 1) {
+			collector.preloadBounds(LocalCluster.readBounds(directory, nbGroups));
+		}
+
+		Selector chain = collector.asSelector();
+		chain = grouper.getStartersSelector(chain, gid, buildRenamingToGlobal(initState, renaming));
+		initState.appendSelector(chain);
+
+		chrono = System.currentTimeMillis();
+		TopPI miner = new TopPI(collector, nbThreads);
+		miner.startMining(initState);
+		long miningTime = System.currentTimeMillis() - chrono;
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+				LocalCluster.getPatternsFile(directory, pass, gid))));
+		long nbPatterns;
+		try {
+			nbPatterns = collector.writePatterns(out);
+		} finally {
+			out.close();
+		}
+
+		if (pass == 1) {
+			File bounds = LocalCluster.getBoundsFile(directory, gid);
+			File tmp = new File(bounds.getPath() + ".tmp");
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				collector.writeBounds(out, minsup);
+			} finally {
+				out.close();
+			}
+			// other groups' second pass should only see complete bounds
+			if (!tmp.renameTo(bounds)) {
+				throw new IOException("Could not rename " + tmp + " to " + bounds);
+			}
+		}
+
+		HashMap<String, Long> logged = new HashMap<String, Long>();
+		logged.put("gid", (long) gid);
+		logged.put("pass", (long) pass);
+		logged.put("loadingTime", loadingTime);
+		logged.put("miningTime", miningTime);
+		logged.put("nbPatterns", nbPatterns);
+		System.err.println(miner.toString(logged));
+	}
+
+	private static int[] buildRenamingToGlobal(ExplorationStep initState, Holder<int[]> renaming) {
+		int[] toCurrent = renaming.value;
+		int[] toGlobal = new int[initState.counters.getMaxFrequent() + 1];
+
+		for (int i = 0; i < toCurrent.length; i++) {
+			final int rebased = toCurrent[i];
+			if (rebased >= 0) {
+				toGlobal[rebased] = i;
+			}
+		}
+
+		return toGlobal;
+	}
+}
@@ -82,6 +82,7 @@ public class Dataset implements Cloneable {
 		this.maxItem = maxItem;
 
 		int maxTransId;
+		long estimatedBytes = 8L * counters.getDistinctTransactionsCount() + 8L * (maxItem + 1);
 
 		// if (UByteIndexedTransactionsList.compatible(counters)) {
 		// this.transactions = new UByteIndexedTransactionsList(counters);
@@ -90,9 +91,11 @@ public class Dataset implements Cloneable {
 		if (UShortIndexedTransactionsList.compatible(counters)) {
 			this.transactions = new UShortIndexedTransactionsList(counters);
 			maxTransId = UShortIndexedTransactionsList.getMaxTransId(counters);
+			estimatedBytes += 2L * counters.getDistinctTransactionLengthSum();
 		} else {
 			this.transactions = new IntIndexedTransactionsList(counters);
 			maxTransId = IntIndexedTransactionsList.getMaxTransId(counters);
+			estimatedBytes += 4L * counters.getDistinctTransactionLengthSum();
 		}
 
 		// if (UByteConsecutiveItemsConcatenatedTidList.compatible(maxTransId))
@@ -102,10 +105,16 @@ public class Dataset implements Cloneable {
 		// } else
 		if (UShortConsecutiveItemsConcatenatedTidList.compatible(maxTransId)) {
 			this.tidLists = new UShortConsecutiveItemsConcatenatedTidList(counters, tidListBound);
+			estimatedBytes += 2L * counters.getDistinctTransactionLengthSum();
 		} else {
 			this.tidLists = new IntConsecutiveItemsConcatenatedTidList(counters, tidListBound);
+			estimatedBytes += 4L * counters.getDistinctTransactionLengthSum();
 		}
 
+		// approximately what was just allocated : one index entry per transaction
+		// and per tidlist, plus items and tids
+		CountersHandler.add(TopPICounters.ProjectionsBytes, estimatedBytes);
+
 		TransactionsWriter writer = this.transactions.getWriter();
 		while (transactions.hasNext()) {
 			TransactionReader transaction = transactions.next();
@@ -157,6 +166,62 @@ public class Dataset implements Cloneable {
 		return new TransactionsIterable(this.tidLists.getIterable(item));
 	}
 	
+	/**
+	 * Intersects given items' tidlists, starting from the rarest one (ie. the
+	 * highest ID, as items are ranked by decreasing support). Read-only, so
+	 * it can be called concurrently.
+	 *
+	 * @param itemset
+	 *            a non-empty set of items having a tidlist in this dataset
+	 * @return how many transactions (summing their weight) contain all given
+	 *         items
+	 */
+	public int countSupport(final int[] itemset) {
+		int rarest = 0;
+		for (int i = 1; i < itemset.length; i++) {
+			if (itemset[i] > itemset[rarest]) {
+				rarest = i;
+			}
+		}
+
+		final TIntIterator candidates = this.tidLists.get(itemset[rarest]);
+		final TIntIterator[] others = new TIntIterator[itemset.length - 1];
+		final int[] heads = new int[others.length];
+		for (int i = 0, j = 0; i < itemset.length; i++) {
+			if (i != rarest) {
+				others[j] = this.tidLists.get(itemset[i]);
+				heads[j] = -1;
+				j++;
+			}
+		}
+
+		final ReusableTransactionIterator reader = this.transactions.getIterator();
+		int support = 0;
+
+		candidatesLoop: while (candidates.hasNext()) {
+			final int tid = candidates.next();
+
+			// all tidlists are ascending
+			for (int i = 0; i < others.length; i++) {
+				while (heads[i] < tid) {
+					if (others[i].hasNext()) {
+						heads[i] = others[i].next();
+					} else {
+						return support;
+					}
+				}
+				if (heads[i] != tid) {
+					continue candidatesLoop;
+				}
+			}
+
+			reader.setTransaction(tid);
+			support += reader.getTransactionSupport();
+		}
+
+		return support;
+	}
+
 	public Iterator<TransactionReader> getTransactions() {
 		return new TransactionsIterator(this.transactions.getIdIterator());
 	}
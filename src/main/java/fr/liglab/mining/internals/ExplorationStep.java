@@ -18,6 +18,8 @@ package fr.liglab.mining.internals;
 
 import fr.liglab.mining.CountersHandler;
 import fr.liglab.mining.CountersHandler.TopPICounters;
+import fr.liglab.mining.HistogramsHandler;
+import fr.liglab.mining.HistogramsHandler.TopPIPhases;
 import fr.liglab.mining.internals.Dataset.TransactionsIterable;
 import fr.liglab.mining.internals.Selector.WrongFirstParentException;
 import fr.liglab.mining.io.FileFilteredReader;
@@ -75,6 +77,11 @@ public final class ExplorationStep implements Cloneable {
 	 */
 	public final int core_item;
 
+	/**
+	 * Root extension this step descends from, -1 for the root step itself.
+	 */
+	public final int starter;
+
 	public Dataset dataset;
 
 	public DatasetProvider datasetProvider;
@@ -110,6 +117,7 @@ public final class ExplorationStep implements Cloneable {
 	 */
 	public ExplorationStep(int minimumSupport, String path, int k, Holder<Map<String,Integer>> itemIDmap) {
 		this.core_item = Integer.MAX_VALUE;
+		this.starter = -1;
 		this.selectChain = null;
 		
 		Iterator<TransactionReader> reader;
@@ -159,6 +167,7 @@ public final class ExplorationStep implements Cloneable {
 	 */
 	public ExplorationStep(int minimumSupport, int k, Iterable<TransactionReader> source) {
 		this.core_item = Integer.MAX_VALUE;
+		this.starter = -1;
 		this.selectChain = null;
 		Holder<int[]> renamingHolder = new Holder<int[]>();
 		DenseCounters firstCounter = new DenseCounters(minimumSupport, source.iterator(), renamingHolder);
@@ -179,6 +188,7 @@ public final class ExplorationStep implements Cloneable {
 	public ExplorationStep(int minimumSupport, FileFilteredReader reader, int maxItem, int[] reverseGlobalRenaming,
 			Holder<int[]> renaming, int k) {
 		this.core_item = Integer.MAX_VALUE;
+		this.starter = -1;
 		this.selectChain = null;
 
 		DenseCounters firstCounters = new DenseCounters(minimumSupport, reader, maxItem + 1, null, maxItem + 1,
@@ -209,6 +219,7 @@ public final class ExplorationStep implements Cloneable {
 	public ExplorationStep(int minimumSupport, Iterable<TransactionReader> reader, int maxItem, int[] reverseGlobalRenaming,
 			Holder<int[]> renaming, int k) {
 		this.core_item = Integer.MAX_VALUE;
+		this.starter = -1;
 		this.selectChain = null;
 
 		DenseCounters firstCounters = new DenseCounters(minimumSupport, reader.iterator(), maxItem + 1, null, maxItem + 1,
@@ -233,10 +244,11 @@ public final class ExplorationStep implements Cloneable {
 		ExplorationStep.findUnclosedInsertionBound(firstCounters.getSupportCounts(), minimumSupport + k);
 	}
 	
-	private ExplorationStep(int core_item, Dataset dataset, Counters counters, Selector selectChain,
+	private ExplorationStep(int core_item, int starter, Dataset dataset, Counters counters, Selector selectChain,
 			FrequentsIterator candidates, TIntIntHashMap failedFPTests) {
 		super();
 		this.core_item = core_item;
+		this.starter = starter;
 		this.dataset = dataset;
 		this.counters = counters;
 		this.selectChain = selectChain;
@@ -317,6 +329,7 @@ public final class ExplorationStep implements Cloneable {
 			TransactionsIterable support) {
 
 		this.core_item = extension;
+		this.starter = (parentEs.core_item == Integer.MAX_VALUE) ? extension : parentEs.starter;
 		this.counters = candidateCounts;
 		int[] reverseRenaming = parentEs.counters.getReverseRenaming();
 
@@ -343,6 +356,16 @@ public final class ExplorationStep implements Cloneable {
 
 	private Dataset instanciateDatasetAndPickSelectors(ExplorationStep parentExplorationStep, Dataset parentDataset,
 			TransactionsIterable support) {
+		final long started = HistogramsHandler.start();
+		try {
+			return this.instanciateDatasetAndPickSelectorsImpl(parentExplorationStep, parentDataset, support);
+		} finally {
+			HistogramsHandler.stop(TopPIPhases.DatasetInstanciation, started);
+		}
+	}
+
+	private Dataset instanciateDatasetAndPickSelectorsImpl(ExplorationStep parentExplorationStep,
+			Dataset parentDataset, TransactionsIterable support) {
 		final double supportRate = this.counters.getDistinctTransactionsCount()
 				/ (double) parentDataset.getStoredTransactionsCount();
 
@@ -422,7 +445,7 @@ public final class ExplorationStep implements Cloneable {
 	}
 
 	public ExplorationStep copy() {
-		return new ExplorationStep(core_item, dataset.clone(), counters.clone(), selectChain, candidates, failedFPTests);
+		return new ExplorationStep(core_item, starter, dataset.clone(), counters.clone(), selectChain, candidates, failedFPTests);
 	}
 
 	protected Counters prepareExploration(int candidate, PerItemTopKCollector collector, IntHolder boundHolder) {
@@ -431,6 +454,16 @@ public final class ExplorationStep implements Cloneable {
 
 	protected Counters prepareExploration(int candidate, PerItemTopKCollector collector, IntHolder boundHolder,
 			boolean regeneratedInResume) {
+		final long started = HistogramsHandler.start();
+		try {
+			return this.prepareExplorationImpl(candidate, collector, boundHolder, regeneratedInResume);
+		} finally {
+			HistogramsHandler.stop(TopPIPhases.PrepareExploration, started);
+		}
+	}
+
+	private Counters prepareExplorationImpl(int candidate, PerItemTopKCollector collector, IntHolder boundHolder,
+			boolean regeneratedInResume) {
 		try {
 			if (ultraVerbose) {
 				System.err.format("{\"time\":\"%1$tY/%1$tm/%1$td %1$tk:%1$tM:%1$tS\",\"thread\":%2$d,\"prepare_candidate\":%3$d}\n",
@@ -529,6 +562,15 @@ public final class ExplorationStep implements Cloneable {
 	}
 
 	protected ExplorationStep doDepthExplorationFromScratch(int candidate, PerItemTopKCollector collector) {
+		final long started = HistogramsHandler.start();
+		try {
+			return this.doDepthExplorationFromScratchImpl(candidate, collector);
+		} finally {
+			HistogramsHandler.stop(TopPIPhases.DepthExploration, started);
+		}
+	}
+
+	private ExplorationStep doDepthExplorationFromScratchImpl(int candidate, PerItemTopKCollector collector) {
 		try {
 			if (selectChain.select(candidate, ExplorationStep.this)) {
 				TransactionsIterable support = dataset.getSupport(candidate);
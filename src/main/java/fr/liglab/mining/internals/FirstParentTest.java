@@ -18,6 +18,8 @@ package fr.liglab.mining.internals;
 
 import fr.liglab.mining.CountersHandler;
 import fr.liglab.mining.CountersHandler.TopPICounters;
+import fr.liglab.mining.HistogramsHandler;
+import fr.liglab.mining.HistogramsHandler.TopPIPhases;
 import fr.liglab.mining.internals.tidlist.TidList;
 import gnu.trove.iterator.TIntIterator;
 
@@ -83,7 +85,15 @@ public final class FirstParentTest extends Selector {
 	 */
 	@Override
 	protected boolean allowExploration(int extension, ExplorationStep state) throws WrongFirstParentException {
+		final long started = HistogramsHandler.start();
+		try {
+			return this.checkFirstParent(extension, state);
+		} finally {
+			HistogramsHandler.stop(TopPIPhases.FirstParentTest, started);
+		}
+	}
 
+	private boolean checkFirstParent(int extension, ExplorationStep state) throws WrongFirstParentException {
 		if (state.dataset instanceof DatasetView) {
 			throw new IllegalArgumentException("FPtest can only be done on Dataset");
 		}
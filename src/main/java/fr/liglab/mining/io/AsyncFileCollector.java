@@ -0,0 +1,304 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A thread-safe PatternsCollector writing to a single file. Each producer
+ * thread formats patterns into its own buffer ; full buffers are handed to a
+ * dedicated writer thread, which recycles them through a bounded ring of
+ * direct buffers. So producers only wait when the whole ring is waiting for
+ * the disk.
+ *
+ * Patterns are never split among buffers, and each producer's buffers are
+ * written in the order they were filled : patterns from a given thread are
+ * outputted in their collection order.
+ *
+ * If writing fails, the writer thread stops and the failure is re-thrown, as
+ * an unchecked exception, by collect() or close() calls in all threads.
+ */
+public class AsyncFileCollector implements PatternsCollector {
+
+	public static final String KEY_BUFFER_SIZE = "toppi.output.buffer";
+
+	/**
+	 * in bytes
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = Integer.parseInt(System.getProperty(KEY_BUFFER_SIZE,
+			Integer.toString(1024 * 1024)));
+
+	/**
+	 * How many spare buffers may be in flight, in addition to producers' ones
+	 */
+	public static final int DEFAULT_RING_SIZE = 4;
+
+	/**
+	 * Once enqueued, tells the writer thread to terminate
+	 */
+	private static final ByteBuffer POISON = ByteBuffer.allocate(0);
+
+	/**
+	 * in milliseconds, how often waiting threads check for writer's failure
+	 */
+	private static final long WAIT_PERIOD = 100;
+
+	private final int bufferSize;
+	private final FileOutputStream stream;
+	private final FileChannel channel;
+	private final BlockingQueue<ByteBuffer> freeBuffers;
+	private final BlockingQueue<ByteBuffer> fullBuffers;
+	private final ConcurrentHashMap<Thread, Producer> producers;
+	private final Writer writer;
+
+	/**
+	 * set by the writer thread when it stops because of an exception
+	 */
+	private volatile Throwable failure = null;
+
+	public AsyncFileCollector(final String path) throws IOException {
+		this(path, DEFAULT_BUFFER_SIZE, DEFAULT_RING_SIZE);
+	}
+
+	/**
+	 * @param bufferSize
+	 *            in bytes
+	 * @param ringSize
+	 *            how many buffers may be waiting for the disk before producers
+	 *            have to wait too
+	 */
+	public AsyncFileCollector(final String path, final int bufferSize, final int ringSize) throws IOException {
+		File file = new File(path);
+		if (file.exists()) {
+			System.err.println("Warning : overwriting output file " + path);
+		}
+
+		this.bufferSize = bufferSize;
+		this.stream = new FileOutputStream(file, false);
+		this.channel = this.stream.getChannel();
+		this.producers = new ConcurrentHashMap<Thread, Producer>();
+
+		this.freeBuffers = new ArrayBlockingQueue<ByteBuffer>(ringSize);
+		for (int i = 0; i < ringSize; i++) {
+			this.freeBuffers.add(ByteBuffer.allocateDirect(bufferSize));
+		}
+
+		// unbounded, but there can't be more buffers than producers + ringSize
+		this.fullBuffers = new LinkedBlockingQueue<ByteBuffer>();
+
+		this.writer = new Writer();
+		this.writer.start();
+	}
+
+	@Override
+	public void collect(final int support, final int[] pattern) {
+		final Thread current = Thread.currentThread();
+		Producer producer = this.producers.get(current);
+		if (producer == null) {
+			producer = new Producer();
+			this.producers.put(current, producer);
+		}
+		producer.collect(support, pattern);
+	}
+
+	/**
+	 * Must be called once all producers are done
+	 */
+	@Override
+	public long close() {
+		try {
+			for (Producer producer : this.producers.values()) {
+				producer.flush();
+			}
+
+			this.fullBuffers.put(POISON);
+			while (this.writer.isAlive()) {
+				this.writer.join(WAIT_PERIOD);
+			}
+			this.checkFailure();
+		} catch (InterruptedException e) {
+			e.printStackTrace(System.err);
+			throw new RuntimeException(e);
+		} finally {
+			try {
+				this.channel.close();
+				this.stream.close();
+			} catch (IOException e) {
+				e.printStackTrace(System.err);
+			}
+		}
+
+		return this.getCollected();
+	}
+
+	private void checkFailure() {
+		if (this.failure != null) {
+			throw new RuntimeException("AsyncFileCollector failed to write patterns", this.failure);
+		}
+	}
+
+	@Override
+	public int getAveragePatternLength() {
+		final long collected = this.getCollected();
+		if (collected == 0) {
+			return 0;
+		} else {
+			return (int) (this.getCollectedLength() / collected);
+		}
+	}
+
+	@Override
+	public long getCollected() {
+		long collected = 0;
+		for (Producer producer : this.producers.values()) {
+			collected += producer.collected;
+		}
+		return collected;
+	}
+
+	@Override
+	public long getCollectedLength() {
+		long collectedLength = 0;
+		for (Producer producer : this.producers.values()) {
+			collectedLength += producer.collectedLength;
+		}
+		return collectedLength;
+	}
+
+	/**
+	 * Per-thread formatting state
+	 */
+	private final class Producer {
+		private final byte[] digits = new byte[FileCollector.MAX_INT_LENGTH];
+		private ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+		private long collected = 0;
+		private long collectedLength = 0;
+
+		void collect(final int support, final int[] pattern) {
+			// each int may be followed by a separator
+			final int maxLength = (pattern.length + 1) * (FileCollector.MAX_INT_LENGTH + 1);
+
+			if (this.buffer.remaining() < maxLength) {
+				this.flush();
+				if (maxLength > bufferSize) {
+					// this one will be written alone and won't be recycled
+					this.buffer = ByteBuffer.allocate(maxLength);
+				}
+			}
+
+			FileCollector.putInt(this.buffer, this.digits, support);
+			this.buffer.put((byte) '\t');
+			boolean addSeparator = false;
+			for (int item : pattern) {
+				if (addSeparator) {
+					this.buffer.put((byte) ' ');
+				} else {
+					addSeparator = true;
+				}
+				FileCollector.putInt(this.buffer, this.digits, item);
+			}
+			this.buffer.put((byte) '\n');
+
+			this.collected++;
+			this.collectedLength += pattern.length;
+		}
+
+		/**
+		 * hands the current buffer to the writer and picks a free one
+		 */
+		void flush() {
+			checkFailure();
+			if (this.buffer.position() > 0) {
+				try {
+					this.buffer.flip();
+					fullBuffers.put(this.buffer);
+
+					ByteBuffer free = null;
+					while (free == null) {
+						free = freeBuffers.poll(WAIT_PERIOD, TimeUnit.MILLISECONDS);
+						if (free == POISON) {
+							// the writer failed : wake up other producers too
+							freeBuffers.offer(POISON);
+							free = null;
+						}
+						checkFailure();
+					}
+					this.buffer = free;
+				} catch (InterruptedException e) {
+					e.printStackTrace(System.err);
+					throw new RuntimeException(e);
+				}
+			}
+		}
+	}
+
+	private final class Writer extends Thread {
+
+		Writer() {
+			super("AsyncFileCollector writer");
+			this.setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				ByteBuffer full = fullBuffers.take();
+
+				while (full != POISON) {
+					while (full.hasRemaining()) {
+						channel.write(full);
+					}
+
+					if (full.isDirect() && full.capacity() == bufferSize) {
+						full.clear();
+						freeBuffers.put(full);
+					} else {
+						// an oversized pattern's buffer : let the producer
+						// that gave it get a recycled one
+						freeBuffers.put(ByteBuffer.allocateDirect(bufferSize));
+					}
+
+					full = fullBuffers.take();
+				}
+			} catch (InterruptedException e) {
+				this.fail(e);
+			} catch (IOException e) {
+				this.fail(e);
+			} catch (RuntimeException e) {
+				this.fail(e);
+			}
+		}
+
+		/**
+		 * Drops pending buffers and wakes up producers waiting for a free one
+		 */
+		private void fail(Throwable e) {
+			failure = e;
+			fullBuffers.clear();
+			freeBuffers.offer(POISON);
+		}
+	}
+}
@@ -33,6 +33,11 @@ public class FileCollector implements PatternsCollector {
 	
 	// this should be profiled and tuned !
 	protected static final int BUFFER_CAPACITY = 4096;
+
+	/**
+	 * "-2147483648" is the longest int once printed
+	 */
+	static final int MAX_INT_LENGTH = 11;
 	
 	protected long collected = 0;
 	protected long collectedLength = 0;
@@ -40,8 +45,17 @@ public class FileCollector implements PatternsCollector {
 	protected FileChannel channel;
 	protected ByteBuffer buffer;
 	protected static final Charset charset = Charset.forName("ASCII");
+
+	/**
+	 * putInt's scratch space, so it doesn't allocate anything
+	 */
+	private final byte[] digits = new byte[MAX_INT_LENGTH];
 	
 	public FileCollector(final String path) throws IOException {
+		this(path, BUFFER_CAPACITY);
+	}
+
+	public FileCollector(final String path, final int bufferCapacity) throws IOException {
 		File file = new File(path);
 		
 		if (file.exists()) {
@@ -51,7 +65,7 @@ public class FileCollector implements PatternsCollector {
 		stream = new FileOutputStream(file, false);
 		channel = stream.getChannel();
 		
-		buffer = ByteBuffer.allocateDirect(BUFFER_CAPACITY);
+		buffer = ByteBuffer.allocateDirect(bufferCapacity);
 		buffer.clear();
 	}
 	
@@ -80,13 +94,35 @@ public class FileCollector implements PatternsCollector {
 	}
 	
 	protected final void putInt(final int i) {
-		try {
-			byte[] asBytes = Integer.toString(i).getBytes(charset);
-			buffer.put(asBytes);
-		} catch (BufferOverflowException e) {
+		if (buffer.remaining() < MAX_INT_LENGTH) {
 			flush();
-			putInt(i);
 		}
+		putInt(buffer, digits, i);
+	}
+
+	/**
+	 * Appends i's ASCII representation to target, which must have at least
+	 * MAX_INT_LENGTH bytes remaining.
+	 * 
+	 * @param scratch
+	 *            an array of MAX_INT_LENGTH bytes, so we don't allocate anything
+	 */
+	static void putInt(final ByteBuffer target, final byte[] scratch, final int i) {
+		// digits are written backwards, from the end of our scratch array
+		int pos = MAX_INT_LENGTH;
+		long remaining = i;
+		if (remaining < 0) {
+			remaining = -remaining;
+		}
+		do {
+			scratch[--pos] = (byte) ('0' + (remaining % 10));
+			remaining /= 10;
+		} while (remaining > 0);
+		if (i < 0) {
+			scratch[--pos] = (byte) '-';
+		}
+
+		target.put(scratch, pos, MAX_INT_LENGTH - pos);
 	}
 	
 	protected final void safePut(final byte b) {
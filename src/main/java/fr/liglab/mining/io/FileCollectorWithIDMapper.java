@@ -27,6 +27,12 @@ public class FileCollectorWithIDMapper extends FileCollector {
 		super(path);
 		this.map = itemIDmap;
 	}
+
+	public FileCollectorWithIDMapper(String path, int bufferCapacity, Map<Integer, String> itemIDmap)
+			throws IOException {
+		super(path, bufferCapacity);
+		this.map = itemIDmap;
+	}
 	
 	@Override
 	protected void putItem(int i) {
@@ -0,0 +1,257 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import fr.liglab.mining.io.PerItemTopKCollector.PatternWithFreq;
+
+/**
+ * Answers per-item queries on a file written by PerItemTopKtoIndexCollector.
+ * The file is memory-mapped, so only the pages involved in a query are read.
+ * 
+ * Instances are thread-safe, as they only use absolute reads.
+ */
+public final class IndexedResultsReader implements Closeable {
+
+	/**
+	 * files are mapped in 1GB segments
+	 */
+	private static final int SEGMENT_SHIFT = 30;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer[] segments;
+
+	private final int k;
+	private final int nbItems;
+	private final long nbPatterns;
+	private final int maxPatternBytes;
+	private final long indexOffset;
+
+	public IndexedResultsReader(final String path) throws IOException {
+		this.file = new RandomAccessFile(path, "r");
+		final FileChannel channel = this.file.getChannel();
+		final long size = channel.size();
+
+		if (size < PerItemTopKtoIndexCollector.HEADER_SIZE + PerItemTopKtoIndexCollector.TRAILER_SIZE) {
+			this.file.close();
+			throw new IOException(path + " is too short to be a TopPI index");
+		}
+
+		this.segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+		for (int i = 0; i < this.segments.length; i++) {
+			final long start = ((long) i) << SEGMENT_SHIFT;
+			this.segments[i] = channel.map(MapMode.READ_ONLY, start, Math.min(SEGMENT_MASK + 1, size - start));
+		}
+
+		final long trailer = size - PerItemTopKtoIndexCollector.TRAILER_SIZE;
+		if (this.readInt(0) != PerItemTopKtoIndexCollector.MAGIC
+				|| this.readInt(trailer + 24) != PerItemTopKtoIndexCollector.MAGIC) {
+			this.file.close();
+			throw new IOException(path + " is not a TopPI index");
+		}
+		if (this.readInt(4) != PerItemTopKtoIndexCollector.VERSION) {
+			this.file.close();
+			throw new IOException(path + " has an unsupported version : " + this.readInt(4));
+		}
+
+		this.k = this.readInt(8);
+		this.nbItems = this.readInt(trailer);
+		this.nbPatterns = this.readLong(trailer + 4);
+		this.maxPatternBytes = this.readInt(trailer + 12);
+		this.indexOffset = this.readLong(trailer + 16);
+	}
+
+	public int getK() {
+		return this.k;
+	}
+
+	public int getNbItems() {
+		return this.nbItems;
+	}
+
+	/**
+	 * @return distinct patterns count
+	 */
+	public long getNbPatterns() {
+		return this.nbPatterns;
+	}
+
+	/**
+	 * @return size of the largest encoded pattern, in bytes
+	 */
+	public int getMaxPatternBytes() {
+		return this.maxPatternBytes;
+	}
+
+	/**
+	 * @return all indexed items, in ascending order
+	 */
+	public int[] getItems() {
+		int[] items = new int[this.nbItems];
+		for (int i = 0; i < this.nbItems; i++) {
+			items[i] = this.readInt(this.entryOffset(i));
+		}
+		return items;
+	}
+
+	public boolean contains(final int item) {
+		return this.findEntry(item) >= 0;
+	}
+
+	/**
+	 * @return how many patterns are stored for this item (0 if it's unknown)
+	 */
+	public int getNbPatterns(final int item) {
+		final int entry = this.findEntry(item);
+		if (entry < 0) {
+			return 0;
+		} else {
+			return this.readInt(this.entryOffset(entry) + 4);
+		}
+	}
+
+	/**
+	 * @return item's top-K patterns, by decreasing support, or an empty array
+	 *         if the item is unknown
+	 */
+	public PatternWithFreq[] getTopK(final int item) {
+		final int entry = this.findEntry(item);
+		if (entry < 0) {
+			return new PatternWithFreq[0];
+		}
+
+		final long entryOffset = this.entryOffset(entry);
+		final int count = this.readInt(entryOffset + 4);
+		final long references = this.readLong(entryOffset + 8);
+
+		final PatternWithFreq[] patterns = new PatternWithFreq[count];
+		for (int i = 0; i < count; i++) {
+			patterns[i] = this.readPattern(this.readLong(references + 8L * i));
+		}
+		return patterns;
+	}
+
+	/**
+	 * @return item's name if the index was written with an ID map, null
+	 *         otherwise
+	 */
+	public String getName(final int item) {
+		final int entry = this.findEntry(item);
+		if (entry < 0) {
+			return null;
+		}
+
+		long position = this.readLong(this.entryOffset(entry) + 16);
+		if (position < 0) {
+			return null;
+		}
+
+		final int length = this.readVarInt(position);
+		position += PerItemTopKtoIndexCollector.varIntLength(length);
+		final byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = this.readByte(position + i);
+		}
+		return new String(bytes, PerItemTopKtoIndexCollector.UTF8);
+	}
+
+	/**
+	 * Buffers can't be unmapped explicitly : they will be once garbage
+	 * collected.
+	 */
+	@Override
+	public void close() throws IOException {
+		this.file.close();
+	}
+
+	private long entryOffset(final int entry) {
+		return this.indexOffset + ((long) entry) * PerItemTopKtoIndexCollector.ENTRY_SIZE;
+	}
+
+	/**
+	 * @return entry's index, or -1
+	 */
+	private int findEntry(final int item) {
+		int low = 0;
+		int high = this.nbItems - 1;
+
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final int midItem = this.readInt(this.entryOffset(mid));
+			if (midItem < item) {
+				low = mid + 1;
+			} else if (midItem > item) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+
+		return -1;
+	}
+
+	private PatternWithFreq readPattern(long position) {
+		final int support = this.readVarInt(position);
+		position += PerItemTopKtoIndexCollector.varIntLength(support);
+		final int length = this.readVarInt(position);
+		position += PerItemTopKtoIndexCollector.varIntLength(length);
+
+		final int[] pattern = new int[length];
+		int previous = 0;
+		for (int i = 0; i < length; i++) {
+			final int delta = this.readVarInt(position);
+			position += PerItemTopKtoIndexCollector.varIntLength(delta);
+			previous += delta;
+			pattern[i] = previous;
+		}
+
+		return new PatternWithFreq(support, pattern);
+	}
+
+	private byte readByte(final long position) {
+		return this.segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK));
+	}
+
+	private int readInt(final long position) {
+		return ((this.readByte(position) & 0xFF) << 24) | ((this.readByte(position + 1) & 0xFF) << 16)
+				| ((this.readByte(position + 2) & 0xFF) << 8) | (this.readByte(position + 3) & 0xFF);
+	}
+
+	private long readLong(final long position) {
+		return (((long) this.readInt(position)) << 32) | (this.readInt(position + 4) & 0xFFFFFFFFL);
+	}
+
+	private int readVarInt(long position) {
+		int value = 0;
+		int shift = 0;
+		byte b = this.readByte(position);
+		while ((b & 0x80) != 0) {
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+			position++;
+			b = this.readByte(position);
+		}
+		return value | (b << shift);
+	}
+}
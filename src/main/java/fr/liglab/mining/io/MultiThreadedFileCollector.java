@@ -17,31 +17,55 @@
 package fr.liglab.mining.io;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A thread safe PatternsCollector that will write to multiple files, one per mining thread.
+ * 
+ * @see AsyncFileCollector if you'd rather have a single file
  */
 public class MultiThreadedFileCollector implements PatternsCollector {
 	
 	private final FileCollector[] collectors;
 	
+	/**
+	 * Each collecting thread is given a slot in "collectors" at its first call
+	 */
+	private final ConcurrentHashMap<Thread, FileCollector> assigned;
+	private final AtomicInteger nextSlot = new AtomicInteger(0);
+	
 	/**
 	 * @param prefix
-	 * 			filename prefix for pattern files, each thread will append [ThreadID].dat
-	 * @param maxId
-	 * 			higer bound on thread's getId()
+	 * 			filename prefix for pattern files, each thread will append [slot].dat
+	 * @param maxThreads
+	 * 			how many distinct threads may collect patterns
 	 * @throws IOException
 	 */
-	public MultiThreadedFileCollector(final String prefix, final int maxId) throws IOException {
-		this.collectors = new FileCollector[maxId];
-		for (int i = 0; i < maxId; i++) {
+	public MultiThreadedFileCollector(final String prefix, final int maxThreads) throws IOException {
+		this.collectors = new FileCollector[maxThreads];
+		this.assigned = new ConcurrentHashMap<Thread, FileCollector>(maxThreads);
+		for (int i = 0; i < maxThreads; i++) {
 			this.collectors[i] = new FileCollector(prefix + i + ".dat");
 		}
 	}
 	
 	@Override
 	public void collect(int support, int[] pattern) {
-		this.collectors[(int) Thread.currentThread().getId()].collect(support, pattern);
+		final Thread current = Thread.currentThread();
+		FileCollector collector = this.assigned.get(current);
+		
+		if (collector == null) {
+			final int slot = this.nextSlot.getAndIncrement();
+			if (slot >= this.collectors.length) {
+				throw new IllegalStateException("MultiThreadedFileCollector was instantiated for "
+						+ this.collectors.length + " threads, but more are collecting patterns");
+			}
+			collector = this.collectors[slot];
+			this.assigned.put(current, collector);
+		}
+		
+		collector.collect(support, pattern);
 	}
 
 	@Override
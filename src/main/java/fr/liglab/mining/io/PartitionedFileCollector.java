@@ -0,0 +1,166 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+
+/**
+ * Writes patterns to a set of partition files, each one handled by its own
+ * FileCollector, so they can be filled by different threads. PerItemTopKCollector
+ * detects it and writes its results in parallel when closing.
+ *
+ * Partition files are named [path].part[i]. Unless keepPartitions is set, they
+ * will be concatenated to the given path (and deleted) by close().
+ *
+ * Calling collect() directly on this collector (not thread-safe) writes to the
+ * first partition.
+ */
+public class PartitionedFileCollector implements PatternsCollector {
+
+	/**
+	 * Partitions are written in big chunks, as each may be filled at full
+	 * speed by its own thread
+	 */
+	protected static final int PARTITION_BUFFER_CAPACITY = 1024 * 1024;
+
+	private final String path;
+	private final FileCollector[] partitions;
+	private final boolean keepPartitions;
+
+	/**
+	 * @param itemIDmap
+	 *            may be null
+	 */
+	public PartitionedFileCollector(final String path, final int nbPartitions, final Map<Integer, String> itemIDmap,
+			final boolean keepPartitions) throws IOException {
+		if (nbPartitions < 1) {
+			throw new IllegalArgumentException("nbPartitions has to be > 0, given " + nbPartitions);
+		}
+
+		this.path = path;
+		this.keepPartitions = keepPartitions;
+		this.partitions = new FileCollector[nbPartitions];
+		for (int i = 0; i < nbPartitions; i++) {
+			if (itemIDmap == null) {
+				this.partitions[i] = new FileCollector(getPartitionPath(i), PARTITION_BUFFER_CAPACITY);
+			} else {
+				this.partitions[i] = new FileCollectorWithIDMapper(getPartitionPath(i), PARTITION_BUFFER_CAPACITY,
+						itemIDmap);
+			}
+		}
+	}
+
+	public final String getPartitionPath(final int i) {
+		return this.path + ".part" + i;
+	}
+
+	public final int getNbPartitions() {
+		return this.partitions.length;
+	}
+
+	/**
+	 * Each partition should be filled by a single thread at a time
+	 */
+	public final PatternsCollector getPartition(final int i) {
+		return this.partitions[i];
+	}
+
+	@Override
+	public void collect(int support, int[] pattern) {
+		this.partitions[0].collect(support, pattern);
+	}
+
+	@Override
+	public long close() {
+		long total = 0;
+		for (FileCollector partition : this.partitions) {
+			total += partition.close();
+		}
+
+		if (!this.keepPartitions) {
+			try {
+				this.concatenatePartitions();
+			} catch (IOException e) {
+				e.printStackTrace(System.err);
+			}
+		}
+
+		return total;
+	}
+
+	private void concatenatePartitions() throws IOException {
+		File file = new File(this.path);
+		if (file.exists()) {
+			System.err.println("Warning : overwriting output file " + this.path);
+		}
+
+		FileOutputStream stream = new FileOutputStream(file, false);
+		FileChannel output = stream.getChannel();
+
+		for (int i = 0; i < this.partitions.length; i++) {
+			File partitionFile = new File(getPartitionPath(i));
+			FileInputStream input = new FileInputStream(partitionFile);
+			FileChannel channel = input.getChannel();
+
+			long position = 0;
+			final long size = channel.size();
+			while (position < size) {
+				position += channel.transferTo(position, size - position, output);
+			}
+
+			channel.close();
+			input.close();
+			partitionFile.delete();
+		}
+
+		output.close();
+		stream.close();
+	}
+
+	@Override
+	public int getAveragePatternLength() {
+		final long nbPatterns = this.getCollected();
+		if (nbPatterns == 0) {
+			return 0;
+		} else {
+			return (int) (this.getCollectedLength() / nbPatterns);
+		}
+	}
+
+	@Override
+	public long getCollected() {
+		long nbPatterns = 0;
+		for (FileCollector collector : this.partitions) {
+			nbPatterns += collector.getCollected();
+		}
+		return nbPatterns;
+	}
+
+	@Override
+	public long getCollectedLength() {
+		long totalLen = 0;
+		for (FileCollector collector : this.partitions) {
+			totalLen += collector.getCollectedLength();
+		}
+		return totalLen;
+	}
+}
@@ -0,0 +1,201 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.io;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import fr.liglab.hyptest.InterestingnessRanker;
+import fr.liglab.mining.internals.Counters;
+import fr.liglab.mining.internals.Dataset;
+import fr.liglab.mining.io.PerItemTopKCollector.PatternWithFreq;
+import gnu.trove.impl.Constants;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+/**
+ * Per-item top-K of closed patterns, ranked by an InterestingnessRanker - see
+ * PerItemTopKCollector.setRanker
+ */
+final class PerItemRankedTopK {
+
+	private final InterestingnessRanker ranker;
+	private final int k;
+	private final int nbTransactions;
+
+	/**
+	 * original item ID => support count, including items of the root closure
+	 */
+	private final TIntIntMap supports;
+
+	/**
+	 * original item ID => root dataset's ID, -1 for items of the root closure
+	 * (found in all transactions), that have no ID there
+	 */
+	private final TIntIntMap renaming;
+
+	/**
+	 * counts supports of patterns without the ranked item, if the ranker
+	 * needs them
+	 */
+	private final Dataset rootDataset;
+
+	private final TIntObjectMap<RankedPattern[]> topK;
+
+	/**
+	 * item => support count under which patterns can't enter its top-K,
+	 * MAX_VALUE for unknown items
+	 */
+	private final AtomicIntegerArray bounds;
+
+	PerItemRankedTopK(final InterestingnessRanker ranker, final int k, final Counters rootCounters,
+			final Dataset rootDataset, final int[] collectedItems, final int boundsLength) {
+		this.ranker = ranker;
+		this.k = k;
+		this.nbTransactions = rootCounters.getTransactionsCount();
+		this.rootDataset = rootDataset;
+
+		final int[] reverseRenaming = rootCounters.getReverseRenaming();
+		this.supports = new TIntIntHashMap(reverseRenaming.length);
+		this.renaming = new TIntIntHashMap(reverseRenaming.length, Constants.DEFAULT_LOAD_FACTOR, -1, -1);
+		for (int i = 0; i < reverseRenaming.length; i++) {
+			this.supports.put(reverseRenaming[i], rootCounters.getSupportCount(i));
+			this.renaming.put(reverseRenaming[i], i);
+		}
+		for (int item : rootCounters.getClosure()) {
+			this.supports.put(item, this.nbTransactions);
+			this.renaming.put(item, -1);
+		}
+
+		this.topK = new TIntObjectHashMap<RankedPattern[]>(collectedItems.length);
+		this.bounds = new AtomicIntegerArray(boundsLength);
+		for (int i = 0; i < boundsLength; i++) {
+			this.bounds.set(i, Integer.MAX_VALUE);
+		}
+		for (int item : collectedItems) {
+			this.topK.put(item, new RankedPattern[k]);
+			this.bounds.set(item, -1);
+		}
+	}
+
+	int getBound(final int item) {
+		return this.bounds.get(item);
+	}
+
+	/**
+	 * @param p
+	 *            a closed pattern, containing item
+	 */
+	void offer(final PatternWithFreq p, final int item) {
+		final RankedPattern[] itemTopK = this.topK.get(item);
+		if (itemTopK == null) {
+			return;
+		}
+
+		final int itemSupport = this.supports.get(item);
+		int maxOther = 0;
+		for (int other : p.getPattern()) {
+			if (other != item) {
+				maxOther = Math.max(maxOther, this.supports.get(other));
+			}
+		}
+		final int otherSupport = this.ranker.needsOtherSupport() ? this.countSupportWithout(p.getPattern(), item)
+				: -1;
+
+		final double score = this.ranker.score(p.getSupportCount(), itemSupport, otherSupport, maxOther,
+				this.nbTransactions);
+
+		synchronized (itemTopK) {
+			final RankedPattern last = itemTopK[this.k - 1];
+			if (last != null && score <= last.score) {
+				return;
+			}
+
+			int pos = this.k - 1;
+			while (pos > 0 && (itemTopK[pos - 1] == null || itemTopK[pos - 1].score < score)) {
+				pos--;
+			}
+
+			// a closed pattern may be collected twice
+			for (int i = pos - 1; i >= 0 && itemTopK[i].score == score; i--) {
+				if (Arrays.equals(itemTopK[i].pattern.getPattern(), p.getPattern())) {
+					return;
+				}
+			}
+
+			System.arraycopy(itemTopK, pos, itemTopK, pos + 1, this.k - pos - 1);
+			itemTopK[pos] = new RankedPattern(score, p);
+
+			if (itemTopK[this.k - 1] != null) {
+				this.bounds.set(item, this.ranker.getSupportBound(itemTopK[this.k - 1].score, itemSupport));
+			}
+		}
+	}
+
+	/**
+	 * @return support count of pattern \ {without}, from the root dataset
+	 *         (where root closure's items don't change supports)
+	 */
+	private int countSupportWithout(final int[] pattern, final int without) {
+		int[] others = new int[pattern.length - 1];
+		int i = 0;
+		for (int item : pattern) {
+			if (item != without) {
+				final int rootItem = this.renaming.get(item);
+				if (rootItem != -1) {
+					others[i++] = rootItem;
+				}
+			}
+		}
+		if (i == 0) {
+			return this.nbTransactions;
+		}
+		if (i < others.length) {
+			others = Arrays.copyOf(others, i);
+		}
+		return this.rootDataset.countSupport(others);
+	}
+
+	/**
+	 * @return number of outputted patterns
+	 */
+	long outputAll(final PatternsCollector output) {
+		long nbPatterns = 0;
+		for (int item : this.topK.keys()) {
+			for (RankedPattern ranked : this.topK.get(item)) {
+				if (ranked == null) {
+					break;
+				}
+				output.collect(ranked.pattern.getSupportCount(), ranked.pattern.getPattern());
+				nbPatterns++;
+			}
+		}
+		return nbPatterns;
+	}
+
+	private static final class RankedPattern {
+		final double score;
+		final PatternWithFreq pattern;
+
+		RankedPattern(double score, PatternWithFreq pattern) {
+			this.score = score;
+			this.pattern = pattern;
+		}
+	}
+}
@@ -16,13 +16,17 @@
 */
 package fr.liglab.mining.io;
 
+import fr.liglab.hyptest.InterestingnessRanker;
 import fr.liglab.mining.CountersHandler;
 import fr.liglab.mining.CountersHandler.TopPICounters;
+import fr.liglab.mining.HistogramsHandler;
+import fr.liglab.mining.HistogramsHandler.TopPIPhases;
 import fr.liglab.mining.internals.ExplorationStep;
 import fr.liglab.mining.internals.FrequentsIterator;
 import fr.liglab.mining.internals.FrequentsIteratorRenamer;
 import fr.liglab.mining.internals.Selector;
 import fr.liglab.mining.internals.TransactionReader;
+import gnu.trove.iterator.TIntIntIterator;
 import gnu.trove.iterator.TIntObjectIterator;
 import gnu.trove.map.TIntIntMap;
 import gnu.trove.map.TIntObjectMap;
@@ -30,9 +34,18 @@ import gnu.trove.map.hash.TIntIntHashMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
 import gnu.trove.procedure.TIntObjectProcedure;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * For a custom use of the results, extend this class and browse the topK field.
@@ -51,6 +64,15 @@ public class PerItemTopKCollector implements PatternsCollector {
 	protected final int k;
 	protected final TIntObjectMap<PatternWithFreq[]> topK;
 
+	/**
+	 * Dense table of getBound's results, indexed by item ID : -1 while the
+	 * item's top-K is not full, Integer.MAX_VALUE for items we don't collect.
+	 * Values only grow, and are only written while holding the corresponding
+	 * top-K array's lock, so pruning lookups are a single volatile read and
+	 * the topK map is only touched at insertion time.
+	 */
+	private final AtomicIntegerArray bounds;
+
 	/**
 	 * When set to true, instead of outputting each item's top-k-patterns the
 	 * program will only give a single (fake) pattern per frequent item : the
@@ -61,6 +83,15 @@ public class PerItemTopKCollector implements PatternsCollector {
 
 	protected boolean outputUniqueOnly;
 
+	/**
+	 * When provided (see setPerItemIDsOutput), each distinct pattern is given
+	 * once to the decorated collector, its ID being its rank in this output
+	 * (starting at 0). Then for each item this collector receives a fake
+	 * pattern : its support is the item ID and its items are the IDs of the
+	 * item's top-K patterns, by decreasing support.
+	 */
+	protected PatternsCollector perItemIDsOutput = null;
+
 	/**
 	 * when provided (through readPerItemKFrom() ) the collector, before closing
 	 * and outputting collected patterns, will read the given file and restrict
@@ -68,6 +99,39 @@ public class PerItemTopKCollector implements PatternsCollector {
 	 * input files) and should give, per line : ITEM_ID NB_PATTERNS_TO_KEEP
 	 */
 	protected String pathToPerItemK = null;
+
+	/**
+	 * When set to true (see setIncrementalOutput) items' top-K are given to
+	 * the decorated collector, and emptied, as soon as the miner tells us no
+	 * remaining starter can improve them. Released items' bounds remain
+	 * valid, both for pruning and in getTopKBounds.
+	 */
+	protected boolean incrementalOutput = false;
+
+	/**
+	 * releaseFinalized won't do anything unless the given support dropped
+	 * below this ratio of the latest one it handled
+	 */
+	private static final double RELEASE_SUPPORT_RATIO = 0.9;
+
+	/**
+	 * guards pendingItems and calls to decorated.collect() until close()
+	 */
+	private final ReentrantLock releaseLock = new ReentrantLock();
+	private volatile int lastReleaseSupport = Integer.MAX_VALUE;
+	private int[] pendingItems = null;
+	private int nbPendingItems = 0;
+
+	/**
+	 * released items' final bounds, as getTopKBounds would have given them
+	 * before their top-K was emptied - also guarded by releaseLock
+	 */
+	private final TIntIntMap releasedBounds = new TIntIntHashMap();
+
+	/**
+	 * per-item top-K on an interestingness measure, see setRanker
+	 */
+	private PerItemRankedTopK ranked = null;
 	
 	/**
 	 * This is the recommended constructor when using TopPI as a library.
@@ -90,6 +154,8 @@ public class PerItemTopKCollector implements PatternsCollector {
 			this.topK.put(item, new PatternWithFreq[k]);
 		}
 
+		this.bounds = newBoundsTable(this.topK.keys());
+
 		initState.appendSelector(this.asSelector());
 	}
 
@@ -102,6 +168,33 @@ public class PerItemTopKCollector implements PatternsCollector {
 		for (int item = items.next(); item != -1; item = items.next()) {
 			this.topK.put(item, new PatternWithFreq[k]);
 		}
+		this.bounds = newBoundsTable(this.topK.keys());
+	}
+
+	/**
+	 * The table is indexed by the IDs collected patterns use, that is original
+	 * item IDs in standalone mode and rebased IDs in the Hadoop variant, rather
+	 * than by the root dataset's IDs : getBound and isCollected are called with
+	 * these IDs by the Counters, the selectors and the Hadoop collectors, so no
+	 * translation is needed on the hot path. In standalone mode this costs an
+	 * array as long as the greatest collected original ID. Greater or negative
+	 * IDs are never collected, so getBound answers Integer.MAX_VALUE for them,
+	 * as it does for the table's other non-collected items.
+	 */
+	private static AtomicIntegerArray newBoundsTable(final int[] collectedItems) {
+		int maxItem = -1;
+		for (int item : collectedItems) {
+			maxItem = Math.max(maxItem, item);
+		}
+
+		AtomicIntegerArray table = new AtomicIntegerArray(maxItem + 1);
+		for (int i = 0; i <= maxItem; i++) {
+			table.set(i, Integer.MAX_VALUE);
+		}
+		for (int item : collectedItems) {
+			table.set(item, -1);
+		}
+		return table;
 	}
 
 	public final void collect(final int support, final int[] pattern) {
@@ -109,10 +202,27 @@ public class PerItemTopKCollector implements PatternsCollector {
 	}
 
 	public final void collect(final int support, final int[] pattern, boolean closed) {
+		final long started = HistogramsHandler.start();
 		PatternWithFreq p = new PatternWithFreq(support, pattern, closed);
 		for (final int item : pattern) {
 			insertPatternInTop(p, item);
 		}
+		if (this.ranked != null && closed && pattern.length > 1) {
+			for (final int item : pattern) {
+				this.ranked.offer(p, item);
+			}
+		}
+		HistogramsHandler.stop(TopPIPhases.Collect, started);
+	}
+
+	/**
+	 * Lock-free pre-check : false if the item is unknown or if its top-K is
+	 * already full of patterns more frequent than the given support. The
+	 * bound may be the K-th support plus one, hence the tolerance.
+	 */
+	private boolean mayAdmit(final int support, final int item) {
+		final int bound = this.getBound(item);
+		return bound != Integer.MAX_VALUE && support >= bound - 1;
 	}
 
 	public final int collectUnclosedForItem(final int support, final int[] parentPattern, final int item) {
@@ -135,20 +245,36 @@ public class PerItemTopKCollector implements PatternsCollector {
 	 * @return true if the insertion actually happened
 	 */
 	public final boolean insertPatternInTop(PatternWithFreq entry, int item) {
+		if (!mayAdmit(entry.getSupportCount(), item)) {
+			return false;
+		}
+
 		PatternWithFreq[] itemTopK = this.topK.get(item);
 
-		if (itemTopK != null) {
-			synchronized (itemTopK) {
-				if (updateTop(entry, itemTopK, item)) {
-					entry.incrementRefCount(1);
-					return true;
-				} else {
-					return false;
-				}
+		synchronized (itemTopK) {
+			if (updateTop(entry, itemTopK, item)) {
+				entry.incrementRefCount(1);
+				publishBound(item, itemTopK);
+				return true;
+			} else {
+				return false;
 			}
 		}
+	}
 
-		return false;
+	/**
+	 * Should be called while holding itemTopK's lock, after any modification
+	 * of its K-th slot.
+	 */
+	protected final void publishBound(final int item, final PatternWithFreq[] itemTopK) {
+		PatternWithFreq last = itemTopK[this.k - 1];
+		if (last != null) {
+			if (last.isClosed()) {
+				this.bounds.set(item, last.getSupportCount() + 1);
+			} else {
+				this.bounds.set(item, last.getSupportCount());
+			}
+		}
 	}
 
 	/**
@@ -247,6 +373,57 @@ public class PerItemTopKCollector implements PatternsCollector {
 		}
 	}
 
+	/**
+	 * Called by the miner when it's sure that no pattern collected from now on
+	 * will have a support count above the given one. When incrementalOutput is
+	 * enabled, all items whose K-th support is higher are outputted and their
+	 * patterns are dropped from memory - their bound remains valid for pruning.
+	 * 
+	 * This may be called concurrently: all calls but one will return
+	 * immediately.
+	 */
+	public final void releaseFinalized(final int maxFutureSupport) {
+		if (!this.incrementalOutput || this.decorated == null
+				|| maxFutureSupport > this.lastReleaseSupport * RELEASE_SUPPORT_RATIO) {
+			return;
+		}
+
+		if (!this.releaseLock.tryLock()) {
+			return;
+		}
+
+		try {
+			if (this.pendingItems == null) {
+				this.pendingItems = this.topK.keys();
+				this.nbPendingItems = this.pendingItems.length;
+			}
+			this.lastReleaseSupport = maxFutureSupport;
+
+			int i = 0;
+			while (i < this.nbPendingItems) {
+				final int item = this.pendingItems[i];
+				// bound is -1 until the item's top-K is full
+				if (this.getBound(item) - 1 > maxFutureSupport) {
+					final PatternWithFreq[] itemTopK = this.topK.get(item);
+					final PatternWithFreq[] released;
+					synchronized (itemTopK) {
+						released = Arrays.copyOf(itemTopK, itemTopK.length);
+						Arrays.fill(itemTopK, null);
+					}
+					this.releasedBounds.put(item, kthBound(released));
+					this.outputItem(this.decorated, item, released);
+
+					this.nbPendingItems--;
+					this.pendingItems[i] = this.pendingItems[this.nbPendingItems];
+				} else {
+					i++;
+				}
+			}
+		} finally {
+			this.releaseLock.unlock();
+		}
+	}
+
 	public long close() {
 		if (this.pathToPerItemK != null) {
 			this.applyPerItemKRestriction();
@@ -256,10 +433,19 @@ public class PerItemTopKCollector implements PatternsCollector {
 			return 0;
 		}
 
-		if (this.infoMode) {
+		// in case a mining thread is still releasing items
+		this.releaseLock.lock();
+		this.releaseLock.unlock();
+
+		if (this.ranked != null) {
+			this.ranked.outputAll(this.decorated);
+		} else if (this.infoMode) {
 			this.collectItemStats();
 		} else if (this.outputUniqueOnly) {
 			this.outputUniquePatterns();
+		} else if (this.perItemIDsOutput != null) {
+			this.outputDeduplicated();
+			this.perItemIDsOutput.close();
 		} else {
 			this.outputAll();
 		}
@@ -267,7 +453,7 @@ public class PerItemTopKCollector implements PatternsCollector {
 		return this.decorated.close();
 	}
 
-	private void applyPerItemKRestriction() {
+	protected final void applyPerItemKRestriction() {
 		FileReader reader = new FileReader(this.pathToPerItemK);
 
 		while (reader.hasNext()) {
@@ -300,20 +486,97 @@ public class PerItemTopKCollector implements PatternsCollector {
 		}
 	}
 
+	/**
+	 * @see perItemIDsOutput
+	 */
+	private void outputDeduplicated() {
+		int nextID = 0;
+
+		for (final int item : this.topK.keys()) {
+			final PatternWithFreq[] itemTopK = this.topK.get(item);
+			int nbPatterns = 0;
+			while (nbPatterns < itemTopK.length && itemTopK[nbPatterns] != null) {
+				nbPatterns++;
+			}
+
+			if (nbPatterns > 0) {
+				final int[] ids = new int[nbPatterns];
+				for (int i = 0; i < nbPatterns; i++) {
+					final PatternWithFreq p = itemTopK[i];
+					if (p.id == -1) {
+						p.id = nextID++;
+						this.decorated.collect(p.getSupportCount(), p.getPattern());
+					}
+					ids[i] = p.id;
+				}
+				this.perItemIDsOutput.collect(item, ids);
+			}
+		}
+	}
+
 	private void outputAll() {
-		for (final int k : this.topK.keys()) {
-			// for (final PatternWithFreq[] itemTopK :
-			// this.topK.valueCollection()) {
-			final PatternWithFreq[] itemTopK = this.topK.get(k);
-			for (int i = 0; i < itemTopK.length; i++) {
-				if (itemTopK[i] == null) {
-					break;
-				} else {
-					if (!itemTopK[i].isClosed()) {
-						System.err.println("unclosed pattern " + k + " " + itemTopK[i]);
+		if (this.decorated instanceof PartitionedFileCollector) {
+			this.outputAllPartitioned((PartitionedFileCollector) this.decorated);
+		} else {
+			for (final int k : this.topK.keys()) {
+				// for (final PatternWithFreq[] itemTopK :
+				// this.topK.valueCollection()) {
+				this.outputItem(this.decorated, k, this.topK.get(k));
+			}
+		}
+	}
+
+	/**
+	 * Splits items in as many ranges as there are partitions, each one being
+	 * written by its own thread
+	 */
+	private void outputAllPartitioned(final PartitionedFileCollector partitioned) {
+		final int[] items = this.topK.keys();
+		final int nbPartitions = partitioned.getNbPartitions();
+		final int partitionSize = (items.length + nbPartitions - 1) / nbPartitions;
+
+		ExecutorService pool = Executors.newFixedThreadPool(nbPartitions);
+		List<Future<?>> running = new ArrayList<Future<?>>(nbPartitions);
+
+		for (int i = 0; i < nbPartitions; i++) {
+			final PatternsCollector partition = partitioned.getPartition(i);
+			final int from = Math.min(items.length, i * partitionSize);
+			final int to = Math.min(items.length, from + partitionSize);
+
+			running.add(pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = from; j < to; j++) {
+						outputItem(partition, items[j], topK.get(items[j]));
 					}
-					this.decorated.collect(itemTopK[i].getSupportCount(), itemTopK[i].getPattern());
 				}
+			}));
+		}
+
+		try {
+			for (Future<?> f : running) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+			throw new RuntimeException(e);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private void outputItem(final PatternsCollector output, final int item, final PatternWithFreq[] itemTopK) {
+		for (int i = 0; i < itemTopK.length; i++) {
+			if (itemTopK[i] == null) {
+				break;
+			} else {
+				if (!itemTopK[i].isClosed()) {
+					System.err.println("unclosed pattern " + item + " " + itemTopK[i]);
+				}
+				output.collect(itemTopK[i].getSupportCount(), itemTopK[i].getPattern());
 			}
 		}
 	}
@@ -346,11 +609,38 @@ public class PerItemTopKCollector implements PatternsCollector {
 		}
 	}
 
+	/**
+	 * Fills given items' top-K with placeholders of given support, so only
+	 * more frequent patterns will be collected. Placeholders are never
+	 * outputted, but subclasses writing their own results should skip empty
+	 * patterns.
+	 * 
+	 * @param perItemBounds
+	 *            item => support, items unknown to this collector are ignored
+	 */
+	public final void preloadBounds(TIntIntMap perItemBounds) {
+		TIntIntIterator iterator = perItemBounds.iterator();
+		int[] fakePattern = new int[] {};
+		while (iterator.hasNext()) {
+			iterator.advance();
+
+			final int item = iterator.key();
+			PatternWithFreq[] top = this.topK.get(item);
+
+			if (top != null) {
+				synchronized (top) {
+					Arrays.fill(top, new PatternWithFreq(iterator.value(), fakePattern, true));
+					this.publishBound(item, top);
+				}
+			}
+		}
+	}
+
 	/**
 	 * you want to know this before early collecting !
 	 */
 	public boolean isCollected(final int item) {
-		return this.topK.get(item) != null;
+		return this.getBound(item) != Integer.MAX_VALUE;
 	}
 
 	/**
@@ -358,43 +648,72 @@ public class PerItemTopKCollector implements PatternsCollector {
 	 *         item's K-th itemset's support count
 	 */
 	public final int getBound(final int item) {
-		PatternWithFreq[] pTab = this.topK.get(item);
-		if (pTab == null) {
+		if (item < 0 || item >= this.bounds.length()) {
 			return Integer.MAX_VALUE;
+		} else if (this.ranked == null) {
+			return this.bounds.get(item);
 		} else {
-			PatternWithFreq p = pTab[this.k - 1];
-			if (p == null) {
-				return -1;
-			} else if (p.isClosed()) {
-				return p.getSupportCount() + 1;
-			} else {
-				return p.getSupportCount();
+			return Math.min(this.bounds.get(item), this.ranked.getBound(item));
+		}
+	}
+
+	/**
+	 * Does not lock anything, so it may be called during mining but then the
+	 * result is approximate.
+	 * 
+	 * @return how many top-K slots are currently filled, among all items
+	 */
+	public final long getHeldPatternsCount() {
+		long held = 0;
+		for (PatternWithFreq[] itemTopK : this.topK.valueCollection()) {
+			for (PatternWithFreq p : itemTopK) {
+				if (p != null) {
+					held++;
+				}
 			}
 		}
+		return held;
 	}
 
+	/**
+	 * Items already released by incremental output (see releaseFinalized)
+	 * are given the bound they had when released.
+	 * 
+	 * @return for each collected item, its K-th pattern's support (plus one
+	 *         if that pattern is closed) or -1 if its top-K isn't full
+	 */
 	public final TIntIntMap getTopKBounds() {
 		final TIntIntMap output = new TIntIntHashMap(this.topK.size());
 		this.topK.forEachEntry(new TIntObjectProcedure<PatternWithFreq[]>() {
 
 			@Override
 			public boolean execute(int k, PatternWithFreq[] v) {
-				int s;
-				PatternWithFreq p = v[v.length - 1];
-				if (p == null) {
-					s = -1;
-				} else if (p.isClosed()) {
-					s = p.getSupportCount() + 1;
-				} else {
-					s = p.getSupportCount();
-				}
-				output.put(k, s);
+				output.put(k, kthBound(v));
 				return true;
 			}
 		});
+
+		this.releaseLock.lock();
+		try {
+			output.putAll(this.releasedBounds);
+		} finally {
+			this.releaseLock.unlock();
+		}
+
 		return output;
 	}
 
+	private static int kthBound(PatternWithFreq[] itemTopK) {
+		PatternWithFreq p = itemTopK[itemTopK.length - 1];
+		if (p == null) {
+			return -1;
+		} else if (p.isClosed()) {
+			return p.getSupportCount() + 1;
+		} else {
+			return p.getSupportCount();
+		}
+	}
+
 	@Override
 	public String toString() {
 		final StringBuilder sb = new StringBuilder();
@@ -443,10 +762,18 @@ public class PerItemTopKCollector implements PatternsCollector {
 	public static final class PatternWithFreq {
 
 		protected final int supportCount;
+		private static final AtomicIntegerFieldUpdater<PatternWithFreq> nbRefsUpdater = AtomicIntegerFieldUpdater
+				.newUpdater(PatternWithFreq.class, "nbRefs");
+
 		protected int[] pattern = null;
-		private int nbRefs = 0;
+		private volatile int nbRefs = 0;
 		protected boolean closed = true;
 
+		/**
+		 * assigned when closing the collector in deduplicated output mode
+		 */
+		private int id = -1;
+
 		public PatternWithFreq(final int supportCount) {
 			super();
 			this.supportCount = supportCount;
@@ -488,9 +815,8 @@ public class PerItemTopKCollector implements PatternsCollector {
 			Arrays.sort(this.pattern);
 		}
 
-		public synchronized void onEjection() {
-			this.nbRefs--;
-			if (nbRefs == 0) {
+		public void onEjection() {
+			if (nbRefsUpdater.decrementAndGet(this) == 0) {
 				if (this.closed) {
 					CountersHandler.increment(TopPICounters.EjectedPatterns);
 				} else {
@@ -503,8 +829,8 @@ public class PerItemTopKCollector implements PatternsCollector {
 			return this.nbRefs > 0;
 		}
 
-		public synchronized void incrementRefCount(int d) {
-			this.nbRefs += d;
+		public void incrementRefCount(int d) {
+			nbRefsUpdater.addAndGet(this, d);
 		}
 
 		@Override
@@ -662,6 +988,43 @@ public class PerItemTopKCollector implements PatternsCollector {
 		this.outputUniqueOnly = outputUniqueOnly;
 	}
 
+	/**
+	 * Only valid when the decorated collector is used for the default output
+	 * (not in info mode, nor with unique patterns, per-item pattern IDs or
+	 * per-item K restrictions)
+	 */
+	public void setIncrementalOutput(boolean incremental) {
+		this.incrementalOutput = incremental;
+	}
+
+	public boolean isIncrementalOutput() {
+		return this.incrementalOutput;
+	}
+
+	/**
+	 * Enables the deduplicated output mode, see perItemIDsOutput. This
+	 * collector will be closed with this one.
+	 */
+	public void setPerItemIDsOutput(PatternsCollector idsOutput) {
+		this.perItemIDsOutput = idsOutput;
+	}
+
+	/**
+	 * Makes this collector also keep, for each item, the K closed patterns
+	 * (of at least 2 items) ranked first by the given measure, and output them
+	 * instead of the K most frequent ones. Exploration bounds are lowered
+	 * accordingly, so this may be much slower if the ranker doesn't give
+	 * support bounds. Incompatible with incremental output.
+	 * 
+	 * @param initState
+	 *            gives items' supports, and its dataset is used to count
+	 *            supports of patterns without the ranked item
+	 */
+	public void setRanker(InterestingnessRanker ranker, ExplorationStep initState) {
+		this.ranked = new PerItemRankedTopK(ranker, this.k, initState.counters, initState.dataset,
+				this.topK.keys(), this.bounds.length());
+	}
+
 	public void readPerItemKFrom(String path) {
 		this.pathToPerItemK = path;
 	}
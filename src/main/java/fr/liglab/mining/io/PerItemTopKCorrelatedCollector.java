@@ -0,0 +1,289 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fr.liglab.hyptest.FlatTreeMatcher;
+import fr.liglab.hyptest.Pattern;
+import fr.liglab.hyptest.PatternsHeap;
+import fr.liglab.hyptest.SupportCounter;
+import fr.liglab.hyptest.TreeMatcher;
+import fr.liglab.hyptest.TreeMatcher.NotMonitoredException;
+import fr.liglab.mining.internals.Counters;
+import fr.liglab.mining.internals.Dataset;
+import fr.liglab.mining.internals.ExplorationStep;
+import fr.liglab.mining.internals.TransactionReader;
+import gnu.trove.impl.Constants;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+
+/**
+ * Standalone counterpart of AggregationByCorrelationReducer : once mining is
+ * done, each item's top-K patterns are re-ranked by their correlation with the
+ * item (Fisher's exact test, see PatternsHeap) and only the top-C ones are
+ * outputted.
+ * 
+ * For each pattern P collected for item i, this requires the support of P\{i},
+ * which is counted from the root dataset, that is still in memory : each
+ * distinct itemset is counted once, in parallel, by intersecting tidlists or,
+ * when there are many itemsets, by matching them against all transactions.
+ * As in the Hadoop variant, the item alone is not considered as a correlated
+ * pattern. Items of the root closure (found in all transactions) have no ID in
+ * the root dataset : they're dropped from counted itemsets, as they don't
+ * change their support.
+ */
+public class PerItemTopKCorrelatedCollector extends PerItemTopKCollector {
+
+	private final PatternsCollector output;
+	private final int c;
+	private final int nbThreads;
+	private final Dataset dataset;
+	private final Counters rootCounters;
+
+	/**
+	 * original item ID => root dataset's ID, -1 for items of the root closure
+	 */
+	private final TIntIntMap renaming;
+
+	/**
+	 * @param output
+	 *            receives, per item, its top-c correlated patterns
+	 * @param k
+	 *            how many patterns should be mined per item, before filtering
+	 * @param c
+	 *            how many patterns should be outputted per item
+	 * @param nbThreads
+	 *            used when counting supports and ranking patterns
+	 */
+	public PerItemTopKCorrelatedCollector(final PatternsCollector output, final int k, final int c,
+			final ExplorationStep initState, final int nbThreads) {
+		super(k, initState);
+		this.output = output;
+		this.c = c;
+		this.nbThreads = nbThreads;
+		this.dataset = initState.dataset;
+		this.rootCounters = initState.counters;
+
+		final int[] reverseRenaming = initState.counters.getReverseRenaming();
+		this.renaming = new TIntIntHashMap(reverseRenaming.length, Constants.DEFAULT_LOAD_FACTOR, -1, -1);
+		for (int i = 0; i < reverseRenaming.length; i++) {
+			this.renaming.put(reverseRenaming[i], i);
+		}
+		for (int item : initState.counters.getClosure()) {
+			this.renaming.put(item, -1);
+		}
+	}
+
+	@Override
+	public long close() {
+		// applies per-item K restrictions, if any
+		super.close();
+
+		PatternsHeap.setNbTransactions(this.rootCounters.getTransactionsCount());
+
+		final int[] items = this.topK.keys();
+		final PatternsHeap[] heaps = new PatternsHeap[items.length];
+
+		try {
+			final TreeMatcher searched = new TreeMatcher();
+			for (int item : items) {
+				for (PatternWithFreq p : this.topK.get(item)) {
+					if (p == null) {
+						break;
+					} else if (p.isClosed() && p.getPattern().length > 1) {
+						final int[] others = this.toRootBase(p.getPattern(), item);
+						if (others.length > 0) {
+							searched.addPattern(others);
+						}
+					}
+				}
+			}
+
+			final FlatTreeMatcher flat = searched.flatten();
+			if (this.getIntersectionsCost(flat) > this.rootCounters.getDistinctTransactionLengthSum()) {
+				this.matchTransactions(flat);
+			} else {
+				flat.setSupports(new SupportCounter() {
+					@Override
+					public int getSupport(int[] itemset) {
+						return dataset.countSupport(itemset);
+					}
+				}, this.nbThreads);
+			}
+
+			this.fillHeaps(items, heaps, flat);
+		} catch (InterruptedException e) {
+			e.printStackTrace(System.err);
+			throw new RuntimeException(e);
+		}
+
+		for (int i = 0; i < items.length; i++) {
+			for (Pattern p : heaps[i].getPatterns()) {
+				this.output.collect(p.supportWithCorrelated, p.getPattern());
+			}
+		}
+
+		return this.output.close();
+	}
+
+	/**
+	 * @return how many tids Dataset.countSupport would read to count all
+	 *         searched itemsets, as it starts from their rarest item
+	 */
+	private long getIntersectionsCost(final FlatTreeMatcher searched) {
+		long cost = 0;
+		for (int i = 0; i < searched.getNbPatterns(); i++) {
+			final int[] itemset = searched.getItemset(i);
+			cost += this.rootCounters.getDistinctTransactionsCount(itemset[itemset.length - 1]);
+		}
+		return cost;
+	}
+
+	/**
+	 * When there are many itemsets to count, matching them all against each
+	 * transaction of the root dataset is cheaper than intersecting tidlists
+	 */
+	private void matchTransactions(final FlatTreeMatcher searched) throws InterruptedException {
+		List<int[]> transactions = new ArrayList<int[]>(this.rootCounters.getDistinctTransactionsCount());
+		TIntArrayList weights = new TIntArrayList(this.rootCounters.getDistinctTransactionsCount());
+		TIntArrayList buffer = new TIntArrayList();
+
+		Iterator<TransactionReader> it = this.dataset.getTransactions();
+		while (it.hasNext()) {
+			TransactionReader transaction = it.next();
+			while (transaction.hasNext()) {
+				buffer.add(transaction.next());
+			}
+			buffer.sort();
+			transactions.add(buffer.toArray());
+			weights.add(transaction.getTransactionSupport());
+			buffer.resetQuick();
+		}
+
+		searched.match(transactions, weights.toArray(), this.nbThreads);
+	}
+
+	/**
+	 * Ranks items' patterns in parallel, each thread picking the next item
+	 * to rank
+	 */
+	private void fillHeaps(final int[] items, final PatternsHeap[] heaps, final FlatTreeMatcher searched)
+			throws InterruptedException {
+
+		final AtomicInteger nextItem = new AtomicInteger(0);
+		ExecutorService pool = Executors.newFixedThreadPool(this.nbThreads);
+		List<Future<?>> running = new ArrayList<Future<?>>(this.nbThreads);
+
+		for (int t = 0; t < this.nbThreads; t++) {
+			running.add(pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = nextItem.getAndIncrement(); i < items.length; i = nextItem.getAndIncrement()) {
+						heaps[i] = rank(items[i], searched);
+					}
+				}
+			}));
+		}
+
+		try {
+			for (Future<?> f : running) {
+				f.get();
+			}
+		} catch (ExecutionException e) {
+			e.printStackTrace(System.err);
+			throw new RuntimeException(e);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private PatternsHeap rank(final int item, final FlatTreeMatcher searched) {
+		final int itemSupport = this.getRootSupport(item);
+		PatternsHeap heap = new PatternsHeap(this.c, itemSupport);
+
+		for (PatternWithFreq p : this.topK.get(item)) {
+			if (p == null) {
+				break;
+			} else if (p.isClosed() && p.getPattern().length > 1) {
+				try {
+					final int[] others = this.toRootBase(p.getPattern(), item);
+					final int patternSupport = (others.length == 0) ? this.rootCounters.getTransactionsCount()
+							: searched.getSupport(others);
+					heap.insert(p.getPattern(), patternSupport, p.getSupportCount());
+				} catch (NotMonitoredException e) {
+					e.printStackTrace(System.err);
+				}
+			}
+		}
+
+		return heap;
+	}
+
+	/**
+	 * @return support count of an original item ID in the root dataset
+	 */
+	private int getRootSupport(final int item) {
+		final int renamed = this.renaming.get(item);
+		return (renamed == -1) ? this.rootCounters.getTransactionsCount() : this.rootCounters
+				.getSupportCount(renamed);
+	}
+
+	/**
+	 * @return pattern, minus the given item and root closure's items,
+	 *         translated to the root dataset's base and sorted - may be empty
+	 */
+	private int[] toRootBase(final int[] pattern, final int without) {
+		int[] renamed = new int[pattern.length];
+		int length = 0;
+		for (int item : pattern) {
+			if (item != without) {
+				final int rootItem = this.renaming.get(item);
+				if (rootItem != -1) {
+					renamed[length++] = rootItem;
+				}
+			}
+		}
+		renamed = Arrays.copyOf(renamed, length);
+		Arrays.sort(renamed);
+		return renamed;
+	}
+
+	@Override
+	public int getAveragePatternLength() {
+		return this.output.getAveragePatternLength();
+	}
+
+	@Override
+	public long getCollected() {
+		return this.output.getCollected();
+	}
+
+	@Override
+	public long getCollectedLength() {
+		return this.output.getCollectedLength();
+	}
+}
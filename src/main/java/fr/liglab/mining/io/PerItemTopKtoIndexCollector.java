@@ -0,0 +1,272 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import fr.liglab.mining.internals.ExplorationStep;
+
+/**
+ * Writes per-item top-K patterns to an indexed binary file, which can be
+ * queried item by item through IndexedResultsReader without loading it.
+ * 
+ * File layout (big-endian), each section following the previous one :
+ * <ol>
+ * <li>header : MAGIC, VERSION, K</li>
+ * <li>patterns table : each distinct pattern is stored once, as varints :
+ * support, length, then its items in ascending order, delta-encoded</li>
+ * <li>index : one ENTRY_SIZE-bytes entry per item, by ascending item ID :
+ * item (int), patterns count (int), offset of its patterns references (long)
+ * and offset of its name (long, -1 if none)</li>
+ * <li>references : for each item, its patterns' offsets (long), by decreasing
+ * support</li>
+ * <li>names (only if an item ID map was given) : for each item, its name's
+ * UTF-8 length (varint) and bytes</li>
+ * <li>trailer : items count (int), distinct patterns count (long), longest
+ * encoded pattern (int), index offset (long), MAGIC</li>
+ * </ol>
+ */
+public class PerItemTopKtoIndexCollector extends PerItemTopKCollector {
+
+	public static final int MAGIC = 0x54504958; // "TPIX"
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 12;
+	public static final int ENTRY_SIZE = 24;
+	public static final int TRAILER_SIZE = 28;
+
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * a varint-encoded int takes up to 5 bytes
+	 */
+	static final int MAX_VARINT_LENGTH = 5;
+
+	private final String path;
+	private final Map<Integer, String> idMap;
+
+	private long nbPatterns = 0;
+	private long patternsLength = 0;
+
+	/**
+	 * @param itemIDmap
+	 *            may be null, otherwise items' names will be stored too
+	 */
+	public PerItemTopKtoIndexCollector(final int k, final ExplorationStep initState, final String path,
+			final Map<Integer, String> itemIDmap) {
+		super(k, initState);
+		this.path = path;
+		this.idMap = itemIDmap;
+	}
+
+	/**
+	 * @return distinct patterns count
+	 */
+	@Override
+	public long close() {
+		if (this.pathToPerItemK != null) {
+			this.applyPerItemKRestriction();
+		}
+
+		File file = new File(this.path);
+		if (file.exists()) {
+			System.err.println("Warning : overwriting output file " + this.path);
+		}
+
+		try {
+			CountingOutputStream out = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(
+					file, false), 1024 * 1024));
+			this.write(out);
+			out.close();
+		} catch (IOException e) {
+			e.printStackTrace(System.err);
+		}
+
+		return this.nbPatterns;
+	}
+
+	private void write(final CountingOutputStream out) throws IOException {
+		final int[] items = this.topK.keys();
+		Arrays.sort(items);
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(this.k);
+
+		final Map<PatternWithFreq, Long> offsets = new HashMap<PatternWithFreq, Long>();
+		final int[] counts = new int[items.length];
+		long nbReferences = 0;
+		int maxPatternBytes = 0;
+
+		for (int i = 0; i < items.length; i++) {
+			final PatternWithFreq[] itemTopK = this.topK.get(items[i]);
+			int count = 0;
+			while (count < itemTopK.length && itemTopK[count] != null) {
+				final PatternWithFreq p = itemTopK[count];
+				if (!offsets.containsKey(p)) {
+					final long start = out.getPosition();
+					offsets.put(p, start);
+					writePattern(out, p);
+					maxPatternBytes = Math.max(maxPatternBytes, (int) (out.getPosition() - start));
+					this.nbPatterns++;
+					this.patternsLength += p.getPattern().length;
+				}
+				count++;
+			}
+			counts[i] = count;
+			nbReferences += count;
+		}
+
+		final long indexOffset = out.getPosition();
+		final long referencesOffset = indexOffset + (long) items.length * ENTRY_SIZE;
+		final long namesOffset = referencesOffset + nbReferences * 8;
+
+		final byte[][] names = new byte[items.length][];
+		long nextReferences = referencesOffset;
+		long nextName = namesOffset;
+
+		for (int i = 0; i < items.length; i++) {
+			out.writeInt(items[i]);
+			out.writeInt(counts[i]);
+			out.writeLong(nextReferences);
+			nextReferences += counts[i] * 8L;
+
+			String name = (this.idMap == null) ? null : this.idMap.get(items[i]);
+			if (name == null) {
+				out.writeLong(-1);
+			} else {
+				names[i] = name.getBytes(UTF8);
+				out.writeLong(nextName);
+				nextName += varIntLength(names[i].length) + names[i].length;
+			}
+		}
+
+		for (int i = 0; i < items.length; i++) {
+			final PatternWithFreq[] itemTopK = this.topK.get(items[i]);
+			for (int j = 0; j < counts[i]; j++) {
+				out.writeLong(offsets.get(itemTopK[j]));
+			}
+		}
+
+		for (byte[] name : names) {
+			if (name != null) {
+				out.writeVarInt(name.length);
+				out.write(name);
+			}
+		}
+
+		out.writeInt(items.length);
+		out.writeLong(this.nbPatterns);
+		out.writeInt(maxPatternBytes);
+		out.writeLong(indexOffset);
+		out.writeInt(MAGIC);
+	}
+
+	private static void writePattern(final CountingOutputStream out, final PatternWithFreq p) throws IOException {
+		final int[] pattern = p.getPattern();
+		out.writeVarInt(p.getSupportCount());
+		out.writeVarInt(pattern.length);
+		int previous = 0;
+		for (int item : pattern) {
+			out.writeVarInt(item - previous);
+			previous = item;
+		}
+	}
+
+	static int varIntLength(int value) {
+		int length = 1;
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			length++;
+		}
+		return length;
+	}
+
+	@Override
+	public long getCollected() {
+		return this.nbPatterns;
+	}
+
+	@Override
+	public long getCollectedLength() {
+		return this.patternsLength;
+	}
+
+	@Override
+	public int getAveragePatternLength() {
+		if (this.nbPatterns == 0) {
+			return 0;
+		} else {
+			return (int) (this.patternsLength / this.nbPatterns);
+		}
+	}
+
+	/**
+	 * DataOutputStream's written counter is an int, so it's unusable past 2GB
+	 */
+	private static final class CountingOutputStream {
+		private final OutputStream out;
+		private long position = 0;
+
+		CountingOutputStream(OutputStream wrapped) {
+			this.out = wrapped;
+		}
+
+		long getPosition() {
+			return this.position;
+		}
+
+		void write(byte[] bytes) throws IOException {
+			this.out.write(bytes);
+			this.position += bytes.length;
+		}
+
+		void writeInt(int v) throws IOException {
+			this.out.write(v >>> 24);
+			this.out.write(v >>> 16);
+			this.out.write(v >>> 8);
+			this.out.write(v);
+			this.position += 4;
+		}
+
+		void writeLong(long v) throws IOException {
+			this.writeInt((int) (v >>> 32));
+			this.writeInt((int) v);
+		}
+
+		void writeVarInt(int v) throws IOException {
+			while ((v & ~0x7F) != 0) {
+				this.out.write((v & 0x7F) | 0x80);
+				v >>>= 7;
+				this.position++;
+			}
+			this.out.write(v);
+			this.position++;
+		}
+
+		void close() throws IOException {
+			this.out.close();
+		}
+	}
+}
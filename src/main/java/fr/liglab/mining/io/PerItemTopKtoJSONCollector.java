@@ -16,66 +16,329 @@
 */
 package fr.liglab.mining.io;
 
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import fr.liglab.mining.internals.ExplorationStep;
 
+/**
+ * Outputs per-item top-K patterns as a JSON object, mapping each item's name
+ * to its patterns list.
+ * 
+ * Items' names are escaped and encoded once, then the document is written as
+ * raw bytes through a big buffer. When writing to a file it may be
+ * generated by several threads, each one writing a partition of the items to
+ * [path].part[i] - these are concatenated when closing.
+ */
 public class PerItemTopKtoJSONCollector extends PerItemTopKCollector {
-	
-	private Map<Integer, String> idMap;
-	
-	public PerItemTopKtoJSONCollector(final int k, final ExplorationStep initState, Map<Integer, String> itemIDmap){
-		
+
+	private static final int BUFFER_CAPACITY = 1024 * 1024;
+
+	private static final byte[] HEAD = "{\n".getBytes(FileCollector.charset);
+	private static final byte[] KEYS_SEPARATOR = ",\n".getBytes(FileCollector.charset);
+	private static final byte[] TAIL = "\n}\n".getBytes(FileCollector.charset);
+	private static final byte[] PATTERN_START = "{\"sup\":".getBytes(FileCollector.charset);
+	private static final byte[] SET_START = ",\"set\":[".getBytes(FileCollector.charset);
+	private static final byte[] PATTERN_END = "]}".getBytes(FileCollector.charset);
+
+	private final Map<Integer, String> idMap;
+	private final String outputPath;
+	private final int nbPartitions;
+
+	/**
+	 * items' names, quoted and escaped, indexed by item ID
+	 */
+	private byte[][] names;
+
+	/**
+	 * Outputs to stdout
+	 */
+	public PerItemTopKtoJSONCollector(final int k, final ExplorationStep initState, Map<Integer, String> itemIDmap) {
+		this(k, initState, itemIDmap, null, 1);
+	}
+
+	/**
+	 * @param outputPath
+	 *            if null, output goes to stdout and nbPartitions is ignored
+	 * @param nbPartitions
+	 *            how many threads will write the output file
+	 */
+	public PerItemTopKtoJSONCollector(final int k, final ExplorationStep initState, Map<Integer, String> itemIDmap,
+			final String outputPath, final int nbPartitions) {
+
 		super(k, initState);
-		
+
 		this.idMap = itemIDmap;
+		this.outputPath = outputPath;
+		this.nbPartitions = (outputPath == null) ? 1 : Math.max(1, nbPartitions);
 	}
-	
+
 	@Override
 	public long close() {
-		long nbPatterns = 0;
-		boolean interKeyComma = false;
-		System.out.println("{");
-		
-		for (final int k : this.topK.keys()) {
-			if (interKeyComma){
-				System.out.println(",");
+		final int[] items = this.topK.keys();
+		this.names = this.encodeNames();
+
+		try {
+			if (this.outputPath == null) {
+				System.out.flush();
+				FileChannel stdout = new FileOutputStream(FileDescriptor.out).getChannel();
+				return this.writeSequentially(items, stdout);
+			} else if (this.nbPartitions == 1) {
+				FileOutputStream stream = openOutput(this.outputPath);
+				long nbPatterns = this.writeSequentially(items, stream.getChannel());
+				stream.close();
+				return nbPatterns;
 			} else {
-				interKeyComma = true;
+				return this.writePartitioned(items);
 			}
-			
-			System.out.printf("\"%s\":[", getSafeName(k));
-			
-			final PatternWithFreq[] itemTopK = this.topK.get(k);
-			for (int i = 0; i < itemTopK.length; i++) {
-				if (itemTopK[i] == null) {
-					break;
+		} catch (IOException e) {
+			e.printStackTrace(System.err);
+			return 0;
+		} finally {
+			this.names = null;
+		}
+	}
+
+	private long writeSequentially(final int[] items, final FileChannel channel) throws IOException {
+		Output out = new Output(channel);
+		out.put(HEAD);
+		long nbPatterns = this.writeItems(items, 0, items.length, out);
+		out.put(TAIL);
+		out.flush();
+		return nbPatterns;
+	}
+
+	/**
+	 * Each partition is a contiguous range in items, written by its own
+	 * thread. Partitions are then concatenated, with the appropriate
+	 * separators.
+	 */
+	private long writePartitioned(final int[] items) throws IOException {
+		final int partitionSize = (items.length + this.nbPartitions - 1) / this.nbPartitions;
+
+		ExecutorService pool = Executors.newFixedThreadPool(this.nbPartitions);
+		List<Future<Long>> running = new ArrayList<Future<Long>>(this.nbPartitions);
+
+		for (int i = 0; i < this.nbPartitions; i++) {
+			final String partitionPath = this.getPartitionPath(i);
+			final int from = Math.min(items.length, i * partitionSize);
+			final int to = Math.min(items.length, from + partitionSize);
+
+			running.add(pool.submit(new Callable<Long>() {
+				@Override
+				public Long call() throws Exception {
+					FileOutputStream stream = new FileOutputStream(partitionPath, false);
+					Output out = new Output(stream.getChannel());
+					long nbPatterns = writeItems(items, from, to, out);
+					out.flush();
+					stream.close();
+					return nbPatterns;
+				}
+			}));
+		}
+
+		long nbPatterns = 0;
+		try {
+			for (Future<Long> f : running) {
+				nbPatterns += f.get();
+			}
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+			throw new RuntimeException(e);
+		} finally {
+			pool.shutdown();
+		}
+
+		FileOutputStream stream = openOutput(this.outputPath);
+		FileChannel output = stream.getChannel();
+		output.write(ByteBuffer.wrap(HEAD));
+
+		boolean needSeparator = false;
+		for (int i = 0; i < this.nbPartitions; i++) {
+			File partitionFile = new File(this.getPartitionPath(i));
+			FileInputStream input = new FileInputStream(partitionFile);
+			FileChannel channel = input.getChannel();
+
+			final long size = channel.size();
+			if (size > 0) {
+				if (needSeparator) {
+					output.write(ByteBuffer.wrap(KEYS_SEPARATOR));
 				} else {
-					if (i>0) {
-						System.out.print(",");
-					}
-					System.out.printf("{\"sup\":%d,\"set\":[", itemTopK[i].getSupportCount());
-					int[] pattern = itemTopK[i].getPattern();
-					for (int j = 0; j < pattern.length; j++) {
-						if (j>0) {
-							System.out.print(",");
-						}
-						System.out.printf("\"%s\"", getSafeName(pattern[j]));
+					needSeparator = true;
+				}
+
+				long position = 0;
+				while (position < size) {
+					position += channel.transferTo(position, size - position, output);
+				}
+			}
+
+			channel.close();
+			input.close();
+			partitionFile.delete();
+		}
+
+		output.write(ByteBuffer.wrap(TAIL));
+		output.close();
+		stream.close();
+
+		return nbPatterns;
+	}
+
+	private String getPartitionPath(final int i) {
+		return this.outputPath + ".part" + i;
+	}
+
+	private static FileOutputStream openOutput(final String path) throws IOException {
+		File file = new File(path);
+		if (file.exists()) {
+			System.err.println("Warning : overwriting output file " + path);
+		}
+		return new FileOutputStream(file, false);
+	}
+
+	/**
+	 * Writes items[from:to] as separated "key":[patterns] entries
+	 * 
+	 * @return patterns count
+	 */
+	private long writeItems(final int[] items, final int from, final int to, final Output out) throws IOException {
+		long nbPatterns = 0;
+
+		for (int i = from; i < to; i++) {
+			if (i > from) {
+				out.put(KEYS_SEPARATOR);
+			}
+
+			out.put(this.names[items[i]]);
+			out.put((byte) ':');
+			out.put((byte) '[');
+
+			final PatternWithFreq[] itemTopK = this.topK.get(items[i]);
+			for (int j = 0; j < itemTopK.length && itemTopK[j] != null; j++) {
+				if (j > 0) {
+					out.put((byte) ',');
+				}
+				out.put(PATTERN_START);
+				out.putInt(itemTopK[j].getSupportCount());
+				out.put(SET_START);
+
+				final int[] pattern = itemTopK[j].getPattern();
+				for (int p = 0; p < pattern.length; p++) {
+					if (p > 0) {
+						out.put((byte) ',');
 					}
-					System.out.print("]}");
-					nbPatterns++;
+					out.put(this.names[pattern[p]]);
 				}
+
+				out.put(PATTERN_END);
+				nbPatterns++;
 			}
-			
-			System.out.print("]");
+
+			out.put((byte) ']');
 		}
-		
-		
-		System.out.println("\n}");
+
 		return nbPatterns;
 	}
-	
-	private String getSafeName(int id){
-		return this.idMap.get(id).replace("\\", "\\\\").replace("\"", "\\\"");
+
+	/**
+	 * patterns may contain items we don't collect (if they're in the dataset's
+	 * closure), so we encode all known names
+	 */
+	private byte[][] encodeNames() {
+		int maxItem = -1;
+		for (int item : this.idMap.keySet()) {
+			maxItem = Math.max(maxItem, item);
+		}
+
+		final byte[][] encoded = new byte[maxItem + 1][];
+		final StringBuilder sb = new StringBuilder();
+		for (Map.Entry<Integer, String> entry : this.idMap.entrySet()) {
+			sb.setLength(0);
+			sb.append('"');
+			escape(entry.getValue(), sb);
+			sb.append('"');
+			encoded[entry.getKey()] = sb.toString().getBytes(PerItemTopKtoIndexCollector.UTF8);
+		}
+		return encoded;
+	}
+
+	private static void escape(final String name, final StringBuilder sb) {
+		for (int i = 0; i < name.length(); i++) {
+			final char c = name.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+	}
+
+	/**
+	 * Buffers bytes to a channel, never allocating once instantiated
+	 */
+	private static final class Output {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_CAPACITY);
+		private final byte[] digits = new byte[FileCollector.MAX_INT_LENGTH];
+
+		Output(final FileChannel channel) {
+			this.channel = channel;
+		}
+
+		void put(final byte b) throws IOException {
+			if (!this.buffer.hasRemaining()) {
+				this.flush();
+			}
+			this.buffer.put(b);
+		}
+
+		void put(final byte[] bytes) throws IOException {
+			if (this.buffer.remaining() < bytes.length) {
+				this.flush();
+				if (bytes.length > this.buffer.capacity()) {
+					this.write(ByteBuffer.wrap(bytes));
+					return;
+				}
+			}
+			this.buffer.put(bytes);
+		}
+
+		void putInt(final int i) throws IOException {
+			if (this.buffer.remaining() < FileCollector.MAX_INT_LENGTH) {
+				this.flush();
+			}
+			FileCollector.putInt(this.buffer, this.digits, i);
+		}
+
+		void flush() throws IOException {
+			this.buffer.flip();
+			this.write(this.buffer);
+			this.buffer.clear();
+		}
+
+		private void write(final ByteBuffer bytes) throws IOException {
+			while (bytes.hasRemaining()) {
+				this.channel.write(bytes);
+			}
+		}
 	}
 }
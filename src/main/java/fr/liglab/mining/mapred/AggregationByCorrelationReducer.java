@@ -16,9 +16,8 @@
 */
 package fr.liglab.mining.mapred;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
@@ -27,21 +26,28 @@ import java.util.Iterator;
 import java.util.List;
 
 import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Partitioner;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.util.LineReader;
 
+import fr.liglab.hyptest.FlatTreeMatcher;
 import fr.liglab.hyptest.ItemsetSupports;
 import fr.liglab.hyptest.PatternsHeap;
+import fr.liglab.hyptest.TidListsIndex;
 import fr.liglab.hyptest.TreeMatcher;
 import fr.liglab.hyptest.TreeMatcher.NotMonitoredException;
 import fr.liglab.mining.mapred.writables.ItemAndSupportWritable;
 import fr.liglab.mining.mapred.writables.SupportAndTransactionWritable;
 import fr.liglab.mining.util.ProgressWatcherThread;
 import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.TIntIntMap;
 import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.hash.TIntIntHashMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
 
 /**
  * As getting the patterns' global support requires a pass on the initial dataset,
@@ -92,7 +98,10 @@ public class AggregationByCorrelationReducer extends Reducer<ItemAndSupportWrita
 		pokeMaster.setHadoopContext(context);
 		pokeMaster.start();
 		
-		getGlobalSupports(getDatasetPath(context));
+		FlatTreeMatcher searched = this.searchedPatterns.flatten();
+		this.searchedPatterns = null;
+		getGlobalSupports(searched, getDatasetPath(context),
+				context.getConfiguration().getInt(TopPIoverHadoop.KEY_NB_THREADS, 1));
 		
 		TIntObjectIterator<TreeMatcher> iterator = this.perItempatterns.iterator();
 		while(iterator.hasNext()) {
@@ -107,7 +116,7 @@ public class AggregationByCorrelationReducer extends Reducer<ItemAndSupportWrita
 				ItemsetSupports pattern = patterns.next();
 				int[] itemset = pattern.getItemset();
 				try {
-					int itemsetSupport = this.searchedPatterns.getSupport(itemset);
+					int itemsetSupport = searched.getSupport(itemset);
 					heap.insert(itemset, itemsetSupport, pattern.getSupport());
 				} catch (NotMonitoredException e) {
 					e.printStackTrace();
@@ -123,25 +132,47 @@ public class AggregationByCorrelationReducer extends Reducer<ItemAndSupportWrita
 		pokeMaster.interrupt();
 	}
 	
-	private void getGlobalSupports(URI datasetPath) throws IOException {
-		final int[] buffer = new int[1024*1024];
-		BufferedReader br = new BufferedReader(new FileReader(new File(datasetPath)));
-		String line;
-		int nbLines = 0;
-		while ((line = br.readLine()) != null) {
-			String[] splitted = line.split(" ");
-			final int length = splitted.length;
-			if (length > 0) {
-				nbLines++;
-			}
-			for (int i = 0; i < length; i++) {
-				buffer[i] = Integer.parseInt(splitted[i]);
+	/**
+	 * Loads the items of searched patterns in a TidListsIndex, then counts
+	 * their supports in parallel
+	 */
+	private static void getGlobalSupports(FlatTreeMatcher searched, URI datasetPath, int nbThreads)
+			throws IOException, InterruptedException {
+		TIntSet involved = new TIntHashSet();
+		for (int i = 0; i < searched.getNbPatterns(); i++) {
+			involved.addAll(searched.getItemset(i));
+		}
+		
+		TidListsIndex index = new TidListsIndex(involved);
+		involved = null;
+		
+		TIntArrayList buffer = new TIntArrayList();
+		int[] transaction = new int[0];
+		Text line = new Text();
+		LineReader reader = new LineReader(new FileInputStream(new File(datasetPath)));
+		try {
+			while (reader.readLine(line) > 0) {
+				buffer.resetQuick();
+				ItemCountingMapper.parseItems(line, buffer);
+
+				// blank lines are not transactions, as when mining
+				if (buffer.isEmpty()) {
+					continue;
+				}
+
+				if (transaction.length < buffer.size()) {
+					transaction = new int[buffer.size()];
+				}
+				buffer.toArray(transaction, 0, buffer.size());
+				index.addTransaction(transaction, buffer.size());
 			}
-			Arrays.sort(buffer, 0, length);
-			this.searchedPatterns.match(buffer, length);
+		} finally {
+			reader.close();
 		}
-		br.close();
-		PatternsHeap.nbTransactions = nbLines;
+		
+		index.seal();
+		searched.setSupports(index, nbThreads);
+		PatternsHeap.setNbTransactions(index.getNbTransactions());
 	}
 	
 	private URI getDatasetPath(Context context) {
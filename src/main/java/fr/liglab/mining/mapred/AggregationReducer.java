@@ -55,6 +55,38 @@ public class AggregationReducer extends Reducer<ItemAndSupportWritable, SupportA
 		}
 	}
 	
+	/**
+	 * Map-side : keeps the k first patterns of each item, before the shuffle.
+	 * It needs ItemOnlyComparator as the combiner's grouping comparator, so
+	 * each call receives all of an item's patterns, by decreasing support.
+	 * 
+	 * This restriction is only valid for AggregationReducer, because
+	 * AggregationByCorrelationReducer considers all patterns
+	 */
+	public static class TopKCombiner extends Reducer<ItemAndSupportWritable, SupportAndTransactionWritable, ItemAndSupportWritable, SupportAndTransactionWritable> {
+		
+		private int k;
+		
+		@Override
+		protected void setup(Context context) throws java.io.IOException , InterruptedException {
+			this.k = context.getConfiguration().getInt(TopPIoverHadoop.KEY_K, 1);
+		}
+		
+		@Override
+		protected void reduce(ItemAndSupportWritable key, java.lang.Iterable<SupportAndTransactionWritable> patterns, Context context)
+				throws java.io.IOException, InterruptedException {
+			
+			int count = 0;
+			Iterator<SupportAndTransactionWritable> it = patterns.iterator();
+			
+			// key is updated along with values, so it holds current pattern's support
+			while (it.hasNext() && count < this.k) {
+				context.write(key, it.next());
+				count++;
+			}
+		}
+	}
+	
 	/**
 	 * All patterns involving an item should end to the same reducer
 	 */
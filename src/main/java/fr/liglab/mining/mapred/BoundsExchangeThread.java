@@ -0,0 +1,161 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.mapred;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Lets groups mined concurrently share their per-item bounds, through a
+ * directory readable by all reducers (on HDFS, or on the local filesystem
+ * when testing).
+ * 
+ * Periodically, this thread publishes the bounds of the group's own items in
+ * [directory]/group-[gid], then raises the bounds of other items in the
+ * collector according to other groups' files. A group's current K-th support
+ * for one of its items can only grow, so it's always a valid threshold for
+ * other groups.
+ */
+final class BoundsExchangeThread extends Thread {
+
+	/**
+	 * in milliseconds
+	 */
+	static final long DEFAULT_PERIOD = 10 * 1000;
+
+	private static final String FILE_PREFIX = "group-";
+
+	private final FileSystem fs;
+	private final Path directory;
+	private final Path published;
+	private final Path publishing;
+	private final int[] groupItems;
+	private final PerItemTopKHadoopCollector collector;
+	private final long period;
+	private final int minsup;
+	
+	private volatile boolean stopped = false;
+
+	/**
+	 * @param groupItems
+	 *            the group's items, in the collector's base
+	 */
+	BoundsExchangeThread(Configuration conf, int gid, int[] groupItems, PerItemTopKHadoopCollector collector)
+			throws IOException {
+		super("BoundsExchangeThread");
+		this.setDaemon(true);
+
+		this.directory = new Path(conf.get(TopPIoverHadoop.KEY_BOUNDS_EXCHANGE));
+		this.fs = this.directory.getFileSystem(conf);
+		this.published = new Path(this.directory, FILE_PREFIX + gid);
+		this.publishing = new Path(this.directory, "." + FILE_PREFIX + gid + ".tmp");
+		this.groupItems = groupItems;
+		this.collector = collector;
+		this.period = conf.getLong(TopPIoverHadoop.KEY_BOUNDS_EXCHANGE_PERIOD, DEFAULT_PERIOD);
+		this.minsup = conf.getInt(TopPIoverHadoop.KEY_MINSUP, 10);
+	}
+
+	/**
+	 * Stops the exchange loop. An interruption alone may be swallowed by the
+	 * filesystem client if it happens during I/O.
+	 */
+	void shutdown() {
+		this.stopped = true;
+		this.interrupt();
+	}
+
+	@Override
+	public void run() {
+		while (!this.stopped) {
+			try {
+				Thread.sleep(this.period);
+				this.publish();
+				this.poll();
+			} catch (InterruptedException e) {
+				return;
+			} catch (IOException e) {
+				e.printStackTrace(System.err);
+			}
+		}
+	}
+
+	/**
+	 * Writes the group's current bounds, replacing the previous file at once
+	 */
+	void publish() throws IOException {
+		TIntArrayList pairs = new TIntArrayList();
+		for (int item : this.groupItems) {
+			final int bound = this.collector.getBound(item);
+			if (bound > this.minsup && bound != Integer.MAX_VALUE) {
+				pairs.add(item);
+				pairs.add(bound);
+			}
+		}
+
+		FSDataOutputStream out = this.fs.create(this.publishing, true);
+		try {
+			out.writeInt(pairs.size() / 2);
+			for (int i = 0; i < pairs.size(); i++) {
+				out.writeInt(pairs.getQuick(i));
+			}
+		} finally {
+			out.close();
+		}
+
+		this.fs.delete(this.published, false);
+		this.fs.rename(this.publishing, this.published);
+	}
+
+	/**
+	 * Applies bounds published by other groups
+	 */
+	void poll() throws IOException {
+		for (FileStatus status : this.fs.listStatus(this.directory)) {
+			final Path path = status.getPath();
+			if (!path.getName().startsWith(FILE_PREFIX) || path.getName().equals(this.published.getName())) {
+				continue;
+			}
+
+			FSDataInputStream in;
+			try {
+				in = this.fs.open(path);
+			} catch (FileNotFoundException e) {
+				// it's being replaced, we'll see it next time
+				continue;
+			}
+
+			try {
+				final int nbItems = in.readInt();
+				for (int i = 0; i < nbItems; i++) {
+					final int item = in.readInt();
+					this.collector.raiseBound(item, in.readInt());
+				}
+			} finally {
+				in.close();
+			}
+		}
+	}
+}
@@ -40,6 +40,7 @@ import org.apache.hadoop.mapreduce.Job;
 final class DistCache {
 	static final String REBASINGMAP_TOKEN = "part";
 	static final String PER_ITEM_BOUNDS_TOKEN = "bounds";
+	static final String ITEM_GROUPS_TOKEN = "itemGroups";
 
 	/**
 	 * Adds given path to conf's distributed cache
@@ -130,6 +131,34 @@ final class DistCache {
 		}
 	}
 
+	/**
+	 * @return each (rebased) item's group ID, or null if no groups
+	 *         assignment has been cached
+	 */
+	static int[] readItemGroups(URI[] files, Configuration conf) throws IOException {
+		int[] groups = null;
+
+		for (URI file : files) {
+			if (file.toString().contains(ITEM_GROUPS_TOKEN)) {
+				if (groups == null) {
+					groups = new int[conf.getInt(TopPIoverHadoop.KEY_REBASING_MAX_ID, -1) + 1];
+				}
+
+				SequenceFile.Reader reader = new SequenceFile.Reader(conf, Reader.file(new Path(file)));
+				IntWritable key = new IntWritable();
+				IntWritable value = new IntWritable();
+
+				while (reader.next(key, value)) {
+					groups[key.get()] = value.get();
+				}
+
+				reader.close();
+			}
+		}
+
+		return groups;
+	}
+
 	/**
 	 * @return a map which associates a rebased item ID to its original ID
 	 */
@@ -47,6 +47,15 @@ public class FilteredDatasetsReader implements Iterable<TransactionReader> {
 		this.conf = conf;
 	}
 
+	/**
+	 * @param concatenated
+	 *            transactions as read from ConcatenatedTransactionsWritable
+	 */
+	public FilteredDatasetsReader(List<int[]> concatenated, SingleGroup filter) {
+		this.groupFilter = filter;
+		this.cached = concatenated;
+	}
+
 	@Override
 	public Iterator<TransactionReader> iterator() {
 		if (this.sourceFiles != null) {
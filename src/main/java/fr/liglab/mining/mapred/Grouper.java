@@ -16,19 +16,50 @@
 */
 package fr.liglab.mining.mapred;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
 import fr.liglab.mining.CountersHandler.TopPICounters;
 import fr.liglab.mining.internals.ExplorationStep;
 import fr.liglab.mining.internals.FrequentsIterator;
 import fr.liglab.mining.internals.Selector;
+import gnu.trove.iterator.TIntLongIterator;
+import gnu.trove.map.TIntLongMap;
 
+/**
+ * Assigns (rebased) items to groups. By default items are distributed
+ * round-robin, but an explicit assignment may be given - see packByCost.
+ */
 public class Grouper {
 	
+	/**
+	 * path to a starters trace written by a standalone run, whose measured
+	 * costs will replace estimateCost when packing groups
+	 */
+	public static final String KEY_COST_HINTS = "toppi.costs.hint";
+	
 	public final int nbGroups;
 	public final int maxItemID;
 	
+	/**
+	 * group ID of each item, or null for the round-robin assignment
+	 */
+	private final int[] groups;
+	
 	public Grouper(int groupsCount, int maxItem) {
+		this(groupsCount, maxItem, null);
+	}
+	
+	/**
+	 * @param itemsGroups
+	 *            group of each item, indexed by item ID. If null, groups will
+	 *            be assigned round-robin
+	 */
+	public Grouper(int groupsCount, int maxItem, int[] itemsGroups) {
 		this.nbGroups = groupsCount;
 		this.maxItemID = maxItem;
+		this.groups = itemsGroups;
 	}
 	
 	/**
@@ -36,20 +67,123 @@ public class Grouper {
 	 * @return item's groupID or -1 if we should dump the corresponding group (see SingleGroup)
 	 */
 	public int getGroupId(int itemId) {
-		return itemId % this.nbGroups;
+		return this.assignedGroup(itemId);
+	}
+	
+	protected final int assignedGroup(int itemId) {
+		if (this.groups == null) {
+			return itemId % this.nbGroups;
+		} else {
+			return this.groups[itemId];
+		}
+	}
+	
+	/**
+	 * Longest-processing-time-first bin packing : starters are taken by
+	 * decreasing cost and each one is assigned to the least loaded group.
+	 * 
+	 * @param costs
+	 *            estimated mining cost of each starter, indexed by item ID
+	 * @return group ID of each item
+	 */
+	public static int[] packByCost(final long[] costs, final int nbGroups) {
+		final Integer[] byCost = new Integer[costs.length];
+		for (int i = 0; i < byCost.length; i++) {
+			byCost[i] = i;
+		}
+		Arrays.sort(byCost, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				if (costs[o1] == costs[o2]) {
+					return o1 - o2;
+				} else {
+					return costs[o1] > costs[o2] ? -1 : 1;
+				}
+			}
+		});
+		
+		final long[] loads = new long[nbGroups];
+		PriorityQueue<Integer> leastLoaded = new PriorityQueue<Integer>(nbGroups, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				if (loads[o1] == loads[o2]) {
+					return o1 - o2;
+				} else {
+					return loads[o1] < loads[o2] ? -1 : 1;
+				}
+			}
+		});
+		for (int g = 0; g < nbGroups; g++) {
+			leastLoaded.add(g);
+		}
+		
+		final int[] assignment = new int[costs.length];
+		for (Integer item : byCost) {
+			Integer group = leastLoaded.poll();
+			assignment[item] = group;
+			loads[group] += costs[item];
+			leastLoaded.add(group);
+		}
+		
+		return assignment;
+	}
+	
+	/**
+	 * Cost estimation used by packByCost : starting from an item means
+	 * mining its projected dataset, so we use the size of the latter. The
+	 * constant accounts for the fixed cost of each starter.
+	 */
+	public static long estimateCost(int support, long projectionSize) {
+		return projectionSize + support + 1;
+	}
+	
+	/**
+	 * Replaces estimated costs by measured ones, typically read from a
+	 * previous run's trace (see fr.liglab.mining.StarterTrace). Starters
+	 * missing from hints keep their estimate, scaled to the measured unit.
+	 * 
+	 * @param costs
+	 *            estimated costs, indexed by item ID - modified in place
+	 * @param hints
+	 *            measured costs, indexed by item ID
+	 */
+	public static void applyCostHints(final long[] costs, final TIntLongMap hints) {
+		double estimated = 0;
+		double measured = 0;
+		TIntLongIterator it = hints.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			if (it.key() >= 0 && it.key() < costs.length) {
+				estimated += costs[it.key()];
+				measured += it.value();
+			}
+		}
+		final double scale = (estimated > 0 && measured > 0) ? measured / estimated : 1.;
+		
+		for (int i = 0; i < costs.length; i++) {
+			if (hints.containsKey(i)) {
+				costs[i] = Math.max(1, hints.get(i));
+			} else {
+				costs[i] = Math.max(1, (long) (costs[i] * scale));
+			}
+		}
 	}
 	
 	public static final class SingleGroup extends Grouper {
 		private final int groupId;
 		
 		public SingleGroup(int groupsCount, int maxItem, int singleGroupID) {
-			super(groupsCount, maxItem);
+			this(groupsCount, maxItem, null, singleGroupID);
+		}
+		
+		public SingleGroup(int groupsCount, int maxItem, int[] itemsGroups, int singleGroupID) {
+			super(groupsCount, maxItem, itemsGroups);
 			this.groupId = singleGroupID;
 		}
 		
 		@Override
 		public int getGroupId(int itemId) {
-			return (super.getGroupId(itemId) == this.groupId) ? this.groupId : -1;
+			return (this.assignedGroup(itemId) == this.groupId) ? this.groupId : -1;
 		}
 	}
 	
@@ -61,10 +195,12 @@ public class Grouper {
 		
 		private int current;
 		private final int max;
+		private final int groupId;
 		
-		public ItemsInGroupIterator(int start, int last) {
-			this.current = start - nbGroups;
+		public ItemsInGroupIterator(int gid, int last) {
+			this.current = (groups == null) ? gid - nbGroups : -1;
 			this.max = last;
+			this.groupId = gid;
 		}
 		
 		@Override
@@ -72,7 +208,13 @@ public class Grouper {
 			if (this.current == Integer.MIN_VALUE) {
 				return -1;
 			} else {
-				this.current += nbGroups;
+				if (groups == null) {
+					this.current += nbGroups;
+				} else {
+					do {
+						this.current++;
+					} while (this.current <= this.max && groups[this.current] != this.groupId);
+				}
 				
 				if (this.current > this.max) {
 					this.current = Integer.MIN_VALUE;
@@ -118,7 +260,7 @@ public class Grouper {
 		protected boolean allowExploration(int extension, ExplorationStep state)
 				throws WrongFirstParentException {
 			
-			return (this.renaming[extension] % nbGroups) == this.gid;
+			return assignedGroup(this.renaming[extension]) == this.gid;
 		}
 
 		@Override
@@ -158,11 +300,9 @@ public class Grouper {
 			if (this.current == Integer.MIN_VALUE) {
 				return -1;
 			} else {
-				this.current++;
-				
-				if ((this.current % nbGroups) == this.groupId) {
+				do {
 					this.current++;
-				}
+				} while (this.current <= this.max && assignedGroup(this.current) == this.groupId);
 				
 				if (this.current > this.max) {
 					this.current = Integer.MIN_VALUE;
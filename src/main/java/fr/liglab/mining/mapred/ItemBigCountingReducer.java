@@ -22,15 +22,17 @@ import java.util.Iterator;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.mapreduce.Reducer;
 
+import fr.liglab.mining.mapred.writables.ItemStatsWritable;
+
 public class ItemBigCountingReducer extends
-		Reducer<IntWritable, IntWritable, IntWritable, IntWritable> {
+		Reducer<IntWritable, ItemStatsWritable, IntWritable, ItemStatsWritable> {
 	
 	public static final String COUNTERS_GROUP = "ItemCounters";
 	public static final String COUNTER_REBASING_MAX_ID = "rebasing-maxId";
 	
 	private int minSupport = 10;
 	
-	private final IntWritable valueW = new IntWritable();
+	private final ItemStatsWritable valueW = new ItemStatsWritable();
 	
 	@Override
 	protected void setup(Context context)
@@ -41,19 +43,46 @@ public class ItemBigCountingReducer extends
 	
 	@Override
 	protected void reduce(IntWritable key, 
-			Iterable<IntWritable> values, Context context)
+			Iterable<ItemStatsWritable> values, Context context)
 			throws java.io.IOException, InterruptedException {
 		
-		Iterator<IntWritable> it = values.iterator();
+		Iterator<ItemStatsWritable> it = values.iterator();
 		int count = 0;
+		long projectionSize = 0;
 		
 		while (it.hasNext()) {
-			count += it.next().get();
+			ItemStatsWritable stats = it.next();
+			count += stats.getSupport();
+			projectionSize += stats.getProjectionSize();
 		}
 		
 		if (count >= this.minSupport) {
-			valueW.set(count);
+			valueW.set(count, projectionSize);
+			
+			context.write(key, valueW);
+		}
+	}
+	
+	/**
+	 * Sums items' statistics without filtering
+	 */
+	public static class StatsCombiner extends Reducer<IntWritable, ItemStatsWritable, IntWritable, ItemStatsWritable> {
+		
+		private final ItemStatsWritable valueW = new ItemStatsWritable();
+		
+		@Override
+		protected void reduce(IntWritable key, Iterable<ItemStatsWritable> values, Context context)
+				throws IOException, InterruptedException {
+			
+			int count = 0;
+			long projectionSize = 0;
+			
+			for (ItemStatsWritable stats : values) {
+				count += stats.getSupport();
+				projectionSize += stats.getProjectionSize();
+			}
 			
+			valueW.set(count, projectionSize);
 			context.write(key, valueW);
 		}
 	}
@@ -18,9 +18,14 @@ package fr.liglab.mining.mapred;
 
 import java.util.Iterator;
 
+import java.io.IOException;
+
 import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
 
+import fr.liglab.mining.mapred.writables.ItemStatsWritable;
+
 public class ItemBigRebasingReducer extends
 		Reducer<IntWritable, IntWritable, IntWritable, IntWritable> {
 	
@@ -44,4 +49,20 @@ public class ItemBigRebasingReducer extends
 			context.write(it.next(), valueW);
 		}
 	}
+	
+	/**
+	 * Turns item counts into (support, item) pairs
+	 */
+	public static class InverseMapper extends Mapper<IntWritable, ItemStatsWritable, IntWritable, IntWritable> {
+		
+		private final IntWritable keyW = new IntWritable();
+		
+		@Override
+		protected void map(IntWritable key, ItemStatsWritable value, Context context) throws IOException,
+				InterruptedException {
+			
+			this.keyW.set(value.getSupport());
+			context.write(this.keyW, key);
+		}
+	}
 }
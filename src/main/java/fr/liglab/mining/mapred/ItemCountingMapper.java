@@ -18,52 +18,112 @@ package fr.liglab.mining.mapred;
 
 import java.io.IOException;
 
+import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 
-import fr.liglab.mining.mapred.writables.ItemAndSupportWritable;
+import fr.liglab.mining.mapred.writables.ItemStatsWritable;
 import gnu.trove.iterator.TIntIntIterator;
+import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.TIntLongMap;
 import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TIntLongHashMap;
 
+/**
+ * Counts items in the mapper's split, along with the total length of
+ * transactions containing each item, then emits (item, stats) pairs - it
+ * should be followed by ItemBigCountingReducer.StatsCombiner
+ */
 public class ItemCountingMapper extends
-		Mapper<LongWritable, Text, NullWritable, ItemAndSupportWritable> {
+		Mapper<LongWritable, Text, IntWritable, ItemStatsWritable> {
 	
 	protected TIntIntMap combiner;
+	protected TIntLongMap projectionSizes;
+	private final TIntArrayList transaction = new TIntArrayList();
 	
 	@Override
 	protected void setup(Context context) throws IOException, InterruptedException {
 		
 		this.combiner = new TIntIntHashMap();
+		this.projectionSizes = new TIntLongHashMap();
 	}
 	
 	@Override
 	protected void map(LongWritable key, Text value, Context context) 
 			throws IOException, InterruptedException {
 		
-		String[] tokens = value.toString().split("\\s+");
+		this.transaction.resetQuick();
+		parseItems(value, this.transaction);
 		
-		for (String token : tokens) {
-			int item = Integer.parseInt(token);
+		final int length = this.transaction.size();
+		for (int i = 0; i < length; i++) {
+			final int item = this.transaction.getQuick(i);
 			this.combiner.adjustOrPutValue(item, 1, 1);
+			this.projectionSizes.adjustOrPutValue(item, length, length);
+		}
+	}
+	
+	/**
+	 * Parses the line's items straight from its UTF-8 bytes (any byte below
+	 * or equal to ' ' is a separator), appending them to given list
+	 * 
+	 * @throws NumberFormatException
+	 *             if the line contains anything but integers
+	 */
+	static void parseItems(final Text line, final TIntArrayList items) {
+		final byte[] bytes = line.getBytes();
+		final int length = line.getLength();
+		
+		int i = 0;
+		while (i < length) {
+			while (i < length && bytes[i] <= ' ') {
+				i++;
+			}
+			if (i == length) {
+				break;
+			}
+			
+			boolean negative = false;
+			if (bytes[i] == '-') {
+				negative = true;
+				i++;
+			}
+			
+			final int start = i;
+			int item = 0;
+			while (i < length && bytes[i] > ' ') {
+				final int digit = bytes[i] - '0';
+				if (digit < 0 || digit > 9) {
+					throw new NumberFormatException("Unexpected character in line: " + line.toString());
+				}
+				item = item * 10 + digit;
+				i++;
+			}
+			if (i == start) {
+				throw new NumberFormatException("Unexpected character in line: " + line.toString());
+			}
+			
+			items.add(negative ? -item : item);
 		}
 	}
 	
 	@Override
 	protected void cleanup(final Context context) throws IOException, InterruptedException {
-		final NullWritable nullKey = NullWritable.get();
-		final ItemAndSupportWritable valueW = new ItemAndSupportWritable();
+		final IntWritable keyW = new IntWritable();
+		final ItemStatsWritable valueW = new ItemStatsWritable();
 		
 		TIntIntIterator it = this.combiner.iterator();
 		
 		while(it.hasNext()) {
 			it.advance();
-			valueW.set(it.key(), it.value());
-			context.write(nullKey, valueW);
+			keyW.set(it.key());
+			valueW.set(it.value(), this.projectionSizes.get(it.key()));
+			context.write(keyW, valueW);
 		}
 		
 		this.combiner = null;
+		this.projectionSizes = null;
 	}
 }
@@ -37,6 +37,8 @@ import fr.liglab.mining.internals.Selector;
 import fr.liglab.mining.io.PerItemTopKCollector;
 import fr.liglab.mining.mapred.writables.SupportAndTransactionWritable;
 import fr.liglab.mining.util.ProgressWatcherThread;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
 
 /**
  * This wrapper lets another class handle the initState instantiation
@@ -66,13 +68,15 @@ public final class MinerWrapper {
 	 *            can be null
 	 * @param globalToInitial
 	 * @param renaming
+	 * @param itemsGroups
+	 *            may be null if groups are assigned round-robin
 	 * @throws IOException
 	 * @throws InterruptedException
 	 */
 	static void mining(int gid, ExplorationStep initState,
 			org.apache.hadoop.mapreduce.Reducer<?, ?, IntWritable, SupportAndTransactionWritable>.Context context,
 			MultipleOutputs<IntWritable, SupportAndTransactionWritable> sideOutputs, int[] globalToInitial,
-			Holder<int[]> renaming) throws IOException, InterruptedException {
+			Holder<int[]> renaming, int[] itemsGroups) throws IOException, InterruptedException {
 
 		final Configuration conf = context.getConfiguration();
 
@@ -92,8 +96,9 @@ public final class MinerWrapper {
 			return;
 		}
 
-		Grouper grouper = new Grouper(nbGroups, maxId);
+		Grouper grouper = new Grouper(nbGroups, maxId, itemsGroups);
 		FrequentsIterator collected;
+		final boolean singlePass = conf.get(TopPIoverHadoop.KEY_BOUNDS_EXCHANGE) != null;
 
 		ExplorationStep.INSERT_UNCLOSED_UP_TO_ITEM = -1;
 		ExplorationStep.INSERT_UNCLOSED_FOR_FUTURE_EXTENSIONS = false;
@@ -102,6 +107,11 @@ public final class MinerWrapper {
 			collected = grouper.getNonGroupItems(gid);
 			collected = new FrequentsIteratorRenamer(collected, globalToInitial);
 			ExplorationStep.EARLYCOLLECTION = false;
+		} else if (singlePass) {
+			// collect all items : a single group with round-robin iterates over all of them
+			collected = new Grouper(1, maxId).getGroupItems(0);
+			collected = new FrequentsIteratorRenamer(collected, globalToInitial);
+			ExplorationStep.EARLYCOLLECTION = true;
 		} else {
 			// collect group
 			collected = grouper.getGroupItems(gid);
@@ -114,6 +124,20 @@ public final class MinerWrapper {
 		topKcoll.preloadBounds(DistCache.readPerItemBounds(DistCache.getCachedFiles(context),
 				context.getConfiguration()));
 
+		BoundsExchangeThread exchange = null;
+		if (singlePass) {
+			TIntSet groupItems = new TIntHashSet();
+			FrequentsIterator it = grouper.getGroupItems(gid);
+			for (int item = it.next(); item >= 0; item = it.next()) {
+				groupItems.add(globalToInitial[item]);
+			}
+			topKcoll.setEarlyCollected(groupItems);
+			
+			exchange = new BoundsExchangeThread(conf, gid, groupItems.toArray(), topKcoll);
+			exchange.poll();
+			exchange.start();
+		}
+
 		Selector chain = topKcoll.asSelector();
 
 		// startersSelector doesn't copy itself, so this only works if we call
@@ -130,6 +154,13 @@ public final class MinerWrapper {
 		miner.startMining(initState);
 		chrono = (System.currentTimeMillis() - chrono) / 1000;
 
+		if (exchange != null) {
+			exchange.shutdown();
+			exchange.join();
+			// our final bounds may still help groups that are still mining
+			exchange.publish();
+		}
+
 		context.progress();
 		long nbPatterns = topKcoll.close();
 
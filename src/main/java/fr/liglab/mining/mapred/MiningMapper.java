@@ -17,30 +17,184 @@
 package fr.liglab.mining.mapred;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
 
-public class MiningMapper extends Mapper<IntWritable, IntWritable, IntWritable, IntWritable> {
-	
-	private Grouper grouper;
-	private IntWritable keyW = new IntWritable();
+import fr.liglab.mining.mapred.writables.ConcatenatedTransactionsWritable;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntIntMap;
+
+/**
+ * Projects the input on groups : each rebased transaction is sent to every
+ * group owning at least one of its items, so each mining reducer only
+ * receives its own sub-dataset instead of scanning the whole input.
+ * 
+ * Transactions are buffered per group and emitted as
+ * ConcatenatedTransactionsWritable, once the buffers hold more than
+ * KEY_COMBINED_TRANS_SIZE items.
+ */
+public class MiningMapper extends Mapper<LongWritable, Text, IntWritable, ConcatenatedTransactionsWritable> {
+
+	/**
+	 * in items
+	 */
+	public static final int DEFAULT_COMBINED_TRANS_SIZE = 4 * 1024 * 1024;
+
+	private GroupProjector projector;
+	private TIntIntMap rebasing;
+	private final TIntArrayList items = new TIntArrayList();
 
 	@Override
 	protected void setup(Context context) throws IOException, InterruptedException {
-		
-		Configuration conf = context.getConfiguration();
-		int nbGroups = conf.getInt(TopPIoverHadoop.KEY_NBGROUPS, 1);
-		int maxId = conf.getInt(TopPIoverHadoop.KEY_REBASING_MAX_ID, 1);
-		
-		grouper = new Grouper(nbGroups, maxId);
+		this.projector = new GroupProjector(context.getConfiguration(), DistCache.getCachedFiles(context));
+		this.rebasing = DistCache.readRebasing(DistCache.getCachedFiles(context), context.getConfiguration());
 	}
-	
+
+	@Override
+	protected void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+		this.items.resetQuick();
+		ItemCountingMapper.parseItems(value, this.items);
+
+		int length = 0;
+		for (int i = 0; i < this.items.size(); i++) {
+			final int rebased = this.rebasing.get(this.items.getQuick(i));
+			if (rebased >= 0) {
+				this.items.setQuick(length++, rebased);
+			}
+		}
+
+		if (length > 0) {
+			this.projector.project(this.items.toArray(0, length), context);
+		}
+	}
+
 	@Override
-	protected void map(IntWritable key, IntWritable value, Context context) throws IOException, InterruptedException {
-		
-		this.keyW.set(this.grouper.getGroupId(value.get()));
-		context.write(this.keyW, value);
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		this.projector.flush(context);
+		this.projector = null;
+		this.rebasing = null;
+	}
+
+	/**
+	 * Used instead of MiningMapper in "many items mode", where the input has
+	 * already been filtered and rebased by FilteringMapper
+	 */
+	public static final class FilteredInputMapper extends
+			Mapper<NullWritable, ConcatenatedTransactionsWritable, IntWritable, ConcatenatedTransactionsWritable> {
+
+		private GroupProjector projector;
+
+		@Override
+		protected void setup(Context context) throws IOException, InterruptedException {
+			this.projector = new GroupProjector(context.getConfiguration(), DistCache.getCachedFiles(context));
+		}
+
+		@Override
+		protected void map(NullWritable key, ConcatenatedTransactionsWritable value, Context context)
+				throws IOException, InterruptedException {
+			final int[] concatenated = value.get();
+			int i = 0;
+			while (i < concatenated.length) {
+				final int length = concatenated[i++];
+				final int[] transaction = new int[length];
+				System.arraycopy(concatenated, i, transaction, 0, length);
+				i += length;
+				this.projector.project(transaction, context);
+			}
+		}
+
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			this.projector.flush(context);
+			this.projector = null;
+		}
+	}
+
+	private static final class GroupProjector {
+
+		private final Grouper grouper;
+		private final int bufferLimit;
+		private final List<List<int[]>> buffers;
+		private final int[] buffersLengths;
+		private long buffered = 0;
+
+		private final int[] touched;
+		private final boolean[] isTouched;
+
+		private final IntWritable keyW = new IntWritable();
+		private final ConcatenatedTransactionsWritable valueW = new ConcatenatedTransactionsWritable();
+
+		GroupProjector(Configuration conf, URI[] cachedFiles) throws IOException {
+			int nbGroups = conf.getInt(TopPIoverHadoop.KEY_NBGROUPS, 1);
+			int maxId = conf.getInt(TopPIoverHadoop.KEY_REBASING_MAX_ID, 1);
+			int[] itemsGroups = DistCache.readItemGroups(cachedFiles, conf);
+
+			this.grouper = new Grouper(nbGroups, maxId, itemsGroups);
+			this.bufferLimit = conf.getInt(TopPIoverHadoop.KEY_COMBINED_TRANS_SIZE, DEFAULT_COMBINED_TRANS_SIZE);
+			this.buffers = new ArrayList<List<int[]>>(nbGroups);
+			for (int i = 0; i < nbGroups; i++) {
+				this.buffers.add(new ArrayList<int[]>());
+			}
+			this.buffersLengths = new int[nbGroups];
+			this.touched = new int[nbGroups];
+			this.isTouched = new boolean[nbGroups];
+		}
+
+		/**
+		 * @param transaction
+		 *            rebased, without any infrequent item - may be kept in
+		 *            buffers, so it should not be recycled by the caller
+		 */
+		void project(final int[] transaction,
+				TaskInputOutputContext<?, ?, IntWritable, ConcatenatedTransactionsWritable> context)
+				throws IOException, InterruptedException {
+
+			int nbTouched = 0;
+			for (int item : transaction) {
+				final int gid = this.grouper.getGroupId(item);
+				if (!this.isTouched[gid]) {
+					this.isTouched[gid] = true;
+					this.touched[nbTouched++] = gid;
+				}
+			}
+
+			for (int i = 0; i < nbTouched; i++) {
+				final int gid = this.touched[i];
+				this.isTouched[gid] = false;
+				this.buffers.get(gid).add(transaction);
+				this.buffersLengths[gid] += transaction.length;
+				this.buffered += transaction.length;
+			}
+
+			if (this.buffered > this.bufferLimit) {
+				this.flush(context);
+			}
+		}
+
+		void flush(TaskInputOutputContext<?, ?, IntWritable, ConcatenatedTransactionsWritable> context)
+				throws IOException, InterruptedException {
+
+			for (int gid = 0; gid < this.buffers.size(); gid++) {
+				if (!this.buffers.get(gid).isEmpty()) {
+					this.keyW.set(gid);
+					this.valueW.set(this.buffers.get(gid), this.buffersLengths[gid]);
+					context.write(this.keyW, this.valueW);
+
+					this.buffers.set(gid, new ArrayList<int[]>());
+					this.buffersLengths[gid] = 0;
+				}
+			}
+
+			this.buffered = 0;
+		}
 	}
 }
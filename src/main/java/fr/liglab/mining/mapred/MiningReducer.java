@@ -17,7 +17,6 @@
 package fr.liglab.mining.mapred;
 
 import java.io.IOException;
-import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -29,18 +28,20 @@ import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 
 import fr.liglab.mining.internals.ExplorationStep;
-import fr.liglab.mining.io.FileFilteredReader;
 import fr.liglab.mining.mapred.Grouper.SingleGroup;
+import fr.liglab.mining.mapred.writables.ConcatenatedTransactionsWritable;
 import fr.liglab.mining.mapred.writables.SupportAndTransactionWritable;
 import fr.liglab.mining.util.ProgressWatcherThread;
-import gnu.trove.map.TIntIntMap;
 
-public class MiningReducer extends Reducer<IntWritable, IntWritable, IntWritable, SupportAndTransactionWritable> {
+/**
+ * Mines a group from its projected sub-dataset, as sent by MiningMapper
+ */
+public class MiningReducer extends
+		Reducer<IntWritable, ConcatenatedTransactionsWritable, IntWritable, SupportAndTransactionWritable> {
 
 	private int[] reverseRebasing;
+	private int[] itemsGroups;
 	private MultipleOutputs<IntWritable, SupportAndTransactionWritable> sideOutputs = null;
-	private boolean manyItems;
-	private String marker;
 	private int minsup;
 	private int nbGroups;
 	private int maxItemId;
@@ -50,20 +51,11 @@ public class MiningReducer extends Reducer<IntWritable, IntWritable, IntWritable
 	protected void setup(Context context) throws IOException, InterruptedException {
 		Configuration conf = context.getConfiguration();
 		this.reverseRebasing = DistCache.readReverseRebasing(DistCache.getCachedFiles(context), conf);
+		this.itemsGroups = DistCache.readItemGroups(DistCache.getCachedFiles(context), conf);
 
 		if (conf.get(MinerWrapper.KEY_BOUNDS_PATH) != null) {
 			this.sideOutputs = new MultipleOutputs<IntWritable, SupportAndTransactionWritable>(context);
 		}
-		this.manyItems = conf.getBoolean(TopPIoverHadoop.KEY_MANY_ITEMS_MODE, false);
-		if (manyItems) {
-			this.marker = TopPIoverHadoop.FILTERED_DIRNAME;
-		} else {
-			this.marker = conf.get(TopPIoverHadoop.KEY_INPUT);
-			String[] sp = marker.split("/");
-			if (sp.length > 2) {
-				this.marker = sp[sp.length - 1];
-			}
-		}
 		this.minsup = conf.getInt(TopPIoverHadoop.KEY_MINSUP, 10);
 		this.nbGroups = conf.getInt(TopPIoverHadoop.KEY_NBGROUPS, 1);
 		this.maxItemId = conf.getInt(TopPIoverHadoop.KEY_REBASING_MAX_ID, 1);
@@ -71,44 +63,32 @@ public class MiningReducer extends Reducer<IntWritable, IntWritable, IntWritable
 	}
 
 	@Override
-	protected void reduce(IntWritable gidW, Iterable<IntWritable> itemsW, Context context) throws IOException,
-			InterruptedException {
-		Configuration conf = context.getConfiguration();
+	protected void reduce(IntWritable gidW, Iterable<ConcatenatedTransactionsWritable> transactions, Context context)
+			throws IOException, InterruptedException {
 		int gid = gidW.get();
 
 		ProgressWatcherThread coucou = new ProgressWatcherThread();
 		coucou.setHadoopContext(context);
 		coucou.start();
 
-		List<URI> cached = new ArrayList<URI>();
-		for (URI path : DistCache.getCachedFiles(context)) {
-			if (path.toString().contains(marker)) {
-				cached.add(path);
-			}
+		// each value's array is freshly allocated by readFields, so we can keep them
+		List<int[]> projected = new ArrayList<int[]>();
+		for (ConcatenatedTransactionsWritable value : transactions) {
+			projected.add(value.get());
 		}
 
-		SingleGroup filter = new SingleGroup(nbGroups, maxItemId, gid);
+		SingleGroup filter = new SingleGroup(nbGroups, maxItemId, this.itemsGroups, gid);
+		FilteredDatasetsReader reader = new FilteredDatasetsReader(projected, filter);
 		Holder<int[]> renaming = new Holder<int[]>();
-		ExplorationStep initState = null;
-		if (manyItems) {
-			FilteredDatasetsReader reader = new FilteredDatasetsReader(cached, conf, filter);
-			initState = new ExplorationStep(minsup, reader, maxItemId, this.reverseRebasing, renaming, k);
-		} else {
-			if (cached.size() > 1) {
-				throw new RuntimeException("Without 'many items mode' a single input file is expected in the distcache");
-			}
-			URI path = cached.get(0);
-			TIntIntMap rebasing = DistCache.readRebasing(DistCache.getCachedFiles(context), conf);
-			FileFilteredReader reader = new FileFilteredReader(path, rebasing, filter);
-			initState = new ExplorationStep(minsup, reader, maxItemId, this.reverseRebasing, renaming, k);
-		}
+		ExplorationStep initState = new ExplorationStep(minsup, reader, maxItemId, this.reverseRebasing, renaming, k);
 
 		System.err.println("GROUP " + gid + ": " + initState.counters.toString());
 
 		coucou.interrupt();
 		coucou = null;
 
-		MinerWrapper.mining(gid, initState, context, this.sideOutputs, this.reverseRebasing, renaming);
+		MinerWrapper.mining(gid, initState, context, this.sideOutputs, this.reverseRebasing, renaming,
+				this.itemsGroups);
 	}
 
 	@Override
@@ -17,7 +17,6 @@
 package fr.liglab.mining.mapred;
 
 import java.io.IOException;
-import java.util.Arrays;
 
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.mapreduce.Reducer.Context;
@@ -26,9 +25,8 @@ import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import fr.liglab.mining.internals.FrequentsIterator;
 import fr.liglab.mining.io.PerItemTopKCollector;
 import fr.liglab.mining.mapred.writables.SupportAndTransactionWritable;
-import gnu.trove.iterator.TIntIntIterator;
 import gnu.trove.iterator.TIntObjectIterator;
-import gnu.trove.map.TIntIntMap;
+import gnu.trove.set.TIntSet;
 
 @SuppressWarnings("rawtypes")
 class PerItemTopKHadoopCollector extends PerItemTopKCollector {
@@ -39,6 +37,7 @@ class PerItemTopKHadoopCollector extends PerItemTopKCollector {
 	private final Context context;
 	private final IntWritable keyW = new IntWritable();
 	private final SupportAndTransactionWritable valueW = new SupportAndTransactionWritable();
+	private TIntSet earlyCollected = null;
 	
 	public PerItemTopKHadoopCollector(Context c, final int k, final int nbItems, final FrequentsIterator items) {
 		super(null, k, nbItems, items);
@@ -109,18 +108,40 @@ class PerItemTopKHadoopCollector extends PerItemTopKCollector {
 		}
 	}
 
-	// note that "close" overloaded by this class takes into account potentially-null patterns
-	public void preloadBounds(TIntIntMap perItemBounds) {
-		TIntIntIterator iterator = perItemBounds.iterator();
-		int[] fakePattern = new int[] { };
-		while (iterator.hasNext()) {
-			iterator.advance();
-			
-			final int item = iterator.key();
-			PatternWithFreq[] top = this.topK.get(item);
+	/**
+	 * Restricts early collection (see ExplorationStep.EARLYCOLLECTION) to
+	 * given items - other collected items will only get patterns from their
+	 * actual first parent
+	 */
+	public void setEarlyCollected(TIntSet items) {
+		this.earlyCollected = items;
+	}
+	
+	@Override
+	public boolean isCollected(int item) {
+		return super.isCollected(item) && (this.earlyCollected == null || this.earlyCollected.contains(item));
+	}
+	
+	/**
+	 * Raises an item's admission bound (as given by getBound) to a value
+	 * published by another group : patterns less frequent than bound-1 are
+	 * dropped from its top-K. Does nothing if the current bound is higher.
+	 */
+	public void raiseBound(final int item, final int bound) {
+		PatternWithFreq[] top = this.topK.get(item);
+		
+		if (top != null && this.getBound(item) < bound) {
+			final int support = bound - 1;
+			final PatternWithFreq fake = new PatternWithFreq(support, new int[] { }, true);
 			
-			if (top != null) {
-				Arrays.fill(top, new PatternWithFreq(iterator.value(), fakePattern, true));
+			synchronized (top) {
+				for (int i = this.k - 1; i >= 0 && (top[i] == null || top[i].getSupportCount() < support); i--) {
+					if (top[i] != null) {
+						top[i].onEjection();
+					}
+					top[i] = fake;
+				}
+				this.publishBound(item, top);
 			}
 		}
 	}
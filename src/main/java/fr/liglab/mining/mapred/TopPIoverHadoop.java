@@ -17,6 +17,7 @@
 package fr.liglab.mining.mapred;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.util.logging.Logger;
 
 import org.apache.commons.cli.CommandLine;
@@ -24,27 +25,36 @@ import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.PosixParser;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.SequenceFile.Reader;
 import org.apache.hadoop.mapreduce.Counter;
-import org.apache.hadoop.mapreduce.CounterGroup;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.TaskCounter;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
-import org.apache.hadoop.mapreduce.lib.map.InverseMapper;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.apache.hadoop.util.Tool;
 
+import fr.liglab.mining.StarterTrace;
 import fr.liglab.mining.TopPIcli;
 import fr.liglab.mining.mapred.writables.ConcatenatedTransactionsWritable;
 import fr.liglab.mining.mapred.writables.ItemAndSupportWritable;
+import fr.liglab.mining.mapred.writables.ItemStatsWritable;
 import fr.liglab.mining.mapred.writables.SupportAndTransactionWritable;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.iterator.TIntIntIterator;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.TIntLongMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TIntLongHashMap;
 
 /**
  * The Hadoop driver.
@@ -72,6 +82,16 @@ public class TopPIoverHadoop extends Configured implements Tool {
 	// 2 million items
 	public static final String KEY_MANY_ITEMS_MODE = "toppi.items.many";
 	
+	// "modulo" (default) assigns starters to groups round-robin, "cost" balances
+	// groups according to starters' estimated cost (and Grouper.KEY_COST_HINTS)
+	public static final String KEY_GROUPING = "toppi.grouping";
+
+	// when set, groups are mined in a single pass and share their per-item
+	// bounds through this directory (on the job's filesystem) while mining
+	public static final String KEY_BOUNDS_EXCHANGE = "toppi.bounds.exchange";
+	// in milliseconds - defaults to BoundsExchangeThread.DEFAULT_PERIOD
+	public static final String KEY_BOUNDS_EXCHANGE_PERIOD = "toppi.bounds.exchange.period";
+
 	// set it to k' < k if the final step should over-filter by correlation with the key item
 	public static final String KEY_CORRELATION_RESULTS = "toppi.pval.k";
 
@@ -130,6 +150,7 @@ public class TopPIoverHadoop extends Configured implements Tool {
 		String topKperItemPath = this.outputPrefix + "/" + "topPatterns";
 		String rawPatternsPath = this.outputPrefix + "/" + "rawPatterns";
 		String boundsPath = this.outputPrefix + "/" + "perItemBounds";
+		String groupsPath = this.outputPrefix + "/" + DistCache.ITEM_GROUPS_TOKEN;
 		if (conf.getBoolean(KEY_MANY_ITEMS_MODE, false)) {
 			if (!bigItemCount(itemCountPath) || !genBigItemMap(itemCountPath, rebasingMapPath)) {
 				return 1;
@@ -139,14 +160,29 @@ public class TopPIoverHadoop extends Configured implements Tool {
 			}
 			this.input = filteredInputPath;
 		} else {
-			if (!genItemMap(rebasingMapPath)) {
+			if (!bigItemCount(itemCountPath) || !genItemMap(itemCountPath, rebasingMapPath)) {
 				return 1;
 			}
 		}
 
+		if ("cost".equals(conf.get(KEY_GROUPING, "modulo"))) {
+			genGroupsMap(itemCountPath, rebasingMapPath, groupsPath);
+		} else {
+			groupsPath = null;
+		}
+
 		rawPatternsPath = rawPatternsPath + "/";
-		if (mineFirstPass(rawPatternsPath + "1", boundsPath, rebasingMapPath)
-				&& mineSecondPass(rawPatternsPath + "2", boundsPath, rebasingMapPath)
+		if (conf.get(KEY_BOUNDS_EXCHANGE) != null) {
+			if (mineSinglePass(rawPatternsPath + "1", rebasingMapPath, groupsPath)
+					&& aggregate(topKperItemPath, rawPatternsPath + "1")) {
+				return 0;
+			} else {
+				return 1;
+			}
+		}
+
+		if (mineFirstPass(rawPatternsPath + "1", boundsPath, rebasingMapPath, groupsPath)
+				&& mineSecondPass(rawPatternsPath + "2", boundsPath, rebasingMapPath, groupsPath)
 				&& aggregate(topKperItemPath, rawPatternsPath + "1", rawPatternsPath + "2")) {
 
 			return 0;
@@ -194,6 +230,8 @@ public class TopPIoverHadoop extends Configured implements Tool {
 			DistCache.copyToCache(job, this.input);
 		} else {
 			job.setReducerClass(AggregationReducer.class);
+			job.setCombinerClass(AggregationReducer.TopKCombiner.class);
+			job.setCombinerKeyGroupingComparatorClass(ItemAndSupportWritable.ItemOnlyComparator.class);
 		}
 		
 		job.setNumReduceTasks(this.getConf().getInt(KEY_NBGROUPS, 1));
@@ -202,43 +240,183 @@ public class TopPIoverHadoop extends Configured implements Tool {
 	}
 
 	/**
-	 * Item counting and rebasing job; its output is the rebasing map
+	 * Rebasing from item counts (as written by bigItemCount) : items are
+	 * ranked by decreasing support, ties being broken by ascending item ID.
+	 * Frequent items fit in memory, so this is done by the driver, which
+	 * writes the rebasing map as a single SequenceFile (item, rank).
 	 * KEY_REBASING_MAX_ID will be set in current Configuration
 	 * 
 	 * @return true on success
 	 * @throws IOException
-	 * @throws InterruptedException
-	 * @throws ClassNotFoundException
 	 */
-	private boolean genItemMap(String output) throws IOException, ClassNotFoundException, InterruptedException {
+	private boolean genItemMap(String input, String output) throws IOException {
+		Configuration conf = this.getConf();
+		FileSystem fs = FileSystem.get(conf);
 
-		Job job = Job.getInstance(this.getConf(), "Computing frequent items mapping to groups, from " + this.input);
-		job.setJarByClass(TopPIoverHadoop.class);
+		// support and item packed such that ascending order is ranking order
+		TLongArrayList ranking = new TLongArrayList();
+		IntWritable keyW = new IntWritable();
+		IntWritable valueW = new IntWritable();
+		ItemStatsWritable statsW = new ItemStatsWritable();
 
-		job.setInputFormatClass(TextInputFormat.class);
-		job.setOutputFormatClass(SequenceFileOutputFormat.class);
-		job.setOutputKeyClass(IntWritable.class);
-		job.setOutputValueClass(IntWritable.class);
+		for (FileStatus status : fs.listStatus(new Path(input))) {
+			if (!status.getPath().getName().startsWith("part")) {
+				continue;
+			}
+			SequenceFile.Reader reader = new SequenceFile.Reader(conf, Reader.file(status.getPath()));
+			while (reader.next(keyW, statsW)) {
+				ranking.add(((long) -statsW.getSupport() << 32) | ((keyW.get() ^ Integer.MIN_VALUE) & 0xFFFFFFFFL));
+			}
+			reader.close();
+		}
+
+		ranking.sort();
+
+		SequenceFile.Writer writer = SequenceFile.createWriter(conf,
+				SequenceFile.Writer.file(new Path(output, "part-r-00000")),
+				SequenceFile.Writer.keyClass(IntWritable.class), SequenceFile.Writer.valueClass(IntWritable.class));
+
+		for (int rank = 0; rank < ranking.size(); rank++) {
+			keyW.set(((int) ranking.get(rank)) ^ Integer.MIN_VALUE);
+			valueW.set(rank);
+			writer.append(keyW, valueW);
+		}
+
+		writer.close();
+		fs.close();
+
+		conf.setInt(KEY_REBASING_MAX_ID, ranking.size() - 1);
 
+		return true;
+	}
+
+	/**
+	 * Estimates each starter's cost from the statistics gathered by
+	 * bigItemCount, then bin-packs starters in groups. The result is written
+	 * as a single SequenceFile (rebased item, group ID).
+	 * 
+	 * @throws IOException
+	 */
+	private void genGroupsMap(String countsPath, String rebasingMapPath, String output) throws IOException {
+		Configuration conf = this.getConf();
+		FileSystem fs = FileSystem.get(conf);
+		IntWritable keyW = new IntWritable();
+		IntWritable valueW = new IntWritable();
+		ItemStatsWritable statsW = new ItemStatsWritable();
+
+		TIntIntMap rebasing = new TIntIntHashMap();
+		for (FileStatus status : fs.listStatus(new Path(rebasingMapPath))) {
+			if (status.getPath().getName().startsWith("part")) {
+				SequenceFile.Reader reader = new SequenceFile.Reader(conf, Reader.file(status.getPath()));
+				while (reader.next(keyW, valueW)) {
+					rebasing.put(keyW.get(), valueW.get());
+				}
+				reader.close();
+			}
+		}
+
+		long[] costs = new long[conf.getInt(KEY_REBASING_MAX_ID, 0) + 1];
+		for (FileStatus status : fs.listStatus(new Path(countsPath))) {
+			if (status.getPath().getName().startsWith("part")) {
+				SequenceFile.Reader reader = new SequenceFile.Reader(conf, Reader.file(status.getPath()));
+				while (reader.next(keyW, statsW)) {
+					if (rebasing.containsKey(keyW.get())) {
+						costs[rebasing.get(keyW.get())] = Grouper.estimateCost(statsW.getSupport(),
+								statsW.getProjectionSize());
+					}
+				}
+				reader.close();
+			}
+		}
+
+		String costHints = conf.get(Grouper.KEY_COST_HINTS);
+		if (costHints != null) {
+			TIntLongMap measured = StarterTrace.readCosts(new InputStreamReader(fs.open(new Path(costHints))));
+			TIntLongMap hints = new TIntLongHashMap();
+			TIntIntIterator it = rebasing.iterator();
+			while (it.hasNext()) {
+				it.advance();
+				if (measured.containsKey(it.key())) {
+					hints.put(it.value(), measured.get(it.key()));
+				}
+			}
+			Grouper.applyCostHints(costs, hints);
+		}
+
+		int[] groups = Grouper.packByCost(costs, conf.getInt(KEY_NBGROUPS, 1));
+
+		SequenceFile.Writer writer = SequenceFile.createWriter(conf,
+				SequenceFile.Writer.file(new Path(output, DistCache.ITEM_GROUPS_TOKEN)),
+				SequenceFile.Writer.keyClass(IntWritable.class), SequenceFile.Writer.valueClass(IntWritable.class));
+
+		for (int item = 0; item < groups.length; item++) {
+			keyW.set(item);
+			valueW.set(groups[item]);
+			writer.append(keyW, valueW);
+		}
+
+		writer.close();
+		fs.close();
+	}
+
+	/**
+	 * Mining jobs read the whole input, MiningMapper projecting it on groups
+	 */
+	private void setMiningInput(Job job) throws IOException {
+		if (this.getConf().getBoolean(KEY_MANY_ITEMS_MODE, false)) {
+			job.setInputFormatClass(SequenceFileInputFormat.class);
+			job.setMapperClass(MiningMapper.FilteredInputMapper.class);
+		} else {
+			job.setInputFormatClass(TextInputFormat.class);
+			job.setMapperClass(MiningMapper.class);
+		}
 		FileInputFormat.addInputPath(job, new Path(this.input));
-		FileOutputFormat.setOutputPath(job, new Path(output));
 
-		job.setMapperClass(ItemCountingMapper.class);
-		job.setMapOutputKeyClass(NullWritable.class);
-		job.setMapOutputValueClass(ItemAndSupportWritable.class);
+		job.setMapOutputKeyClass(IntWritable.class);
+		job.setMapOutputValueClass(ConcatenatedTransactionsWritable.class);
+	}
 
-		job.setReducerClass(ItemCountingReducer.class);
-		job.setNumReduceTasks(1);
+	/**
+	 * Mining in a single pass, where each group collects all items. Groups
+	 * exchange their per-item bounds through KEY_BOUNDS_EXCHANGE, which is
+	 * emptied before and deleted after the job.
+	 * 
+	 * @param groupsPath
+	 *            may be null if groups are assigned round-robin
+	 * @return true on success
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws ClassNotFoundException
+	 */
+	private boolean mineSinglePass(String output, String rebasingMapPath, String groupsPath) throws IOException,
+			ClassNotFoundException, InterruptedException {
+		Configuration config = this.getConf();
 
-		boolean success = job.waitForCompletion(true);
+		Path exchangePath = new Path(config.get(KEY_BOUNDS_EXCHANGE));
+		FileSystem exchangeFS = exchangePath.getFileSystem(config);
+		exchangeFS.delete(exchangePath, true);
+		exchangeFS.mkdirs(exchangePath);
 
-		if (success) {
-			CounterGroup counters = job.getCounters().getGroup(ItemCountingReducer.COUNTERS_GROUP);
-			Counter rebasingMaxID = counters.findCounter(ItemCountingReducer.COUNTER_REBASING_MAX_ID);
+		Job job = Job.getInstance(config, "Mining (single pass) " + this.input);
+		job.setJarByClass(TopPIoverHadoop.class);
 
-			this.getConf().setInt(KEY_REBASING_MAX_ID, (int) rebasingMaxID.getValue());
+		this.setMiningInput(job);
+
+		job.setReducerClass(MiningReducer.class);
+		job.setNumReduceTasks(config.getInt(KEY_NBGROUPS, 1));
+
+		FileOutputFormat.setOutputPath(job, new Path(output));
+		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+		job.setOutputKeyClass(IntWritable.class);
+		job.setOutputValueClass(SupportAndTransactionWritable.class);
+
+		DistCache.copyToCache(job, rebasingMapPath);
+		if (groupsPath != null) {
+			DistCache.copyToCache(job, groupsPath);
 		}
 
+		boolean success = job.waitForCompletion(true);
+		exchangeFS.delete(exchangePath, true);
 		return success;
 	}
 
@@ -248,24 +426,21 @@ public class TopPIoverHadoop extends Configured implements Tool {
 	 * @param output
 	 * @param bounds
 	 *            path of the bounds side-file
+	 * @param groupsPath
+	 *            may be null if groups are assigned round-robin
 	 * @return true on success
 	 * @throws IOException
 	 * @throws InterruptedException
 	 * @throws ClassNotFoundException
 	 */
-	private boolean mineFirstPass(String output, String bounds, String rebasingMapPath) throws IOException,
-			ClassNotFoundException, InterruptedException {
+	private boolean mineFirstPass(String output, String bounds, String rebasingMapPath, String groupsPath)
+			throws IOException, ClassNotFoundException, InterruptedException {
 		Configuration config = this.getConf();
 		
 		Job job = Job.getInstance(config, "Mining (first pass) " + this.input);
 		job.setJarByClass(TopPIoverHadoop.class);
 
-		job.setInputFormatClass(SequenceFileInputFormat.class);
-		FileInputFormat.addInputPath(job, new Path(rebasingMapPath));
-
-		job.setMapperClass(MiningMapper.class);
-		job.setMapOutputKeyClass(IntWritable.class);
-		job.setMapOutputValueClass(IntWritable.class);
+		this.setMiningInput(job);
 
 		job.setReducerClass(MiningReducer.class);
 		job.setNumReduceTasks(config.getInt(KEY_NBGROUPS, 1));
@@ -281,7 +456,9 @@ public class TopPIoverHadoop extends Configured implements Tool {
 		job.getConfiguration().set(MinerWrapper.KEY_BOUNDS_PATH, "tmp/bounds");
 
 		DistCache.copyToCache(job, rebasingMapPath);
-		DistCache.copyToCache(job, this.input);
+		if (groupsPath != null) {
+			DistCache.copyToCache(job, groupsPath);
+		}
 
 		if (job.waitForCompletion(true)) {
 			FileSystem fs = FileSystem.get(config);
@@ -307,22 +484,19 @@ public class TopPIoverHadoop extends Configured implements Tool {
 	 * @param output
 	 * @param bounds
 	 *            path of the bounds side-file
+	 * @param groupsPath
+	 *            may be null if groups are assigned round-robin
 	 * @return true on success
 	 * @throws IOException
 	 * @throws InterruptedException
 	 * @throws ClassNotFoundException
 	 */
-	private boolean mineSecondPass(String output, String bounds, String rebasingMapPath) throws IOException,
-			ClassNotFoundException, InterruptedException {
+	private boolean mineSecondPass(String output, String bounds, String rebasingMapPath, String groupsPath)
+			throws IOException, ClassNotFoundException, InterruptedException {
 		Job job = Job.getInstance(this.getConf(), "Mining (second pass) " + this.input);
 		job.setJarByClass(TopPIoverHadoop.class);
 
-		job.setInputFormatClass(SequenceFileInputFormat.class);
-		FileInputFormat.addInputPath(job, new Path(rebasingMapPath));
-
-		job.setMapperClass(MiningMapper.class);
-		job.setMapOutputKeyClass(IntWritable.class);
-		job.setMapOutputValueClass(IntWritable.class);
+		this.setMiningInput(job);
 
 		job.setReducerClass(MiningReducer.class);
 		job.setNumReduceTasks(this.getConf().getInt(KEY_NBGROUPS, 1));
@@ -334,13 +508,27 @@ public class TopPIoverHadoop extends Configured implements Tool {
 
 		DistCache.copyToCache(job, rebasingMapPath);
 		DistCache.copyToCache(job, bounds);
-		DistCache.copyToCache(job, this.input);
+		if (groupsPath != null) {
+			DistCache.copyToCache(job, groupsPath);
+		}
 
 		job.getConfiguration().setBoolean(MinerWrapper.KEY_COLLECT_NON_GROUP, true);
 
 		return job.waitForCompletion(true);
 	}
 
+	/**
+	 * Counts items in the input, keeping frequent ones only. Its output is a
+	 * set of (item, support) SequenceFiles.
+	 * 
+	 * KEY_REBASING_MAX_ID will be set in current Configuration to the number
+	 * of frequent items
+	 * 
+	 * @return true on success
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws ClassNotFoundException
+	 */
 	private boolean bigItemCount(String output) throws IOException, ClassNotFoundException, InterruptedException {
 		Job job = Job.getInstance(this.getConf(), "Counting items from " + this.input);
 		job.setJarByClass(TopPIoverHadoop.class);
@@ -348,13 +536,17 @@ public class TopPIoverHadoop extends Configured implements Tool {
 		job.setInputFormatClass(TextInputFormat.class);
 		job.setOutputFormatClass(SequenceFileOutputFormat.class);
 		job.setOutputKeyClass(IntWritable.class);
-		job.setOutputValueClass(IntWritable.class);
+		job.setOutputValueClass(ItemStatsWritable.class);
 
 		FileInputFormat.addInputPath(job, new Path(this.input));
 		FileOutputFormat.setOutputPath(job, new Path(output));
 
-		job.setMapperClass(ItemBigCountingMapper.class);
+		job.setMapperClass(ItemCountingMapper.class);
+		job.setMapOutputKeyClass(IntWritable.class);
+		job.setMapOutputValueClass(ItemStatsWritable.class);
+		job.setCombinerClass(ItemBigCountingReducer.StatsCombiner.class);
 		job.setReducerClass(ItemBigCountingReducer.class);
+		job.setNumReduceTasks(this.getConf().getInt(KEY_NBGROUPS, 1));
 
 		boolean success = job.waitForCompletion(true);
 
@@ -379,7 +571,7 @@ public class TopPIoverHadoop extends Configured implements Tool {
 		FileInputFormat.addInputPath(job, new Path(input));
 		FileOutputFormat.setOutputPath(job, new Path(output));
 
-		job.setMapperClass(InverseMapper.class);
+		job.setMapperClass(ItemBigRebasingReducer.InverseMapper.class);
 		job.setReducerClass(ItemBigRebasingReducer.class);
 		job.setNumReduceTasks(1);
 
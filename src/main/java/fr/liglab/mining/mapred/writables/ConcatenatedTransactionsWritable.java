@@ -24,8 +24,13 @@ import java.util.Iterator;
 import java.util.List;
 
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
 
-
+/**
+ * A list of transactions, concatenated as [length, items...] in a single
+ * array. Integers are written as variable-length ints, so rebased
+ * (frequent, hence small) item IDs take one or two bytes.
+ */
 public final class ConcatenatedTransactionsWritable implements Writable {
 	
 	private int toBeWrittenConcatenatedLengths;
@@ -58,32 +63,32 @@ public final class ConcatenatedTransactionsWritable implements Writable {
 	
 	@Override
 	public void readFields(DataInput in) throws IOException {
-		int length = in.readInt();
+		int length = WritableUtils.readVInt(in);
 		this.fromDisk = new int[length];
 		
 		for (int i = 0; i < length; i++) {
-			this.fromDisk[i] = in.readInt();
+			this.fromDisk[i] = WritableUtils.readVInt(in);
 		}
 	}
 
 	@Override
 	public void write(DataOutput out) throws IOException {
 		if (this.toBeWritten != null) {
-			out.writeInt(this.toBeWrittenConcatenatedLengths + this.toBeWritten.size());
+			WritableUtils.writeVInt(out, this.toBeWrittenConcatenatedLengths + this.toBeWritten.size());
 			
 			Iterator<int[]> it = this.toBeWritten.iterator();
 			while (it.hasNext()) {
 				final int[] transaction = it.next();
-				out.writeInt(transaction.length);
+				WritableUtils.writeVInt(out, transaction.length);
 				
 				for (int item : transaction) {
-					out.writeInt(item);
+					WritableUtils.writeVInt(out, item);
 				}
 			}
 		} else {
-			out.writeInt(this.fromDisk.length);
+			WritableUtils.writeVInt(out, this.fromDisk.length);
 			for (int i = 0; i < this.fromDisk.length; i++) {
-				out.writeInt(this.fromDisk[i]);
+				WritableUtils.writeVInt(out, this.fromDisk[i]);
 			}
 		}
 	}
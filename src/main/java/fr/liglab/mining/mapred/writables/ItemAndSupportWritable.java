@@ -22,10 +22,12 @@ import java.io.IOException;
 
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
 /**
- * Super-generic writer for a pair of integers (a,b)
+ * Super-generic writer for a pair of integers (a,b), written as variable-length ints
  * It's safer to create sub-classes with semantically-named getter/setters/comparator factories
+ * Comparators below work on serialized bytes, without instantiating keys
  * @author kirchgem
  */
 public class ItemAndSupportWritable implements WritableComparable<ItemAndSupportWritable> {
@@ -50,14 +52,14 @@ public class ItemAndSupportWritable implements WritableComparable<ItemAndSupport
 	
 	@Override
 	public void readFields(DataInput in) throws IOException {
-		this.item = in.readInt();
-		this.support = in.readInt();
+		this.item = WritableUtils.readVInt(in);
+		this.support = WritableUtils.readVInt(in);
 	}
 
 	@Override
 	public void write(DataOutput out) throws IOException {
-		out.writeInt(this.item);
-		out.writeInt(this.support);
+		WritableUtils.writeVInt(out, this.item);
+		WritableUtils.writeVInt(out, this.support);
 	}
 	
 	@Override
@@ -109,16 +111,20 @@ public class ItemAndSupportWritable implements WritableComparable<ItemAndSupport
 		}
 
 		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
-			int item1 = readInt(b1, s1);
-			int item2 = readInt(b2, s2);
-			
-			if (item1 == item2) {
-				int support1 = readInt(b1, s1 + Integer.SIZE / Byte.SIZE);
-				int support2 = readInt(b2, s2 + Integer.SIZE / Byte.SIZE);
+			try {
+				int item1 = readVInt(b1, s1);
+				int item2 = readVInt(b2, s2);
 				
-				return support2 - support1;
-			} else {
-				return item1 - item2;
+				if (item1 == item2) {
+					int support1 = readVInt(b1, s1 + WritableUtils.decodeVIntSize(b1[s1]));
+					int support2 = readVInt(b2, s2 + WritableUtils.decodeVIntSize(b2[s2]));
+					
+					return support2 - support1;
+				} else {
+					return item1 - item2;
+				}
+			} catch (IOException e) {
+				throw new IllegalArgumentException(e);
 			}
 		}
 	}
@@ -143,9 +149,13 @@ public class ItemAndSupportWritable implements WritableComparable<ItemAndSupport
 		}
 
 		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
-			int item1 = readInt(b1, s1);
-			int item2 = readInt(b2, s2);
-			return item1 - item2;
+			try {
+				int item1 = readVInt(b1, s1);
+				int item2 = readVInt(b2, s2);
+				return item1 - item2;
+			} catch (IOException e) {
+				throw new IllegalArgumentException(e);
+			}
 		}
 	}
 }
@@ -0,0 +1,67 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.mapred.writables;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+
+/**
+ * Statistics gathered about an item while counting : its support and the sum
+ * of the lengths of transactions containing it (ie. the size of its
+ * projected dataset), which allows to estimate its mining cost.
+ */
+public class ItemStatsWritable implements Writable {
+
+	protected int support = 0;
+	protected long projectionSize = 0;
+
+	public ItemStatsWritable() {
+	}
+
+	public void set(int s, long size) {
+		this.support = s;
+		this.projectionSize = size;
+	}
+
+	public int getSupport() {
+		return this.support;
+	}
+
+	public long getProjectionSize() {
+		return this.projectionSize;
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		this.support = in.readInt();
+		this.projectionSize = in.readLong();
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(this.support);
+		out.writeLong(this.projectionSize);
+	}
+
+	@Override
+	public String toString() {
+		return this.support + " (" + this.projectionSize + ")";
+	}
+}
@@ -21,7 +21,12 @@ import java.io.DataOutput;
 import java.io.IOException;
 
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
 
+/**
+ * A pattern and its support. Items are written as variable-length deltas
+ * from the previous one, so sorted patterns take one or two bytes per item.
+ */
 public class SupportAndTransactionWritable implements Writable {
 	
 	private int support;
@@ -64,23 +69,27 @@ public class SupportAndTransactionWritable implements Writable {
 	
 	@Override
 	public void readFields(DataInput in) throws IOException {
-		this.support = in.readInt();
+		this.support = WritableUtils.readVInt(in);
 		
-		final int length = in.readInt();
+		final int length = WritableUtils.readVInt(in);
 		this.transaction = new int[length];
 		
+		int previous = 0;
 		for (int i = 0; i < this.transaction.length; i++) {
-			this.transaction[i] = in.readInt();
+			previous += WritableUtils.readVInt(in);
+			this.transaction[i] = previous;
 		}
 	}
 
 	@Override
 	public void write(DataOutput out) throws IOException {
-		out.writeInt(this.support);
-		out.writeInt(this.transaction.length);
+		WritableUtils.writeVInt(out, this.support);
+		WritableUtils.writeVInt(out, this.transaction.length);
 		
+		int previous = 0;
 		for (int item : this.transaction) {
-			out.writeInt(item);
+			WritableUtils.writeVInt(out, item - previous);
+			previous = item;
 		}
 	}
 }
@@ -16,6 +16,10 @@
 */
 package fr.liglab.mining.util;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
 public class MemoryPeakWatcherThread extends Thread {
 	/**
 	 * garbage-collect-n-peek delay, in milliseconds
@@ -33,6 +37,22 @@ public class MemoryPeakWatcherThread extends Thread {
 		return maxUsedMemory;
 	}
 	
+	/**
+	 * Unlike getMaxUsedMemory this includes garbage, but it does not miss
+	 * peaks happening between two checks.
+	 * 
+	 * @return sum of heap memory pools' peak usage since JVM start, in bytes
+	 */
+	public static long getPeakHeapUsage() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+	
 	@Override
 	public void run() {
 		this.runtime = Runtime.getRuntime();
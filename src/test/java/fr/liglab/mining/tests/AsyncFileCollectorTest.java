@@ -0,0 +1,122 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.liglab.mining.io.AsyncFileCollector;
+
+public class AsyncFileCollectorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Each thread collects patterns whose first item is the thread's ID and
+	 * second item is a sequence number
+	 */
+	private static Thread[] startProducers(final AsyncFileCollector collector, final int nbThreads,
+			final int perThread, final Throwable[] failures) {
+		Thread[] threads = new Thread[nbThreads];
+		for (int t = 0; t < nbThreads; t++) {
+			final int id = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < perThread; i++) {
+							collector.collect(i % 97, new int[] { id, i, 12345678 });
+						}
+					} catch (RuntimeException e) {
+						failures[id] = e;
+					}
+				}
+			};
+			threads[t].start();
+		}
+		return threads;
+	}
+
+	@Test
+	public void testConcurrentWrites() throws IOException, InterruptedException {
+		final int nbThreads = 4;
+		final int perThread = 20000;
+		File output = new File(this.folder.getRoot(), "async.dat");
+		AsyncFileCollector collector = new AsyncFileCollector(output.getPath(), 4096, 2);
+
+		Throwable[] failures = new Throwable[nbThreads];
+		for (Thread t : startProducers(collector, nbThreads, perThread, failures)) {
+			t.join();
+		}
+		assertEquals(nbThreads * perThread, collector.close());
+		assertEquals(3 * nbThreads * perThread, collector.getCollectedLength());
+
+		int[] next = new int[nbThreads];
+		List<String> lines = PartitionedFileCollectorTest.readLines(output);
+		assertEquals(nbThreads * perThread, lines.size());
+		for (String line : lines) {
+			String[] fields = line.split("[\t ]");
+			int thread = Integer.parseInt(fields[1]);
+			int i = Integer.parseInt(fields[2]);
+			// each thread's patterns come in their collection order
+			assertEquals(next[thread], i);
+			assertEquals(Integer.toString(i % 97), fields[0]);
+			assertEquals("12345678", fields[3]);
+			next[thread]++;
+		}
+	}
+
+	/**
+	 * Writing to /dev/full fails as if the disk was full : producers and
+	 * close() should fail instead of waiting forever
+	 */
+	@Test(timeout = 20000)
+	public void testWriteFailure() throws IOException, InterruptedException {
+		File full = new File("/dev/full");
+		Assume.assumeTrue(full.exists() && full.canWrite());
+
+		final int nbThreads = 3;
+		AsyncFileCollector collector = new AsyncFileCollector(full.getPath(), 1024, 2);
+		Throwable[] failures = new Throwable[nbThreads];
+		for (Thread t : startProducers(collector, nbThreads, 100000, failures)) {
+			t.join();
+		}
+		for (Throwable failure : failures) {
+			assertNotNull(failure);
+			assertTrue(failure.getCause() instanceof IOException);
+		}
+
+		try {
+			collector.close();
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof IOException);
+			return;
+		}
+		throw new AssertionError("close() should re-throw writer's failure");
+	}
+}
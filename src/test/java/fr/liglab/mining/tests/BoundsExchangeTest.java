@@ -0,0 +1,60 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.liglab.mining.mapred.TopPIoverHadoop;
+
+public class BoundsExchangeTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * A single pass exchanging bounds, even very often, should give the same
+	 * results as the two-pass mode
+	 */
+	@Test
+	public void testSameResultsAsTwoPasses() throws Exception {
+		final int minsup = 2;
+		final int k = 5;
+
+		Configuration twoPasses = HadoopTestUtils.localConf();
+		File twoPassesOutput = new File(this.folder.getRoot(), "twoPasses");
+		HadoopTestUtils.mine(twoPasses, FileReaderTest.PATH_50_RETAIL, minsup, k, 3, twoPassesOutput);
+
+		Configuration singlePass = HadoopTestUtils.localConf();
+		File exchange = new File(this.folder.getRoot(), "exchange");
+		singlePass.set(TopPIoverHadoop.KEY_BOUNDS_EXCHANGE, exchange.getPath());
+		singlePass.setLong(TopPIoverHadoop.KEY_BOUNDS_EXCHANGE_PERIOD, 10);
+		File singlePassOutput = new File(this.folder.getRoot(), "singlePass");
+		HadoopTestUtils.mine(singlePass, FileReaderTest.PATH_50_RETAIL, minsup, k, 3, singlePassOutput);
+
+		assertEquals(HadoopTestUtils.readHadoopTopK(twoPasses, twoPassesOutput),
+				HadoopTestUtils.readHadoopTopK(singlePass, singlePassOutput));
+		assertFalse(exchange.exists());
+	}
+}
@@ -0,0 +1,211 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.liglab.mining.TopPI;
+import fr.liglab.mining.internals.ExplorationStep;
+import fr.liglab.mining.io.PerItemTopKCorrelatedCollector;
+
+public class CorrelatedCollectorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testCountSupport() throws IOException {
+		ExplorationStep initState = new ExplorationStep(2, FileReaderTest.PATH_50_RETAIL, 5);
+		final int[] reverseRenaming = initState.counters.getReverseRenaming();
+		final int nbItems = initState.counters.getMaxFrequent() + 1;
+		List<Set<Integer>> transactions = readTransactions(FileReaderTest.PATH_50_RETAIL);
+		Random random = new Random(99);
+
+		for (int i = 0; i < 500; i++) {
+			// favour frequent items, so supports aren't always 0
+			Set<Integer> itemset = new HashSet<Integer>();
+			final int length = 1 + random.nextInt(3);
+			while (itemset.size() < length) {
+				itemset.add(random.nextInt(Math.min(nbItems, 5 + i % nbItems)));
+			}
+
+			int[] rebased = new int[itemset.size()];
+			Set<Integer> original = new HashSet<Integer>();
+			int j = 0;
+			for (Integer item : itemset) {
+				rebased[j++] = item;
+				original.add(reverseRenaming[item]);
+			}
+
+			int expected = 0;
+			for (Set<Integer> transaction : transactions) {
+				if (transaction.containsAll(original)) {
+					expected++;
+				}
+			}
+			assertEquals(expected, initState.dataset.countSupport(rebased));
+		}
+	}
+
+	/**
+	 * When C is K, the correlation heaps keep every pattern, so we should
+	 * output all top-K patterns but items alone. These are compared through
+	 * each item's top supports, which do not depend on how ties were broken.
+	 */
+	@Test
+	public void testAllPatternsKept() throws IOException {
+		final int k = 4;
+
+		ExplorationStep initState = new ExplorationStep(MiningFixture.MINSUP, FileReaderTest.PATH_50_RETAIL, k);
+		RecordingCollector correlated = new RecordingCollector();
+		new MiningFixture(initState, new PerItemTopKCorrelatedCollector(correlated, k, k, initState, 2), 2).run();
+		assertTrue(correlated.isClosed());
+
+		RecordingCollector plain = new RecordingCollector();
+		new MiningFixture(FileReaderTest.PATH_50_RETAIL, k, plain, 2).run();
+
+		List<int[]> plainPatterns = plain.getParsed();
+		List<int[]> expected = new ArrayList<int[]>();
+		for (int[] pattern : plainPatterns) {
+			if (pattern.length > 2) {
+				expected.add(pattern);
+			}
+		}
+		List<int[]> actual = correlated.getParsed();
+		for (int[] pattern : actual) {
+			assertTrue(pattern.length > 2);
+		}
+
+		assertEquals(MiningFixture.topSupports(expected, k - 1), MiningFixture.topSupports(actual, k - 1));
+	}
+
+	@Test
+	public void testAtMostCPatternsPerItem() throws IOException {
+		ExplorationStep initState = new ExplorationStep(MiningFixture.MINSUP, FileReaderTest.PATH_50_RETAIL, 10);
+		final int nbItems = initState.counters.getMaxFrequent() + 1;
+		RecordingCollector correlated = new RecordingCollector();
+		new MiningFixture(initState, new PerItemTopKCorrelatedCollector(correlated, 10, 1, initState, 1), 1).run();
+
+		assertTrue(correlated.getCollected() > 0);
+		assertTrue(correlated.getCollected() <= nbItems);
+	}
+
+	/**
+	 * An item found in all transactions is in the root closure, so it has no
+	 * ID in the root dataset. Adding one should not change correlations.
+	 */
+	@Test
+	public void testRootClosure() throws IOException {
+		final int k = 10;
+		final int c = 1;
+		final int closureItem = 50000;
+		File withClosure = writeWithClosure(FileReaderTest.PATH_50_RETAIL, closureItem,
+				this.folder.newFile("closure.dat"));
+
+		RecordingCollector plain = new RecordingCollector();
+		ExplorationStep initState = new ExplorationStep(MiningFixture.MINSUP, FileReaderTest.PATH_50_RETAIL, k);
+		new MiningFixture(initState, new PerItemTopKCorrelatedCollector(plain, k, c, initState, 1), 1).run();
+
+		RecordingCollector closed = new RecordingCollector();
+		initState = new ExplorationStep(MiningFixture.MINSUP, withClosure.getPath(), k);
+		assertTrue(Arrays.equals(new int[] { closureItem }, initState.counters.getClosure()));
+		new MiningFixture(initState, new PerItemTopKCorrelatedCollector(closed, k, c, initState, 1), 1).run();
+
+		List<int[]> remaining = new ArrayList<int[]>();
+		for (int[] pattern : closed.getParsed()) {
+			int[] stripped = new int[pattern.length - 1];
+			int length = 0;
+			for (int i = 0; i < pattern.length; i++) {
+				if (i == 0 || pattern[i] != closureItem) {
+					stripped[length++] = pattern[i];
+				}
+			}
+			assertEquals(length, stripped.length);
+			// {i, closureItem} is the least correlated pattern, only kept when
+			// i has no other
+			if (length > 2) {
+				remaining.add(stripped);
+			}
+		}
+
+		// closureItem's own top-C is the only addition
+		List<int[]> expected = plain.getParsed();
+		assertTrue(expected.size() > 0);
+		for (int[] pattern : expected) {
+			boolean found = false;
+			for (int i = 0; i < remaining.size() && !found; i++) {
+				if (Arrays.equals(pattern, remaining.get(i))) {
+					remaining.remove(i);
+					found = true;
+				}
+			}
+			assertTrue(Arrays.toString(pattern), found);
+		}
+		assertTrue(remaining.size() <= c);
+	}
+
+	/**
+	 * @return output, filled with input's transactions having closureItem
+	 *         appended
+	 */
+	static File writeWithClosure(String input, int closureItem, File output) throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(input));
+		PrintWriter writer = new PrintWriter(new FileWriter(output));
+		for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+			writer.print(line.trim());
+			writer.print(' ');
+			writer.println(closureItem);
+		}
+		writer.close();
+		reader.close();
+		return output;
+	}
+
+	private static List<Set<Integer>> readTransactions(String path) throws IOException {
+		List<Set<Integer>> transactions = new ArrayList<Set<Integer>>();
+		BufferedReader reader = new BufferedReader(new FileReader(path));
+		for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+			Set<Integer> transaction = new HashSet<Integer>();
+			for (String token : line.trim().split("\\s+")) {
+				if (token.length() > 0) {
+					transaction.add(Integer.parseInt(token));
+				}
+			}
+			transactions.add(transaction);
+		}
+		reader.close();
+		return transactions;
+	}
+}
@@ -0,0 +1,109 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.management.JMException;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import fr.liglab.mining.CountersHandler.TopPICounters;
+import fr.liglab.mining.TopPIMetricsMXBean;
+
+public class CountersHandlerTest {
+
+	@Test
+	public void testCountersAreScopedToRun() {
+		// a single thread, re-used by both runs
+		ExecutorService pool = Executors.newFixedThreadPool(1);
+		try {
+			MetricsProbe firstProbe = new MetricsProbe();
+			Map<TopPICounters, Long> first = mine(firstProbe, pool);
+			MetricsProbe secondProbe = new MetricsProbe();
+			Map<TopPICounters, Long> second = mine(secondProbe, pool);
+
+			assertTrue(first.get(TopPICounters.PatternsTraversed) > 0);
+			assertEquals(first, second);
+
+			assertProbedWithin(firstProbe, first);
+			assertProbedWithin(secondProbe, second);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static void assertProbedWithin(MetricsProbe probe, Map<TopPICounters, Long> finalCounters) {
+		final String key = TopPICounters.PatternsTraversed.toString();
+		final long total = finalCounters.get(TopPICounters.PatternsTraversed);
+		assertTrue(!probe.probed.isEmpty());
+		long previous = 0;
+		for (Map<String, Long> counters : probe.probed) {
+			long traversed = counters.get(key);
+			assertTrue(traversed >= previous);
+			assertTrue(traversed <= total);
+			previous = traversed;
+		}
+	}
+
+	private static Map<TopPICounters, Long> mine(MetricsProbe probe, ExecutorService pool) {
+		MiningFixture mining = new MiningFixture(probe, 1);
+		// so patterns are released while mining
+		mining.collector.setIncrementalOutput(true);
+		mining.run(pool);
+		return mining.miner.getCounters();
+	}
+
+	/**
+	 * Reads the running miner's counters over JMX whenever a pattern is
+	 * released, ie. while mining
+	 */
+	private static final class MetricsProbe extends RecordingCollector {
+		final List<Map<String, Long>> probed = new ArrayList<Map<String, Long>>();
+
+		@Override
+		public synchronized void collect(int support, int[] pattern) {
+			super.collect(support, pattern);
+			if (this.closed) {
+				return;
+			}
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				Set<ObjectName> names = server.queryNames(new ObjectName("fr.liglab.mining:type=TopPI,*"), null);
+				for (ObjectName name : names) {
+					TopPIMetricsMXBean metrics = JMX.newMXBeanProxy(server, name, TopPIMetricsMXBean.class);
+					this.probed.add(metrics.getCounters());
+				}
+			} catch (JMException e) {
+				e.printStackTrace(System.err);
+				throw new RuntimeException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import fr.liglab.mining.bench.DatasetGenerator;
+import fr.liglab.mining.bench.QuestGenerator;
+import fr.liglab.mining.bench.ZipfGenerator;
+
+public class DatasetGeneratorTest {
+
+	private static final class PoissonSampler extends DatasetGenerator {
+		PoissonSampler(long seed) {
+			super(1, seed);
+		}
+
+		int sample(double mean) {
+			return this.nextPoisson(mean);
+		}
+
+		@Override
+		public int[] nextTransaction() {
+			return new int[0];
+		}
+	}
+
+	/**
+	 * Samples' mean and variance should both be close to the distribution's
+	 * mean, including for large means
+	 */
+	@Test
+	public void testPoisson() {
+		PoissonSampler sampler = new PoissonSampler(7);
+		final int nbSamples = 20000;
+
+		for (double mean : new double[] { 0.5, 4, 29, 31, 200, 5000 }) {
+			double sum = 0;
+			double squares = 0;
+			for (int i = 0; i < nbSamples; i++) {
+				final int x = sampler.sample(mean);
+				assertTrue(x >= 0);
+				sum += x;
+				squares += ((double) x) * x;
+			}
+			final double sampleMean = sum / nbSamples;
+			final double variance = squares / nbSamples - sampleMean * sampleMean;
+
+			// a dozen standard errors
+			assertEquals("mean " + mean, mean, sampleMean, 12 * Math.sqrt(mean / nbSamples));
+			assertEquals("variance for " + mean, 1, variance / mean, 0.1);
+		}
+	}
+
+	@Test
+	public void testReproducible() throws IOException {
+		assertEquals(generate(new ZipfGenerator(1000, 8, 1.0, 10, 4, 0.3, 5)),
+				generate(new ZipfGenerator(1000, 8, 1.0, 10, 4, 0.3, 5)));
+		assertFalse(generate(new ZipfGenerator(1000, 8, 1.0, 10, 4, 0.3, 5)).equals(
+				generate(new ZipfGenerator(1000, 8, 1.0, 10, 4, 0.3, 6))));
+
+		assertEquals(generate(new QuestGenerator(1000, 10, 50, 4, 0.5, 0.5, 5)),
+				generate(new QuestGenerator(1000, 10, 50, 4, 0.5, 0.5, 5)));
+	}
+
+	/**
+	 * Transactions can't be longer than the union of planted itemsets
+	 */
+	@Test(timeout = 10000)
+	public void testQuestFewPlantedItems() {
+		DatasetGenerator generator = new QuestGenerator(1000, 10, 1, 3, 0.5, 0, 8);
+		int[] first = generator.nextTransaction();
+		assertTrue(first.length > 0 && first.length < 10);
+		for (int t = 0; t < 100; t++) {
+			assertArrayEquals(first, generator.nextTransaction());
+		}
+
+		// all items are always dropped from picked itemsets
+		generator = new QuestGenerator(1000, 10, 5, 3, 0.5, 10, 8);
+		for (int t = 0; t < 100; t++) {
+			assertEquals(0, generator.nextTransaction().length);
+		}
+	}
+
+	@Test
+	public void testTransactions() {
+		DatasetGenerator generator = new ZipfGenerator(50, 60, 1.0, 0, 0, 0, 3);
+		for (int t = 0; t < 200; t++) {
+			int[] transaction = generator.nextTransaction();
+			assertTrue(transaction.length <= 50);
+			for (int i = 0; i < transaction.length; i++) {
+				assertTrue(transaction[i] >= 0 && transaction[i] < 50);
+				if (i > 0) {
+					assertTrue(transaction[i - 1] < transaction[i]);
+				}
+			}
+		}
+	}
+
+	private static String generate(DatasetGenerator generator) throws IOException {
+		StringWriter writer = new StringWriter();
+		generator.generate(writer, 300);
+		return writer.toString();
+	}
+}
@@ -0,0 +1,111 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.liglab.mining.TopPI;
+import fr.liglab.mining.TopPIcli;
+
+public class DeduplicatedOutputTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Reads the files written by "-d" : OUTPUT_PATH has one line per distinct
+	 * pattern, its ID being its line number, and OUTPUT_PATH.items gives each
+	 * item's top-K as a list of pattern IDs, by decreasing support.
+	 */
+	@Test
+	public void testSameTopKAsPlainOutput() throws Exception {
+		final int k = 3;
+		File output = new File(this.folder.getRoot(), "dedup.out");
+		TopPIcli.main(new String[] { "-k", Integer.toString(k), "-d", "-t", "2", FileReaderTest.PATH_50_RETAIL, "2",
+				output.getPath() });
+
+		// support, then items
+		List<int[]> patterns = new ArrayList<int[]>();
+		for (String line : PartitionedFileCollectorTest.readLines(output)) {
+			patterns.add(parseInts(line));
+		}
+		Set<String> distinct = new HashSet<String>();
+		for (int[] pattern : patterns) {
+			assertTrue(distinct.add(Arrays.toString(pattern)));
+		}
+
+		Map<Integer, List<Integer>> perItemSupports = new TreeMap<Integer, List<Integer>>();
+		int nextID = 0;
+		for (String line : PartitionedFileCollectorTest.readLines(new File(output.getPath() + ".items"))) {
+			int[] itemAndIDs = parseInts(line);
+			final int item = itemAndIDs[0];
+			List<Integer> supports = new ArrayList<Integer>();
+			for (int i = 1; i < itemAndIDs.length; i++) {
+				final int id = itemAndIDs[i];
+				// IDs are given in order of first use
+				assertTrue(id <= nextID);
+				if (id == nextID) {
+					nextID++;
+				}
+				int[] pattern = patterns.get(id);
+				boolean found = false;
+				for (int j = 1; j < pattern.length; j++) {
+					found |= (pattern[j] == item);
+				}
+				assertTrue(found);
+				supports.add(pattern[0]);
+			}
+			perItemSupports.put(item, supports);
+		}
+		assertEquals(patterns.size(), nextID);
+
+		assertEquals(referenceSupports(k), perItemSupports);
+	}
+
+	/**
+	 * @return for each item, the supports of its top-K patterns, by decreasing
+	 *         support - which does not depend on how ties were broken
+	 */
+	private static Map<Integer, List<Integer>> referenceSupports(int k) {
+		RecordingCollector reference = new RecordingCollector();
+		new MiningFixture(FileReaderTest.PATH_50_RETAIL, k, reference, 1).run();
+		return MiningFixture.topSupports(reference.getDistinctParsed(), k);
+	}
+
+	private static int[] parseInts(String line) {
+		String[] fields = line.trim().split("[^0-9]+");
+		int[] parsed = new int[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			parsed[i] = Integer.parseInt(fields[i]);
+		}
+		return parsed;
+	}
+}
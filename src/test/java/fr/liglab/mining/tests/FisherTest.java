@@ -0,0 +1,120 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import edu.northwestern.at.utils.math.Factorial;
+import fr.liglab.hyptest.math.Fisher;
+import fr.liglab.hyptest.math.FishersExactTest;
+import fr.liglab.hyptest.math.LogFactorials;
+
+public class FisherTest {
+
+	@Test
+	public void testLogFactorials() {
+		LogFactorials.prepare(1000);
+		LogFactorials.prepare(10); // shouldn't shrink the table
+		for (int n = 0; n <= 2000; n++) {
+			assertEquals(Factorial.logFactorial(n), LogFactorials.logFactorial(n), 0.);
+		}
+	}
+
+	/**
+	 * The cache should return what FishersExactTest computes, even when
+	 * matrices collide in a tiny cache
+	 */
+	@Test
+	public void testSameAsDirectComputation() {
+		LogFactorials.prepare(10000);
+		Random random = new Random(7);
+		Fisher[] fishers = { new Fisher(), new Fisher(4) };
+
+		for (int i = 0; i < 3000; i++) {
+			int[] m = randomMatrix(random);
+			for (Fisher fisher : fishers) {
+				assertSameAsDirect(fisher, m);
+			}
+		}
+
+		// too large to be cached
+		int[] large = { 3 << 21, 10, 20, (1 << 22) + 5 };
+		assertSameAsDirect(fishers[0], large);
+		assertSameAsDirect(fishers[0], large);
+	}
+
+	@Test
+	public void testConcurrentLookups() throws InterruptedException {
+		LogFactorials.prepare(10000);
+		final Fisher fisher = new Fisher(64);
+		final AtomicInteger failures = new AtomicInteger(0);
+		List<Thread> threads = new ArrayList<Thread>();
+
+		for (int t = 0; t < 4; t++) {
+			final long seed = t % 2; // two threads per sequence, so they share entries
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					Random random = new Random(seed);
+					for (int i = 0; i < 5000; i++) {
+						int[] m = randomMatrix(random);
+						long factor = fisher.getCorrectionFactor(m[0], m[1], m[2], m[3]);
+						double pValue = fisher.getTailedFisher(factor);
+						if (factor != FishersExactTest.correctionFactor(m[0], m[1], m[2], m[3])
+								|| pValue != FishersExactTest.fishersExactTest(m[0], m[1], m[2], m[3], factor)) {
+							failures.incrementAndGet();
+						}
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, failures.get());
+	}
+
+	private static void assertSameAsDirect(Fisher fisher, int[] m) {
+		long factor = fisher.getCorrectionFactor(m[0], m[1], m[2], m[3]);
+		assertEquals(FishersExactTest.correctionFactor(m[0], m[1], m[2], m[3]), factor);
+		assertEquals(FishersExactTest.fishersExactTest(m[0], m[1], m[2], m[3], factor),
+				fisher.getTailedFisher(factor), 0.);
+		assertEquals(FishersExactTest.fishersExactTest(m[0], m[1], m[2], m[3], factor),
+				fisher.getTailedFisher(m[0], m[1], m[2], m[3], factor), 0.);
+	}
+
+	/**
+	 * few distinct values, so matrices repeat
+	 */
+	private static int[] randomMatrix(Random random) {
+		int a = random.nextInt(20);
+		int b = random.nextInt(30);
+		int c = random.nextInt(30);
+		int d = 1000 + random.nextInt(10);
+		return new int[] { a, b, c, d };
+	}
+}
@@ -0,0 +1,171 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fr.liglab.hyptest.FlatTreeMatcher;
+import fr.liglab.hyptest.ItemsetSupports;
+import fr.liglab.hyptest.TreeMatcher;
+import fr.liglab.hyptest.TreeMatcher.NotMonitoredException;
+import fr.liglab.mining.internals.ExplorationStep;
+import fr.liglab.mining.internals.TransactionReader;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
+
+public class FlatTreeMatcherTest {
+
+	private static final int NB_ITEMS = 30;
+
+	/**
+	 * Counts should be the same as TreeMatcher's, with any number of threads
+	 */
+	@Test
+	public void testSameCountsAsTreeMatcher() throws InterruptedException, NotMonitoredException {
+		Random random = new Random(5);
+		List<int[]> patterns = new ArrayList<int[]>();
+		for (int i = 0; i < 300; i++) {
+			patterns.add(randomItemset(random, 1 + random.nextInt(4)));
+		}
+		List<int[]> transactions = new ArrayList<int[]>();
+		for (int i = 0; i < 2000; i++) {
+			transactions.add(randomItemset(random, random.nextInt(15)));
+		}
+
+		TreeMatcher reference = new TreeMatcher();
+		for (int[] pattern : patterns) {
+			reference.addPattern(pattern);
+		}
+		for (int[] transaction : transactions) {
+			reference.match(transaction);
+		}
+
+		for (int nbThreads = 1; nbThreads <= 3; nbThreads++) {
+			TreeMatcher tree = new TreeMatcher();
+			for (int[] pattern : patterns) {
+				tree.addPattern(pattern);
+			}
+			FlatTreeMatcher flat = tree.flatten();
+			flat.match(transactions, nbThreads);
+
+			for (int[] pattern : patterns) {
+				assertEquals(reference.getSupport(pattern), flat.getSupport(pattern));
+			}
+
+			int nbPatterns = 0;
+			Iterator<ItemsetSupports> it = flat.iterator();
+			while (it.hasNext()) {
+				ItemsetSupports entry = it.next();
+				assertEquals(reference.getSupport(entry.getItemset()), entry.getSupport());
+				nbPatterns++;
+			}
+			assertEquals(flat.getNbPatterns(), nbPatterns);
+		}
+	}
+
+	@Test
+	public void testWeights() throws InterruptedException, NotMonitoredException {
+		TreeMatcher tree = new TreeMatcher();
+		tree.addPattern(new int[] { 1 });
+		tree.addPattern(new int[] { 1, 3 });
+		tree.addPattern(new int[] { 2, 3 });
+		FlatTreeMatcher flat = tree.flatten();
+
+		List<int[]> transactions = Arrays.asList(new int[] { 1, 2, 3 }, new int[] { 1, 3 }, new int[] { 2 });
+		flat.match(transactions, new int[] { 5, 2, 7 }, 2);
+
+		assertEquals(7, flat.getSupport(new int[] { 1 }));
+		assertEquals(7, flat.getSupport(new int[] { 1, 3 }));
+		assertEquals(5, flat.getSupport(new int[] { 2, 3 }));
+	}
+
+	@Test(expected = NotMonitoredException.class)
+	public void testNotMonitored() throws NotMonitoredException {
+		TreeMatcher tree = new TreeMatcher();
+		tree.addPattern(new int[] { 1, 3 });
+		tree.flatten().getSupport(new int[] { 1 });
+	}
+
+	/**
+	 * Matching the root dataset's weighted transactions, as
+	 * PerItemTopKCorrelatedCollector may do, should give the same supports as
+	 * intersecting its tidlists
+	 */
+	@Test
+	public void testSameCountsAsDataset() throws InterruptedException, NotMonitoredException {
+		ExplorationStep initState = new ExplorationStep(2, FileReaderTest.PATH_50_RETAIL, 5);
+		final int nbItems = initState.counters.getMaxFrequent() + 1;
+
+		List<int[]> transactions = new ArrayList<int[]>();
+		TIntArrayList weights = new TIntArrayList();
+		Iterator<TransactionReader> it = initState.dataset.getTransactions();
+		while (it.hasNext()) {
+			TransactionReader transaction = it.next();
+			TIntArrayList items = new TIntArrayList();
+			while (transaction.hasNext()) {
+				items.add(transaction.next());
+			}
+			items.sort();
+			transactions.add(items.toArray());
+			weights.add(transaction.getTransactionSupport());
+		}
+
+		Random random = new Random(3);
+		TreeMatcher tree = new TreeMatcher();
+		List<int[]> patterns = new ArrayList<int[]>();
+		for (int i = 0; i < 200; i++) {
+			TIntHashSet itemset = new TIntHashSet();
+			final int length = 1 + random.nextInt(3);
+			while (itemset.size() < length) {
+				itemset.add(random.nextInt(Math.min(nbItems, 10)));
+			}
+			int[] pattern = itemset.toArray();
+			Arrays.sort(pattern);
+			patterns.add(pattern);
+			tree.addPattern(pattern);
+		}
+		FlatTreeMatcher flat = tree.flatten();
+		flat.match(transactions, weights.toArray(), 2);
+
+		boolean nonZero = false;
+		for (int[] pattern : patterns) {
+			final int expected = initState.dataset.countSupport(pattern);
+			assertEquals(expected, flat.getSupport(pattern));
+			nonZero |= expected > 0;
+		}
+		assertTrue(nonZero);
+	}
+
+	private static int[] randomItemset(Random random, int maxLength) {
+		TIntHashSet items = new TIntHashSet();
+		for (int i = 0; i < maxLength; i++) {
+			items.add(random.nextInt(NB_ITEMS));
+		}
+		int[] itemset = items.toArray();
+		Arrays.sort(itemset);
+		return itemset;
+	}
+}
@@ -0,0 +1,58 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.liglab.mining.mapred.TopPIoverHadoop;
+
+public class GroupProjectionTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Projected transactions may be combined in large records or sent one by
+	 * one, mining results should not change
+	 */
+	@Test
+	public void testCombinedSizes() throws Exception {
+		final int minsup = 2;
+		final int k = 5;
+
+		Configuration combined = HadoopTestUtils.localConf();
+		File combinedOutput = new File(this.folder.getRoot(), "combined");
+		HadoopTestUtils.mine(combined, FileReaderTest.PATH_50_RETAIL, minsup, k, 3, combinedOutput);
+
+		Configuration single = HadoopTestUtils.localConf();
+		single.setInt(TopPIoverHadoop.KEY_COMBINED_TRANS_SIZE, 1);
+		File singleOutput = new File(this.folder.getRoot(), "single");
+		HadoopTestUtils.mine(single, FileReaderTest.PATH_50_RETAIL, minsup, k, 3, singleOutput);
+
+		assertEquals(HadoopTestUtils.mineStandaloneTopK(FileReaderTest.PATH_50_RETAIL, minsup, k,
+				this.folder.getRoot()), HadoopTestUtils.readHadoopTopK(combined, combinedOutput));
+		assertEquals(HadoopTestUtils.readHadoopTopK(combined, combinedOutput),
+				HadoopTestUtils.readHadoopTopK(single, singleOutput));
+	}
+}
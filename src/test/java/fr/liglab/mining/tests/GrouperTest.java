@@ -0,0 +1,161 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.liglab.mining.internals.FrequentsIterator;
+import fr.liglab.mining.mapred.Grouper;
+import fr.liglab.mining.mapred.TopPIoverHadoop;
+import fr.liglab.mining.mapred.writables.ItemStatsWritable;
+import gnu.trove.map.TIntLongMap;
+import gnu.trove.map.hash.TIntLongHashMap;
+
+public class GrouperTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testPackByCost() {
+		long[] costs = { 5, 9, 2, 7, 4, 1 };
+		int[] groups = Grouper.packByCost(costs, 2);
+
+		// LPT : 9->0, 7->1, 5->1, 4->0, 2->1, 1->0
+		assertArrayEquals(new int[] { 1, 0, 1, 1, 0, 0 }, groups);
+
+		long[] loads = new long[2];
+		for (int i = 0; i < costs.length; i++) {
+			loads[groups[i]] += costs[i];
+		}
+		assertEquals(14, loads[0]);
+		assertEquals(14, loads[1]);
+	}
+
+	@Test
+	public void testPackByCostMoreGroupsThanItems() {
+		int[] groups = Grouper.packByCost(new long[] { 3, 3, 8 }, 5);
+		assertArrayEquals(new int[] { 1, 2, 0 }, groups);
+	}
+
+	@Test
+	public void testApplyCostHints() {
+		long[] costs = { 10, 20, 30, 40 };
+		TIntLongMap hints = new TIntLongHashMap();
+		// measured costs are 100 times the estimated ones
+		hints.put(1, 2000);
+		hints.put(2, 3000);
+		// ignored by the scale
+		hints.put(7, 5);
+		Grouper.applyCostHints(costs, hints);
+		assertArrayEquals(new long[] { 1000, 2000, 3000, 4000 }, costs);
+
+		costs = new long[] { 10, 20 };
+		hints.clear();
+		hints.put(0, 0);
+		Grouper.applyCostHints(costs, hints);
+		assertArrayEquals(new long[] { 1, 20 }, costs);
+	}
+
+	@Test
+	public void testGroupItems() {
+		int[] assignment = { 1, 0, 0, 1, 0, 1 };
+		Grouper grouper = new Grouper(2, 5, assignment);
+
+		assertEquals(asList(1, 2, 4), list(grouper.getGroupItems(0)));
+		assertEquals(asList(0, 3, 5), list(grouper.getGroupItems(1)));
+		assertEquals(asList(0, 3, 5), list(grouper.getNonGroupItems(0)));
+
+		Grouper.SingleGroup single = new Grouper.SingleGroup(2, 5, assignment, 1);
+		assertEquals(1, single.getGroupId(3));
+		assertEquals(-1, single.getGroupId(2));
+
+		Grouper modulo = new Grouper(2, 5);
+		assertEquals(asList(0, 2, 4), list(modulo.getGroupItems(0)));
+		assertEquals(asList(1, 3, 5), list(modulo.getNonGroupItems(0)));
+	}
+
+	@Test
+	public void testItemStatsWritable() throws IOException {
+		ItemStatsWritable written = new ItemStatsWritable();
+		written.set(42, 5000000000L);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		written.write(out);
+		out.close();
+
+		ItemStatsWritable read = new ItemStatsWritable();
+		read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertEquals(42, read.getSupport());
+		assertEquals(5000000000L, read.getProjectionSize());
+	}
+
+	/**
+	 * Grouping only affects how the work is distributed, not its results.
+	 * Modulo grouping is the default: only cost grouping writes a groups table.
+	 */
+	@Test
+	public void testCostAndModuloGroupings() throws Exception {
+		Configuration costConf = HadoopTestUtils.localConf();
+		costConf.set(TopPIoverHadoop.KEY_GROUPING, "cost");
+		File costOutput = new File(this.folder.getRoot(), "cost");
+		HadoopTestUtils.mine(costConf, FileReaderTest.PATH_50_RETAIL, 2, 5, 3, costOutput);
+		assertTrue(new File(costOutput, "itemGroups").exists());
+
+		Configuration moduloConf = HadoopTestUtils.localConf();
+		File moduloOutput = new File(this.folder.getRoot(), "modulo");
+		HadoopTestUtils.mine(moduloConf, FileReaderTest.PATH_50_RETAIL, 2, 5, 3, moduloOutput);
+		assertFalse(new File(moduloOutput, "itemGroups").exists());
+
+		assertEquals(HadoopTestUtils.readHadoopTopK(moduloConf, moduloOutput),
+				HadoopTestUtils.readHadoopTopK(costConf, costOutput));
+	}
+
+	private static List<Integer> asList(int... items) {
+		List<Integer> list = new ArrayList<Integer>();
+		for (int item : items) {
+			list.add(item);
+		}
+		return list;
+	}
+
+	private static List<Integer> list(FrequentsIterator iterator) {
+		List<Integer> list = new ArrayList<Integer>();
+		for (int item = iterator.next(); item != -1; item = iterator.next()) {
+			list.add(item);
+		}
+		return list;
+	}
+}
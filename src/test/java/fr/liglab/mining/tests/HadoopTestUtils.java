@@ -0,0 +1,157 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.util.ToolRunner;
+
+import fr.liglab.mining.TopPI;
+import fr.liglab.mining.internals.ExplorationStep;
+import fr.liglab.mining.io.IndexedResultsReader;
+import fr.liglab.mining.io.PerItemTopKCollector.PatternWithFreq;
+import fr.liglab.mining.io.PerItemTopKtoIndexCollector;
+import fr.liglab.mining.mapred.TopPIoverHadoop;
+import fr.liglab.mining.mapred.writables.SupportAndTransactionWritable;
+
+/**
+ * Runs TopPI over Hadoop's local runner and compares its results with the
+ * standalone version's
+ */
+public final class HadoopTestUtils {
+
+	private HadoopTestUtils() {
+	}
+
+	public static Configuration localConf() {
+		Configuration conf = new Configuration();
+		conf.set("fs.defaultFS", "file:///");
+		conf.set("mapreduce.framework.name", "local");
+		return conf;
+	}
+
+	/**
+	 * @param output
+	 *            will contain TopPI's working directories, including
+	 *            "topPatterns"
+	 */
+	public static void mine(Configuration conf, String input, int minsup, int k, int nbGroups, File output)
+			throws Exception {
+		String[] args = { "-k", Integer.toString(k), "-g", Integer.toString(nbGroups), input,
+				Integer.toString(minsup), output.getPath() };
+		assertEquals(0, ToolRunner.run(conf, new TopPIoverHadoop(), args));
+	}
+
+	/**
+	 * @return all (key, value) pairs of SequenceFiles in the given directory
+	 */
+	public static List<Writable[]> readSequenceFiles(Configuration conf, File directory) throws IOException {
+		List<Writable[]> pairs = new ArrayList<Writable[]>();
+		FileSystem fs = FileSystem.getLocal(conf);
+		for (FileStatus status : fs.listStatus(new Path(directory.getPath()))) {
+			String name = status.getPath().getName();
+			if (name.startsWith("_") || name.startsWith(".")) {
+				continue;
+			}
+			SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(status.getPath()));
+			while (true) {
+				Writable key = (Writable) ReflectionUtils.newInstance(reader.getKeyClass(), conf);
+				Writable value = (Writable) ReflectionUtils.newInstance(reader.getValueClass(), conf);
+				if (!reader.next(key, value)) {
+					break;
+				}
+				pairs.add(new Writable[] { key, value });
+			}
+			reader.close();
+		}
+		return pairs;
+	}
+
+	/**
+	 * @return for each item, its top-K patterns' supports as a descending
+	 *         list - this does not depend on how ties were broken
+	 */
+	public static Map<Integer, List<Integer>> readHadoopTopK(Configuration conf, File output) throws IOException {
+		Map<Integer, List<Integer>> supports = new TreeMap<Integer, List<Integer>>();
+		for (Writable[] pair : readSequenceFiles(conf, new File(output, "topPatterns"))) {
+			int item = Integer.parseInt(pair[0].toString());
+			SupportAndTransactionWritable pattern = (SupportAndTransactionWritable) pair[1];
+			assertTrue(contains(pattern.getTransaction(), item));
+
+			List<Integer> itemSupports = supports.get(item);
+			if (itemSupports == null) {
+				itemSupports = new ArrayList<Integer>();
+				supports.put(item, itemSupports);
+			}
+			itemSupports.add(pattern.getSupport());
+		}
+		for (List<Integer> itemSupports : supports.values()) {
+			Collections.sort(itemSupports, Collections.reverseOrder());
+		}
+		return supports;
+	}
+
+	/**
+	 * @return same as readHadoopTopK, from a standalone run
+	 */
+	public static Map<Integer, List<Integer>> mineStandaloneTopK(String input, int minsup, int k, File tmpDir)
+			throws IOException {
+		File index = new File(tmpDir, "standalone-" + minsup + "-" + k + ".tpix");
+		ExplorationStep initState = new ExplorationStep(minsup, input, k);
+		PerItemTopKtoIndexCollector collector = new PerItemTopKtoIndexCollector(k, initState, index.getPath(), null);
+		new TopPI(collector, 2).startMining(initState);
+		collector.close();
+
+		Map<Integer, List<Integer>> supports = new TreeMap<Integer, List<Integer>>();
+		IndexedResultsReader reader = new IndexedResultsReader(index.getPath());
+		for (int item : reader.getItems()) {
+			PatternWithFreq[] topK = reader.getTopK(item);
+			if (topK.length > 0) {
+				List<Integer> itemSupports = new ArrayList<Integer>();
+				for (PatternWithFreq p : topK) {
+					itemSupports.add(p.getSupportCount());
+				}
+				supports.put(item, itemSupports);
+			}
+		}
+		reader.close();
+		return supports;
+	}
+
+	private static boolean contains(int[] pattern, int item) {
+		int[] sorted = Arrays.copyOf(pattern, pattern.length);
+		Arrays.sort(sorted);
+		return Arrays.binarySearch(sorted, item) >= 0;
+	}
+}
@@ -0,0 +1,128 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Test;
+
+import fr.liglab.mining.HistogramsHandler;
+import fr.liglab.mining.HistogramsHandler.TopPIPhases;
+
+public class HistogramsHandlerTest {
+
+	private static final boolean WAS_ENABLED = HistogramsHandler.ENABLED;
+
+	@After
+	public void restore() {
+		HistogramsHandler.ENABLED = WAS_ENABLED;
+	}
+
+	@Test
+	public void testBuckets() {
+		HistogramsHandler.ENABLED = true;
+		long[] stripe = HistogramsHandler.newStripe();
+		final long duration = 1L << 40;
+		HistogramsHandler.stop(TopPIPhases.Collect, System.nanoTime() - duration);
+		HistogramsHandler.stop(TopPIPhases.Collect, System.nanoTime() - duration);
+
+		String json = HistogramsHandler.toJSON(Collections.singletonList(stripe));
+		Matcher m = phase(TopPIPhases.Collect).matcher(json);
+		assertTrue(json, m.find());
+		assertEquals(2, Long.parseLong(m.group(1)));
+		assertTrue(Long.parseLong(m.group(2)) >= 2 * duration);
+		long[] buckets = parseBuckets(m.group(3));
+		// durations are in [2^40, 2^41[
+		assertEquals(42, buckets.length);
+		assertEquals(2, buckets[41]);
+
+		m = phase(TopPIPhases.PrepareExploration).matcher(json);
+		assertTrue(json, m.find());
+		assertEquals(0, Long.parseLong(m.group(1)));
+		assertEquals("", m.group(3));
+	}
+
+	@Test
+	public void testDisabled() {
+		HistogramsHandler.ENABLED = false;
+		long[] stripe = HistogramsHandler.newStripe();
+		HistogramsHandler.stop(TopPIPhases.Collect, HistogramsHandler.start());
+		assertEquals(0, stripe[stripe.length - 1]);
+		assertTrue(Arrays.equals(new long[stripe.length], stripe));
+	}
+
+	@Test
+	public void testRunsAreNotMixed() {
+		HistogramsHandler.ENABLED = true;
+		String first = mine();
+		String second = mine();
+
+		for (TopPIPhases phase : TopPIPhases.values()) {
+			Matcher m1 = phase(phase).matcher(first);
+			Matcher m2 = phase(phase).matcher(second);
+			assertTrue(first, m1.find());
+			assertTrue(second, m2.find());
+			long count = Long.parseLong(m1.group(1));
+			assertEquals(phase.toString(), count, Long.parseLong(m2.group(1)));
+
+			long sum = 0;
+			for (long b : parseBuckets(m1.group(3))) {
+				sum += b;
+			}
+			assertEquals(count, sum);
+		}
+
+		Matcher m = phase(TopPIPhases.DepthExploration).matcher(first);
+		m.find();
+		assertTrue(Long.parseLong(m.group(1)) > 0);
+	}
+
+	/**
+	 * @return the "histograms" part of a single-threaded run's statistics
+	 */
+	private static String mine() {
+		MiningFixture mining = new MiningFixture(new RecordingCollector(), 1);
+		mining.run();
+		String stats = mining.miner.toString(null);
+		int start = stats.indexOf("\"histograms\":");
+		assertTrue(stats, start >= 0);
+		return stats.substring(start);
+	}
+
+	private static Pattern phase(TopPIPhases phase) {
+		return Pattern.compile("\"" + phase + "\":\\{\"count\":(\\d+), \"totalNanos\":(\\d+), \"log2Buckets\":\\[([\\d,]*)\\]\\}");
+	}
+
+	private static long[] parseBuckets(String list) {
+		if (list.isEmpty()) {
+			return new long[0];
+		}
+		String[] parts = list.split(",");
+		long[] buckets = new long[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			buckets[i] = Long.parseLong(parts[i]);
+		}
+		return buckets;
+	}
+}
@@ -0,0 +1,72 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import fr.liglab.mining.io.PerItemTopKCollector;
+import gnu.trove.map.TIntIntMap;
+
+public class IncrementalOutputTest {
+
+	@Test
+	public void testReleaseKeepsBounds() {
+		RecordingCollector output = new RecordingCollector();
+		PerItemTopKCollector collector = PerItemTopKCollectorTest.newCollector(output, 1, 2);
+		collector.setIncrementalOutput(true);
+
+		collector.collect(10, new int[] { 0 });
+		collector.collect(5, new int[] { 1 });
+		TIntIntMap before = collector.getTopKBounds();
+
+		collector.releaseFinalized(8);
+		assertEquals(Arrays.asList("10:[0]"), output.getSorted());
+		assertEquals(11, collector.getBound(0));
+		assertEquals(before, collector.getTopKBounds());
+
+		collector.close();
+		assertEquals(Arrays.asList("10:[0]", "5:[1]"), output.getSorted());
+		assertEquals(before, collector.getTopKBounds());
+	}
+
+	@Test
+	public void testSameResultsAsFinalOutput() {
+		for (int nbThreads : new int[] { 1, 4 }) {
+			RecordingCollector finalOutput = new RecordingCollector();
+			TIntIntMap finalBounds = mine(finalOutput, false, nbThreads);
+
+			RecordingCollector incrementalOutput = new RecordingCollector();
+			TIntIntMap incrementalBounds = mine(incrementalOutput, true, nbThreads);
+
+			assertTrue(finalOutput.getCollected() > 0);
+			assertEquals(finalOutput.getSorted(), incrementalOutput.getSorted());
+			assertEquals(finalBounds, incrementalBounds);
+		}
+	}
+
+	private static TIntIntMap mine(RecordingCollector output, boolean incremental, int nbThreads) {
+		MiningFixture mining = new MiningFixture(output, nbThreads);
+		mining.collector.setIncrementalOutput(incremental);
+		mining.run();
+		return mining.collector.getTopKBounds();
+	}
+}
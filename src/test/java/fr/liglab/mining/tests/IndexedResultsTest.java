@@ -0,0 +1,149 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.ws.Holder;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.liglab.mining.TopPI;
+import fr.liglab.mining.internals.ExplorationStep;
+import fr.liglab.mining.io.IndexedResultsReader;
+import fr.liglab.mining.io.PerItemTopKCollector;
+import fr.liglab.mining.io.PerItemTopKCollector.PatternWithFreq;
+import fr.liglab.mining.io.PerItemTopKtoIndexCollector;
+
+public class IndexedResultsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		checkRoundTrip(FileReaderTest.PATH_50_RETAIL, 2, 3);
+	}
+
+	/**
+	 * Large and far apart item IDs exercise the varint encoding
+	 */
+	@Test
+	public void testLargeItemIDs() throws IOException {
+		File input = this.folder.newFile("large.dat");
+		FileWriter writer = new FileWriter(input);
+		int[] items = { 0, 127, 128, 16383, 16384, 2097151, 2097152 };
+		for (int i = 0; i < 40; i++) {
+			StringBuilder line = new StringBuilder();
+			for (int j = 0; j < items.length; j++) {
+				if ((i + 1) % (j + 1) == 0 || (i % 3 == 0 && j > 3)) {
+					line.append(items[j]).append(' ');
+				}
+			}
+			writer.write(line.toString().trim() + "\n");
+		}
+		writer.close();
+
+		checkRoundTrip(input.getPath(), 2, 4);
+	}
+
+	private void checkRoundTrip(String input, int minsup, int k) throws IOException {
+		RecordingCollector reference = new RecordingCollector();
+		ExplorationStep initState = new ExplorationStep(minsup, input, k);
+		PerItemTopKCollector collector = new PerItemTopKCollector(reference, k, initState);
+		new TopPI(collector, 2).startMining(initState);
+		collector.close();
+		assertTrue(reference.getCollected() > 0);
+
+		File index = new File(this.folder.getRoot(), "results.tpix");
+		initState = new ExplorationStep(minsup, input, k);
+		PerItemTopKtoIndexCollector indexer = new PerItemTopKtoIndexCollector(k, initState, index.getPath(), null);
+		new TopPI(indexer, 2).startMining(initState);
+		indexer.close();
+
+		IndexedResultsReader reader = new IndexedResultsReader(index.getPath());
+		assertEquals(k, reader.getK());
+		int[] items = reader.getItems();
+		assertEquals(items.length, reader.getNbItems());
+
+		List<String> read = new ArrayList<String>();
+		for (int i = 0; i < items.length; i++) {
+			if (i > 0) {
+				assertTrue(items[i - 1] < items[i]);
+			}
+			assertTrue(reader.contains(items[i]));
+			assertNull(reader.getName(items[i]));
+
+			PatternWithFreq[] topK = reader.getTopK(items[i]);
+			assertEquals(topK.length, reader.getNbPatterns(items[i]));
+			assertTrue(topK.length <= k);
+			for (int j = 0; j < topK.length; j++) {
+				if (j > 0) {
+					assertTrue(topK[j - 1].getSupportCount() >= topK[j].getSupportCount());
+				}
+				read.add(RecordingCollector.format(topK[j].getSupportCount(), topK[j].getPattern()));
+			}
+		}
+		Collections.sort(read);
+		assertEquals(reference.getSorted(), read);
+
+		assertEquals(0, reader.getNbPatterns(-5));
+		assertEquals(0, reader.getTopK(Integer.MAX_VALUE).length);
+		reader.close();
+	}
+
+	@Test
+	public void testItemNames() throws IOException {
+		File input = this.folder.newFile("names.dat");
+		FileWriter writer = new FileWriter(input);
+		writer.write("bread milk\nbread butter milk\nbread butter\nmilk café\nbread café milk\n");
+		writer.close();
+
+		Holder<Map<String, Integer>> idsHolder = new Holder<Map<String, Integer>>();
+		ExplorationStep initState = new ExplorationStep(2, input.getPath(), 2, idsHolder);
+		Map<Integer, String> names = new HashMap<Integer, String>();
+		for (Entry<String, Integer> entry : idsHolder.value.entrySet()) {
+			names.put(entry.getValue(), entry.getKey());
+		}
+
+		File index = new File(this.folder.getRoot(), "names.tpix");
+		PerItemTopKtoIndexCollector indexer = new PerItemTopKtoIndexCollector(2, initState, index.getPath(), names);
+		new TopPI(indexer, 1).startMining(initState);
+		indexer.close();
+
+		IndexedResultsReader reader = new IndexedResultsReader(index.getPath());
+		assertEquals(4, reader.getNbItems());
+		for (int item : reader.getItems()) {
+			assertEquals(names.get(item), reader.getName(item));
+		}
+		reader.close();
+	}
+}
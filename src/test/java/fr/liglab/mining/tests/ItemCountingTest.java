@@ -0,0 +1,107 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Writable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ItemCountingTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Items should be ranked by decreasing support, ties being broken by
+	 * ascending item ID, and mining results should be the same as standalone
+	 */
+	@Test
+	public void testRebasingAndResults() throws Exception {
+		final int minsup = 2;
+		Configuration conf = HadoopTestUtils.localConf();
+		File output = new File(this.folder.getRoot(), "hadoop");
+		HadoopTestUtils.mine(conf, FileReaderTest.PATH_50_RETAIL, minsup, 5, 2, output);
+
+		final Map<Integer, Integer> supports = countSupports(FileReaderTest.PATH_50_RETAIL);
+		List<Integer> expected = new ArrayList<Integer>();
+		for (Map.Entry<Integer, Integer> entry : supports.entrySet()) {
+			if (entry.getValue() >= minsup) {
+				expected.add(entry.getKey());
+			}
+		}
+		Collections.sort(expected, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				if (supports.get(o1).equals(supports.get(o2))) {
+					return o1.compareTo(o2);
+				} else {
+					return supports.get(o2).compareTo(supports.get(o1));
+				}
+			}
+		});
+
+		List<Writable[]> rebasing = HadoopTestUtils.readSequenceFiles(conf, new File(output, "rebasing"));
+		assertEquals(expected.size(), rebasing.size());
+		Set<Integer> ranks = new HashSet<Integer>();
+		for (Writable[] pair : rebasing) {
+			int item = Integer.parseInt(pair[0].toString());
+			int rank = Integer.parseInt(pair[1].toString());
+			assertEquals(expected.get(rank).intValue(), item);
+			ranks.add(rank);
+		}
+		assertEquals(expected.size(), ranks.size());
+
+		assertEquals(HadoopTestUtils.mineStandaloneTopK(FileReaderTest.PATH_50_RETAIL, minsup, 5,
+				this.folder.getRoot()), HadoopTestUtils.readHadoopTopK(conf, output));
+	}
+
+	private static Map<Integer, Integer> countSupports(String path) throws IOException {
+		Map<Integer, Integer> supports = new TreeMap<Integer, Integer>();
+		BufferedReader reader = new BufferedReader(new FileReader(path));
+		for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+			Set<Integer> items = new HashSet<Integer>();
+			for (String token : line.trim().split("\\s+")) {
+				if (token.length() > 0) {
+					items.add(Integer.parseInt(token));
+				}
+			}
+			for (Integer item : items) {
+				Integer count = supports.get(item);
+				supports.put(item, count == null ? 1 : count + 1);
+			}
+		}
+		reader.close();
+		return supports;
+	}
+}
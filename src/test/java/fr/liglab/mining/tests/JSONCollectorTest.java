@@ -0,0 +1,253 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.ws.Holder;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.liglab.mining.TopPI;
+import fr.liglab.mining.internals.ExplorationStep;
+import fr.liglab.mining.io.PerItemTopKCollector;
+import fr.liglab.mining.io.PerItemTopKtoJSONCollector;
+
+public class JSONCollectorTest {
+
+	private static final String[] TRANSACTIONS = { "say\"hi back\\slash café", "say\"hi back\\slash plain",
+			"say\"hi café 日本 plain", "back\\slash café 日本", "say\"hi back\\slash café 日本 plain", "plain 日本" };
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSequentialAndPartitioned() throws IOException {
+		File input = this.folder.newFile("names.dat");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(input), "UTF-8");
+		for (String transaction : TRANSACTIONS) {
+			writer.write(transaction + "\n");
+		}
+		writer.close();
+
+		List<String> expected = this.mineReference(input.getPath());
+		assertFalse(expected.isEmpty());
+
+		for (int nbPartitions : new int[] { 1, 3, 10 }) {
+			File output = new File(this.folder.getRoot(), "topk" + nbPartitions + ".json");
+			Map<Integer, String> names = new HashMap<Integer, String>();
+			ExplorationStep initState = loadWithNames(input.getPath(), names);
+			PerItemTopKtoJSONCollector collector = new PerItemTopKtoJSONCollector(2, initState, names,
+					output.getPath(), nbPartitions);
+			new TopPI(collector, 2).startMining(initState);
+			assertEquals(expected.size(), collector.close());
+
+			for (int i = 0; i < nbPartitions; i++) {
+				assertFalse(new File(output.getPath() + ".part" + i).exists());
+			}
+
+			String json = new String(readAll(output), "UTF-8");
+			@SuppressWarnings("unchecked")
+			Map<String, Object> parsed = (Map<String, Object>) new JSONParser(json).parseDocument();
+			assertEquals(names.size(), parsed.size());
+
+			List<String> read = new ArrayList<String>();
+			for (Entry<String, Object> entry : parsed.entrySet()) {
+				assertTrue(names.containsValue(entry.getKey()));
+				for (Object p : (List<?>) entry.getValue()) {
+					Map<?, ?> pattern = (Map<?, ?>) p;
+					List<?> set = (List<?>) pattern.get("set");
+					assertTrue(set.contains(entry.getKey()));
+					read.add(format(((Long) pattern.get("sup")).intValue(), set));
+				}
+			}
+			Collections.sort(read);
+			assertEquals(expected, read);
+		}
+	}
+
+	private static ExplorationStep loadWithNames(String path, Map<Integer, String> names) {
+		Holder<Map<String, Integer>> idsHolder = new Holder<Map<String, Integer>>();
+		ExplorationStep initState = new ExplorationStep(2, path, 2, idsHolder);
+		for (Entry<String, Integer> entry : idsHolder.value.entrySet()) {
+			names.put(entry.getValue(), entry.getKey());
+		}
+		return initState;
+	}
+
+	/**
+	 * @return patterns expected in the JSON output, as given by format()
+	 */
+	private List<String> mineReference(String path) {
+		Map<Integer, String> names = new HashMap<Integer, String>();
+		ExplorationStep initState = loadWithNames(path, names);
+		final List<String> patterns = new ArrayList<String>();
+		RecordingCollector reference = new RecordingCollector();
+		PerItemTopKCollector collector = new PerItemTopKCollector(reference, 2, initState);
+		new TopPI(collector, 1).startMining(initState);
+		collector.close();
+
+		for (String line : reference.getAll()) {
+			int support = Integer.parseInt(line.substring(0, line.indexOf(':')));
+			List<String> set = new ArrayList<String>();
+			for (String id : line.substring(line.indexOf('[') + 1, line.length() - 1).split(", ")) {
+				set.add(names.get(Integer.parseInt(id)));
+			}
+			patterns.add(format(support, set));
+		}
+		Collections.sort(patterns);
+		return patterns;
+	}
+
+	private static String format(int support, List<?> items) {
+		List<String> sorted = new ArrayList<String>();
+		for (Object item : items) {
+			sorted.add((String) item);
+		}
+		Collections.sort(sorted);
+		return support + ":" + sorted;
+	}
+
+	private static byte[] readAll(File file) throws IOException {
+		FileInputStream input = new FileInputStream(file);
+		byte[] content = new byte[(int) file.length()];
+		int read = 0;
+		while (read < content.length) {
+			read += input.read(content, read, content.length - read);
+		}
+		input.close();
+		return content;
+	}
+
+	/**
+	 * Just enough JSON for our output : objects, arrays, strings and integers
+	 */
+	private static final class JSONParser {
+		private final String json;
+		private int pos = 0;
+
+		JSONParser(String json) {
+			this.json = json;
+		}
+
+		Object parseDocument() {
+			Object value = this.parseValue();
+			this.skipWhitespace();
+			assertEquals("trailing characters", this.json.length(), this.pos);
+			return value;
+		}
+
+		private Object parseValue() {
+			this.skipWhitespace();
+			char c = this.json.charAt(this.pos);
+			if (c == '{') {
+				Map<String, Object> object = new LinkedHashMap<String, Object>();
+				this.pos++;
+				this.skipWhitespace();
+				if (this.json.charAt(this.pos) == '}') {
+					this.pos++;
+					return object;
+				}
+				do {
+					this.skipWhitespace();
+					String key = this.parseString();
+					this.skipWhitespace();
+					this.expect(':');
+					assertFalse("duplicate key " + key, object.containsKey(key));
+					object.put(key, this.parseValue());
+					this.skipWhitespace();
+				} while (this.json.charAt(this.pos++) == ',');
+				assertEquals('}', this.json.charAt(this.pos - 1));
+				return object;
+			} else if (c == '[') {
+				List<Object> array = new ArrayList<Object>();
+				this.pos++;
+				this.skipWhitespace();
+				if (this.json.charAt(this.pos) == ']') {
+					this.pos++;
+					return array;
+				}
+				do {
+					array.add(this.parseValue());
+					this.skipWhitespace();
+				} while (this.json.charAt(this.pos++) == ',');
+				assertEquals(']', this.json.charAt(this.pos - 1));
+				return array;
+			} else if (c == '"') {
+				return this.parseString();
+			} else {
+				int start = this.pos;
+				while (this.pos < this.json.length()
+						&& (this.json.charAt(this.pos) == '-' || Character.isDigit(this.json.charAt(this.pos)))) {
+					this.pos++;
+				}
+				return Long.parseLong(this.json.substring(start, this.pos));
+			}
+		}
+
+		private String parseString() {
+			this.expect('"');
+			StringBuilder sb = new StringBuilder();
+			char c;
+			while ((c = this.json.charAt(this.pos++)) != '"') {
+				if (c == '\\') {
+					c = this.json.charAt(this.pos++);
+					if (c == 'u') {
+						sb.append((char) Integer.parseInt(this.json.substring(this.pos, this.pos + 4), 16));
+						this.pos += 4;
+					} else {
+						assertTrue("unexpected escape " + c, c == '"' || c == '\\' || c == '/');
+						sb.append(c);
+					}
+				} else {
+					assertTrue("unescaped control character", c >= 0x20);
+					sb.append(c);
+				}
+			}
+			return sb.toString();
+		}
+
+		private void expect(char c) {
+			assertEquals(c, this.json.charAt(this.pos));
+			this.pos++;
+		}
+
+		private void skipWhitespace() {
+			while (this.pos < this.json.length() && Character.isWhitespace(this.json.charAt(this.pos))) {
+				this.pos++;
+			}
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.liglab.mining.TopPIcli;
+import fr.liglab.mining.cluster.LocalCluster;
+
+public class LocalClusterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void clearProperties() {
+		System.clearProperty(LocalCluster.KEY_TMP_DIR);
+		System.clearProperty(LocalCluster.KEY_WORKERS);
+	}
+
+	/**
+	 * Patterns are compared through each item's top-K supports, which do not
+	 * depend on how ties were broken
+	 */
+	@Test
+	public void testSameResultsAsStandalone() throws Exception {
+		final int k = 5;
+
+		File workDir = this.folder.newFolder("work");
+		File output = new File(this.folder.getRoot(), "cluster.out");
+		System.setProperty(LocalCluster.KEY_TMP_DIR, workDir.getPath());
+		System.setProperty(LocalCluster.KEY_WORKERS, "2");
+		TopPIcli.main(new String[] { "-k", Integer.toString(k), "-L", "3", "-t", "1",
+				FileReaderTest.PATH_50_RETAIL, Integer.toString(MiningFixture.MINSUP), output.getPath() });
+
+		List<int[]> clusterPatterns = new ArrayList<int[]>();
+		for (String line : PartitionedFileCollectorTest.readLines(output)) {
+			String[] fields = line.split("\\s+");
+			int[] supportAndPattern = new int[fields.length];
+			for (int i = 0; i < fields.length; i++) {
+				supportAndPattern[i] = Integer.parseInt(fields[i]);
+			}
+			assertTrue(supportAndPattern.length > 1);
+			clusterPatterns.add(supportAndPattern);
+		}
+
+		RecordingCollector recorder = new RecordingCollector();
+		new MiningFixture(FileReaderTest.PATH_50_RETAIL, k, recorder, 2).run();
+
+		assertEquals(MiningFixture.topSupports(recorder.getParsed(), k),
+				MiningFixture.topSupports(clusterPatterns, k));
+		assertEquals(0, workDir.list().length);
+	}
+}
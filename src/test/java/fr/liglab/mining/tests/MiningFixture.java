@@ -0,0 +1,108 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+
+import fr.liglab.mining.TopPI;
+import fr.liglab.mining.internals.ExplorationStep;
+import fr.liglab.mining.io.PatternsCollector;
+import fr.liglab.mining.io.PerItemTopKCollector;
+
+/**
+ * A standalone mining run, by default of 50retail's top-3 at minimum support
+ * 2. Tests may tune the collector and the miner before calling run().
+ */
+public final class MiningFixture {
+
+	public static final int MINSUP = 2;
+	public static final int K = 3;
+
+	public final ExplorationStep initState;
+	public final PerItemTopKCollector collector;
+	public final TopPI miner;
+
+	public MiningFixture(PatternsCollector output, int nbThreads) {
+		this(FileReaderTest.PATH_50_RETAIL, K, output, nbThreads);
+	}
+
+	public MiningFixture(String input, int k, PatternsCollector output, int nbThreads) {
+		this.initState = new ExplorationStep(MINSUP, input, k);
+		this.collector = new PerItemTopKCollector(output, k, this.initState);
+		this.miner = new TopPI(this.collector, nbThreads);
+	}
+
+	/**
+	 * For collectors that are built differently
+	 */
+	public MiningFixture(ExplorationStep initState, PerItemTopKCollector collector, int nbThreads) {
+		this.initState = initState;
+		this.collector = collector;
+		this.miner = new TopPI(collector, nbThreads);
+	}
+
+	/**
+	 * Mines, then closes the collector
+	 * 
+	 * @return collector.close()'s result
+	 */
+	public long run() {
+		this.miner.startMining(this.initState);
+		return this.collector.close();
+	}
+
+	/**
+	 * Same as run(), with mining threads taken from the given pool
+	 */
+	public long run(ExecutorService pool) {
+		this.miner.startMining(this.initState, pool);
+		return this.collector.close();
+	}
+
+	/**
+	 * @param patterns
+	 *            support followed by items
+	 * @return for each item, the k highest supports among given patterns
+	 *         containing it. If patterns contain a top-k of each item, this is
+	 *         the same for any valid top-k, whatever how ties were broken.
+	 */
+	public static Map<Integer, List<Integer>> topSupports(List<int[]> patterns, int k) {
+		Map<Integer, List<Integer>> supports = new TreeMap<Integer, List<Integer>>();
+		for (int[] pattern : patterns) {
+			for (int i = 1; i < pattern.length; i++) {
+				List<Integer> itemSupports = supports.get(pattern[i]);
+				if (itemSupports == null) {
+					itemSupports = new ArrayList<Integer>();
+					supports.put(pattern[i], itemSupports);
+				}
+				itemSupports.add(pattern[0]);
+			}
+		}
+		for (List<Integer> itemSupports : supports.values()) {
+			Collections.sort(itemSupports, Collections.reverseOrder());
+			while (itemSupports.size() > k) {
+				itemSupports.remove(itemSupports.size() - 1);
+			}
+		}
+		return supports;
+	}
+}
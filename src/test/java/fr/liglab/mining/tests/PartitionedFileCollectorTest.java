@@ -0,0 +1,116 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.liglab.mining.io.FileCollector;
+import fr.liglab.mining.io.PartitionedFileCollector;
+import fr.liglab.mining.io.PatternsCollector;
+
+public class PartitionedFileCollectorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	static List<String> readLines(File file) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		return lines;
+	}
+
+	static List<String> readSortedLines(File file) throws IOException {
+		List<String> lines = readLines(file);
+		Collections.sort(lines);
+		return lines;
+	}
+
+	@Test
+	public void testPrintedIntegers() throws IOException {
+		int[] values = { 0, 7, -7, 10, 1234567890, Integer.MAX_VALUE, Integer.MIN_VALUE };
+		File file = new File(this.folder.getRoot(), "ints.dat");
+		FileCollector collector = new FileCollector(file.getPath(), 16);
+		for (int i = 0; i < 1000; i++) {
+			collector.collect(values[i % values.length], values);
+		}
+		assertEquals(1000, collector.close());
+
+		StringBuilder pattern = new StringBuilder();
+		for (int v : values) {
+			if (pattern.length() > 0) {
+				pattern.append(' ');
+			}
+			pattern.append(v);
+		}
+		List<String> lines = readLines(file);
+		assertEquals(1000, lines.size());
+		for (int i = 0; i < lines.size(); i++) {
+			assertEquals(values[i % values.length] + "\t" + pattern, lines.get(i));
+		}
+	}
+
+	@Test
+	public void testSameOutputAsSingleFile() throws IOException {
+		File single = new File(this.folder.getRoot(), "single.dat");
+		long nbSingle = mine(new FileCollector(single.getPath()));
+		assertTrue(nbSingle > 0);
+
+		File concatenated = new File(this.folder.getRoot(), "concatenated.dat");
+		PartitionedFileCollector partitioned = new PartitionedFileCollector(concatenated.getPath(), 3, null, false);
+		assertEquals(nbSingle, mine(partitioned));
+		for (int i = 0; i < 3; i++) {
+			assertFalse(new File(partitioned.getPartitionPath(i)).exists());
+		}
+		assertEquals(readSortedLines(single), readSortedLines(concatenated));
+
+		File kept = new File(this.folder.getRoot(), "kept.dat");
+		partitioned = new PartitionedFileCollector(kept.getPath(), 3, null, true);
+		assertEquals(nbSingle, mine(partitioned));
+		assertFalse(kept.exists());
+		List<String> allPartitions = new ArrayList<String>();
+		for (int i = 0; i < 3; i++) {
+			allPartitions.addAll(readLines(new File(partitioned.getPartitionPath(i))));
+		}
+		Collections.sort(allPartitions);
+		assertEquals(readSortedLines(single), allPartitions);
+	}
+
+	private static long mine(PatternsCollector output) {
+		return new MiningFixture(output, 2).run();
+	}
+}
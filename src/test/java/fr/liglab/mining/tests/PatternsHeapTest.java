@@ -0,0 +1,150 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fr.liglab.hyptest.Pattern;
+import fr.liglab.hyptest.PatternsHeap;
+import fr.liglab.hyptest.math.FishersExactTest;
+import fr.liglab.mining.mapred.writables.SupportAndTransactionWritable;
+
+public class PatternsHeapTest {
+
+	private static final int NB_TRANSACTIONS = 2000;
+	private static final int ITEM_SUPPORT = 300;
+
+	/**
+	 * The heap should keep the most correlated patterns among all inserted
+	 * ones, as a full sort would
+	 */
+	@Test
+	public void testKeepsMostCorrelated() {
+		PatternsHeap.setNbTransactions(NB_TRANSACTIONS);
+		Random random = new Random(11);
+
+		for (int size : new int[] { 1, 3, 10 }) {
+			for (int run = 0; run < 20; run++) {
+				List<int[]> candidates = randomCandidates(random, 200);
+
+				PatternsHeap heap = new PatternsHeap(size, ITEM_SUPPORT);
+				for (int[] candidate : candidates) {
+					heap.insert(new int[] { candidate[0] }, candidate[1], candidate[2]);
+				}
+
+				assertEquals(expectedScores(candidates, size), scores(heap.getPatterns()));
+			}
+		}
+	}
+
+	@Test
+	public void testConcurrentInserts() throws InterruptedException {
+		PatternsHeap.setNbTransactions(NB_TRANSACTIONS);
+		final List<int[]> candidates = randomCandidates(new Random(12), 4000);
+		final PatternsHeap heap = new PatternsHeap(5, ITEM_SUPPORT);
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			final int offset = t;
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int i = offset; i < candidates.size(); i += 4) {
+						int[] candidate = candidates.get(i);
+						heap.insert(new int[] { candidate[0] }, candidate[1], candidate[2]);
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(expectedScores(candidates, 5), scores(heap.getPatterns()));
+	}
+
+	@Test
+	public void testWritablesOrder() {
+		PatternsHeap.setNbTransactions(NB_TRANSACTIONS);
+		List<int[]> candidates = randomCandidates(new Random(13), 100);
+		PatternsHeap heap = new PatternsHeap(7, ITEM_SUPPORT);
+		for (int[] candidate : candidates) {
+			heap.insert(new int[] { candidate[0] }, candidate[1], candidate[2]);
+		}
+
+		Pattern[] sorted = heap.getPatterns();
+		assertEquals(7, sorted.length);
+		Iterator<SupportAndTransactionWritable> writables = heap.getWritables();
+		for (Pattern p : sorted) {
+			SupportAndTransactionWritable w = writables.next();
+			assertEquals(p.supportWithCorrelated, w.getSupport());
+			assertSame(p.getPattern(), w.getTransaction());
+		}
+		assertEquals(false, writables.hasNext());
+	}
+
+	/**
+	 * @return {ID, support, support with the item}
+	 */
+	private static List<int[]> randomCandidates(Random random, int nb) {
+		List<int[]> candidates = new ArrayList<int[]>(nb);
+		for (int i = 0; i < nb; i++) {
+			final int support = 1 + random.nextInt(NB_TRANSACTIONS - ITEM_SUPPORT);
+			final int union = random.nextInt(Math.min(support, ITEM_SUPPORT) + 1);
+			candidates.add(new int[] { i, support, union });
+		}
+		return candidates;
+	}
+
+	/**
+	 * @return "a r" of the best patterns, sorted as Pattern.compareTo does
+	 */
+	private static List<String> expectedScores(List<int[]> candidates, int size) {
+		List<Pattern> all = new ArrayList<Pattern>();
+		for (int[] candidate : candidates) {
+			final int a = candidate[2];
+			final int b = candidate[1] - candidate[2];
+			final int c = ITEM_SUPPORT - candidate[2];
+			final int d = NB_TRANSACTIONS - ITEM_SUPPORT - candidate[1] + candidate[2];
+			final long factor = FishersExactTest.correctionFactor(a, b, c, d);
+			all.add(new Pattern(new int[] { candidate[0] }, candidate[1], candidate[2], factor,
+					FishersExactTest.fishersExactTest(a, b, c, d, factor)));
+		}
+		Collections.sort(all);
+		return scores(all.subList(0, size).toArray(new Pattern[size]));
+	}
+
+	private static List<String> scores(Pattern[] patterns) {
+		List<String> scores = new ArrayList<String>();
+		for (Pattern p : patterns) {
+			scores.add(p.a + " " + p.r);
+		}
+		return scores;
+	}
+}
@@ -0,0 +1,139 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fr.liglab.mining.io.PerItemTopKCollector;
+import fr.liglab.mining.io.PerItemTopKCollector.PatternWithFreq;
+import fr.liglab.mining.mapred.Grouper;
+
+public class PerItemTopKCollectorTest {
+
+	static PerItemTopKCollector newCollector(RecordingCollector output, int k, int maxItem) {
+		return new PerItemTopKCollector(output, k, maxItem + 1, new Grouper(1, maxItem).getGroupItems(0));
+	}
+
+	@Test
+	public void testRejectsBelowBound() {
+		RecordingCollector output = new RecordingCollector();
+		PerItemTopKCollector collector = newCollector(output, 2, 3);
+
+		collector.collect(10, new int[] { 0 });
+		collector.collect(8, new int[] { 0, 1 });
+
+		assertFalse(collector.insertPatternInTop(new PatternWithFreq(5, new int[] { 0, 2 }), 0));
+		assertTrue(collector.insertPatternInTop(new PatternWithFreq(9, new int[] { 0, 3 }), 0));
+		assertFalse(collector.insertPatternInTop(new PatternWithFreq(7, new int[] { 0, 3 }), 5));
+
+		collector.close();
+		assertEquals(Arrays.asList("10:[0]", "8:[0, 1]", "9:[0, 3]"), output.getSorted());
+	}
+
+	@Test
+	public void testBoundsTable() {
+		// only even items are collected
+		PerItemTopKCollector collector = new PerItemTopKCollector(new RecordingCollector(), 2, 5, new Grouper(2,
+				8).getGroupItems(0));
+
+		assertEquals(Integer.MAX_VALUE, collector.getBound(1));
+		assertEquals(Integer.MAX_VALUE, collector.getBound(9));
+		assertEquals(Integer.MAX_VALUE, collector.getBound(-1));
+		assertEquals(-1, collector.getBound(0));
+		assertFalse(collector.isCollected(3));
+		assertTrue(collector.isCollected(4));
+
+		collector.collect(10, new int[] { 0, 1 });
+		assertEquals(-1, collector.getBound(0));
+		collector.collect(7, new int[] { 0, 2 });
+		// K-th pattern is closed : patterns of the same support may still come
+		assertEquals(8, collector.getBound(0));
+		assertEquals(-1, collector.getBound(2));
+
+		collector.collect(9, new int[] { 0, 4 });
+		assertEquals(10, collector.getBound(0));
+
+		// an unclosed K-th pattern gives its own support as bound
+		assertEquals(6, collector.collectUnclosedForItem(6, new int[] { 2 }, 2));
+		assertEquals(6, collector.getBound(2));
+		assertEquals(-1, collector.collectUnclosedForItem(6, new int[] { 4 }, 8));
+		assertEquals(Integer.MAX_VALUE, collector.collectUnclosedForItem(6, new int[] { 8 }, 7));
+	}
+
+	/**
+	 * Patterns have distinct supports, so concurrent collection should
+	 * select the same top-K as a sequential one
+	 */
+	@Test
+	public void testConcurrentCollect() throws InterruptedException {
+		final int maxItem = 30;
+		final int k = 5;
+		final List<int[]> patterns = new ArrayList<int[]>();
+		final List<Integer> supports = new ArrayList<Integer>();
+		Random random = new Random(42);
+		for (int i = 0; i < 5000; i++) {
+			int length = 1 + random.nextInt(4);
+			int[] pattern = new int[length];
+			for (int j = 0; j < length; j++) {
+				pattern[j] = random.nextInt(maxItem + 1);
+			}
+			patterns.add(pattern);
+			supports.add(i + 1);
+		}
+		Collections.shuffle(supports, random);
+
+		RecordingCollector sequentialOutput = new RecordingCollector();
+		PerItemTopKCollector sequential = newCollector(sequentialOutput, k, maxItem);
+		for (int i = 0; i < patterns.size(); i++) {
+			sequential.collect(supports.get(i), patterns.get(i));
+		}
+		sequential.close();
+
+		RecordingCollector concurrentOutput = new RecordingCollector();
+		final PerItemTopKCollector concurrent = newCollector(concurrentOutput, k, maxItem);
+		final int nbThreads = 4;
+		Thread[] threads = new Thread[nbThreads];
+		for (int t = 0; t < nbThreads; t++) {
+			final int offset = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = offset; i < patterns.size(); i += nbThreads) {
+						concurrent.collect(supports.get(i), patterns.get(i));
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		concurrent.close();
+
+		assertEquals(sequentialOutput.getSorted(), concurrentOutput.getSorted());
+	}
+}
@@ -0,0 +1,208 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.liglab.hyptest.InterestingnessRanker;
+
+public class RankersTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testScores() {
+		InterestingnessRanker allConfidence = InterestingnessRanker.forName("allconfidence");
+		assertFalse(allConfidence.needsOtherSupport());
+		assertEquals(0.25, allConfidence.score(10, 40, -1, 20, 100), 1e-12);
+		assertEquals(0.2, allConfidence.score(10, 40, -1, 50, 100), 1e-12);
+		assertEquals(10, allConfidence.getSupportBound(0.25, 40));
+
+		InterestingnessRanker lift = InterestingnessRanker.forName("LIFT");
+		assertTrue(lift.needsOtherSupport());
+		assertEquals(100. * 10 / (40 * 20), lift.score(10, 40, 20, 60, 100), 1e-12);
+		assertEquals(-1, lift.getSupportBound(2., 40));
+
+		// a=10 b=10 c=30 d=50
+		InterestingnessRanker chiSquared = InterestingnessRanker.forName("chisquare");
+		assertEquals(100. * 200 * 200 / (40. * 20 * 60 * 80), chiSquared.score(10, 40, 20, 60, 100), 1e-12);
+		// negatively correlated
+		assertEquals(0., chiSquared.score(2, 40, 20, 60, 100), 0.);
+	}
+
+	@Test
+	public void testForName() {
+		assertEquals(InterestingnessRanker.Lift.class,
+				InterestingnessRanker.forName(InterestingnessRanker.Lift.class.getName()).getClass());
+		try {
+			InterestingnessRanker.forName("no.such.Ranker");
+			throw new AssertionError("an unknown ranker was accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Ranked outputs are compared through each item's best scores, which do
+	 * not depend on how ties were broken. Expected scores are computed over
+	 * all closed patterns, with supports counted from the input file.
+	 */
+	@Test
+	public void testSameAsNaiveRanking() throws IOException {
+		assertSameAsNaiveRanking(FileReaderTest.PATH_50_RETAIL);
+	}
+
+	/**
+	 * Items of the root closure have no ID in the root dataset, but their
+	 * support is known
+	 */
+	@Test
+	public void testRootClosure() throws IOException {
+		File withClosure = CorrelatedCollectorTest.writeWithClosure(FileReaderTest.PATH_50_RETAIL, 50000,
+				this.folder.newFile("closure.dat"));
+		assertSameAsNaiveRanking(withClosure.getPath());
+	}
+
+	private static void assertSameAsNaiveRanking(String path) throws IOException {
+		final List<Set<Integer>> transactions = readTransactions(path);
+		final List<int[]> allPatterns = mine(path, null, 1000, 2);
+		final Map<Integer, Integer> supports = new TreeMap<Integer, Integer>();
+		for (int[] pattern : allPatterns) {
+			if (pattern.length == 2) {
+				supports.put(pattern[1], pattern[0]);
+			}
+		}
+		for (Set<Integer> transaction : transactions) {
+			for (Integer item : transaction) {
+				if (!supports.containsKey(item)) {
+					supports.put(item, naiveSupport(transactions, Collections.singleton(item)));
+				}
+			}
+		}
+
+		for (String name : new String[] { "allconfidence", "lift", "chisquare" }) {
+			InterestingnessRanker ranker = InterestingnessRanker.forName(name);
+			for (int nbThreads = 1; nbThreads <= 2; nbThreads++) {
+				List<int[]> ranked = mine(path, ranker, 3, nbThreads);
+				for (int[] pattern : ranked) {
+					assertTrue(pattern.length > 2);
+				}
+				assertEquals(name, bestScores(ranker, allPatterns, 3, transactions, supports),
+						bestScores(ranker, ranked, 3, transactions, supports));
+			}
+		}
+	}
+
+	/**
+	 * @return support followed by items, for each distinct outputted pattern
+	 */
+	private static List<int[]> mine(String path, InterestingnessRanker ranker, int k, int nbThreads) {
+		RecordingCollector output = new RecordingCollector();
+		MiningFixture mining = new MiningFixture(path, k, output, nbThreads);
+		if (ranker != null) {
+			mining.collector.setRanker(ranker, mining.initState);
+		}
+		mining.run();
+		return output.getDistinctParsed();
+	}
+
+	/**
+	 * @return for each item, the k best scores of given patterns (of at least
+	 *         2 items) containing it
+	 */
+	private static Map<Integer, List<Double>> bestScores(InterestingnessRanker ranker, List<int[]> patterns, int k,
+			List<Set<Integer>> transactions, Map<Integer, Integer> supports) {
+		Map<Integer, List<Double>> scores = new TreeMap<Integer, List<Double>>();
+		for (int[] pattern : patterns) {
+			if (pattern.length < 3) {
+				continue;
+			}
+			for (int i = 1; i < pattern.length; i++) {
+				final int item = pattern[i];
+				Set<Integer> others = new HashSet<Integer>();
+				int maxOther = 0;
+				for (int j = 1; j < pattern.length; j++) {
+					if (j != i) {
+						others.add(pattern[j]);
+						maxOther = Math.max(maxOther, supports.get(pattern[j]));
+					}
+				}
+				final int otherSupport = ranker.needsOtherSupport() ? naiveSupport(transactions, others) : -1;
+
+				List<Double> itemScores = scores.get(item);
+				if (itemScores == null) {
+					itemScores = new ArrayList<Double>();
+					scores.put(item, itemScores);
+				}
+				itemScores.add(ranker.score(pattern[0], supports.get(item), otherSupport, maxOther,
+						transactions.size()));
+			}
+		}
+		for (List<Double> itemScores : scores.values()) {
+			Collections.sort(itemScores, Collections.reverseOrder());
+			while (itemScores.size() > k) {
+				itemScores.remove(itemScores.size() - 1);
+			}
+		}
+		return scores;
+	}
+
+	private static int naiveSupport(List<Set<Integer>> transactions, Set<Integer> itemset) {
+		int support = 0;
+		for (Set<Integer> transaction : transactions) {
+			if (transaction.containsAll(itemset)) {
+				support++;
+			}
+		}
+		return support;
+	}
+
+	private static List<Set<Integer>> readTransactions(String path) throws IOException {
+		List<Set<Integer>> transactions = new ArrayList<Set<Integer>>();
+		BufferedReader reader = new BufferedReader(new FileReader(path));
+		for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+			Set<Integer> transaction = new HashSet<Integer>();
+			for (String token : line.trim().split("\\s+")) {
+				if (token.length() > 0) {
+					transaction.add(Integer.parseInt(token));
+				}
+			}
+			transactions.add(transaction);
+		}
+		reader.close();
+		return transactions;
+	}
+}
@@ -0,0 +1,119 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import fr.liglab.mining.io.PatternsCollector;
+
+/**
+ * Thread-safe collector that keeps everything it receives, as
+ * "support:items" strings (items being sorted) so outputs can be compared
+ * regardless of their order.
+ */
+public class RecordingCollector implements PatternsCollector {
+
+	protected final List<String> patterns = new ArrayList<String>();
+	protected long collectedLength = 0;
+	protected boolean closed = false;
+
+	public static String format(int support, int... pattern) {
+		int[] sorted = Arrays.copyOf(pattern, pattern.length);
+		Arrays.sort(sorted);
+		return support + ":" + Arrays.toString(sorted);
+	}
+
+	@Override
+	public synchronized void collect(int support, int[] pattern) {
+		this.patterns.add(format(support, pattern));
+		this.collectedLength += pattern.length;
+	}
+
+	@Override
+	public synchronized long close() {
+		this.closed = true;
+		return this.patterns.size();
+	}
+
+	public synchronized boolean isClosed() {
+		return this.closed;
+	}
+
+	/**
+	 * @return collected patterns, in collection order
+	 */
+	public synchronized List<String> getAll() {
+		return new ArrayList<String>(this.patterns);
+	}
+
+	/**
+	 * @return collected patterns, sorted
+	 */
+	public synchronized List<String> getSorted() {
+		List<String> sorted = new ArrayList<String>(this.patterns);
+		Collections.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * @return collected patterns, in collection order, each being its support
+	 *         followed by its sorted items
+	 */
+	public synchronized List<int[]> getParsed() {
+		return parse(this.patterns);
+	}
+
+	/**
+	 * @return same as getParsed, without duplicates (in no particular order)
+	 */
+	public synchronized List<int[]> getDistinctParsed() {
+		return parse(new HashSet<String>(this.patterns));
+	}
+
+	private static List<int[]> parse(Collection<String> lines) {
+		List<int[]> parsed = new ArrayList<int[]>(lines.size());
+		for (String line : lines) {
+			String[] fields = line.split("[:\\[\\], ]+");
+			int[] supportAndPattern = new int[fields.length];
+			for (int i = 0; i < fields.length; i++) {
+				supportAndPattern[i] = Integer.parseInt(fields[i]);
+			}
+			parsed.add(supportAndPattern);
+		}
+		return parsed;
+	}
+
+	@Override
+	public synchronized int getAveragePatternLength() {
+		return this.patterns.isEmpty() ? 0 : (int) (this.collectedLength / this.patterns.size());
+	}
+
+	@Override
+	public synchronized long getCollected() {
+		return this.patterns.size();
+	}
+
+	@Override
+	public synchronized long getCollectedLength() {
+		return this.collectedLength;
+	}
+}
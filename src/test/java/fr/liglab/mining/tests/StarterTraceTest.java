@@ -0,0 +1,107 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.liglab.mining.CountersHandler.TopPICounters;
+import fr.liglab.mining.StarterTrace;
+import gnu.trove.map.TIntLongMap;
+
+public class StarterTraceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testWriteAndReadCosts() throws IOException {
+		File trace = new File(this.folder.getRoot(), "trace.csv");
+
+		MiningFixture mining = new MiningFixture(new RecordingCollector(), 1);
+		mining.miner.setStarterTrace(trace.getPath());
+		mining.run();
+
+		List<String> lines = PartitionedFileCollectorTest.readLines(trace);
+		assertTrue(lines.size() > 1);
+		String[] header = lines.get(0).split(",");
+		assertEquals("item", header[0]);
+		assertEquals("busyNanos", header[3]);
+		assertEquals("explorationSteps", header[5]);
+
+		Set<Integer> items = new HashSet<Integer>();
+		long steps = 0;
+		for (String line : lines.subList(1, lines.size())) {
+			String[] fields = line.split(",");
+			assertEquals(header.length, fields.length);
+			assertTrue(items.add(Integer.parseInt(fields[0])));
+			assertEquals("0", fields[1]);
+			assertEquals("1", fields[2]);
+			assertTrue(Long.parseLong(fields[3]) >= 0);
+			steps += Long.parseLong(fields[5]);
+
+			int boundAtStart = Integer.parseInt(fields[10]);
+			int boundAtEnd = Integer.parseInt(fields[11]);
+			assertTrue(boundAtStart == -1 || boundAtStart <= boundAtEnd);
+		}
+		assertTrue(steps > 0);
+		assertTrue(steps <= mining.miner.getCounters().get(TopPICounters.PatternsTraversed));
+
+		TIntLongMap costs = StarterTrace.readCosts(trace.getPath());
+		assertEquals(items.size(), costs.size());
+		for (String line : lines.subList(1, lines.size())) {
+			String[] fields = line.split(",");
+			assertEquals(Long.parseLong(fields[3]), costs.get(Integer.parseInt(fields[0])));
+		}
+	}
+
+	@Test
+	public void testReadCosts() throws IOException {
+		TIntLongMap costs = StarterTrace.readCosts(new StringReader("busyNanos,item\n12,3\n\n7,5\n"));
+		assertEquals(2, costs.size());
+		assertEquals(12, costs.get(3));
+		assertEquals(7, costs.get(5));
+
+		assertTrue(StarterTrace.readCosts(new StringReader("")).isEmpty());
+
+		try {
+			StarterTrace.readCosts(new StringReader("item,wallNanos\n1,2\n"));
+			fail("A trace without busyNanos should be rejected");
+		} catch (IOException e) {
+			// expected
+		}
+
+		try {
+			StarterTrace.readCosts(new StringReader("item,busyNanos\n1,lots\n"));
+			fail("A malformed trace should be rejected");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
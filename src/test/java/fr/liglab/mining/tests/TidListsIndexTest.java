@@ -0,0 +1,105 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import fr.liglab.hyptest.TidListsIndex;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
+
+public class TidListsIndexTest {
+
+	private static final int NB_ITEMS = 40;
+
+	/**
+	 * Supports must match a naive count, whichever mix of bitmaps and tidlists
+	 * is involved
+	 */
+	@Test
+	public void testSupportsAgainstNaiveCount() {
+		Random random = new Random(1234);
+		final int nbTransactions = 1000;
+
+		// item i appears with a probability decreasing with i, so low items
+		// get bitmaps and high ones tidlists
+		int[][] transactions = new int[nbTransactions][];
+		for (int t = 0; t < nbTransactions; t++) {
+			int[] buffer = new int[NB_ITEMS + 1];
+			int length = 0;
+			for (int item = 0; item < NB_ITEMS; item++) {
+				if (random.nextDouble() < 1.0 / (item + 1)) {
+					buffer[length++] = item;
+				}
+			}
+			if (length > 0 && random.nextBoolean()) {
+				// duplicates should be counted once
+				buffer[length] = buffer[0];
+				length++;
+			}
+			transactions[t] = new int[length];
+			System.arraycopy(buffer, 0, transactions[t], 0, length);
+		}
+
+		TIntSet indexed = new TIntHashSet();
+		for (int item = 0; item < NB_ITEMS; item++) {
+			indexed.add(item);
+		}
+		TidListsIndex index = new TidListsIndex(indexed);
+		for (int[] transaction : transactions) {
+			int[] buffer = new int[transaction.length + 3];
+			System.arraycopy(transaction, 0, buffer, 0, transaction.length);
+			index.addTransaction(buffer, transaction.length);
+		}
+		index.seal();
+		assertEquals(nbTransactions, index.getNbTransactions());
+
+		assertEquals(nbTransactions, index.getSupport(new int[0]));
+		for (int i = 0; i < 2000; i++) {
+			int[] itemset = new int[1 + random.nextInt(4)];
+			for (int j = 0; j < itemset.length; j++) {
+				itemset[j] = random.nextInt(NB_ITEMS);
+			}
+			assertEquals(naiveSupport(transactions, itemset), index.getSupport(itemset));
+		}
+
+		// not indexed, hence unknown
+		assertEquals(0, index.getSupport(new int[] { 0, NB_ITEMS + 1 }));
+	}
+
+	private static int naiveSupport(int[][] transactions, int[] itemset) {
+		int support = 0;
+		for (int[] transaction : transactions) {
+			boolean containsAll = true;
+			for (int item : itemset) {
+				boolean found = false;
+				for (int other : transaction) {
+					found |= (other == item);
+				}
+				containsAll &= found;
+			}
+			if (containsAll) {
+				support++;
+			}
+		}
+		return support;
+	}
+}
@@ -0,0 +1,147 @@
+/*
+	This file is part of TopPI - see https://github.com/slide-lig/TopPI/
+	
+	Copyright 2016 Martin Kirchgessner, Vincent Leroy, Alexandre Termier, Sihem Amer-Yahia, Marie-Christine Rousset, Université Grenoble Alpes, LIG, CNRS
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+	 http://www.apache.org/licenses/LICENSE-2.0
+	 
+	or see the LICENSE.txt file joined with this program.
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+*/
+package fr.liglab.mining.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.Test;
+
+import fr.liglab.mining.mapred.writables.ItemAndSupportWritable;
+import fr.liglab.mining.mapred.writables.SupportAndTransactionWritable;
+
+public class WritablesTest {
+
+	private static final int[] VALUES = { 0, 1, 127, 128, 255, 256, 65535, 65536, 1 << 24, Integer.MAX_VALUE / 2 };
+
+	@Test
+	public void testSupportAndTransactionRoundTrip() throws IOException {
+		int[][] patterns = { {}, { 0 }, { 3, 4, 5 }, { 1, 200, 70000, 1 << 24, Integer.MAX_VALUE } };
+		for (int[] pattern : patterns) {
+			SupportAndTransactionWritable written = new SupportAndTransactionWritable();
+			written.set(pattern.length * 1000 + 1, pattern);
+
+			SupportAndTransactionWritable read = new SupportAndTransactionWritable();
+			read.readFields(input(serialize(written)));
+			assertEquals(written.getSupport(), read.getSupport());
+			assertArrayEquals(pattern, read.getTransaction());
+		}
+	}
+
+	@Test
+	public void testItemAndSupportRoundTrip() throws IOException {
+		for (int item : VALUES) {
+			for (int support : VALUES) {
+				ItemAndSupportWritable written = new ItemAndSupportWritable();
+				written.set(item, support);
+
+				ItemAndSupportWritable read = new ItemAndSupportWritable();
+				read.readFields(input(serialize(written)));
+				assertEquals(written, read);
+			}
+		}
+	}
+
+	/**
+	 * Raw comparators must agree with the deserialized ones
+	 */
+	@Test
+	public void testRawComparators() throws IOException {
+		WritableComparator sort = new ItemAndSupportWritable.SortComparator();
+		WritableComparator itemOnly = new ItemAndSupportWritable.ItemOnlyComparator();
+		Random random = new Random(42);
+
+		for (int i = 0; i < 10000; i++) {
+			ItemAndSupportWritable one = randomKey(random);
+			ItemAndSupportWritable other = randomKey(random);
+			byte[] b1 = serialize(one);
+			byte[] b2 = serialize(other);
+
+			assertEquals(Integer.signum(sort.compare(one, other)),
+					Integer.signum(sort.compare(b1, 0, b1.length, b2, 0, b2.length)));
+			assertEquals(Integer.signum(itemOnly.compare(one, other)),
+					Integer.signum(itemOnly.compare(b1, 0, b1.length, b2, 0, b2.length)));
+		}
+
+		// items ascending, then supports descending
+		ItemAndSupportWritable a = new ItemAndSupportWritable();
+		a.set(3, 10);
+		ItemAndSupportWritable b = new ItemAndSupportWritable();
+		b.set(3, 200);
+		ItemAndSupportWritable c = new ItemAndSupportWritable();
+		c.set(300, 1);
+		assertEquals(1, Integer.signum(compareRaw(sort, a, b)));
+		assertEquals(-1, Integer.signum(compareRaw(sort, b, c)));
+		assertEquals(0, compareRaw(itemOnly, a, b));
+	}
+
+	/**
+	 * Keys are at an offset within a larger buffer during the shuffle
+	 */
+	@Test
+	public void testRawComparatorsOffsets() throws IOException {
+		ItemAndSupportWritable one = new ItemAndSupportWritable();
+		one.set(70000, 5);
+		ItemAndSupportWritable other = new ItemAndSupportWritable();
+		other.set(70000, 300);
+
+		DataOutputBuffer buffer = new DataOutputBuffer();
+		buffer.writeLong(-1);
+		one.write(buffer);
+		int otherStart = buffer.getLength();
+		other.write(buffer);
+		byte[] bytes = buffer.getData();
+
+		WritableComparator sort = new ItemAndSupportWritable.SortComparator();
+		assertEquals(1,
+				Integer.signum(sort.compare(bytes, 8, otherStart - 8, bytes, otherStart, buffer.getLength() - otherStart)));
+	}
+
+	private static ItemAndSupportWritable randomKey(Random random) {
+		ItemAndSupportWritable key = new ItemAndSupportWritable();
+		key.set(VALUES[random.nextInt(VALUES.length)] + random.nextInt(3),
+				VALUES[random.nextInt(VALUES.length)] + random.nextInt(3));
+		return key;
+	}
+
+	private static int compareRaw(WritableComparator comparator, Writable one, Writable other) throws IOException {
+		byte[] b1 = serialize(one);
+		byte[] b2 = serialize(other);
+		return comparator.compare(b1, 0, b1.length, b2, 0, b2.length);
+	}
+
+	private static byte[] serialize(Writable writable) throws IOException {
+		DataOutputBuffer out = new DataOutputBuffer();
+		writable.write(out);
+		byte[] bytes = new byte[out.getLength()];
+		System.arraycopy(out.getData(), 0, bytes, 0, bytes.length);
+		return bytes;
+	}
+
+	private static DataInputBuffer input(byte[] bytes) {
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(bytes, bytes.length);
+		return in;
+	}
+}